@@ -99,6 +99,41 @@ public interface EventSummaryBaseDao {
      * @throws ZepException If an exception occurs.
      */
     EventBatch listBatch(EventBatchParams batchParams, long maxUpdateTime, int limit) throws ZepException;
+
+    /**
+     * Pages over the events in a range of UUIDs, so separate ranges of the events can be paged over concurrently
+     * (for rebuilding the index in parallel). Batches are returned in the same order as
+     * {@link #listBatch(EventBatchParams, long, int)}.
+     *
+     * @param batchParams Parameters that specify where to continue batch processing from. The first query should pass
+     *                    null as this parameter and subsequent queries should use result of the previous call.
+     * @param fromUuid The UUID after which the range starts (exclusive), or null to start at the first UUID.
+     * @param toUuid The last UUID of the range (inclusive), or null to end at the last UUID.
+     * @param maxUpdateTime The maximum update time to include.
+     * @param limit The maximum number of events to return in this batch.
+     * @return A data structure containing a list of event summaries matching the specified parameters, as well as
+     *         parameters for the next batch, if the list is empty, we're done.
+     * @throws ZepException If an exception occurs.
+     */
+    EventBatch listBatch(EventBatchParams batchParams, String fromUuid, String toUuid, long maxUpdateTime, int limit)
+            throws ZepException;
+
+    /**
+     * Pages over the events updated in a range of update times (for bringing an index restored from a snapshot up
+     * to date). Batches are returned in order of update time and UUID, read from the database index on them, so
+     * only the events updated in the range are read.
+     *
+     * @param batchParams Parameters that specify where to continue batch processing from. The first query should pass
+     *                    null as this parameter and subsequent queries should use result of the previous call.
+     * @param minUpdateTime The update time after which events are included (exclusive).
+     * @param maxUpdateTime The maximum update time to include.
+     * @param limit The maximum number of events to return in this batch.
+     * @return A data structure containing a list of event summaries matching the specified parameters, as well as
+     *         parameters for the next batch, if the list is empty, we're done.
+     * @throws ZepException If an exception occurs.
+     */
+    EventBatch listBatchUpdatedAfter(EventBatchParams batchParams, long minUpdateTime, long maxUpdateTime, int limit)
+            throws ZepException;
     /**
      * Method used to import a migrated event summary object from Zenoss 3.1.x to the new event
      * schema.
@@ -167,9 +167,26 @@ public class EventArchiveDaoImpl implements EventArchiveDao {
     @Override
     @TransactionalReadOnly
     public EventBatch listBatch(EventBatchParams batchParams, long maxUpdateTime, int limit) throws ZepException {
+        return listBatch(batchParams, null, null, maxUpdateTime, limit);
+    }
+
+    @Override
+    @TransactionalReadOnly
+    public EventBatch listBatch(EventBatchParams batchParams, String fromUuid, String toUuid, long maxUpdateTime,
+                                int limit) throws ZepException {
         try (Timer.Context ignored = metricRegistry.timer("EventArchive.listBatch").time()) {
-            return this.eventDaoHelper.listBatch(this.template, TABLE_EVENT_ARCHIVE, this.partitioner, batchParams, maxUpdateTime, limit,
-                    new EventArchiveRowMapper(eventDaoHelper, databaseCompatibility));
+            return this.eventDaoHelper.listBatch(this.template, TABLE_EVENT_ARCHIVE, this.partitioner, batchParams,
+                    fromUuid, toUuid, maxUpdateTime, limit, new EventArchiveRowMapper(eventDaoHelper, databaseCompatibility));
+        }
+    }
+
+    @Override
+    @TransactionalReadOnly
+    public EventBatch listBatchUpdatedAfter(EventBatchParams batchParams, long minUpdateTime, long maxUpdateTime,
+                                            int limit) throws ZepException {
+        try (Timer.Context ignored = metricRegistry.timer("EventArchive.listBatchUpdatedAfter").time()) {
+            return this.eventDaoHelper.listBatchUpdatedAfter(this.template, TABLE_EVENT_ARCHIVE, batchParams,
+                    minUpdateTime, maxUpdateTime, limit, new EventArchiveRowMapper(eventDaoHelper, databaseCompatibility));
         }
     }
 
@@ -645,30 +645,35 @@ public class EventDaoHelper {
 
     @TransactionalReadOnly
     private List<EventSummary> listBatch(NamedParameterJdbcOperations template, String tableName,
-                                        String startingUuid, long maxUpdateTime, int limit, EventSummaryRowMapper esrm)
+                                        String startingUuid, String toUuid, long maxUpdateTime, int limit,
+                                        EventSummaryRowMapper esrm)
             throws ZepException {
-        final String sql;
+        final StringBuilder sql = new StringBuilder();
         final Map<String,Object> fields = new HashMap<String,Object>();
         fields.put("_max_update_time", databaseCompatibility.getTimestampConverter().toDatabaseType(maxUpdateTime));
         fields.put("_limit", limit);
-        if (startingUuid == null) {
-            sql = "SELECT * FROM " + tableName + " WHERE update_time <= :_max_update_time ORDER BY uuid LIMIT :_limit";
-        }
-        else {
+        sql.append("SELECT * FROM ").append(tableName).append(" WHERE ");
+        if (startingUuid != null) {
             fields.put("_starting_uuid", uuidConverter.toDatabaseType(startingUuid));
-            sql = "SELECT * FROM " + tableName + " WHERE uuid > :_starting_uuid AND update_time <= :_max_update_time " +
-                    "ORDER BY uuid LIMIT :_limit";
+            sql.append("uuid > :_starting_uuid AND ");
+        }
+        if (toUuid != null) {
+            fields.put("_to_uuid", uuidConverter.toDatabaseType(toUuid));
+            sql.append("uuid <= :_to_uuid AND ");
         }
-        return template.query(sql, fields, esrm);
+        sql.append("update_time <= :_max_update_time ORDER BY uuid LIMIT :_limit");
+        return template.query(sql.toString(), fields, esrm);
     }
 
     @TransactionalReadOnly
     public EventBatch listBatch(NamedParameterJdbcOperations template, String tableName, RangePartitioner partitioner,
-                                EventBatchParams batchParams, long maxUpdateTime, int limit,
-                                EventSummaryRowMapper esrm)
+                                EventBatchParams batchParams, String fromUuid, String toUuid, long maxUpdateTime,
+                                int limit, EventSummaryRowMapper esrm)
             throws ZepException {
         if (partitioner == null) {
-            List<EventSummary> events = listBatch(template, tableName, batchParams == null ? null : batchParams.nextUuid, maxUpdateTime, limit, esrm);
+            final String startingUuid = (batchParams == null || batchParams.nextUuid == null) ? fromUuid
+                    : batchParams.nextUuid;
+            List<EventSummary> events = listBatch(template, tableName, startingUuid, toUuid, maxUpdateTime, limit, esrm);
             if (events.isEmpty()) {
                 return new EventBatch(events, Long.MIN_VALUE, null);
             } else {
@@ -678,7 +683,8 @@ public class EventDaoHelper {
             final Object maxUpdateTimeObject = databaseCompatibility.getTimestampConverter().toDatabaseType(maxUpdateTime);
             List<EventSummary> events = new ArrayList<EventSummary>(limit);
             long nextLastSeen = (batchParams == null) ? Long.MAX_VALUE : batchParams.nextLastSeen;
-            String nextUuid = (batchParams == null) ? null : batchParams.nextUuid;
+            // Each partition is paged over from the start of the UUID range
+            String nextUuid = (batchParams == null || batchParams.nextUuid == null) ? fromUuid : batchParams.nextUuid;
             for (Partition p : Lists.reverse(partitioner.listPartitions())) {
                 if (p.getRangeMinimum() != null) {
                     long partitionMin = p.getRangeMinimum().getTime();
@@ -686,21 +692,21 @@ public class EventDaoHelper {
                         continue;
                     else if (partitionMin < nextLastSeen)
                         nextLastSeen = partitionMin;
-                    events.addAll(listBatchInPartition(template, tableName, p, nextUuid, maxUpdateTimeObject, limit - events.size(), esrm));
+                    events.addAll(listBatchInPartition(template, tableName, p, nextUuid, toUuid, maxUpdateTimeObject, limit - events.size(), esrm));
                     if (events.size() >= limit) {
                         nextUuid = Iterables.getLast(events).getUuid();
                         break;
                     } else {
-                        nextUuid = null;
+                        nextUuid = fromUuid;
                     }
                 } else {
                     nextLastSeen = Long.MIN_VALUE;
-                    events.addAll(listBatchInPartition(template, tableName, p, nextUuid, maxUpdateTimeObject, limit - events.size(), esrm));
+                    events.addAll(listBatchInPartition(template, tableName, p, nextUuid, toUuid, maxUpdateTimeObject, limit - events.size(), esrm));
                     if (events.size() >= limit) {
                         nextUuid = Iterables.getLast(events).getUuid();
                         break;
                     } else {
-                        nextUuid = null;
+                        nextUuid = fromUuid;
                     }
                 }
             }
@@ -710,8 +716,8 @@ public class EventDaoHelper {
 
     @TransactionalReadOnly
     private List<EventSummary> listBatchInPartition(NamedParameterJdbcOperations template, String tableName,
-                                                   Partition partition, String nextUuid, Object maxUpdateTime,
-                                                   int limit, EventSummaryRowMapper esrm)
+                                                   Partition partition, String nextUuid, String toUuid,
+                                                   Object maxUpdateTime, int limit, EventSummaryRowMapper esrm)
         throws ZepException {
         final Map<String,Object> fields = new HashMap<String,Object>();
         final StringBuffer sql = new StringBuffer();
@@ -735,6 +741,11 @@ public class EventDaoHelper {
             fields.put("_starting_uuid", uuidConverter.toDatabaseType(nextUuid));
         }
 
+        if (toUuid != null) {
+            sql.append(" AND uuid <= :_to_uuid");
+            fields.put("_to_uuid", uuidConverter.toDatabaseType(toUuid));
+        }
+
         sql.append(" ORDER BY uuid LIMIT :_limit");
         fields.put("_limit", limit);
         return template.query(sql.toString(), fields, esrm);
@@ -742,6 +753,40 @@ public class EventDaoHelper {
 
 
 
+    /**
+     * Pages over the events of the table in a range of update times, in order of update time and UUID. The update
+     * time and UUID of the last event of a batch are returned as the {@link EventBatchParams#nextLastSeen} and
+     * {@link EventBatchParams#nextUuid} of the next batch, so each batch continues from an index on
+     * (update_time, uuid) and reads only the changed rows. Partitioned tables are read across all partitions.
+     */
+    @TransactionalReadOnly
+    public EventBatch listBatchUpdatedAfter(NamedParameterJdbcOperations template, String tableName,
+                                            EventBatchParams batchParams, long minUpdateTime, long maxUpdateTime,
+                                            int limit, EventSummaryRowMapper esrm) throws ZepException {
+        final TypeConverter<Long> timestampConverter = databaseCompatibility.getTimestampConverter();
+        final Map<String,Object> fields = new HashMap<String,Object>();
+        final StringBuilder sql = new StringBuilder();
+        sql.append("SELECT * FROM ").append(tableName).append(" WHERE update_time <= :_max_update_time");
+        fields.put("_max_update_time", timestampConverter.toDatabaseType(maxUpdateTime));
+        if (batchParams == null || batchParams.nextUuid == null) {
+            sql.append(" AND update_time > :_min_update_time");
+            fields.put("_min_update_time", timestampConverter.toDatabaseType(minUpdateTime));
+        } else {
+            sql.append(" AND update_time >= :_next_update_time");
+            sql.append(" AND (update_time > :_next_update_time OR uuid > :_next_uuid)");
+            fields.put("_next_update_time", timestampConverter.toDatabaseType(batchParams.nextLastSeen));
+            fields.put("_next_uuid", uuidConverter.toDatabaseType(batchParams.nextUuid));
+        }
+        sql.append(" ORDER BY update_time, uuid LIMIT :_limit");
+        fields.put("_limit", limit);
+        final List<EventSummary> events = template.query(sql.toString(), fields, esrm);
+        if (events.isEmpty()) {
+            return new EventBatch(events, Long.MIN_VALUE, null);
+        }
+        final EventSummary last = Iterables.getLast(events);
+        return new EventBatch(events, last.getUpdateTime(), last.getUuid());
+    }
+
     /**
      * Adds the {@link ZepConstants#DETAIL_MIGRATE_UPDATE_TIME} detail to the event occurrence.
      *
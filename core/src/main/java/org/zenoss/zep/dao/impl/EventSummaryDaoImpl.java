@@ -738,9 +738,26 @@ public class EventSummaryDaoImpl implements EventSummaryDao {
     @Override
     @TransactionalReadOnly
     public EventBatch listBatch(EventBatchParams batchParams, long maxUpdateTime, int limit) throws ZepException {
+        return listBatch(batchParams, null, null, maxUpdateTime, limit);
+    }
+
+    @Override
+    @TransactionalReadOnly
+    public EventBatch listBatch(EventBatchParams batchParams, String fromUuid, String toUuid, long maxUpdateTime,
+                                int limit) throws ZepException {
         try (Timer.Context ignored = metricRegistry.timer("EventSummary.listBatch").time()){
-            return this.eventDaoHelper.listBatch(this.template, TABLE_EVENT_SUMMARY, null, batchParams, maxUpdateTime, limit,
-                    new EventSummaryRowMapper(eventDaoHelper, databaseCompatibility));
+            return this.eventDaoHelper.listBatch(this.template, TABLE_EVENT_SUMMARY, null, batchParams, fromUuid,
+                    toUuid, maxUpdateTime, limit, new EventSummaryRowMapper(eventDaoHelper, databaseCompatibility));
+        }
+    }
+
+    @Override
+    @TransactionalReadOnly
+    public EventBatch listBatchUpdatedAfter(EventBatchParams batchParams, long minUpdateTime, long maxUpdateTime,
+                                            int limit) throws ZepException {
+        try (Timer.Context ignored = metricRegistry.timer("EventSummary.listBatchUpdatedAfter").time()){
+            return this.eventDaoHelper.listBatchUpdatedAfter(this.template, TABLE_EVENT_SUMMARY, batchParams,
+                    minUpdateTime, maxUpdateTime, limit, new EventSummaryRowMapper(eventDaoHelper, databaseCompatibility));
         }
     }
 
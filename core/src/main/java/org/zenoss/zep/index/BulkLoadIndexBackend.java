@@ -0,0 +1,59 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index;
+
+import org.zenoss.protobufs.zep.Zep.EventSummary;
+import org.zenoss.zep.ZepException;
+
+import java.util.Collection;
+
+/**
+ * A backend which can load a large number of events into its index in bulk, for rebuilding it.
+ *
+ * Loaded events are written to a separate index, which isn't searched, committed or refreshed, and are added to
+ * the index in one step. Events changed in the index while they were being loaded keep those changes.
+ */
+public interface BulkLoadIndexBackend extends EventIndexBackend {
+
+    /**
+     * Events loaded into a backend, which are added to its index when committed.
+     */
+    interface BulkLoad extends AutoCloseable {
+        /**
+         * Loads events. They aren't added to the index until {@link #commit()} is called.
+         *
+         * @param events The events to load.
+         * @throws ZepException If the events can't be loaded.
+         */
+        void index(Collection<EventSummary> events) throws ZepException;
+
+        /**
+         * Adds the events loaded since the last commit to the index, leaving out events changed in the index since
+         * the last commit. The index isn't committed, see {@link EventIndexBackend#flush()}.
+         *
+         * @return The number of events added to the index.
+         * @throws ZepException If the events can't be added.
+         */
+        int commit() throws ZepException;
+
+        /**
+         * Discards the events loaded since the last commit.
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * Starts loading events in bulk.
+     *
+     * @return The bulk load, or null if the index can't be loaded in bulk at the moment.
+     * @throws ZepException If the bulk load can't be started.
+     */
+    BulkLoad startBulkLoad() throws ZepException;
+}
@@ -139,6 +139,30 @@ public interface EventIndexBackend {
      */
     EventSummaryResult listUuids(EventSummaryRequest request) throws ZepException;
 
+    /**
+     * Retrieves a page of event summary entries matching the specified query, continuing from a cursor returned
+     * with the previous page. The offset of the request is ignored. Unlike offset paging, the cost of a page
+     * doesn't grow with its depth in the result.
+     *
+     * @param request Event summary query.
+     * @param cursor The cursor returned with the previous page, or {@link EventSummaryPage#FIRST_PAGE}.
+     * @return The matching event summary entries and the cursor of the next page.
+     * @throws ZepException If the cursor is invalid or another error occurs.
+     */
+    EventSummaryPage listAfter(EventSummaryRequest request, String cursor) throws ZepException;
+
+    /**
+     * Retrieves a page of event summary UUIDs matching the specified query, continuing from a cursor returned
+     * with the previous page.
+     *
+     * @param request Event summary query.
+     * @param cursor The cursor returned with the previous page, or {@link EventSummaryPage#FIRST_PAGE}.
+     * @return The matching event summary entries and the cursor of the next page.
+     *         Only the UUIDs of each event summary will be returned.
+     * @throws ZepException If the cursor is invalid or another error occurs.
+     */
+    EventSummaryPage listUuidsAfter(EventSummaryRequest request, String cursor) throws ZepException;
+
     /**
      * Returns the event with the matching UUID, or null if not found.
      *
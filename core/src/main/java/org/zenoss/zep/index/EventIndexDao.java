@@ -19,6 +19,7 @@ import org.zenoss.protobufs.zep.Zep.EventTagSeveritiesSet;
 import org.zenoss.zep.ZepException;
 import org.zenoss.zep.dao.Purgable;
 
+import java.io.File;
 import java.util.List;
 
 /**
@@ -90,6 +91,64 @@ public interface EventIndexDao extends Purgable {
      */
     void indexMany(List<EventSummary> events) throws ZepException;
 
+    /**
+     * Starts rebuilding the index in place: the events read from the database replace the events of the live
+     * index, which is written with the current configuration from now on.
+     */
+    void startRebuildInPlace();
+
+    /**
+     * Starts rebuilding the index side by side with the live index. Backends which support it create a shadow
+     * index, which receives every later change made to the live index while searches keep using the live index.
+     * Backends which don't are rebuilt in place.
+     *
+     * @throws ZepException If a shadow index can't be created.
+     */
+    void startShadowRebuild() throws ZepException;
+
+    /**
+     * Adds events read from the database to the shadow indexes started by {@link #startShadowRebuild()}, or to
+     * the live index of the backends rebuilt in place. Replaces existing events with the same UUID.
+     *
+     * @param events The events to index.
+     * @throws ZepException If the events can't be indexed.
+     */
+    void indexShadow(List<EventSummary> events) throws ZepException;
+
+    /**
+     * Replaces the live indexes with the shadow indexes, once all events have been added with
+     * {@link #indexShadow(List)}.
+     *
+     * @throws ZepException If an index can't be replaced.
+     */
+    void finishShadowRebuild() throws ZepException;
+
+    /**
+     * Discards the shadow indexes of a rebuild which won't be finished.
+     */
+    void abortShadowRebuild();
+
+    /**
+     * Copies the indexes to the directory, replacing an earlier snapshot in it. The snapshot holds the changes
+     * indexed before it was taken.
+     *
+     * @param directory The directory of the snapshot.
+     * @return The update time through which every index of the snapshot holds the changes (the earliest of the
+     *         latest update times of the indexes), or null if the snapshot wasn't taken because an index can't be
+     *         copied, or has fallen behind on its changes.
+     * @throws ZepException If an index can't be copied.
+     */
+    Long snapshot(File directory) throws ZepException;
+
+    /**
+     * Replaces the indexes with the copies in a snapshot taken by {@link #snapshot(File)}.
+     *
+     * @param directory The directory of the snapshot.
+     * @return False if the snapshot doesn't hold a copy of every index, in which case no index is restored.
+     * @throws ZepException If an index can't be restored.
+     */
+    boolean restoreSnapshot(File directory) throws ZepException;
+
     /**
      * Retrieves event summary entries matching the specified query.
      *
@@ -115,6 +174,40 @@ public interface EventIndexDao extends Purgable {
     EventSummaryResult listUuids(EventSummaryRequest request)
             throws ZepException;
 
+    /**
+     * Retrieves a page of event summary entries matching the specified query,
+     * continuing from the cursor returned with the previous page.
+     *
+     * @param request
+     *            Event summary query. The offset is ignored.
+     * @param cursor
+     *            The cursor returned with the previous page, or
+     *            {@link EventSummaryPage#FIRST_PAGE}.
+     * @return The matching event summary entries and the cursor of the next
+     *         page.
+     * @throws ZepException
+     *             If the cursor is invalid or another error occurs.
+     */
+    EventSummaryPage listAfter(EventSummaryRequest request, String cursor)
+            throws ZepException;
+
+    /**
+     * Retrieves a page of event summary UUIDs matching the specified query,
+     * continuing from the cursor returned with the previous page.
+     *
+     * @param request
+     *            Event summary query. The offset is ignored.
+     * @param cursor
+     *            The cursor returned with the previous page, or
+     *            {@link EventSummaryPage#FIRST_PAGE}.
+     * @return The matching event summary entries and the cursor of the next
+     *         page. Only the UUIDs of each event summary will be returned.
+     * @throws ZepException
+     *             If the cursor is invalid or another error occurs.
+     */
+    EventSummaryPage listUuidsAfter(EventSummaryRequest request, String cursor)
+            throws ZepException;
+
     /**
      * Deletes the event with the specified uuid from the index
      *
@@ -0,0 +1,67 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index;
+
+import org.zenoss.protobufs.zep.Zep.EventSummaryResult;
+
+/**
+ * A page of events returned by a cursor search, along with the cursor to continue the search from.
+ */
+public final class EventSummaryPage {
+
+    /**
+     * The cursor which starts a search at the first page.
+     */
+    public static final String FIRST_PAGE = "*";
+
+    private final EventSummaryResult result;
+    private final String nextCursor;
+
+    public EventSummaryPage(EventSummaryResult result, String nextCursor) {
+        this.result = result;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Returns the events on this page. The offset based fields of the result (next offset) aren't set.
+     *
+     * @return The events on this page.
+     */
+    public EventSummaryResult getResult() {
+        return result;
+    }
+
+    /**
+     * Returns the cursor to pass to the next search to retrieve the following page.
+     *
+     * @return The cursor for the next page, or null if this is the last page.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Returns true if the cursor starts a search at the first page.
+     *
+     * @param cursor A cursor passed to a search.
+     * @return True if the cursor is null, empty or {@link #FIRST_PAGE}.
+     */
+    public static boolean isFirstPage(String cursor) {
+        return cursor == null || cursor.isEmpty() || FIRST_PAGE.equals(cursor);
+    }
+
+    @Override
+    public String toString() {
+        return "EventSummaryPage{" +
+                "events=" + result.getEventsCount() +
+                ", total=" + result.getTotal() +
+                ", nextCursor='" + nextCursor + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,99 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index;
+
+/**
+ * The time limit of the index searches made by the current request.
+ * <p>
+ * A deadline is started by the REST layer for the current thread before calling the index and closed once the
+ * response has been built. Index backends stop collecting matches when the deadline passes and return the
+ * results collected so far, marking the deadline as {@link #isTimedOut() timed out} so the caller can flag the
+ * response as partial. The event summary protobufs have no field for this, so the deadline is carried on the
+ * thread instead.
+ */
+public final class SearchDeadline implements AutoCloseable {
+
+    private static final ThreadLocal<SearchDeadline> CURRENT = new ThreadLocal<SearchDeadline>();
+
+    private final long deadline;
+    private final SearchDeadline previous;
+    private volatile boolean timedOut = false;
+
+    private SearchDeadline(long deadline, SearchDeadline previous) {
+        this.deadline = deadline;
+        this.previous = previous;
+    }
+
+    /**
+     * Starts a deadline for the searches made by the current thread.
+     *
+     * @param timeoutMillis The time allowed for searching in milliseconds, or zero or less for no per-request
+     *                      limit (the configured search timeout of the backend still applies).
+     * @return The deadline, which must be closed when the request is done.
+     */
+    public static SearchDeadline start(long timeoutMillis) {
+        final long deadline = (timeoutMillis > 0) ? System.currentTimeMillis() + timeoutMillis : Long.MAX_VALUE;
+        final SearchDeadline searchDeadline = new SearchDeadline(deadline, CURRENT.get());
+        CURRENT.set(searchDeadline);
+        return searchDeadline;
+    }
+
+    /**
+     * Returns the deadline of the current thread.
+     *
+     * @return The deadline, or null if none was started.
+     */
+    public static SearchDeadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Returns true if the deadline limits the search time.
+     *
+     * @return False if the deadline was started without a timeout.
+     */
+    public boolean isLimited() {
+        return deadline != Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the time left before the deadline.
+     *
+     * @return The remaining time in milliseconds (zero or less if the deadline has passed), or
+     *         {@link Long#MAX_VALUE} if the deadline isn't limited.
+     */
+    public long getRemainingMillis() {
+        return isLimited() ? deadline - System.currentTimeMillis() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Records that a search ran out of time and returned partial results.
+     */
+    public void markTimedOut() {
+        this.timedOut = true;
+    }
+
+    /**
+     * Returns true if any search made under this deadline returned partial results.
+     *
+     * @return True if a search ran out of time.
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    @Override
+    public void close() {
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+}
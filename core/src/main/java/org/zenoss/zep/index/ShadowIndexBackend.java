@@ -0,0 +1,62 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index;
+
+import org.zenoss.protobufs.zep.Zep.EventSummary;
+import org.zenoss.zep.ZepException;
+
+import java.util.Collection;
+
+/**
+ * A backend which can rebuild its index side by side with the live index.
+ *
+ * While a shadow index exists, every change made to the live index is made to the shadow index too, and searches
+ * keep using the live index. Once the events are rebuilt into the shadow index it replaces the live index.
+ */
+public interface ShadowIndexBackend extends EventIndexBackend {
+
+    /**
+     * Creates an empty shadow index, replacing any existing shadow index.
+     *
+     * @return False if the index can't be rebuilt side by side, in which case no shadow index is created.
+     * @throws ZepException If the shadow index can't be created.
+     */
+    boolean startShadowIndex() throws ZepException;
+
+    /**
+     * @return True if a shadow index exists.
+     */
+    boolean hasShadowIndex();
+
+    /**
+     * Adds or updates events in the shadow index only.
+     *
+     * @param events The events to index.
+     * @throws ZepException If the events can't be indexed, or there is no shadow index.
+     */
+    void indexShadow(Collection<EventSummary> events) throws ZepException;
+
+    /**
+     * Replaces the live index with the shadow index. Searches aren't blocked while the index is replaced.
+     *
+     * @throws ZepException If the index can't be replaced, or there is no shadow index.
+     */
+    void swapShadowIndex() throws ZepException;
+
+    /**
+     * Writes the live index with the current configuration from now on, for a rebuild which replaces its events
+     * in place instead of rebuilding it side by side.
+     */
+    void startRebuildInPlace();
+
+    /**
+     * Deletes the shadow index, if one exists.
+     */
+    void discardShadowIndex();
+}
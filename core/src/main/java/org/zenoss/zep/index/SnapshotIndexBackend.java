@@ -0,0 +1,41 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index;
+
+import org.zenoss.zep.ZepException;
+
+import java.io.File;
+
+/**
+ * A backend which can copy its index to a directory and restore it from the copy.
+ *
+ * A snapshot is a consistent copy of the last commit of the index, taken while the index keeps being updated. An
+ * index restored from a snapshot is missing the changes made since the snapshot was taken, which are indexed again
+ * from the database.
+ */
+public interface SnapshotIndexBackend extends EventIndexBackend {
+
+    /**
+     * Commits the index and copies the commit to the directory, replacing an earlier snapshot in it. Updates and
+     * searches aren't blocked while the files are copied.
+     *
+     * @param directory The directory of the snapshot.
+     * @return The latest update time of the events in the snapshot, or zero if it has no events.
+     * @throws ZepException If the snapshot can't be taken.
+     */
+    long snapshot(File directory) throws ZepException;
+
+    /**
+     * Replaces the events of the index with the events of a snapshot taken by {@link #snapshot(File)}.
+     *
+     * @param directory The directory of the snapshot.
+     * @throws ZepException If the snapshot can't be restored.
+     */
+    void restoreSnapshot(File directory) throws ZepException;
+}
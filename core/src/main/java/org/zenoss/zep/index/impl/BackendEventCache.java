@@ -0,0 +1,101 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Sets;
+import org.zenoss.protobufs.zep.Zep.EventSummary;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * Shares event summaries between the asynchronous backends of a {@link MultiBackendEventIndexDao}.
+ * <p>
+ * Events passed to the index have already been read from the database by the indexer. Each worker looks up
+ * its tasks here first and only reads the remaining rows from the database, which are then shared with the
+ * other workers. An entry is only ever replaced by a newer version of the event (by update
+ * time), so a slow database read can't overwrite a more recent version passed in by the indexer.
+ */
+public class BackendEventCache {
+
+    private static final BiFunction<EventSummary, EventSummary, EventSummary> NEWEST =
+            (existing, update) -> (update.getUpdateTime() >= existing.getUpdateTime()) ? update : existing;
+
+    private final Cache<String, EventSummary> events;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates the cache.
+     *
+     * @param maximumSize The maximum number of events held.
+     * @param expireAfterWrite How long an event is held after it was added.
+     * @param unit The time unit of expireAfterWrite.
+     */
+    public BackendEventCache(int maximumSize, long expireAfterWrite, TimeUnit unit) {
+        this.events = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite, unit)
+                .build();
+    }
+
+    public void put(EventSummary event) {
+        this.events.asMap().merge(event.getUuid(), event, NEWEST);
+    }
+
+    public void putAll(Collection<EventSummary> events) {
+        for (EventSummary event : events) {
+            put(event);
+        }
+    }
+
+    public void invalidate(String uuid) {
+        this.events.invalidate(uuid);
+    }
+
+    public void invalidateAll(Collection<String> uuids) {
+        this.events.invalidateAll(uuids);
+    }
+
+    /**
+     * Adds the cached events matching the uuid and last seen time of the specified keys to <code>found</code>.
+     *
+     * @param keys Events with only the uuid and last seen time populated.
+     * @param found The list the cached events are added to.
+     * @return The keys which weren't found in the cache and must be read from the database.
+     */
+    public Set<EventSummary> collect(Collection<EventSummary> keys, List<EventSummary> found) {
+        final Set<EventSummary> missing = Sets.newHashSetWithExpectedSize(keys.size());
+        for (EventSummary key : keys) {
+            final EventSummary event = this.events.getIfPresent(key.getUuid());
+            if (event != null && event.getLastSeenTime() == key.getLastSeenTime()) {
+                found.add(event);
+            } else {
+                missing.add(key);
+            }
+        }
+        this.hits.addAndGet(keys.size() - missing.size());
+        this.misses.addAndGet(missing.size());
+        return missing;
+    }
+
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    public long getMissCount() {
+        return this.misses.get();
+    }
+}
@@ -24,6 +24,7 @@ import org.zenoss.zep.UUIDGenerator;
 import org.zenoss.zep.ZepException;
 import org.zenoss.zep.impl.ThreadRenamingRunnable;
 import org.zenoss.zep.index.EventIndexBackend;
+import org.zenoss.zep.index.EventSummaryPage;
 import org.zenoss.zep.index.SavedSearchProcessor;
 
 import java.io.IOException;
@@ -93,15 +94,19 @@ public abstract class BaseEventIndexBackend<SS extends SavedSearch> implements E
         public int total = 0;
 
         public void updateCounts(final EventSeverity severity, final int count, boolean isAcknowledged) {
+            updateCounts(severity, 1, isAcknowledged ? 1 : 0, count);
+        }
+
+        public void updateCounts(final EventSeverity severity, final int events, final int acknowledgedEvents,
+                                 final int count) {
             this.total += count;
             Counter counter = counters.get(severity);
             if (counter == null) {
                 counter = new Counter();
                 counters.put(severity, counter);
             }
-            ++counter.count;
-            if (isAcknowledged)
-                ++counter.ackCount;
+            counter.count += events;
+            counter.ackCount += acknowledgedEvents;
         }
 
         public EventTagSeverities toEventTagSeverities(String uuid) {
@@ -130,10 +135,29 @@ public abstract class BaseEventIndexBackend<SS extends SavedSearch> implements E
          * @param acknowledged the status of the event is "acknowledged"
          */
         void update(String uuid, EventSeverity severity, int count, boolean acknowledged);
+
+        /**
+         * Update the counts of the event tag severities for a group of events.
+         * @param uuid the event tag UUID
+         * @param severity the severity of the events
+         * @param events the number of events in the group
+         * @param acknowledgedEvents the number of events in the group with status "acknowledged"
+         * @param count the sum of the event counts of the group
+         */
+        void update(String uuid, EventSeverity severity, int events, int acknowledgedEvents, int count);
     }
 
     @Override
     public EventTagSeveritiesSet getEventTagSeverities(EventFilter filter) throws ZepException {
+        // Filters meaning the same thing share the cached severities
+        filter = EventFilterNormalizer.normalize(filter);
+        final TagSeverityRollup rollup = getTagSeverityRollup();
+        if (rollup != null && TagSeverityRollup.canCount(filter)) {
+            final EventTagSeveritiesSet result = _getEventTagSeverities(filter, rollup);
+            if (result != null) {
+                return result;
+            }
+        }
         try {
             return tagSeveritiesCache.get(filter);
         } catch (ExecutionException e) {
@@ -142,6 +166,16 @@ public abstract class BaseEventIndexBackend<SS extends SavedSearch> implements E
     }
 
     private EventTagSeveritiesSet _getEventTagSeverities(EventFilter filter) throws ZepException {
+        return _getEventTagSeverities(filter, null);
+    }
+
+    /**
+     * Counts the event tag severities from the rollup if specified, otherwise by searching the index.
+     *
+     * @return The event tag severities, or null if the rollup isn't ready yet.
+     */
+    private EventTagSeveritiesSet _getEventTagSeverities(EventFilter filter, TagSeverityRollup rollup)
+            throws ZepException {
         final Map<String, TagSeverities> tagSeveritiesMap = Maps.newHashMap();
         final boolean hasTagsFilter = filter.getTagFilterCount() > 0;
         for (EventTagFilter eventTagFilter : filter.getTagFilterList()) {
@@ -149,18 +183,35 @@ public abstract class BaseEventIndexBackend<SS extends SavedSearch> implements E
                 tagSeveritiesMap.put(eventTagUuid, new TagSeverities());
             }
         }
-        searchEventTagSeverities(filter, new EventTagSeverityCounter() {
+        final EventTagSeverityCounter counter = new EventTagSeverityCounter() {
             @Override
             public void update(String uuid, EventSeverity severity, int count, boolean acknowledged) {
+                TagSeverities severities = getTagSeverities(uuid);
+                if (severities != null)
+                    severities.updateCounts(severity, count, acknowledged);
+            }
+
+            @Override
+            public void update(String uuid, EventSeverity severity, int events, int acknowledgedEvents, int count) {
+                TagSeverities severities = getTagSeverities(uuid);
+                if (severities != null)
+                    severities.updateCounts(severity, events, acknowledgedEvents, count);
+            }
+
+            private TagSeverities getTagSeverities(String uuid) {
                 TagSeverities severities = tagSeveritiesMap.get(uuid);
                 if (severities == null && !hasTagsFilter) {
                     severities = new TagSeverities();
                     tagSeveritiesMap.put(uuid, severities);
                 }
-                if (severities != null)
-                    severities.updateCounts(severity, count, acknowledged);
+                return severities;
             }
-        });
+        };
+        if (rollup == null) {
+            searchEventTagSeverities(filter, counter);
+        } else if (!rollup.count(filter, counter)) {
+            return null;
+        }
         EventTagSeveritiesSet.Builder builder = EventTagSeveritiesSet.newBuilder();
         for (Map.Entry<String, TagSeverities> entry : tagSeveritiesMap.entrySet()) {
             builder.addSeverities(entry.getValue().toEventTagSeverities(entry.getKey()));
@@ -168,6 +219,47 @@ public abstract class BaseEventIndexBackend<SS extends SavedSearch> implements E
         return builder.build();
     }
 
+    private static final String OFFSET_CURSOR_PREFIX = "offset:";
+
+    /**
+     * Pages through the results by offset, encoding the offset of the next page in the cursor. Backends which
+     * can continue a search from the sort values of the last result override this.
+     */
+    @Override
+    public EventSummaryPage listAfter(EventSummaryRequest request, String cursor) throws ZepException {
+        return listAfterOffset(request, cursor, false);
+    }
+
+    @Override
+    public EventSummaryPage listUuidsAfter(EventSummaryRequest request, String cursor) throws ZepException {
+        return listAfterOffset(request, cursor, true);
+    }
+
+    private EventSummaryPage listAfterOffset(EventSummaryRequest request, String cursor, boolean uuidsOnly)
+            throws ZepException {
+        final EventSummaryRequest offsetRequest = request.toBuilder().setOffset(decodeOffsetCursor(cursor)).build();
+        final EventSummaryResult result = uuidsOnly ? listUuids(offsetRequest) : list(offsetRequest);
+        final String nextCursor = result.hasNextOffset() ? OFFSET_CURSOR_PREFIX + result.getNextOffset() : null;
+        return new EventSummaryPage(result.toBuilder().clearNextOffset().build(), nextCursor);
+    }
+
+    private int decodeOffsetCursor(String cursor) throws ZepException {
+        if (EventSummaryPage.isFirstPage(cursor)) {
+            return 0;
+        }
+        if (cursor.startsWith(OFFSET_CURSOR_PREFIX)) {
+            try {
+                final int offset = Integer.parseInt(cursor.substring(OFFSET_CURSOR_PREFIX.length()));
+                if (offset >= 0) {
+                    return offset;
+                }
+            } catch (NumberFormatException e) {
+                // Invalid cursor
+            }
+        }
+        throw new ZepException(messages.getMessage("invalid_cursor", cursor));
+    }
+
     public final String createSavedSearch(EventQuery eventQuery) throws ZepException {
         if (eventQuery.getTimeout() < 1) {
             throw new ZepException("Invalid timeout: " + eventQuery.getTimeout());
@@ -270,6 +362,15 @@ public abstract class BaseEventIndexBackend<SS extends SavedSearch> implements E
         }, "ZEP_SAVED_SEARCH_TIMEOUT"), d));
     }
 
+    /**
+     * Returns the rollup used to count event tag severities for simple filters without searching the index.
+     *
+     * @return The rollup, or null if the backend doesn't maintain one.
+     */
+    protected TagSeverityRollup getTagSeverityRollup() {
+        return null;
+    }
+
     /**
      * Iterate over all events matching the filter, updating the counter once per event.
      */
@@ -209,9 +209,10 @@ public abstract class BaseQueryBuilder<B extends BaseQueryBuilder<B>> {
      * Special case queries for identifier fields. Queries that are enclosed in quotes result in
      * an exact query for the string in the non-analyzed field. Queries that end in an asterisk
      * result in a prefix query in the non-analyzed field. Queries of a length less than
-     * the {@link IndexConstants#MIN_NGRAM_SIZE} are converted to prefix queries on the
+     * the minimum n-gram size of the index are converted to prefix queries on the
      * non-analyzed field. All other queries are sent to the NGram analyzed field for efficient
-     * substring matches.
+     * substring matches, or to a wildcard query on the non-analyzed field if the field isn't
+     * indexed with n-grams (see {@link NGramIndexConfig}).
      *
      * @param fieldName     Analyzed field name.
      * @param values        Queries to search on.
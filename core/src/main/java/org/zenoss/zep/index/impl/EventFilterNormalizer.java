@@ -0,0 +1,243 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl;
+
+import com.google.common.primitives.UnsignedBytes;
+import com.google.protobuf.Message;
+import com.google.protobuf.ProtocolMessageEnum;
+import org.zenoss.protobufs.util.Util.TimestampRange;
+import org.zenoss.protobufs.zep.Zep.EventDetailFilter;
+import org.zenoss.protobufs.zep.Zep.EventFilter;
+import org.zenoss.protobufs.zep.Zep.EventTagFilter;
+import org.zenoss.protobufs.zep.Zep.NumberRange;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Rewrites event filters into a canonical form, so filters which match the same events the same way are equal
+ * and share the entries of caches keyed on filters.
+ * <p>
+ * The values of a field of a filter match if any of them match, and the tag filters, detail filters and sub-filters
+ * of a filter are combined whatever their order, so the canonical form:
+ * <ul>
+ * <li>sorts the values of each field and removes duplicates,</li>
+ * <li>merges overlapping time and count ranges,</li>
+ * <li>sorts tag filters, detail filters and sub-filters and removes duplicates,</li>
+ * <li>removes tag filters without tags and sub-filters without criteria, which match every event,</li>
+ * <li>clears an operator set to its default.</li>
+ * </ul>
+ * The query built from a canonical filter matches the same events as the query built from the original filter.
+ */
+public final class EventFilterNormalizer {
+
+    private static final Comparator<Message> MESSAGE_ORDER = new Comparator<Message>() {
+        @Override
+        public int compare(Message m1, Message m2) {
+            return UnsignedBytes.lexicographicalComparator().compare(m1.toByteArray(), m2.toByteArray());
+        }
+    };
+
+    private static final Comparator<ProtocolMessageEnum> ENUM_ORDER = new Comparator<ProtocolMessageEnum>() {
+        @Override
+        public int compare(ProtocolMessageEnum e1, ProtocolMessageEnum e2) {
+            return Integer.compare(e1.getNumber(), e2.getNumber());
+        }
+    };
+
+    private EventFilterNormalizer() {
+    }
+
+    /**
+     * Returns the canonical form of the filter.
+     *
+     * @param filter The filter, may be null.
+     * @return The canonical filter, or null if the filter is null.
+     */
+    public static EventFilter normalize(EventFilter filter) {
+        if (filter == null) {
+            return null;
+        }
+        final EventFilter.Builder builder = filter.toBuilder();
+        if (filter.hasOperator() && filter.getOperator() == EventFilter.getDefaultInstance().getOperator()) {
+            builder.clearOperator();
+        }
+        builder.clearCountRange().addAllCountRange(mergeNumberRanges(filter.getCountRangeList()));
+        builder.clearCurrentUserName().addAllCurrentUserName(sorted(filter.getCurrentUserNameList()));
+        builder.clearElementIdentifier().addAllElementIdentifier(sorted(filter.getElementIdentifierList()));
+        builder.clearElementTitle().addAllElementTitle(sorted(filter.getElementTitleList()));
+        builder.clearElementSubIdentifier().addAllElementSubIdentifier(sorted(filter.getElementSubIdentifierList()));
+        builder.clearElementSubTitle().addAllElementSubTitle(sorted(filter.getElementSubTitleList()));
+        builder.clearFingerprint().addAllFingerprint(sorted(filter.getFingerprintList()));
+        builder.clearEventSummary().addAllEventSummary(sorted(filter.getEventSummaryList()));
+        builder.clearMessage().addAllMessage(sorted(filter.getMessageList()));
+        builder.clearFirstSeen().addAllFirstSeen(mergeTimestampRanges(filter.getFirstSeenList()));
+        builder.clearLastSeen().addAllLastSeen(mergeTimestampRanges(filter.getLastSeenList()));
+        builder.clearStatusChange().addAllStatusChange(mergeTimestampRanges(filter.getStatusChangeList()));
+        builder.clearUpdateTime().addAllUpdateTime(mergeTimestampRanges(filter.getUpdateTimeList()));
+        builder.clearStatus().addAllStatus(sortedEnums(filter.getStatusList()));
+        builder.clearSeverity().addAllSeverity(sortedEnums(filter.getSeverityList()));
+        builder.clearAgent().addAllAgent(sorted(filter.getAgentList()));
+        builder.clearMonitor().addAllMonitor(sorted(filter.getMonitorList()));
+        builder.clearEventKey().addAllEventKey(sorted(filter.getEventKeyList()));
+        builder.clearEventClassKey().addAllEventClassKey(sorted(filter.getEventClassKeyList()));
+        builder.clearEventGroup().addAllEventGroup(sorted(filter.getEventGroupList()));
+        builder.clearEventClass().addAllEventClass(sorted(filter.getEventClassList()));
+        builder.clearUuid().addAllUuid(sorted(filter.getUuidList()));
+
+        final TreeSet<EventTagFilter> tagFilters = new TreeSet<EventTagFilter>(MESSAGE_ORDER);
+        for (EventTagFilter tagFilter : filter.getTagFilterList()) {
+            if (tagFilter.getTagUuidsCount() > 0) {
+                tagFilters.add(normalize(tagFilter));
+            }
+        }
+        builder.clearTagFilter().addAllTagFilter(tagFilters);
+
+        final TreeSet<EventDetailFilter> detailFilters = new TreeSet<EventDetailFilter>(MESSAGE_ORDER);
+        for (EventDetailFilter detailFilter : filter.getDetailsList()) {
+            detailFilters.add(normalize(detailFilter));
+        }
+        builder.clearDetails().addAllDetails(detailFilters);
+
+        final TreeSet<EventFilter> subfilters = new TreeSet<EventFilter>(MESSAGE_ORDER);
+        for (EventFilter subfilter : filter.getSubfilterList()) {
+            final EventFilter normalized = normalize(subfilter);
+            if (hasCriteria(normalized)) {
+                subfilters.add(normalized);
+            }
+        }
+        builder.clearSubfilter().addAllSubfilter(subfilters);
+        return builder.build();
+    }
+
+    private static EventTagFilter normalize(EventTagFilter tagFilter) {
+        final EventTagFilter.Builder builder = tagFilter.toBuilder();
+        if (tagFilter.hasOp() && tagFilter.getOp() == EventTagFilter.getDefaultInstance().getOp()) {
+            builder.clearOp();
+        }
+        return builder.clearTagUuids().addAllTagUuids(sorted(tagFilter.getTagUuidsList())).build();
+    }
+
+    private static EventDetailFilter normalize(EventDetailFilter detailFilter) {
+        final EventDetailFilter.Builder builder = detailFilter.toBuilder();
+        if (detailFilter.hasOp() && detailFilter.getOp() == EventDetailFilter.getDefaultInstance().getOp()) {
+            builder.clearOp();
+        }
+        return builder.clearValue().addAllValue(sorted(detailFilter.getValueList())).build();
+    }
+
+    /**
+     * A canonical filter without criteria matches every event, it doesn't restrict the filter holding it.
+     */
+    private static boolean hasCriteria(EventFilter normalized) {
+        return !normalized.toBuilder().clearOperator().build().equals(EventFilter.getDefaultInstance());
+    }
+
+    private static List<String> sorted(Collection<String> values) {
+        return new ArrayList<String>(new TreeSet<String>(values));
+    }
+
+    private static <E extends ProtocolMessageEnum> List<E> sortedEnums(Collection<E> values) {
+        final TreeSet<E> sorted = new TreeSet<E>(ENUM_ORDER);
+        sorted.addAll(values);
+        return new ArrayList<E>(sorted);
+    }
+
+    /**
+     * Merges overlapping ranges, an event matches if its time is in any of the ranges. A range without a start or
+     * end time is open on that side.
+     */
+    private static List<TimestampRange> mergeTimestampRanges(List<TimestampRange> ranges) {
+        final List<long[]> bounds = new ArrayList<long[]>(ranges.size());
+        for (TimestampRange range : ranges) {
+            bounds.add(new long[] { range.hasStartTime() ? range.getStartTime() : Long.MIN_VALUE,
+                    range.hasEndTime() ? range.getEndTime() : Long.MAX_VALUE });
+        }
+        final List<long[]> merged = merge(bounds);
+        if (merged == null) {
+            return sortedMessages(ranges);
+        }
+        final List<TimestampRange> result = new ArrayList<TimestampRange>(merged.size());
+        for (long[] range : merged) {
+            final TimestampRange.Builder builder = TimestampRange.newBuilder();
+            if (range[0] != Long.MIN_VALUE) {
+                builder.setStartTime(range[0]);
+            }
+            if (range[1] != Long.MAX_VALUE) {
+                builder.setEndTime(range[1]);
+            }
+            result.add(builder.build());
+        }
+        return result;
+    }
+
+    private static List<NumberRange> mergeNumberRanges(List<NumberRange> ranges) {
+        final List<long[]> bounds = new ArrayList<long[]>(ranges.size());
+        for (NumberRange range : ranges) {
+            bounds.add(new long[] { range.hasFrom() ? range.getFrom() : Long.MIN_VALUE,
+                    range.hasTo() ? range.getTo() : Long.MAX_VALUE });
+        }
+        final List<long[]> merged = merge(bounds);
+        if (merged == null) {
+            return sortedMessages(ranges);
+        }
+        final List<NumberRange> result = new ArrayList<NumberRange>(merged.size());
+        for (long[] range : merged) {
+            final NumberRange.Builder builder = NumberRange.newBuilder();
+            if (range[0] != Long.MIN_VALUE) {
+                builder.setFrom(range[0]);
+            }
+            if (range[1] != Long.MAX_VALUE) {
+                builder.setTo(range[1]);
+            }
+            result.add(builder.build());
+        }
+        return result;
+    }
+
+    /**
+     * Merges inclusive ranges (start, end) into sorted disjoint ranges.
+     *
+     * @return The merged ranges, or null if a range is inverted (left as is so the query builders reject it).
+     */
+    private static List<long[]> merge(List<long[]> ranges) {
+        for (long[] range : ranges) {
+            if (range[0] > range[1]) {
+                return null;
+            }
+        }
+        Collections.sort(ranges, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] r1, long[] r2) {
+                return Long.compare(r1[0], r2[0]);
+            }
+        });
+        final List<long[]> merged = new ArrayList<long[]>(ranges.size());
+        long[] last = null;
+        for (long[] range : ranges) {
+            if (last != null && range[0] <= last[1]) {
+                last[1] = Math.max(last[1], range[1]);
+            } else {
+                last = range;
+                merged.add(last);
+            }
+        }
+        return merged;
+    }
+
+    private static <M extends Message> List<M> sortedMessages(Collection<M> messages) {
+        final TreeSet<M> sorted = new TreeSet<M>(MESSAGE_ORDER);
+        sorted.addAll(messages);
+        return new ArrayList<M>(sorted);
+    }
+}
@@ -1,5 +1,11 @@
 package org.zenoss.zep.index.impl;
 
+import org.zenoss.protobufs.zep.Zep.EventSummary;
+import org.zenoss.zep.ZepException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
 public final class EventIndexBackendTask {
 
     public enum Op {FLUSH, INDEX_EVENT}
@@ -7,19 +13,58 @@ public final class EventIndexBackendTask {
     public final Op op;
     public final String uuid;
     public final Long lastSeen;
+    /** The compressed and base64 encoded event, for tasks which carry the event itself. */
+    private final String event;
 
-    private EventIndexBackendTask(Op op, String uuid, Long lastSeen) {
+    private EventIndexBackendTask(Op op, String uuid, Long lastSeen, String event) {
         this.op = op;
         this.uuid = uuid;
         this.lastSeen = lastSeen;
+        this.event = event;
     }
 
     public static EventIndexBackendTask Flush() {
-        return new EventIndexBackendTask(Op.FLUSH, null, null);
+        return new EventIndexBackendTask(Op.FLUSH, null, null, null);
     }
 
     public static EventIndexBackendTask Index(String uuid, Long lastSeen) {
-        return new EventIndexBackendTask(Op.INDEX_EVENT, uuid, lastSeen);
+        return new EventIndexBackendTask(Op.INDEX_EVENT, uuid, lastSeen, null);
+    }
+
+    /**
+     * Creates a task which carries the event itself, so the event is processed exactly as it was indexed even
+     * if the event has changed in the database since.
+     *
+     * @param event The indexed event.
+     * @return The task.
+     * @throws ZepException If the event can't be encoded.
+     */
+    public static EventIndexBackendTask Index(EventSummary event) throws ZepException {
+        final String encoded = new String(Base64.getEncoder().encode(
+                BaseEventIndexMapper.compressProtobuf(event)), StandardCharsets.US_ASCII);
+        return new EventIndexBackendTask(Op.INDEX_EVENT, event.getUuid(), event.getLastSeenTime(), encoded);
+    }
+
+    /**
+     * @return Whether the task carries the event itself.
+     */
+    public boolean hasEvent() {
+        return event != null;
+    }
+
+    /**
+     * @return The event carried by the task, or null if the task only identifies the event.
+     * @throws ZepException If the event can't be decoded.
+     */
+    public EventSummary getEvent() throws ZepException {
+        if (event == null) {
+            return null;
+        }
+        try {
+            return BaseEventIndexMapper.uncompressProtobuf(Base64.getDecoder().decode(event));
+        } catch (IllegalArgumentException e) {
+            throw new ZepException("Invalid event in task: " + uuid, e);
+        }
     }
 
     public String toString() {
@@ -29,6 +74,8 @@ public final class EventIndexBackendTask {
             sb.append(",").append("uuid:").append(uuid);
         if (lastSeen != null)
             sb.append(",").append("lastSeen:").append(lastSeen);
+        if (event != null)
+            sb.append(",").append("event:").append(event);
         return sb.toString();
     }
 
@@ -37,6 +84,7 @@ public final class EventIndexBackendTask {
             Op op = null;
             String uuid = null;
             Long lastSeen = null;
+            String event = null;
             for (String pairString : s.split(",")) {
                 String[] pair = pairString.split(":",2);
                 if ("op".equals(pair[0]))
@@ -45,8 +93,10 @@ public final class EventIndexBackendTask {
                     uuid = pair[1];
                 else if ("lastSeen".equals(pair[0]))
                     lastSeen = Long.parseLong(pair[1],10);
+                else if ("event".equals(pair[0]))
+                    event = pair[1];
             }
-            return new EventIndexBackendTask(op, uuid, lastSeen);
+            return new EventIndexBackendTask(op, uuid, lastSeen, event);
         } catch (NullPointerException e) {
             throw new IllegalArgumentException("Unparsable task: " + s, e);
         } catch (IllegalArgumentException e) {
@@ -27,7 +27,9 @@ import org.zenoss.zep.index.EventIndexer;
 import org.zenoss.zep.index.IndexedDetailsConfiguration;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -35,14 +37,24 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Utility used to rebuild the event index.
+ * <p>
+ * When snapshots are enabled, the index is copied to the snapshot directory periodically along with the index
+ * version / hash it was built with and the latest update time of the events in the copy. Changes are queued for
+ * indexing in order of update time, so the copy holds every change through that time. An empty index (after moving
+ * to a new host or losing the index directory) is restored from the snapshot, and only the events updated since
+ * are indexed again from the database instead of rebuilding the whole index.
  */
 public class EventIndexRebuilderImpl implements EventIndexRebuilder, ApplicationListener<IndexRebuildRequiredEvent> {
     private static final Logger logger = LoggerFactory.getLogger(EventIndexRebuilderImpl.class);
 
+    // Snapshots aren't taken while more changes than this are waiting to be indexed
+    private static final long SNAPSHOT_MAX_QUEUE_LENGTH = 1000L;
+
     private final boolean enableIndexing;
 
     private EventIndexer eventIndexer;
@@ -51,15 +63,23 @@ public class EventIndexRebuilderImpl implements EventIndexRebuilder, Application
     private EventIndexDao indexDao;
     private IndexMetadataDao indexMetadataDao;
     private IndexedDetailsConfiguration indexedDetailsConfiguration;
+    private NGramIndexConfig nGramConfig = new NGramIndexConfig();
 
     private final ExecutorService executorService = Executors.newSingleThreadExecutor();
     private Future<?> rebuildFuture = null;
     private volatile boolean shutdown = false;
     private volatile boolean configurationChanged = false;
     private final Object lock = new Object();
-    private byte[] indexVersionHash;
+    private volatile byte[] indexVersionHash;
     private File indexStateFile;
 
+    private EventIndexQueueDao indexQueueDao;
+    private File snapshotDir;
+    private File snapshotStateFile;
+    private int snapshotIntervalMinutes = 0;
+    private EventSummaryBaseDao movedEventsDao;
+    private ScheduledExecutorService snapshotExecutorService = null;
+
     public EventIndexRebuilderImpl(boolean enableIndexing) {
         this.enableIndexing = enableIndexing;
     }
@@ -78,7 +98,7 @@ public class EventIndexRebuilderImpl implements EventIndexRebuilder, Application
                         configurationChanged = false;
                         Map<String,EventDetailItem> detailItems =
                                 indexedDetailsConfiguration.getEventDetailItemsByName();
-                        indexVersionHash = calculateIndexVersionHash(detailItems);
+                        indexVersionHash = calculateIndexVersionHash(detailItems, nGramConfig);
                         recreateIndexIfNeeded();
 
                         // Wait to be interrupted if the configuration changes for the index
@@ -107,6 +127,23 @@ public class EventIndexRebuilderImpl implements EventIndexRebuilder, Application
                 logger.info("Index rebuilding thread stopped for: {}", indexDao.getName());
             }
         }, "INDEX_REBUILDER_" + this.indexDao.getName().toUpperCase()));
+
+        if (this.snapshotDir != null && this.snapshotIntervalMinutes > 0) {
+            logger.info("Taking snapshots of index {} every {} minutes in {}", this.indexDao.getName(),
+                    this.snapshotIntervalMinutes, this.snapshotDir);
+            snapshotExecutorService = Executors.newSingleThreadScheduledExecutor();
+            snapshotExecutorService.scheduleWithFixedDelay(new ThreadRenamingRunnable(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        takeSnapshot();
+                    } catch (Exception e) {
+                        logger.warn("Failed to take snapshot of event index " + indexDao.getName(), e);
+                    }
+                }
+            }, "INDEX_SNAPSHOT_" + this.indexDao.getName().toUpperCase()), snapshotIntervalMinutes,
+                    snapshotIntervalMinutes, TimeUnit.MINUTES);
+        }
     }
 
     public void setIndexDir(File indexDir) {
@@ -119,6 +156,43 @@ public class EventIndexRebuilderImpl implements EventIndexRebuilder, Application
         }
     }
 
+    /**
+     * Sets the directory holding the index snapshots. The snapshot of this index is kept in a sub-directory named
+     * after the index.
+     *
+     * @param snapshotDir The snapshot directory.
+     */
+    public void setSnapshotDir(File snapshotDir) {
+        this.snapshotDir = new File(snapshotDir, indexDao.getName());
+        this.snapshotStateFile = new File(snapshotDir, indexDao.getName() + ".properties");
+    }
+
+    /**
+     * @param snapshotIntervalMinutes The delay between snapshots of the index, or zero to disable snapshots. An
+     *                                existing snapshot is still restored if snapshots are disabled.
+     */
+    public void setSnapshotIntervalMinutes(int snapshotIntervalMinutes) {
+        this.snapshotIntervalMinutes = snapshotIntervalMinutes;
+    }
+
+    /**
+     * @param indexQueueDao The queue of changes waiting to be indexed, which is checked before taking a snapshot.
+     */
+    public void setIndexQueueDao(EventIndexQueueDao indexQueueDao) {
+        this.indexQueueDao = indexQueueDao;
+    }
+
+    /**
+     * Sets the table events of this index are moved to (events are moved out of the event summary to the archive).
+     * The events moved since a snapshot was taken are removed from the index restored from it. Not needed for
+     * indexes whose events are only deleted by purging.
+     *
+     * @param movedEventsDao The DAO of the table events are moved to.
+     */
+    public void setMovedEventsDao(EventSummaryBaseDao movedEventsDao) {
+        this.movedEventsDao = movedEventsDao;
+    }
+
     public void setEventIndexer(EventIndexer eventIndexer) {
         this.eventIndexer = eventIndexer;
     }
@@ -139,6 +213,15 @@ public class EventIndexRebuilderImpl implements EventIndexRebuilder, Application
         this.indexMetadataDao = indexMetadataDao;
     }
 
+    /**
+     * Sets the n-gram indexing of the identifier fields of the index. The index is rebuilt when it changes.
+     *
+     * @param nGramConfig The n-gram indexing of the identifier fields of the index.
+     */
+    public void setNgramConfig(NGramIndexConfig nGramConfig) {
+        this.nGramConfig = nGramConfig;
+    }
+
     public void setIndexedDetailsConfiguration(IndexedDetailsConfiguration indexedDetailsConfiguration) {
         this.indexedDetailsConfiguration = indexedDetailsConfiguration;
     }
@@ -149,7 +232,8 @@ public class EventIndexRebuilderImpl implements EventIndexRebuilder, Application
         }
     }
 
-    private static byte[] calculateIndexVersionHash(Map<String,EventDetailItem> detailItems) throws ZepException {
+    private static byte[] calculateIndexVersionHash(Map<String,EventDetailItem> detailItems,
+                                                    NGramIndexConfig nGramConfig) throws ZepException {
         TreeMap<String,EventDetailItem> sorted = new TreeMap<String,EventDetailItem>(detailItems);
         StringBuilder indexConfigStr = new StringBuilder();
         for (EventDetailItem item : sorted.values()) {
@@ -160,6 +244,10 @@ public class EventIndexRebuilderImpl implements EventIndexRebuilder, Application
             indexConfigStr.append(item.getType().name());
             indexConfigStr.append('|');
         }
+        // Only a changed n-gram configuration is part of the hash, so indexes with the default one aren't rebuilt
+        if (!nGramConfig.isDefault()) {
+            indexConfigStr.append(nGramConfig);
+        }
         if (indexConfigStr.length() == 0) {
             return null;
         }
@@ -180,6 +268,11 @@ public class EventIndexRebuilderImpl implements EventIndexRebuilder, Application
         }
         this.executorService.shutdown();
         this.executorService.awaitTermination(0, TimeUnit.SECONDS);
+        if (snapshotExecutorService != null) {
+            // Let a snapshot being copied finish, so the previous snapshot isn't lost
+            snapshotExecutorService.shutdown();
+            snapshotExecutorService.awaitTermination(60, TimeUnit.SECONDS);
+        }
     }
 
     private void recreateIndexIfNeeded() throws ZepException, InterruptedException {
@@ -187,6 +280,8 @@ public class EventIndexRebuilderImpl implements EventIndexRebuilder, Application
         final int numDocs = indexDao.getNumDocs();
 
         boolean recreateIndex = false;
+        boolean rebuildSideBySide = false;
+        Long restoredThroughTime = null;
         IndexRebuildState indexRebuildState = null;
 
         // Stop the event indexer if it is currently running.
@@ -196,7 +291,8 @@ public class EventIndexRebuilderImpl implements EventIndexRebuilder, Application
         if (numDocs == 0) {
             logger.info("Empty index detected.");
             deleteStateFile();
-            recreateIndex = true;
+            restoredThroughTime = restoreSnapshot();
+            recreateIndex = (restoredThroughTime == null);
         }
         // Recreate index if we detect that the schema was cleared (wiped record of indexing state)
         else if (indexMetadata == null) {
@@ -215,17 +311,26 @@ public class EventIndexRebuilderImpl implements EventIndexRebuilder, Application
             } catch (Exception e) {
                 logger.warn("Failed to restore index rebuild state from: " + this.indexStateFile.getAbsolutePath(), e);
             }
+            final boolean versionChanged = indexVersionChanged(indexMetadata);
             if (indexRebuildState != null) {
                 recreateIndex = true;
-                if (indexVersionChanged(indexMetadata)) {
+                if (versionChanged) {
                     if (indexRebuildState.getIndexVersion() != IndexConstants.INDEX_VERSION ||
                             !Arrays.equals(indexRebuildState.getIndexVersionHash(), this.indexVersionHash)) {
                         // We have state from an previous version / hash - ignore it
                         indexRebuildState = null;
                         deleteStateFile();
+                        recreateIndex = false;
                     }
                 }
             }
+            if (!recreateIndex && IndexConstants.INDEX_VERSION != indexMetadata.getIndexVersion()) {
+                // Queries are built for the fields of the new index version, which the previous index doesn't
+                // have, so it can't keep being searched while it is rebuilt - rebuild it in place instead
+                recreateIndex = true;
+            }
+            // The index is complete for the previous hash - keep searching it while it is rebuilt
+            rebuildSideBySide = !recreateIndex && versionChanged;
         }
 
         if (recreateIndex) {
@@ -236,12 +341,36 @@ public class EventIndexRebuilderImpl implements EventIndexRebuilder, Application
             byte[] checksum = new byte[20];
             Arrays.fill(checksum, (byte) 0);
             this.indexMetadataDao.updateIndexVersion(this.indexDao.getName(), 0, checksum);
+            indexDao.startRebuildInPlace();
 
             // We want to start the event indexer before we start the rebuild (we want both to run in parallel).
             eventIndexer.start(this.configDao.getConfig());
 
             recreateIndexFromDatabase(indexRebuildState);
         }
+        else if (restoredThroughTime != null) {
+            // Like a rebuild, an interrupted restore must not leave metadata marking the index as complete
+            byte[] checksum = new byte[20];
+            Arrays.fill(checksum, (byte) 0);
+            this.indexMetadataDao.updateIndexVersion(this.indexDao.getName(), 0, checksum);
+
+            eventIndexer.start(this.configDao.getConfig());
+
+            indexChangesSinceSnapshot(restoredThroughTime);
+        }
+        else if (rebuildSideBySide) {
+            // Changes made from now on are indexed into the shadow index too, including those of the indexer
+            try {
+                indexDao.startShadowRebuild();
+            } catch (ZepException e) {
+                indexDao.abortShadowRebuild();
+                throw e;
+            } finally {
+                eventIndexer.start(this.configDao.getConfig());
+            }
+
+            rebuildIndexSideBySide();
+        }
         else {
             // Start the event indexer - we have done all the necessary initialization.
             eventIndexer.start(this.configDao.getConfig());
@@ -326,6 +455,172 @@ public class EventIndexRebuilderImpl implements EventIndexRebuilder, Application
         deleteStateFile();
     }
 
+    /**
+     * Rebuilds the index into the shadow index, which replaces the live index once all events are indexed. The
+     * shadow index isn't kept if the rebuild is interrupted - the index metadata still records the previous version
+     * / hash, so the rebuild starts over.
+     */
+    private void rebuildIndexSideBySide() throws ZepException {
+        logger.info("Rebuilding index side by side for table {}", indexDao.getName());
+        final long throughTime = System.currentTimeMillis();
+        EventBatchParams nextBatch = null;
+        int i = 0;
+        int numIndexed = 0;
+        boolean finished = false;
+        try {
+            List<EventSummary> events;
+            do {
+                ZepConfig config = configDao.getConfig();
+                EventBatch batch = summaryBaseDao.listBatch(nextBatch, throughTime, config.getIndexLimit());
+                events = batch.events;
+                nextBatch = batch.nextParams;
+                i++;
+                indexDao.indexShadow(events);
+                numIndexed += events.size();
+                if (i % 25 == 0) {
+                    logger.info("Indexed {} events on table {}", numIndexed, indexDao.getName());
+                }
+            } while (nextBatch.nextUuid != null && !this.configurationChanged && !this.shutdown);
+
+            if (this.configurationChanged || this.shutdown) {
+                logger.info("Index rebuild aborted");
+                return;
+            }
+            indexDao.finishShadowRebuild();
+            finished = true;
+        } finally {
+            if (!finished) {
+                indexDao.abortShadowRebuild();
+            }
+        }
+        indexMetadataDao.updateIndexVersion(indexDao.getName(), IndexConstants.INDEX_VERSION, indexVersionHash);
+        logger.info("Finished rebuilding index side by side for {} events on table: {}", numIndexed,
+                indexDao.getName());
+    }
+
+    /**
+     * Copies the index to the snapshot directory if it is complete for the current version / hash and the indexer
+     * has caught up with the changes. The state file recording the version / hash of the snapshot is removed while
+     * the snapshot is replaced, so a partly copied snapshot is never restored.
+     */
+    private void takeSnapshot() throws Exception {
+        final byte[] indexVersionHash = this.indexVersionHash;
+        final IndexMetadata indexMetadata = indexMetadataDao.findIndexMetadata(indexDao.getName());
+        if (indexMetadata == null || indexMetadata.getIndexVersion() != IndexConstants.INDEX_VERSION ||
+                !Arrays.equals(indexMetadata.getIndexVersionHash(), indexVersionHash)) {
+            logger.info("Index {} is being rebuilt, skipping snapshot", indexDao.getName());
+            return;
+        }
+        if (indexQueueDao != null) {
+            final long queueLength = indexQueueDao.getQueueLength();
+            if (queueLength > SNAPSHOT_MAX_QUEUE_LENGTH) {
+                logger.info("Index {} has {} queued changes, skipping snapshot", indexDao.getName(), queueLength);
+                return;
+            }
+        }
+        if (this.snapshotStateFile.isFile() && !this.snapshotStateFile.delete()) {
+            logger.warn("Failed to remove snapshot state file: {}", this.snapshotStateFile.getAbsolutePath());
+            return;
+        }
+        final Long throughTime = indexDao.snapshot(this.snapshotDir);
+        if (throughTime == null) {
+            return;
+        }
+        new IndexRebuildState(IndexConstants.INDEX_VERSION, indexVersionHash, throughTime, null, null)
+                .save(this.snapshotStateFile);
+    }
+
+    /**
+     * Restores the empty index from the snapshot, if one was taken for the current version / hash.
+     *
+     * @return The latest update time of the events in the snapshot, after which events may have changed, or null if
+     *         the index wasn't restored.
+     */
+    private Long restoreSnapshot() throws ZepException {
+        if (this.snapshotDir == null) {
+            return null;
+        }
+        IndexRebuildState snapshotState = null;
+        try {
+            snapshotState = IndexRebuildState.loadState(this.snapshotStateFile);
+        } catch (Exception e) {
+            logger.warn("Failed to read snapshot state from: " + this.snapshotStateFile.getAbsolutePath(), e);
+        }
+        if (snapshotState == null) {
+            return null;
+        }
+        if (snapshotState.getIndexVersion() != IndexConstants.INDEX_VERSION ||
+                !Arrays.equals(snapshotState.getIndexVersionHash(), this.indexVersionHash)) {
+            logger.info("Snapshot of index {} is for a previous version / hash, ignoring it", indexDao.getName());
+            return null;
+        }
+        if (!indexDao.restoreSnapshot(this.snapshotDir)) {
+            return null;
+        }
+        logger.info("Restored index {} from snapshot in {}", indexDao.getName(), this.snapshotDir);
+        return snapshotState.getThroughTime();
+    }
+
+    /**
+     * Indexes the events updated since the snapshot the index was restored from, and removes the events moved out
+     * of the table since. If this is interrupted the index is cleared, so it is restored again.
+     */
+    private void indexChangesSinceSnapshot(long sinceTime) throws ZepException {
+        logger.info("Indexing events updated since {} on table {}", new Date(sinceTime), indexDao.getName());
+        final long throughTime = System.currentTimeMillis();
+        EventBatchParams nextBatch = null;
+        int numIndexed = 0;
+        do {
+            ZepConfig config = configDao.getConfig();
+            EventBatch batch = summaryBaseDao.listBatchUpdatedAfter(nextBatch, sinceTime, throughTime,
+                    config.getIndexLimit());
+            nextBatch = batch.nextParams;
+            indexDao.indexMany(batch.events);
+            numIndexed += batch.events.size();
+        } while (nextBatch.nextUuid != null && !this.configurationChanged && !this.shutdown);
+
+        int numPruned = 0;
+        if (this.movedEventsDao != null && !this.configurationChanged && !this.shutdown) {
+            numPruned = pruneMovedEvents(sinceTime, throughTime);
+        }
+
+        if (this.configurationChanged || this.shutdown) {
+            logger.info("Index restore aborted");
+            indexDao.clear();
+            return;
+        }
+        indexDao.commit();
+        indexMetadataDao.updateIndexVersion(indexDao.getName(), IndexConstants.INDEX_VERSION, indexVersionHash);
+        logger.info("Finished restoring index from snapshot for table {}: {} events indexed, {} events removed",
+                indexDao.getName(), numIndexed, numPruned);
+    }
+
+    /**
+     * Removes the events moved out of the table since the snapshot from the index. Events are moved with the time
+     * they were moved as their update time, so these are the events of the other table updated since.
+     *
+     * @return The number of events removed.
+     */
+    private int pruneMovedEvents(long sinceTime, long throughTime) throws ZepException {
+        EventBatchParams nextBatch = null;
+        int numPruned = 0;
+        do {
+            ZepConfig config = configDao.getConfig();
+            EventBatch batch = movedEventsDao.listBatchUpdatedAfter(nextBatch, sinceTime, throughTime,
+                    config.getIndexLimit());
+            nextBatch = batch.nextParams;
+            if (!batch.events.isEmpty()) {
+                final List<String> uuids = new ArrayList<String>(batch.events.size());
+                for (EventSummary event : batch.events) {
+                    uuids.add(event.getUuid());
+                }
+                indexDao.delete(uuids);
+                numPruned += uuids.size();
+            }
+        } while (nextBatch.nextUuid != null && !this.configurationChanged && !this.shutdown);
+        return numPruned;
+    }
+
     @Override
     public void onApplicationEvent(IndexRebuildRequiredEvent event) {
         this.configurationChanged = true;
@@ -22,25 +22,31 @@ import org.zenoss.zep.ZepConstants;
 import org.zenoss.zep.ZepException;
 import org.zenoss.zep.dao.EventIndexHandler;
 import org.zenoss.zep.dao.EventIndexQueueDao;
+import org.zenoss.zep.dao.EventSummaryBaseDao;
 import org.zenoss.zep.dao.IndexQueueID;
 import org.zenoss.zep.events.ZepConfigUpdatedEvent;
 import org.zenoss.zep.impl.ThreadRenamingRunnable;
 import org.zenoss.zep.index.EventIndexDao;
 import org.zenoss.zep.index.EventIndexer;
+import org.zenoss.zep.index.WorkQueue;
+import org.zenoss.zep.index.WorkQueueBuilder;
 import org.zenoss.zep.plugins.EventPostIndexContext;
 import org.zenoss.zep.plugins.EventPostIndexPlugin;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.codahale.metrics.MetricRegistry; 
@@ -52,9 +58,30 @@ public class EventIndexerImpl implements EventIndexer, ApplicationListener<ZepCo
     private static final Logger logger = LoggerFactory.getLogger(EventIndexerImpl.class);
 
     private final Object lock = new Object();
+    private final Object fetchLock = new Object();
+    private final Object indexLock = new Object();
+    private final Object commitLock = new Object();
+    private final Object pluginLock = new Object();
     private volatile boolean shutdown = false;
     private Future<?> indexFuture = null;
-    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final List<Future<?>> stageFutures = new ArrayList<Future<?>>();
+    private final ExecutorService executorService = Executors.newFixedThreadPool(3);
+    private int pipelineDepth = 0;
+    private long fetchedBatches = 0L;
+    private long committedBatches = 0L;
+    private long failedBatches = 0L;
+    private volatile BlockingQueue<IndexBatch> pipelineInput = null;
+    private volatile boolean commitRequested = false;
+    private long commitIntervalMilliseconds = 1000L;
+    private int commitMaxEvents = 10000;
+    private long commitMaxBytes = 16L * 1024 * 1024;
+    private final ExecutorService pluginExecutorService = Executors.newCachedThreadPool();
+    private final Map<String, PostIndexPluginWorker> pluginWorkers = new ConcurrentHashMap<String, PostIndexPluginWorker>();
+    private final List<Future<?>> pluginFutures = new ArrayList<Future<?>>();
+    private boolean asyncPlugins = false;
+    private WorkQueueBuilder pluginQueueBuilder;
+    private long pluginQueueMaxSize = 0L;
+    private EventSummaryBaseDao eventDao;
 
     private final EventIndexDao indexDao;
     private final boolean isSummary;
@@ -81,8 +108,81 @@ public class EventIndexerImpl implements EventIndexer, ApplicationListener<ZepCo
         this.pluginService = pluginService;
     }
 
+    /**
+     * Sets the number of batches which may be waiting between each stage of the indexing pipeline. When greater
+     * than zero, the next batch is read from the database while the previous batch is indexed and the batch before
+     * that is passed to the post-index plug-ins. A value of zero runs each batch through all stages before reading
+     * the next one. The pipeline should only be enabled for index queues which claim entries when they are polled.
+     *
+     * @param pipelineDepth The number of batches queued between each stage.
+     */
+    public void setPipelineDepth(int pipelineDepth) {
+        this.pipelineDepth = Math.max(0, pipelineDepth);
+    }
+
+    /**
+     * Sets the maximum time the pipelined indexer holds staged events before committing them while it works
+     * through a backlog. Staged events are committed immediately once the backlog has been cleared.
+     *
+     * @param commitIntervalMilliseconds The maximum age of an uncommitted group of batches.
+     */
+    public void setCommitIntervalMilliseconds(long commitIntervalMilliseconds) {
+        this.commitIntervalMilliseconds = commitIntervalMilliseconds;
+    }
+
+    /**
+     * Sets the number of staged events at which the pipelined indexer commits.
+     *
+     * @param commitMaxEvents The maximum number of events in an uncommitted group of batches.
+     */
+    public void setCommitMaxEvents(int commitMaxEvents) {
+        this.commitMaxEvents = commitMaxEvents;
+    }
+
+    /**
+     * Sets the serialized size of staged events at which the pipelined indexer commits.
+     *
+     * @param commitMaxMegabytes The maximum size in MB of an uncommitted group of batches.
+     */
+    public void setCommitMaxMegabytes(double commitMaxMegabytes) {
+        this.commitMaxBytes = (long) (commitMaxMegabytes * 1024 * 1024);
+    }
+
+    /**
+     * Runs each post-index plug-in on its own thread, fed from a durable work queue per plug-in, so a slow
+     * plug-in falls behind the index instead of holding up indexing. Requires the plug-in queue builder and
+     * event DAO to be set.
+     *
+     * @param asyncPlugins True to run post-index plug-ins asynchronously.
+     */
+    public void setAsyncPlugins(boolean asyncPlugins) {
+        this.asyncPlugins = asyncPlugins;
+    }
+
+    public void setPluginQueueBuilder(WorkQueueBuilder pluginQueueBuilder) {
+        this.pluginQueueBuilder = pluginQueueBuilder;
+    }
+
+    /**
+     * Sets the maximum number of events waiting on each post-index plug-in's work queue. While any plug-in's queue
+     * is full, indexed batches are left on the index queue and retried, so the index queue grows instead of the
+     * plug-in queue.
+     *
+     * @param pluginQueueMaxSize The maximum size of each plug-in work queue, or 0 for no limit.
+     */
+    public void setPluginQueueMaxSize(long pluginQueueMaxSize) {
+        this.pluginQueueMaxSize = pluginQueueMaxSize;
+    }
+
+    public void setEventDao(EventSummaryBaseDao eventDao) {
+        this.eventDao = eventDao;
+    }
+
     private void updateIndexConfig(ZepConfig zepConfig) {
         limit = zepConfig.getIndexLimit();
+        for (PostIndexPluginWorker worker : pluginWorkers.values()) {
+            worker.setBatchSize(limit);
+        }
         if (isSummary) {
             intervalMilliseconds = zepConfig.getIndexSummaryIntervalMilliseconds();
         } else {
@@ -123,35 +223,71 @@ public class EventIndexerImpl implements EventIndexer, ApplicationListener<ZepCo
         stop();
         this.updateIndexConfig(config);
         this.shutdown = false;
+        final String threadName = "INDEXER_" + this.indexDao.getName().toUpperCase();
+        if (this.asyncPlugins) {
+            startPluginWorkers(threadName);
+        }
+        final BlockingQueue<IndexBatch> pipeline;
+        if (this.pipelineDepth > 0) {
+            pipeline = new ArrayBlockingQueue<IndexBatch>(this.pipelineDepth);
+            final BlockingQueue<IndexBatch> postProcessQueue = new ArrayBlockingQueue<IndexBatch>(this.pipelineDepth);
+            this.stageFutures.add(this.executorService.submit(new ThreadRenamingRunnable(
+                    new GroupCommitStage(pipeline, postProcessQueue, new GroupCommitPolicy(
+                            this.commitIntervalMilliseconds, this.commitMaxEvents, this.commitMaxBytes)),
+                    threadName + "_COMMIT")));
+            this.stageFutures.add(this.executorService.submit(new ThreadRenamingRunnable(
+                    createPostProcessStage(postProcessQueue), threadName + "_PLUGINS")));
+        } else {
+            pipeline = null;
+        }
+        this.pipelineInput = pipeline;
         this.indexFuture = this.executorService.submit(new ThreadRenamingRunnable(new Runnable() {
             @Override
             public void run() {
                 logger.info("Indexing thread started for: {}", indexDao.getName());
                 while (!shutdown) {
                     int numIndexed = 0;
+                    boolean failed = false;
                     try {
-                        numIndexed = index();
-                        indexedDocs.addAndGet(numIndexed);
+                        numIndexed = (pipeline != null) ? fetchIntoPipeline(pipeline) : index();
                     } catch (ZepException e) {
+                        failed = true;
                         logger.warn("Failed to index events", e);
+                    } catch (InterruptedException e) {
+                        logger.info("Interrupted while indexing events");
+                        break;
                     } catch (Exception e) {
+                        failed = true;
                         logger.error("General failure indexing events", e);
                     }
                     // If we aren't shut down and we aren't processing a large backlog of events, wait to index the
-                    // next batch of events after a delay.
+                    // next batch of events after a delay. The pipelined fetch already blocks on the index queue
+                    // while it is empty, so it only waits in proportion to how full the last batch was.
                     if (!shutdown && numIndexed < limit) {
-                        synchronized (lock) {
-                            try {
-                                lock.wait(intervalMilliseconds);
-                            } catch (InterruptedException e) {
-                                logger.info("Interrupted while waiting to index more events");
+                        final long waitMilliseconds = (pipeline == null || failed) ? intervalMilliseconds :
+                                intervalMilliseconds * numIndexed / Math.max(limit, 1);
+                        if (waitMilliseconds > 0) {
+                            synchronized (lock) {
+                                try {
+                                    lock.wait(waitMilliseconds);
+                                } catch (InterruptedException e) {
+                                    logger.info("Interrupted while waiting to index more events");
+                                }
                             }
                         }
                     }
                 }
+                if (pipeline != null) {
+                    // Drain the batches already read from the index queue
+                    try {
+                        pipeline.put(IndexBatch.END);
+                    } catch (InterruptedException e) {
+                        logger.info("Interrupted while stopping indexing pipeline");
+                    }
+                }
                 logger.info("Indexing thread stopped for: {}", indexDao.getName());
             }
-        }, "INDEXER_" + this.indexDao.getName().toUpperCase()));
+        }, threadName));
     }
 
     @Override
@@ -169,6 +305,56 @@ public class EventIndexerImpl implements EventIndexer, ApplicationListener<ZepCo
                 this.indexFuture = null;
             }
         }
+        for (Future<?> stageFuture : this.stageFutures) {
+            try {
+                stageFuture.get();
+            } catch (ExecutionException e) {
+                logger.warn("Execution failed for indexing pipeline thread", e);
+            }
+        }
+        this.stageFutures.clear();
+        this.pipelineInput = null;
+        // Stop plug-in workers after the indexing threads which feed them
+        for (PostIndexPluginWorker worker : this.pluginWorkers.values()) {
+            worker.shutdown();
+        }
+        for (Future<?> pluginFuture : this.pluginFutures) {
+            try {
+                pluginFuture.get();
+            } catch (ExecutionException e) {
+                logger.warn("Execution failed for post-index plug-in thread", e);
+            }
+        }
+        this.pluginFutures.clear();
+        this.pluginWorkers.clear();
+    }
+
+    private void startPluginWorkers(String threadName) {
+        if (this.pluginQueueBuilder == null || this.eventDao == null) {
+            logger.warn("Asynchronous post-index plug-ins are not configured for {}, running them inline",
+                    indexDao.getName());
+            return;
+        }
+        for (EventPostIndexPlugin plugin : this.pluginService.getPluginsByType(EventPostIndexPlugin.class)) {
+            final String pluginId = plugin.getId();
+            final WorkQueue queue = this.pluginQueueBuilder.build(indexDao.getName() + "_plugin_" + pluginId);
+            final PostIndexPluginWorker worker = new PostIndexPluginWorker(plugin, queue, this.eventDao,
+                    this::createPostIndexContext, this.pluginsTimer, this.limit);
+            worker.setMaxQueueSize(this.pluginQueueMaxSize);
+            this.pluginWorkers.put(pluginId, worker);
+            this.pluginFutures.add(this.pluginExecutorService.submit(new ThreadRenamingRunnable(worker,
+                    threadName + "_PLUGIN_" + pluginId.toUpperCase())));
+            final String lagName = MetricRegistry.name("EventIndexer",
+                    (isSummary ? "summary" : "archive") + "PluginLag", pluginId);
+            try {
+                this.metrics.register(lagName, (Gauge<Long>) () -> {
+                    final PostIndexPluginWorker current = pluginWorkers.get(pluginId);
+                    return (current == null) ? 0L : current.getLag();
+                });
+            } catch (IllegalArgumentException ex) {
+                // skipping if metrics already exists
+            }
+        }
     }
 
     @Override
@@ -180,6 +366,8 @@ public class EventIndexerImpl implements EventIndexer, ApplicationListener<ZepCo
         } finally {
             this.executorService.shutdown();
             this.executorService.awaitTermination(0L, TimeUnit.SECONDS);
+            this.pluginExecutorService.shutdown();
+            this.pluginExecutorService.awaitTermination(0L, TimeUnit.SECONDS);
         }
     }
 
@@ -197,10 +385,15 @@ public class EventIndexerImpl implements EventIndexer, ApplicationListener<ZepCo
             final long now = System.currentTimeMillis();
             int numIndexed;
             synchronized (this) {
-                do {
-                    numIndexed = doIndex(now);
-                    totalIndexed += numIndexed;
-                } while (numIndexed > 0);
+                // The pipeline can't read more batches until this returns. The batches it already read hold older
+                // rows than the ones read below, so they are committed first and can't overwrite them.
+                synchronized (this.fetchLock) {
+                    awaitPipelineCommit();
+                    do {
+                        numIndexed = doIndex(now);
+                        totalIndexed += numIndexed;
+                    } while (numIndexed > 0);
+                }
             }
             return totalIndexed;
         }
@@ -235,8 +428,88 @@ public class EventIndexerImpl implements EventIndexer, ApplicationListener<ZepCo
         return shouldRun;
     }
 
+    /**
+     * A batch of events read from the index queue. Batches are read by the fetch stage, staged and committed by the
+     * index stage and then passed to the post-index plug-ins before being removed from the index queue.
+     */
+    private static final class IndexBatch {
+        private static final IndexBatch END = new IndexBatch();
+        private static final IndexBatch COMMIT = new IndexBatch();
+
+        private final List<EventSummary> indexed = new ArrayList<EventSummary>();
+        private final List<String> deleted = new ArrayList<String>();
+        private List<IndexQueueID> indexQueueIds = Collections.emptyList();
+        private long sequence = 0L;
+
+        public boolean isEmpty() {
+            return indexQueueIds.isEmpty();
+        }
+
+        public int size() {
+            return indexQueueIds.size();
+        }
+    }
+
     private int doIndex(long throughTime) throws ZepException {
-        final EventPostIndexContext context = new EventPostIndexContext() {
+        final IndexBatch batch = fetchBatch(throughTime);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        indexBatch(batch);
+        postProcessBatch(batch);
+        completeBatch(batch);
+        return batch.size();
+    }
+
+    private IndexBatch fetchBatch(long throughTime) throws ZepException {
+        final IndexBatch batch = new IndexBatch();
+        synchronized (this.fetchLock) {
+            batch.indexQueueIds = queueDao.indexEvents(new EventIndexHandler() {
+                @Override
+                public void prepareToHandle(Collection<EventSummary> events) throws Exception {
+                    // Post-index plug-ins are run after the batch is committed.
+                }
+
+                @Override
+                public void handle(EventSummary event) throws Exception {
+                    batch.indexed.add(event);
+                }
+
+                @Override
+                public void handleDeleted(String uuid) throws Exception {
+                    batch.deleted.add(uuid);
+                }
+
+                @Override
+                public void handleComplete() throws Exception {
+                    // Staging and commit are performed by the index stage.
+                }
+            }, limit, throughTime);
+        }
+        return batch;
+    }
+
+    private void indexBatch(IndexBatch batch) throws ZepException {
+        synchronized (this.indexLock) {
+            stageBatch(batch);
+            indexDao.commit();
+        }
+        indexedDocs.addAndGet(batch.size());
+    }
+
+    private void stageBatch(IndexBatch batch) throws ZepException {
+        synchronized (this.indexLock) {
+            for (EventSummary event : batch.indexed) {
+                indexDao.stage(event);
+            }
+            for (String uuid : batch.deleted) {
+                indexDao.stageDelete(uuid);
+            }
+        }
+    }
+
+    private EventPostIndexContext createPostIndexContext() {
+        return new EventPostIndexContext() {
             private final Map<EventPostIndexPlugin, Object> pluginState = new HashMap<EventPostIndexPlugin, Object>();
 
             @Override
@@ -259,83 +532,256 @@ public class EventIndexerImpl implements EventIndexer, ApplicationListener<ZepCo
                 pluginState.put(plugin, state);
             }
         };
+    }
+
+    private void postProcessBatch(IndexBatch batch) throws ZepException {
+        final List<EventSummary> willPostProcess = new ArrayList<EventSummary>(batch.indexed.size());
+        for (EventSummary event : batch.indexed) {
+            if (shouldRunPostprocessing(event)) {
+                willPostProcess.add(event);
+            }
+        }
+        if (willPostProcess.isEmpty()) {
+            return;
+        }
+        if (!pluginWorkers.isEmpty()) {
+            // Committed events are handed off to the plug-in workers, which process them in the background. If any
+            // plug-in can't take the events, the batch stays on the index queue and is retried. Checking every
+            // queue first keeps the plug-ins which could take the batch from seeing it twice while another is full.
+            for (PostIndexPluginWorker worker : pluginWorkers.values()) {
+                worker.checkCapacity(willPostProcess.size());
+            }
+            for (PostIndexPluginWorker worker : pluginWorkers.values()) {
+                worker.submit(willPostProcess);
+            }
+            return;
+        }
+        final EventPostIndexContext context = createPostIndexContext();
         final List<EventPostIndexPlugin> plugins = this.pluginService.getPluginsByType(EventPostIndexPlugin.class);
-        final AtomicBoolean calledStartBatch = new AtomicBoolean();
-        final List<IndexQueueID> indexQueueIds = queueDao.indexEvents(new EventIndexHandler() {
-            @Override
-            public void prepareToHandle(Collection<EventSummary> events) throws Exception {
-                List<EventSummary> willPostProcess = new ArrayList<EventSummary>(events.size());
-                for (EventSummary event : events) {
-                    if (shouldRunPostprocessing(event)) willPostProcess.add(event);
+        synchronized (this.pluginLock) {
+            for (EventPostIndexPlugin plugin : plugins) {
+                try {
+                    plugin.startBatch(context);
+                    plugin.preProcessEvents(willPostProcess, context);
+                } catch (Exception e) {
+                    // Post-processing plug-in failures are not fatal errors.
+                    logger.warn("Failed to run pre-processing on events", e);
                 }
-                if (!willPostProcess.isEmpty()) {
-                    boolean shouldStartBatch = calledStartBatch.compareAndSet(false, true);
+            }
+            try (Timer.Context ignored = pluginsTimer.time()) {
+                for (EventSummary event : willPostProcess) {
                     for (EventPostIndexPlugin plugin : plugins) {
                         try {
-                            if (shouldStartBatch) {
-                                plugin.startBatch(context);
-                            }
-                            plugin.preProcessEvents(willPostProcess, context);
+                            plugin.processEvent(event, context);
                         } catch (Exception e) {
                             // Post-processing plug-in failures are not fatal errors.
-                            logger.warn("Failed to run pre-processing on events", e);
+                            logger.warn("Failed to run post-processing plug-in on event: " + event, e);
                         }
                     }
                 }
             }
-
-            @Override
-            public void handle(EventSummary event) throws Exception {
-                indexDao.stage(event);
-                if (shouldRunPostprocessing(event)) {
-                    boolean shouldStartBatch = calledStartBatch.compareAndSet(false, true);
-                    try (Timer.Context ignored = pluginsTimer.time()) {
-                        for (EventPostIndexPlugin plugin : plugins) {
-                            try {
-                                if (shouldStartBatch) {
-                                    plugin.startBatch(context);
-                                }
-                                plugin.processEvent(event, context);
-                            } catch (Exception e) {
-                                // Post-processing plug-in failures are not fatal errors.
-                                logger.warn("Failed to run post-processing plug-in on event: " + event, e);
-                            }
-                        }
-                    }
+            for (EventPostIndexPlugin plugin : plugins) {
+                try {
+                    plugin.endBatch(context);
+                } catch (Exception e) {
+                    // Post-processing plug-in failures are not fatal errors.
+                    logger.warn("Failed to finish batch for post-processing plug-in.", e);
                 }
             }
+        }
+    }
 
-            @Override
-            public void handleDeleted(String uuid) throws Exception {
-                indexDao.stageDelete(uuid);
+    private void completeBatch(IndexBatch batch) throws ZepException {
+        logger.debug("Completed indexing {} events on {}", batch.size(), indexDao.getName());
+        try {
+            queueDao.deleteIndexQueueIds(batch.indexQueueIds);
+        } catch (ZepException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ZepException(e.getLocalizedMessage(), e);
+        }
+    }
+
+    /**
+     * Fetch stage of the indexing pipeline. Reads the next batch from the index queue and hands it off to the index
+     * stage, blocking if the index stage has fallen behind.
+     *
+     * @return The number of queue entries read.
+     */
+    private int fetchIntoPipeline(BlockingQueue<IndexBatch> pipeline) throws ZepException, InterruptedException {
+        final IndexBatch batch;
+        synchronized (this.fetchLock) {
+            batch = fetchBatch(-1L);
+            if (!batch.isEmpty()) {
+                batch.sequence = ++this.fetchedBatches;
             }
+        }
+        if (!batch.isEmpty()) {
+            pipeline.put(batch);
+        }
+        return batch.size();
+    }
 
-            @Override
-            public void handleComplete() throws Exception {
-                indexDao.commit();
-                if (calledStartBatch.get()) {
-                    for (EventPostIndexPlugin plugin : plugins) {
-                        try {
-                            plugin.endBatch(context);
-                        } catch (Exception e) {
-                            // Post-processing plug-in failures are not fatal errors.
-                            logger.warn("Failed to finish batch for post-processing plug-in.", e);
-                        }
+    /**
+     * Waits for all batches read by the fetch stage to be committed by the index stage. Called with the fetch lock
+     * held, so no batch is read while waiting.
+     *
+     * @throws ZepException If any of the batches failed to be committed. They are left on the index queue to be
+     *                      retried.
+     */
+    private void awaitPipelineCommit() throws ZepException {
+        final long sequence;
+        synchronized (this.fetchLock) {
+            sequence = this.fetchedBatches;
+        }
+        final BlockingQueue<IndexBatch> pipeline = this.pipelineInput;
+        if (pipeline != null) {
+            // Don't wait for the current group to fill up
+            this.commitRequested = true;
+            pipeline.offer(IndexBatch.COMMIT);
+        }
+        synchronized (this.commitLock) {
+            final long processed = Math.max(this.committedBatches, this.failedBatches);
+            try {
+                while (Math.max(this.committedBatches, this.failedBatches) < sequence) {
+                    this.commitLock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ZepException(e);
+            }
+            if (this.failedBatches > processed) {
+                throw new ZepException("Failed to index events read by the indexing pipeline");
+            }
+        }
+    }
+
+    private void markCommitted(long sequence) {
+        synchronized (this.commitLock) {
+            this.committedBatches = sequence;
+            this.commitLock.notifyAll();
+        }
+    }
+
+    private void markFailed(long sequence) {
+        synchronized (this.commitLock) {
+            this.failedBatches = sequence;
+            this.commitLock.notifyAll();
+        }
+    }
+
+    /**
+     * Index stage of the indexing pipeline. Batches are staged as they arrive and committed as a group when the
+     * {@link GroupCommitPolicy} decides to. Batches are passed on to the post-index plug-ins once their group has
+     * been committed. Batches which fail to stage or commit are left on the index queue to be retried, and are
+     * reported to callers waiting on the pipeline.
+     */
+    private class GroupCommitStage implements Runnable {
+        private final BlockingQueue<IndexBatch> input;
+        private final BlockingQueue<IndexBatch> output;
+        private final GroupCommitPolicy policy;
+        private final List<IndexBatch> staged = new ArrayList<IndexBatch>();
+        private long lastSequence = 0L;
+
+        public GroupCommitStage(BlockingQueue<IndexBatch> input, BlockingQueue<IndexBatch> output,
+                                GroupCommitPolicy policy) {
+            this.input = input;
+            this.output = output;
+            this.policy = policy;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    final IndexBatch batch = staged.isEmpty() ? input.take() :
+                            input.poll(policy.commitDelay(commitRequested, System.currentTimeMillis()),
+                                    TimeUnit.MILLISECONDS);
+                    if (batch == null || batch == IndexBatch.COMMIT) {
+                        commitStaged();
+                    } else if (batch == IndexBatch.END) {
+                        commitStaged();
+                        output.put(IndexBatch.END);
+                        break;
+                    } else if (stage(batch) && policy.shouldCommit(commitRequested, System.currentTimeMillis())) {
+                        commitStaged();
                     }
                 }
+            } catch (InterruptedException e) {
+                logger.info("Interrupted while indexing events");
             }
-        }, limit, throughTime);
+        }
 
-        if (!indexQueueIds.isEmpty()) {
-            logger.debug("Completed indexing {} events on {}", indexQueueIds.size(), indexDao.getName());
+        private boolean stage(IndexBatch batch) throws InterruptedException {
             try {
-                queueDao.deleteIndexQueueIds(indexQueueIds);
+                stageBatch(batch);
+            } catch (Exception e) {
+                logger.warn("Failed to index events", e);
+                // Batches are reported in order, so the batches staged before this one are committed first
+                commitStaged();
+                markFailed(batch.sequence);
+                return false;
+            }
+            long bytes = 0L;
+            for (EventSummary event : batch.indexed) {
+                bytes += event.getSerializedSize();
+            }
+            staged.add(batch);
+            lastSequence = batch.sequence;
+            policy.staged(batch.size(), bytes, batch.size() >= limit, System.currentTimeMillis());
+            return true;
+        }
+
+        private void commitStaged() throws InterruptedException {
+            commitRequested = false;
+            if (staged.isEmpty()) {
+                return;
+            }
+            boolean committed = false;
+            try {
+                synchronized (indexLock) {
+                    indexDao.commit();
+                }
+                committed = true;
             } catch (ZepException e) {
-                throw e;
+                logger.warn("Failed to index events", e);
             } catch (Exception e) {
-                throw new ZepException(e.getLocalizedMessage(), e);
+                logger.error("General failure indexing events", e);
             }
+            if (committed) {
+                markCommitted(lastSequence);
+                for (IndexBatch batch : staged) {
+                    indexedDocs.addAndGet(batch.size());
+                    output.put(batch);
+                }
+            } else {
+                markFailed(lastSequence);
+            }
+            staged.clear();
+            policy.reset();
         }
-        return indexQueueIds.size();
+    }
+
+    private Runnable createPostProcessStage(final BlockingQueue<IndexBatch> input) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    IndexBatch batch;
+                    while ((batch = input.take()) != IndexBatch.END) {
+                        try {
+                            postProcessBatch(batch);
+                            completeBatch(batch);
+                        } catch (ZepException e) {
+                            logger.warn("Failed to complete indexed events", e);
+                        } catch (Exception e) {
+                            logger.error("General failure completing indexed events", e);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    logger.info("Interrupted while post-processing events");
+                }
+            }
+        };
     }
 }
@@ -0,0 +1,97 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl;
+
+/**
+ * Decides when the pipelined indexer commits its group of staged batches.
+ * <p>
+ * While events are trickling in, a group is committed as soon as nothing more is queued for the index stage.
+ * While the indexer works through a backlog (the last batch was full), batches are grouped until the group
+ * reaches the configured age, number of events or size. A commit requested by a caller waiting on the pipeline
+ * is performed immediately.
+ */
+final class GroupCommitPolicy {
+
+    private final long intervalMilliseconds;
+    private final int maxEvents;
+    private final long maxBytes;
+    private boolean empty = true;
+    private int stagedEvents = 0;
+    private long stagedBytes = 0L;
+    private long firstStagedTime = 0L;
+    private boolean backlog = false;
+
+    /**
+     * @param intervalMilliseconds The maximum age of a group while working through a backlog.
+     * @param maxEvents The number of events at which a group is committed.
+     * @param maxBytes The serialized size of events at which a group is committed.
+     */
+    GroupCommitPolicy(long intervalMilliseconds, int maxEvents, long maxBytes) {
+        this.intervalMilliseconds = intervalMilliseconds;
+        this.maxEvents = maxEvents;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Records a batch added to the group.
+     *
+     * @param events The number of events in the batch.
+     * @param bytes The serialized size of the events in the batch.
+     * @param full Whether the batch was full, meaning more events are waiting on the index queue.
+     * @param now The current time in milliseconds.
+     */
+    void staged(int events, long bytes, boolean full, long now) {
+        if (this.empty) {
+            this.firstStagedTime = now;
+            this.empty = false;
+        }
+        this.stagedEvents += events;
+        this.stagedBytes += bytes;
+        this.backlog = full;
+    }
+
+    /**
+     * Records that the group was committed (or abandoned) and a new group is started.
+     */
+    void reset() {
+        this.empty = true;
+        this.stagedEvents = 0;
+        this.stagedBytes = 0L;
+    }
+
+    /**
+     * @param commitRequested Whether a commit was requested.
+     * @param now The current time in milliseconds.
+     * @return Whether the group should be committed after staging a batch.
+     */
+    boolean shouldCommit(boolean commitRequested, long now) {
+        return commitRequested || this.stagedEvents >= this.maxEvents || this.stagedBytes >= this.maxBytes ||
+                now - this.firstStagedTime >= this.intervalMilliseconds;
+    }
+
+    /**
+     * @param commitRequested Whether a commit was requested.
+     * @param now The current time in milliseconds.
+     * @return How long to wait for another batch before committing the group, in milliseconds.
+     */
+    long commitDelay(boolean commitRequested, long now) {
+        if (!this.backlog || commitRequested) {
+            return 0L;
+        }
+        return Math.max(0L, this.firstStagedTime + this.intervalMilliseconds - now);
+    }
+
+    int getStagedEvents() {
+        return this.stagedEvents;
+    }
+
+    long getStagedBytes() {
+        return this.stagedBytes;
+    }
+}
@@ -23,7 +23,7 @@ public class IndexConstants {
      * The version of the event index. This should be updated each time a new field
      * is added to the index or the way a field gets indexed changes.
      */
-    public static final int INDEX_VERSION = 10;
+    public static final int INDEX_VERSION = 14;
 
     public static final String FIELD_UUID = "uuid";
     public static final String FIELD_STATUS = "status";
@@ -55,6 +55,8 @@ public class IndexConstants {
     public static final String FIELD_EVENT_GROUP = "event_group";
     public static final String FIELD_PROTOBUF = "protobuf";
     public static final String FIELD_MESSAGE = "message";
+    public static final String FIELD_SUMMARY_REVERSED = "summary_reversed";
+    public static final String FIELD_MESSAGE_REVERSED = "message_reversed";
 
     public static final Map<String,String> NON_ANALYZED;
     static {
@@ -68,6 +70,18 @@ public class IndexConstants {
         NON_ANALYZED = Collections.unmodifiableMap(m);
     }
 
+    /**
+     * Full text fields also indexed with reversed tokens, so wildcards with a leading wildcard are matched from
+     * the end of the tokens.
+     */
+    public static final Map<String,String> REVERSED;
+    static {
+        final Map<String,String> m = Maps.newHashMap();
+        m.put(FIELD_SUMMARY, FIELD_SUMMARY_REVERSED);
+        m.put(FIELD_MESSAGE, FIELD_MESSAGE_REVERSED);
+        REVERSED = Collections.unmodifiableMap(m);
+    }
+
     // For PATH and IP_ADDRESS details
     public static final String SORT_SUFFIX = "_sort";
     
@@ -75,6 +89,12 @@ public class IndexConstants {
     public static final String IP_ADDRESS_TYPE_SUFFIX = "_type";
     public static final String IP_ADDRESS_TYPE_4 = "4";
     public static final String IP_ADDRESS_TYPE_6 = "6";
+    // Numeric IPv4 address, and high and low 64 bits of an IPv6 address (see IpUtils.toSortableLongs)
+    public static final String IP_ADDRESS_V4_SUFFIX = "_ip4";
+    public static final String IP_ADDRESS_V6_HIGH_SUFFIX = "_ip6_high";
+    public static final String IP_ADDRESS_V6_LOW_SUFFIX = "_ip6_low";
+    // Canonical IPv6 addresses of details with more than one IPv6 address, whose halves can't be split
+    public static final String IP_ADDRESS_V6_MULTI_SUFFIX = "_ip6_multi";
 
     /**
      * The version of Lucene we wish to use.
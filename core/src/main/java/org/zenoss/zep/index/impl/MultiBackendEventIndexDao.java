@@ -8,11 +8,14 @@
  ****************************************************************************/
 package org.zenoss.zep.index.impl;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Predicates;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.springframework.scheduling.TaskScheduler;
 import org.zenoss.protobufs.zep.Zep.*;
 import org.zenoss.zep.Messages;
@@ -21,16 +24,27 @@ import org.zenoss.zep.ZepException;
 import org.zenoss.zep.dao.EventBatch;
 import org.zenoss.zep.dao.EventBatchParams;
 import org.zenoss.zep.dao.EventSummaryBaseDao;
+import org.zenoss.zep.index.BulkLoadIndexBackend;
 import org.zenoss.zep.index.EventIndexBackend;
+import org.zenoss.zep.index.EventSummaryPage;
 import org.zenoss.zep.index.SavedSearchProcessor;
+import org.zenoss.zep.index.ShadowIndexBackend;
+import org.zenoss.zep.index.SnapshotIndexBackend;
 import org.zenoss.zep.index.WorkQueue;
 import org.zenoss.zep.index.WorkQueueBuilder;
 import org.zenoss.zep.utils.KeyValueStore;
 
+import jakarta.annotation.Resource;
+import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -39,6 +53,12 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class MultiBackendEventIndexDao extends BaseEventIndexDaoImpl<MultiBackendSavedSearch> {
 
+    // Backends with more changes waiting in their work queue aren't copied to snapshots
+    private static final long SNAPSHOT_MAX_QUEUED_TASKS = 1000L;
+
+    // Events loaded in bulk by a range of a rebuild before they are added to the index and committed
+    private static final int BULK_LOAD_MAX_EVENTS = 10000;
+
     protected boolean useRedis;
     private String readerBackendId;
     private boolean disableRebuilders = false;
@@ -51,6 +71,8 @@ public class MultiBackendEventIndexDao extends BaseEventIndexDaoImpl<MultiBacken
     private final Map<String,RebuilderThread> rebuilders;
     private final KeyValueStore store;
     private final EventSummaryBaseDao eventDao;
+    private volatile BackendEventCache eventCache = null;
+    private int rebuildThreads = 1;
     private final ReadWriteLock backendsLock = new ReentrantReadWriteLock();
     private final Lock backendsUse = backendsLock.readLock();
     private final Lock backendsModify = backendsLock.writeLock();
@@ -68,6 +90,35 @@ public class MultiBackendEventIndexDao extends BaseEventIndexDaoImpl<MultiBacken
         initialBackendConfigurations = Lists.newArrayList();
     }
 
+    /**
+     * Sets the number of recently indexed events shared with the asynchronous backends, so each event is read
+     * from the database at most once no matter how many backends it is indexed by. Zero disables sharing.
+     */
+    public void setEventCacheSize(int eventCacheSize) {
+        this.eventCache = (eventCacheSize > 0) ? new BackendEventCache(eventCacheSize, 5, TimeUnit.MINUTES) : null;
+    }
+
+    /**
+     * Sets the number of threads rebuilding a backend. With more than one thread the events are split into
+     * ranges of UUIDs, which are read from the database and indexed concurrently, each range keeping its own
+     * progress so an interrupted rebuild resumes every range where it stopped.
+     */
+    public void setRebuildThreads(int rebuildThreads) {
+        this.rebuildThreads = Math.max(1, rebuildThreads);
+    }
+
+    @Resource(name="metrics")
+    public void setMetrics(MetricRegistry metrics) {
+        try {
+            metrics.register(MetricRegistry.name("MultiBackendEventIndexDao", getName(), "eventCacheHits"),
+                    (Gauge<Long>) () -> (eventCache == null) ? 0L : eventCache.getHitCount());
+            metrics.register(MetricRegistry.name("MultiBackendEventIndexDao", getName(), "eventCacheMisses"),
+                    (Gauge<Long>) () -> (eventCache == null) ? 0L : eventCache.getMissCount());
+        } catch (IllegalArgumentException ex) {
+            // skipping if metrics already exists
+        }
+    }
+
     public final synchronized void disableAsyncProcessing() {
         this.enableAsyncProcessing = false;
         backendsUse.lock();
@@ -108,8 +159,16 @@ public class MultiBackendEventIndexDao extends BaseEventIndexDaoImpl<MultiBacken
 
         try {
             if (!toIndex.isEmpty()) {
-                logger.debug(String.format("Looking up %d events by primary key", toIndex.size()));
-                List<EventSummary> events = eventDao.findByKey(toIndex);
+                final BackendEventCache cache = eventCache;
+                final List<EventSummary> events = Lists.newArrayListWithExpectedSize(toIndex.size());
+                final Set<EventSummary> toFetch = (cache == null) ? toIndex : cache.collect(toIndex, events);
+                if (!toFetch.isEmpty()) {
+                    logger.debug(String.format("Looking up %d events by primary key", toFetch.size()));
+                    final List<EventSummary> fetched = eventDao.findByKey(toFetch);
+                    if (cache != null)
+                        cache.putAll(fetched);
+                    events.addAll(fetched);
+                }
                 if (events.size() != toIndex.size())
                     logger.info("Found {} of {} events by primary key", events.size(), toIndex.size());
                 else
@@ -499,9 +558,14 @@ public class MultiBackendEventIndexDao extends BaseEventIndexDaoImpl<MultiBacken
     public void index(EventSummary event) throws ZepException {
         backendsUse.lock();
         try {
+            boolean cached = false;
             for (EventIndexBackendConfiguration config : backends.values()) {
                 if (config.isWriter()) {
                     if (enableAsyncProcessing && config.isAsyncUpdates()) {
+                        if (!cached && eventCache != null) {
+                            eventCache.put(event);
+                            cached = true;
+                        }
                         workQueues.get(config.getName()).add(EventIndexBackendTask.Index(event.getUuid(), event.getLastSeenTime()));
                     } else {
                         config.getBackend().index(event);
@@ -513,17 +577,25 @@ public class MultiBackendEventIndexDao extends BaseEventIndexDaoImpl<MultiBacken
 
     @Override
     public void indexMany(List<EventSummary> events) throws ZepException {
+        indexMany(events, false);
+    }
+
+    private void indexMany(List<EventSummary> events, boolean shadow) throws ZepException {
         if (events == null || events.isEmpty()) return;
         backendsUse.lock();
         try {
             List<EventIndexBackendTask> tasks = null;
             for (EventIndexBackendConfiguration config : backends.values()) {
                 if (config.isWriter()) {
-                    if (enableAsyncProcessing && config.isAsyncUpdates()) {
+                    if (shadow && hasShadowIndex(config)) {
+                        ((ShadowIndexBackend) config.getBackend()).indexShadow(events);
+                    } else if (enableAsyncProcessing && config.isAsyncUpdates()) {
                         if (tasks == null) {
                             tasks = Lists.newArrayListWithExpectedSize(events.size());
                             for (EventSummary event : events)
                                 tasks.add(EventIndexBackendTask.Index(event.getUuid(), event.getLastSeenTime()));
+                            if (eventCache != null)
+                                eventCache.putAll(events);
                         }
                         workQueues.get(config.getName()).addAll(tasks);
                     } else {
@@ -534,10 +606,144 @@ public class MultiBackendEventIndexDao extends BaseEventIndexDaoImpl<MultiBacken
         } finally { backendsUse.unlock(); }
     }
 
+    private static boolean hasShadowIndex(EventIndexBackendConfiguration config) {
+        final EventIndexBackend backend = config.getBackend();
+        return backend instanceof ShadowIndexBackend && ((ShadowIndexBackend) backend).hasShadowIndex();
+    }
+
+    @Override
+    public void startRebuildInPlace() {
+        backendsUse.lock();
+        try {
+            for (EventIndexBackendConfiguration config : backends.values()) {
+                if (config.isWriter() && config.getBackend() instanceof ShadowIndexBackend) {
+                    ((ShadowIndexBackend) config.getBackend()).startRebuildInPlace();
+                }
+            }
+        } finally { backendsUse.unlock(); }
+    }
+
+    @Override
+    public void startShadowRebuild() throws ZepException {
+        backendsUse.lock();
+        try {
+            for (EventIndexBackendConfiguration config : backends.values()) {
+                if (config.isWriter() && config.getBackend() instanceof ShadowIndexBackend) {
+                    ((ShadowIndexBackend) config.getBackend()).startShadowIndex();
+                }
+            }
+        } finally { backendsUse.unlock(); }
+    }
+
+    @Override
+    public void indexShadow(List<EventSummary> events) throws ZepException {
+        indexMany(events, true);
+    }
+
+    /**
+     * Changes made while the shadow indexes were rebuilt were applied to them along with the live indexes, so
+     * the shadow indexes have caught up with the work queues once all events of the database are indexed.
+     */
+    @Override
+    public void finishShadowRebuild() throws ZepException {
+        backendsUse.lock();
+        try {
+            for (EventIndexBackendConfiguration config : backends.values()) {
+                if (config.isWriter() && hasShadowIndex(config)) {
+                    ((ShadowIndexBackend) config.getBackend()).swapShadowIndex();
+                }
+            }
+        } finally { backendsUse.unlock(); }
+    }
+
+    @Override
+    public void abortShadowRebuild() {
+        backendsUse.lock();
+        try {
+            for (EventIndexBackendConfiguration config : backends.values()) {
+                if (config.getBackend() instanceof ShadowIndexBackend) {
+                    ((ShadowIndexBackend) config.getBackend()).discardShadowIndex();
+                }
+            }
+        } finally { backendsUse.unlock(); }
+    }
+
+    /**
+     * Backends updated asynchronously are only copied while their work queue is short, so the snapshot holds the
+     * changes made until shortly before it was taken. Each backend is copied to a sub-directory named after it.
+     */
+    @Override
+    public Long snapshot(File directory) throws ZepException {
+        backendsUse.lock();
+        try {
+            final List<EventIndexBackendConfiguration> writers = getSnapshotWriters();
+            if (writers == null) {
+                logger.debug("Index {} has a backend which can't be copied, skipping snapshot", getName());
+                return null;
+            }
+            for (EventIndexBackendConfiguration config : writers) {
+                final WorkQueue q = workQueues.get(config.getName());
+                if (enableAsyncProcessing && config.isAsyncUpdates() && q != null
+                        && q.size() > SNAPSHOT_MAX_QUEUED_TASKS) {
+                    logger.info("Index backend {} has {} queued changes, skipping snapshot", config.getName(),
+                            q.size());
+                    return null;
+                }
+            }
+            long throughTime = Long.MAX_VALUE;
+            for (EventIndexBackendConfiguration config : writers) {
+                throughTime = Math.min(throughTime, ((SnapshotIndexBackend) config.getBackend())
+                        .snapshot(new File(directory, config.getName())));
+            }
+            return throughTime;
+        } finally { backendsUse.unlock(); }
+    }
+
+    @Override
+    public boolean restoreSnapshot(File directory) throws ZepException {
+        backendsUse.lock();
+        try {
+            final List<EventIndexBackendConfiguration> writers = getSnapshotWriters();
+            if (writers == null) {
+                return false;
+            }
+            for (EventIndexBackendConfiguration config : writers) {
+                if (!new File(directory, config.getName()).isDirectory()) {
+                    logger.info("No snapshot of index backend {} in {}", config.getName(), directory);
+                    return false;
+                }
+            }
+            for (EventIndexBackendConfiguration config : writers) {
+                ((SnapshotIndexBackend) config.getBackend()).restoreSnapshot(new File(directory, config.getName()));
+            }
+            return true;
+        } finally { backendsUse.unlock(); }
+    }
+
+    /**
+     * Do not use this outside of a {@link #backendsUse} lock-block.
+     *
+     * @return The writer backends, or null if one of them can't be copied to a snapshot.
+     */
+    private List<EventIndexBackendConfiguration> getSnapshotWriters() {
+        final List<EventIndexBackendConfiguration> writers = Lists.newArrayList();
+        for (EventIndexBackendConfiguration config : backends.values()) {
+            if (config.isWriter()) {
+                if (!(config.getBackend() instanceof SnapshotIndexBackend)) {
+                    return null;
+                }
+                writers.add(config);
+            }
+        }
+        return writers.isEmpty() ? null : writers;
+    }
+
     @Override
     public void delete(String uuid) throws ZepException {
         backendsUse.lock();
         try {
+            if (eventCache != null)
+                eventCache.invalidate(uuid);
             for (EventIndexBackendConfiguration config : backends.values()) {
                 if (config.isWriter() && config.isHonorDeletes()) {
                     if (enableAsyncProcessing && config.isAsyncUpdates()) {
@@ -555,6 +761,8 @@ public class MultiBackendEventIndexDao extends BaseEventIndexDaoImpl<MultiBacken
         if (uuids == null || uuids.isEmpty()) return;
         backendsUse.lock();
         try {
+            if (eventCache != null)
+                eventCache.invalidateAll(uuids);
             List<EventIndexBackendTask> tasks = null;
             for (EventIndexBackendConfiguration config : backends.values()) {
                 if (config.isWriter() && config.isHonorDeletes()) {
@@ -665,6 +873,22 @@ public class MultiBackendEventIndexDao extends BaseEventIndexDaoImpl<MultiBacken
         } finally { backendsUse.unlock(); }
     }
 
+    @Override
+    public EventSummaryPage listAfter(EventSummaryRequest request, String cursor) throws ZepException {
+        backendsUse.lock();
+        try {
+            return getReader().listAfter(request, cursor);
+        } finally { backendsUse.unlock(); }
+    }
+
+    @Override
+    public EventSummaryPage listUuidsAfter(EventSummaryRequest request, String cursor) throws ZepException {
+        backendsUse.lock();
+        try {
+            return getReader().listUuidsAfter(request, cursor);
+        } finally { backendsUse.unlock(); }
+    }
+
     @Override
     public EventTagSeveritiesSet getEventTagSeverities(EventFilter filter) throws ZepException {
         backendsUse.lock();
@@ -822,6 +1046,48 @@ public class MultiBackendEventIndexDao extends BaseEventIndexDaoImpl<MultiBacken
         }
     }
 
+    /**
+     * A range of event UUIDs rebuilt by one of the rebuild threads, from after fromUuid through toUuid.
+     */
+    static class RebuildRange {
+        // Ranges per rebuild thread, so threads which finish their ranges early pick up the remaining ones
+        private static final int RANGES_PER_THREAD = 4;
+
+        public final String fromUuid;
+        public final String toUuid;
+        public final byte[] storeKey;
+
+        private RebuildRange(String fromUuid, String toUuid, byte[] storeKey) {
+            this.fromUuid = fromUuid;
+            this.toUuid = toUuid;
+            this.storeKey = storeKey;
+        }
+
+        /**
+         * Splits the UUIDs into equal ranges by their leading 32 bits. The progress of each range is stored
+         * under a key including the number of ranges, so changing the number of threads starts the ranges over.
+         */
+        public static List<RebuildRange> split(int threads, String storeKeyPrefix) {
+            final int count = threads * RANGES_PER_THREAD;
+            final List<RebuildRange> ranges = Lists.newArrayListWithCapacity(count);
+            for (int i = 0; i < count; i++) {
+                final String fromUuid = (i == 0) ? null : boundary(i, count);
+                final String toUuid = (i == count - 1) ? null : boundary(i + 1, count);
+                ranges.add(new RebuildRange(fromUuid, toUuid,
+                        (storeKeyPrefix + ":ranges:" + count + ":" + i).getBytes()));
+            }
+            return ranges;
+        }
+
+        private static String boundary(int i, int count) {
+            return String.format("%08x-0000-0000-0000-000000000000", (i * 0x100000000L) / count);
+        }
+
+        public String toString() {
+            return "(" + fromUuid + ", " + toUuid + "]";
+        }
+    }
+
     private static final SimpleDateFormat UTC;
     static {
         UTC = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.S 'UTC'");
@@ -863,7 +1129,7 @@ public class MultiBackendEventIndexDao extends BaseEventIndexDaoImpl<MultiBacken
             }
         }
 
-        private void logStatus(String msg) {
+        private synchronized void logStatus(String msg) {
             long now = System.currentTimeMillis();
             if (now > nextStatusLog) {
                 long count = -1;
@@ -934,6 +1200,15 @@ public class MultiBackendEventIndexDao extends BaseEventIndexDaoImpl<MultiBacken
                         continue;
                     }
 
+                    if (rebuildThreads > 1 && configuration.isWriter()) {
+                        if (!rebuildRanges(configuration, backend, progress) && rebuilders.get(backendId) == this
+                                && !forceRebuild) {
+                            // A range failed - the ranges resume from their progress after a pause
+                            sleep(1000);
+                        }
+                        continue;
+                    }
+
                     int batchSize = configuration.getBatchSize();
                     EventBatch batch = null;
                     backendsUse.lock();
@@ -988,6 +1263,137 @@ public class MultiBackendEventIndexDao extends BaseEventIndexDaoImpl<MultiBacken
             }
             logger.info(getName() + " has ended its run");
         }
+
+        /**
+         * Rebuilds the ranges of UUIDs concurrently, then flushes the backend and marks the rebuild done.
+         *
+         * @return False if the rebuild was stopped or forced to start over, or a range failed.
+         */
+        private boolean rebuildRanges(final EventIndexBackendConfiguration configuration,
+                                      final EventIndexBackend backend, final RebuilderProgress progress)
+                throws InterruptedException, IOException, ZepException {
+            final List<RebuildRange> ranges = RebuildRange.split(rebuildThreads, new String(storeKey));
+            final ExecutorService executor = Executors.newFixedThreadPool(rebuildThreads,
+                    new ThreadFactoryBuilder().setNameFormat(getName() + " range %d").setDaemon(true).build());
+            boolean done = true;
+            try {
+                final List<Future<Boolean>> futures = Lists.newArrayListWithCapacity(ranges.size());
+                for (final RebuildRange range : ranges) {
+                    futures.add(executor.submit(new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() throws Exception {
+                            return rebuildRange(configuration, backend, progress.throughTime, range);
+                        }
+                    }));
+                }
+                for (Future<Boolean> future : futures) {
+                    try {
+                        done &= future.get();
+                    } catch (ExecutionException e) {
+                        done = false;
+                        logger.warn("error while rebuilding a range of events for " + getName(), e.getCause());
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            if (!done) {
+                return false;
+            }
+            backendsUse.lock();
+            try {
+                if (enableAsyncProcessing && configuration.isAsyncUpdates()) {
+                    workQueues.get(backendId).add(EventIndexBackendTask.Flush());
+                } else {
+                    backend.flush();
+                }
+            } finally { backendsUse.unlock(); }
+            saveRebuildProgress(RebuilderProgress.done(progress));
+            logStatus("finished rebuilding " + ranges.size() + " ranges of events");
+            return true;
+        }
+
+        /**
+         * Indexes the events of one range in batches, storing the progress of the range after each batch. Backends
+         * which can be loaded in bulk are loaded in chunks of {@link #BULK_LOAD_MAX_EVENTS} events instead, each
+         * added to the index and committed before the progress of the range is stored.
+         *
+         * @return False if the rebuild was stopped or forced to start over before the range was done.
+         */
+        private boolean rebuildRange(EventIndexBackendConfiguration configuration, EventIndexBackend backend,
+                                     long throughTime, RebuildRange range) throws IOException, ZepException {
+            RebuilderProgress progress = null;
+            final byte[] data = store.load(range.storeKey);
+            if (data != null && data.length > 0) {
+                try {
+                    progress = RebuilderProgress.parse(new String(data));
+                } catch (IllegalArgumentException e) {
+                    logger.error("exception parsing index rebuilder progress", e);
+                }
+            }
+            if (progress == null || progress.throughTime != throughTime) {
+                // Progress of an earlier rebuild
+                progress = RebuilderProgress.begin(throughTime);
+            }
+            final int batchSize = configuration.getBatchSize();
+            final boolean async = enableAsyncProcessing && configuration.isAsyncUpdates();
+            BulkLoadIndexBackend.BulkLoad bulkLoad = null;
+            if (!async && backend instanceof BulkLoadIndexBackend) {
+                bulkLoad = ((BulkLoadIndexBackend) backend).startBulkLoad();
+            }
+            try {
+                int loaded = 0;
+                while (!progress.done) {
+                    if (rebuilders.get(backendId) != this || forceRebuild) {
+                        // Events loaded since the last stored progress are discarded
+                        return false;
+                    }
+                    final EventBatch batch = eventDao.listBatch(progress.nextBatch, range.fromUuid, range.toUuid,
+                            throughTime, batchSize);
+                    final List<EventSummary> events = batch.events;
+                    if (!events.isEmpty()) {
+                        if (bulkLoad != null) {
+                            bulkLoad.index(events);
+                            loaded += events.size();
+                        } else {
+                            backendsUse.lock();
+                            try {
+                                if (async) {
+                                    List<EventIndexBackendTask> tasks =
+                                            Lists.newArrayListWithExpectedSize(events.size());
+                                    for (EventSummary event : events)
+                                        tasks.add(EventIndexBackendTask.Index(event.getUuid(),
+                                                event.getLastSeenTime()));
+                                    workQueues.get(backendId).addAll(tasks);
+                                } else {
+                                    backend.index(events);
+                                }
+                            } finally { backendsUse.unlock(); }
+                        }
+                        logStatus("indexed events of range " + range + " up to:" + batch);
+                        progress = RebuilderProgress.next(progress, batch.nextParams);
+                    } else {
+                        progress = RebuilderProgress.done(progress);
+                    }
+                    if (bulkLoad != null && (loaded >= BULK_LOAD_MAX_EVENTS || progress.done)) {
+                        backendsUse.lock();
+                        try {
+                            bulkLoad.commit();
+                            backend.flush();
+                        } finally { backendsUse.unlock(); }
+                        loaded = 0;
+                    }
+                    if (bulkLoad == null || loaded == 0) {
+                        store.store(range.storeKey, progress.toString().getBytes());
+                    }
+                }
+            } finally {
+                if (bulkLoad != null) {
+                    bulkLoad.close();
+                }
+            }
+            return true;
+        }
     }
 
 }
@@ -0,0 +1,201 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_ELEMENT_IDENTIFIER;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_ELEMENT_SUB_IDENTIFIER;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_ELEMENT_SUB_TITLE;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_ELEMENT_TITLE;
+
+/**
+ * The n-gram indexing of the identifier fields of an index (element and sub element identifiers and titles).
+ * <p>
+ * A field indexed with n-grams is searched for substrings with phrase queries on its n-grams, which is fast but
+ * adds every n-gram of every value to the index. A field indexed without n-grams only keeps its lowercase value,
+ * and is searched for substrings with a wildcard query which enumerates the values of the field. Larger maximum
+ * n-grams let longer searches match fewer positions, at the cost of a larger index.
+ * <p>
+ * Changing the configuration of an index rebuilds the index. The index records the configuration it was built
+ * with (see {@link #toProperties()}), which is searched until the rebuilt index replaces it.
+ */
+public class NGramIndexConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(NGramIndexConfig.class);
+
+    private static final String PROPERTY_FIELDS = "ngram_fields";
+    private static final String PROPERTY_MIN_GRAM = "ngram_min_gram";
+    private static final String PROPERTY_MAX_GRAM = "ngram_max_gram";
+
+    /**
+     * The identifier fields which can be indexed with n-grams.
+     */
+    public static final List<String> IDENTIFIER_FIELDS = Collections.unmodifiableList(Arrays.asList(
+            FIELD_ELEMENT_IDENTIFIER, FIELD_ELEMENT_TITLE, FIELD_ELEMENT_SUB_IDENTIFIER, FIELD_ELEMENT_SUB_TITLE));
+
+    private final Set<String> fields;
+    private final int minGram;
+    private final int maxGram;
+
+    /**
+     * Creates the default configuration, which indexes all identifier fields with n-grams of
+     * {@link IndexConstants#MIN_NGRAM_SIZE} to {@link IndexConstants#MAX_NGRAM_SIZE} characters.
+     */
+    public NGramIndexConfig() {
+        this(String.join(",", IDENTIFIER_FIELDS), IndexConstants.MIN_NGRAM_SIZE, IndexConstants.MAX_NGRAM_SIZE);
+    }
+
+    /**
+     * @param fields The comma separated identifier fields indexed with n-grams. An empty value disables n-gram
+     *               indexing.
+     * @param minGram The size of the smallest n-grams.
+     * @param maxGram The size of the largest n-grams.
+     */
+    public NGramIndexConfig(String fields, int minGram, int maxGram) {
+        final Set<String> enabled = new TreeSet<String>();
+        for (String field : fields.split(",")) {
+            field = field.trim();
+            if (field.isEmpty()) {
+                continue;
+            }
+            if (IDENTIFIER_FIELDS.contains(field)) {
+                enabled.add(field);
+            } else {
+                logger.warn("Ignoring n-gram indexing of unknown identifier field: {}", field);
+            }
+        }
+        if (minGram < 1) {
+            logger.warn("Invalid minimum n-gram size: {}, using default: {}", minGram, IndexConstants.MIN_NGRAM_SIZE);
+            minGram = IndexConstants.MIN_NGRAM_SIZE;
+        }
+        if (maxGram < minGram) {
+            logger.warn("Invalid maximum n-gram size: {}, using minimum: {}", maxGram, minGram);
+            maxGram = minGram;
+        }
+        this.fields = Collections.unmodifiableSet(enabled);
+        this.minGram = minGram;
+        this.maxGram = maxGram;
+    }
+
+    /**
+     * @param fieldName The analyzed identifier field.
+     * @return Whether the field is indexed with n-grams.
+     */
+    public boolean isEnabled(String fieldName) {
+        return this.fields.contains(fieldName);
+    }
+
+    /**
+     * @return The identifier fields indexed with n-grams.
+     */
+    public Set<String> getFields() {
+        return this.fields;
+    }
+
+    /**
+     * @return The size of the smallest n-grams.
+     */
+    public int getMinGram() {
+        return this.minGram;
+    }
+
+    /**
+     * @return The size of the largest n-grams.
+     */
+    public int getMaxGram() {
+        return this.maxGram;
+    }
+
+    /**
+     * Returns the size of the n-grams which match a value with the fewest terms: the largest n-grams which are
+     * no longer than the shortest word of the value.
+     *
+     * @param value The value searched for.
+     * @return The size of the n-grams to search for, between the minimum and maximum n-gram sizes.
+     */
+    public int getQueryGram(String value) {
+        int shortest = Integer.MAX_VALUE;
+        for (String word : value.trim().split("\\s+")) {
+            if (!word.isEmpty()) {
+                shortest = Math.min(shortest, word.length());
+            }
+        }
+        return Math.max(this.minGram, Math.min(this.maxGram, shortest));
+    }
+
+    /**
+     * @return Whether this is the default configuration.
+     */
+    public boolean isDefault() {
+        return this.fields.equals(new TreeSet<String>(IDENTIFIER_FIELDS))
+                && this.minGram == IndexConstants.MIN_NGRAM_SIZE && this.maxGram == IndexConstants.MAX_NGRAM_SIZE;
+    }
+
+    /**
+     * @return The configuration as properties, which {@link #fromProperties(Map)} reads back.
+     */
+    public Map<String, String> toProperties() {
+        final Map<String, String> properties = new HashMap<String, String>();
+        properties.put(PROPERTY_FIELDS, String.join(",", this.fields));
+        properties.put(PROPERTY_MIN_GRAM, Integer.toString(this.minGram));
+        properties.put(PROPERTY_MAX_GRAM, Integer.toString(this.maxGram));
+        return properties;
+    }
+
+    /**
+     * @param properties Properties written by {@link #toProperties()}, which may hold other properties too.
+     * @return The configuration, or null if the properties don't hold a valid configuration.
+     */
+    public static NGramIndexConfig fromProperties(Map<String, String> properties) {
+        final String fields = properties.get(PROPERTY_FIELDS);
+        final String minGram = properties.get(PROPERTY_MIN_GRAM);
+        final String maxGram = properties.get(PROPERTY_MAX_GRAM);
+        if (fields == null || minGram == null || maxGram == null) {
+            return null;
+        }
+        try {
+            return new NGramIndexConfig(fields, Integer.parseInt(minGram), Integer.parseInt(maxGram));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid n-gram sizes: {}-{}", minGram, maxGram);
+            return null;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof NGramIndexConfig)) {
+            return false;
+        }
+        final NGramIndexConfig other = (NGramIndexConfig) o;
+        return this.minGram == other.minGram && this.maxGram == other.maxGram && this.fields.equals(other.fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * this.fields.hashCode() + this.minGram) + this.maxGram;
+    }
+
+    @Override
+    public String toString() {
+        return "ngram" + this.fields + this.minGram + "-" + this.maxGram;
+    }
+}
@@ -0,0 +1,231 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl;
+
+import com.codahale.metrics.Timer;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zenoss.protobufs.zep.Zep.EventSummary;
+import org.zenoss.zep.ZepException;
+import org.zenoss.zep.dao.EventSummaryBaseDao;
+import org.zenoss.zep.index.WorkQueue;
+import org.zenoss.zep.plugins.EventPostIndexContext;
+import org.zenoss.zep.plugins.EventPostIndexPlugin;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs a single post-index plug-in on its own thread.
+ * <p>
+ * Indexed events are recorded on a durable work queue for the plug-in, which serves as the plug-in's progress
+ * marker: entries are only completed once the plug-in has processed them, and entries which were in progress
+ * when ZEP stopped are processed again on restart. Each entry carries the event exactly as it was committed to
+ * the index, so a plug-in which falls behind doesn't see later changes to the event before their own entries.
+ * The work queue can be bounded, in which case events are refused while the plug-in is too far behind and stay
+ * on the index queue until it catches up.
+ */
+class PostIndexPluginWorker implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(PostIndexPluginWorker.class);
+
+    private final EventPostIndexPlugin plugin;
+    private final WorkQueue queue;
+    private final EventSummaryBaseDao eventDao;
+    private final Supplier<EventPostIndexContext> contextSupplier;
+    private final Timer pluginTimer;
+    private volatile int batchSize;
+    private volatile long maxQueueSize = 0L;
+    private volatile boolean shutdown = false;
+
+    public PostIndexPluginWorker(EventPostIndexPlugin plugin, WorkQueue queue, EventSummaryBaseDao eventDao,
+                                 Supplier<EventPostIndexContext> contextSupplier, Timer pluginTimer, int batchSize) {
+        this.plugin = plugin;
+        this.queue = queue;
+        this.eventDao = eventDao;
+        this.contextSupplier = contextSupplier;
+        this.pluginTimer = pluginTimer;
+        this.batchSize = batchSize;
+    }
+
+    public EventPostIndexPlugin getPlugin() {
+        return plugin;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the maximum number of events waiting on the plug-in's work queue.
+     *
+     * @param maxQueueSize The maximum size of the work queue, or 0 for no limit.
+     */
+    public void setMaxQueueSize(long maxQueueSize) {
+        this.maxQueueSize = Math.max(0L, maxQueueSize);
+    }
+
+    /**
+     * Checks that the plug-in's work queue has room for more events.
+     *
+     * @param count The number of events to be queued.
+     * @throws ZepException If the work queue is full or its size can't be read.
+     */
+    public void checkCapacity(int count) throws ZepException {
+        final long max = this.maxQueueSize;
+        if (max <= 0L) {
+            return;
+        }
+        final long size;
+        try {
+            size = queue.size();
+        } catch (RuntimeException e) {
+            throw new ZepException(e.getLocalizedMessage(), e);
+        }
+        // A batch larger than the whole queue is accepted once the queue has been drained
+        if (size > 0L && size + count > max) {
+            throw new ZepException("Work queue for post-index plug-in " + plugin.getId() + " is full (" + size
+                    + " events waiting)");
+        }
+    }
+
+    /**
+     * Queues committed events to be processed by the plug-in.
+     *
+     * @param events Events which have been committed to the index.
+     * @throws ZepException If the work queue is full or the events can't be queued.
+     */
+    public void submit(Collection<EventSummary> events) throws ZepException {
+        checkCapacity(events.size());
+        final List<EventIndexBackendTask> tasks = Lists.newArrayListWithExpectedSize(events.size());
+        for (EventSummary event : events) {
+            tasks.add(EventIndexBackendTask.Index(event));
+        }
+        try {
+            queue.addAll(tasks);
+        } catch (RuntimeException e) {
+            throw new ZepException(e.getLocalizedMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the number of events the plug-in has yet to process.
+     *
+     * @return The number of events waiting on the plug-in's work queue.
+     */
+    public long getLag() {
+        return queue.size();
+    }
+
+    public void shutdown() {
+        this.shutdown = true;
+    }
+
+    @Override
+    public void run() {
+        logger.info("Started post-index plug-in worker for {}", plugin.getId());
+        while (!shutdown) {
+            if (!queue.isReady()) {
+                logger.warn("Work queue for post-index plug-in {} is not ready", plugin.getId());
+                sleepBeforeRetry();
+                continue;
+            }
+            try {
+                queue.requeueOldTasks();
+                final List<EventIndexBackendTask> tasks = queue.poll(batchSize, 500, TimeUnit.MILLISECONDS);
+                if (tasks == null || tasks.isEmpty()) {
+                    continue;
+                }
+                processEvents(findEvents(tasks));
+                queue.completeAll(tasks);
+            } catch (InterruptedException e) {
+                logger.info("Interrupted while running post-index plug-in {}", plugin.getId());
+                break;
+            } catch (ZepException e) {
+                // Tasks are left in progress and requeued once they are old enough
+                logger.warn("Failed to read events for post-index plug-in " + plugin.getId(), e);
+                sleepBeforeRetry();
+            } catch (RuntimeException e) {
+                logger.warn("Failed to fetch tasks for post-index plug-in " + plugin.getId(), e);
+                sleepBeforeRetry();
+            }
+        }
+        logger.info("Stopped post-index plug-in worker for {}", plugin.getId());
+    }
+
+    private List<EventSummary> findEvents(List<EventIndexBackendTask> tasks) throws ZepException {
+        final List<EventSummary> events = Lists.newArrayListWithExpectedSize(tasks.size());
+        final Set<EventSummary> keys = Sets.newLinkedHashSet();
+        for (EventIndexBackendTask task : tasks) {
+            if (task.op != EventIndexBackendTask.Op.INDEX_EVENT) {
+                continue;
+            }
+            if (task.hasEvent()) {
+                try {
+                    events.add(task.getEvent());
+                } catch (ZepException e) {
+                    // Retrying can't fix a damaged entry
+                    logger.warn("Skipping unreadable event for post-index plug-in " + plugin.getId(), e);
+                }
+            } else if (task.lastSeen != null) {
+                keys.add(EventSummary.newBuilder().setUuid(task.uuid).setLastSeenTime(task.lastSeen).build());
+            }
+        }
+        if (!keys.isEmpty()) {
+            // Tasks queued by earlier versions only identify their events.
+            // Events no longer found with the same last seen time have a newer task on the queue.
+            logger.debug("Looking up {} events for post-index plug-in {}", keys.size(), plugin.getId());
+            events.addAll(eventDao.findByKey(keys));
+        }
+        return events;
+    }
+
+    private void processEvents(List<EventSummary> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        final EventPostIndexContext context = contextSupplier.get();
+        try {
+            plugin.startBatch(context);
+            plugin.preProcessEvents(events, context);
+        } catch (Exception e) {
+            // Post-processing plug-in failures are not fatal errors.
+            logger.warn("Failed to run pre-processing on events", e);
+        }
+        try (Timer.Context ignored = pluginTimer.time()) {
+            for (EventSummary event : events) {
+                try {
+                    plugin.processEvent(event, context);
+                } catch (Exception e) {
+                    // Post-processing plug-in failures are not fatal errors.
+                    logger.warn("Failed to run post-processing plug-in on event: " + event, e);
+                }
+            }
+        }
+        try {
+            plugin.endBatch(context);
+        } catch (Exception e) {
+            // Post-processing plug-in failures are not fatal errors.
+            logger.warn("Failed to finish batch for post-processing plug-in.", e);
+        }
+    }
+
+    private void sleepBeforeRetry() {
+        try {
+            Thread.sleep(1000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            shutdown = true;
+        }
+    }
+}
@@ -0,0 +1,383 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl;
+
+import com.google.protobuf.ProtocolMessageEnum;
+import org.zenoss.protobufs.zep.Zep.Event;
+import org.zenoss.protobufs.zep.Zep.EventActor;
+import org.zenoss.protobufs.zep.Zep.EventFilter;
+import org.zenoss.protobufs.zep.Zep.EventSeverity;
+import org.zenoss.protobufs.zep.Zep.EventStatus;
+import org.zenoss.protobufs.zep.Zep.EventSummary;
+import org.zenoss.protobufs.zep.Zep.EventTag;
+import org.zenoss.protobufs.zep.Zep.EventTagFilter;
+import org.zenoss.protobufs.zep.Zep.FilterOperator;
+import org.zenoss.zep.ZepException;
+import org.zenoss.zep.index.impl.BaseEventIndexBackend.EventTagSeverityCounter;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory rollup of the events in an index by tag UUID, severity and status, maintained incrementally as
+ * events are indexed and deleted.
+ * <p>
+ * Event tag severity requests whose filter only restricts tags, severities and statuses
+ * (see {@link #canCount(EventFilter)}) are answered from the rollup instead of searching the index. The
+ * rollup keeps the tags, severity, status and count of every event it has seen, so indexing an event again
+ * replaces its previous contribution. The tags of an event are the same as those indexed: its tag UUIDs and the
+ * UUIDs of its element and sub-element.
+ * <p>
+ * The rollup isn't usable until it has been {@link #rebuild(Loader) rebuilt} from the index; updates made
+ * before then are ignored as the rebuild picks them up from the index.
+ */
+public class TagSeverityRollup {
+
+    /**
+     * Loads the events currently in the index when the rollup is rebuilt.
+     */
+    public interface Loader {
+        /**
+         * Passes all events in the index to {@link TagSeverityRollup#update(String, Collection, int, int, int,
+         * long)}. The index must reflect all changes made before this call.
+         *
+         * @param rollup The rollup being rebuilt.
+         * @throws ZepException If the events can't be read.
+         */
+        void load(TagSeverityRollup rollup) throws ZepException;
+    }
+
+    private static final int NUM_SEVERITIES = maxNumber(EventSeverity.values()) + 1;
+    private static final int NUM_STATUSES = maxNumber(EventStatus.values()) + 1;
+    private static final EventSeverity[] SEVERITIES = new EventSeverity[NUM_SEVERITIES];
+    static {
+        for (EventSeverity severity : EventSeverity.values()) {
+            SEVERITIES[severity.getNumber()] = severity;
+        }
+    }
+
+    private static int maxNumber(ProtocolMessageEnum[] values) {
+        int max = 0;
+        for (ProtocolMessageEnum value : values) {
+            max = Math.max(max, value.getNumber());
+        }
+        return max;
+    }
+
+    private static class EventEntry {
+        private final String[] tags;
+        private final int severity;
+        private final int status;
+        private final int count;
+        private final long lastSeen;
+
+        private EventEntry(String[] tags, int severity, int status, int count, long lastSeen) {
+            this.tags = tags;
+            this.severity = severity;
+            this.status = status;
+            this.count = count;
+            this.lastSeen = lastSeen;
+        }
+    }
+
+    /**
+     * Number of events and sum of the event counts for each severity and status of a tag.
+     */
+    private static class TagCounts {
+        private final String uuid;
+        private final int[] events = new int[NUM_SEVERITIES * NUM_STATUSES];
+        private final int[] counts = new int[NUM_SEVERITIES * NUM_STATUSES];
+        private int total = 0;
+
+        private TagCounts(String uuid) {
+            this.uuid = uuid;
+        }
+
+        private void add(EventEntry entry, int sign) {
+            final int cell = entry.severity * NUM_STATUSES + entry.status;
+            events[cell] += sign;
+            counts[cell] += sign * entry.count;
+            total += sign;
+        }
+    }
+
+    private final Map<String, EventEntry> events = new HashMap<String, EventEntry>();
+    private final Map<String, TagCounts> tags = new HashMap<String, TagCounts>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private boolean ready = false;
+
+    /**
+     * Returns true if the event tag severities for the filter can be counted from the rollup: the filter only
+     * restricts the severity, status and tags of the events and at most one tag filter matches any of its tags.
+     *
+     * @param filter The event filter.
+     * @return True if the rollup can count the event tag severities for the filter.
+     */
+    public static boolean canCount(EventFilter filter) {
+        if (filter.getOperator() == FilterOperator.OR) {
+            return false;
+        }
+        if (filter.getTagFilterCount() > 1) {
+            return false;
+        }
+        if (filter.getTagFilterCount() == 1) {
+            final EventTagFilter tagFilter = filter.getTagFilter(0);
+            if (tagFilter.getOp() != FilterOperator.OR && tagFilter.getTagUuidsCount() > 1) {
+                return false;
+            }
+        }
+        final EventFilter remaining = filter.toBuilder().clearOperator().clearTagFilter().clearSeverity()
+                .clearStatus().build();
+        return remaining.equals(EventFilter.getDefaultInstance());
+    }
+
+    /**
+     * Returns the tags of the event as they are indexed.
+     *
+     * @param event The event summary.
+     * @return The tag UUIDs, element UUID and sub-element UUID of the event.
+     */
+    public static Set<String> getTagUuids(EventSummary event) {
+        final Event occurrence = event.getOccurrence(0);
+        final Set<String> uuids = new LinkedHashSet<String>();
+        for (EventTag tag : occurrence.getTagsList()) {
+            uuids.addAll(tag.getUuidList());
+        }
+        final EventActor actor = occurrence.getActor();
+        if (!actor.getElementUuid().isEmpty()) {
+            uuids.add(actor.getElementUuid());
+        }
+        if (!actor.getElementSubUuid().isEmpty()) {
+            uuids.add(actor.getElementSubUuid());
+        }
+        return uuids;
+    }
+
+    /**
+     * Replaces the contents of the rollup with the events in the index. Updates are blocked while the rollup is
+     * rebuilt.
+     *
+     * @param loader Loads the events in the index.
+     * @throws ZepException If the events can't be loaded. The rollup isn't used until it is rebuilt again.
+     */
+    public void rebuild(Loader loader) throws ZepException {
+        lock.writeLock().lock();
+        try {
+            clearState();
+            // Allow the loader to add events
+            ready = true;
+            loader.load(this);
+        } catch (ZepException e) {
+            ready = false;
+            clearState();
+            throw e;
+        } catch (RuntimeException e) {
+            ready = false;
+            clearState();
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        lock.readLock().lock();
+        try {
+            return ready;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void update(EventSummary event) {
+        final Event occurrence = event.getOccurrence(0);
+        update(event.getUuid(), getTagUuids(event), occurrence.getSeverity().getNumber(),
+                event.getStatus().getNumber(), event.getCount(), event.getLastSeenTime());
+    }
+
+    public void update(String uuid, Collection<String> tagUuids, int severity, int status, int count,
+                       long lastSeen) {
+        if (severity < 0 || severity >= NUM_SEVERITIES || status < 0 || status >= NUM_STATUSES) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            remove(events.remove(uuid));
+            final String[] eventTags = new String[tagUuids.size()];
+            int i = 0;
+            for (String tagUuid : tagUuids) {
+                TagCounts counts = tags.get(tagUuid);
+                if (counts == null) {
+                    counts = new TagCounts(tagUuid);
+                    tags.put(tagUuid, counts);
+                }
+                // Share the tag strings between the events
+                eventTags[i++] = counts.uuid;
+            }
+            final EventEntry entry = new EventEntry(eventTags, severity, status, count, lastSeen);
+            events.put(uuid, entry);
+            add(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void delete(String uuid) {
+        delete(Collections.singletonList(uuid));
+    }
+
+    public void delete(Collection<String> uuids) {
+        lock.writeLock().lock();
+        try {
+            for (String uuid : uuids) {
+                remove(events.remove(uuid));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all events last seen at or before the threshold.
+     *
+     * @param threshold The last seen time in milliseconds.
+     */
+    public void purge(long threshold) {
+        lock.writeLock().lock();
+        try {
+            final Iterator<EventEntry> it = events.values().iterator();
+            while (it.hasNext()) {
+                final EventEntry entry = it.next();
+                if (entry.lastSeen <= threshold) {
+                    it.remove();
+                    remove(entry);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            clearState();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the event tag severities of the events matching a filter accepted by {@link #canCount(EventFilter)}.
+     *
+     * @param filter The event filter.
+     * @param counter Receives the counts of each tag and severity.
+     * @return False if the rollup hasn't been built yet and nothing was counted.
+     */
+    public boolean count(EventFilter filter, EventTagSeverityCounter counter) {
+        final boolean[] severities = toMask(filter.getSeverityList(), NUM_SEVERITIES);
+        final boolean[] statuses = toMask(filter.getStatusList(), NUM_STATUSES);
+        lock.readLock().lock();
+        try {
+            if (!ready) {
+                return false;
+            }
+            if (filter.getTagFilterCount() > 0) {
+                for (String uuid : new LinkedHashSet<String>(filter.getTagFilter(0).getTagUuidsList())) {
+                    final TagCounts counts = tags.get(uuid);
+                    if (counts != null) {
+                        count(uuid, counts, severities, statuses, counter);
+                    }
+                }
+            } else {
+                for (Map.Entry<String, TagCounts> entry : tags.entrySet()) {
+                    count(entry.getKey(), entry.getValue(), severities, statuses, counter);
+                }
+            }
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void count(String uuid, TagCounts counts, boolean[] severities, boolean[] statuses,
+                              EventTagSeverityCounter counter) {
+        for (int severity = 0; severity < NUM_SEVERITIES; severity++) {
+            if (!severities[severity] || SEVERITIES[severity] == null) {
+                continue;
+            }
+            int events = 0;
+            int acknowledged = 0;
+            int count = 0;
+            for (int status = 0; status < NUM_STATUSES; status++) {
+                final int cell = severity * NUM_STATUSES + status;
+                if (!statuses[status] || counts.events[cell] == 0) {
+                    continue;
+                }
+                events += counts.events[cell];
+                count += counts.counts[cell];
+                if (status == EventStatus.STATUS_ACKNOWLEDGED.getNumber()) {
+                    acknowledged += counts.events[cell];
+                }
+            }
+            if (events > 0) {
+                counter.update(uuid, SEVERITIES[severity], events, acknowledged, count);
+            }
+        }
+    }
+
+    private static boolean[] toMask(List<? extends ProtocolMessageEnum> values, int size) {
+        final boolean[] mask = new boolean[size];
+        if (values.isEmpty()) {
+            Arrays.fill(mask, true);
+        }
+        for (ProtocolMessageEnum value : values) {
+            if (value.getNumber() >= 0 && value.getNumber() < size) {
+                mask[value.getNumber()] = true;
+            }
+        }
+        return mask;
+    }
+
+    private void add(EventEntry entry) {
+        for (String tagUuid : entry.tags) {
+            tags.get(tagUuid).add(entry, 1);
+        }
+    }
+
+    private void remove(EventEntry entry) {
+        if (entry == null) {
+            return;
+        }
+        for (String tagUuid : entry.tags) {
+            final TagCounts counts = tags.get(tagUuid);
+            counts.add(entry, -1);
+            if (counts.total == 0) {
+                tags.remove(tagUuid);
+            }
+        }
+    }
+
+    private void clearState() {
+        events.clear();
+        tags.clear();
+    }
+}
@@ -0,0 +1,157 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl.lucene;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.zenoss.zep.index.impl.NGramIndexConfig;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_EVENT_CLASS;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_MESSAGE;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_MESSAGE_REVERSED;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_SUMMARY;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_SUMMARY_REVERSED;
+
+/**
+ * The analyzers of the event index, shared by the index writers and the query builders.
+ * <p>
+ * Analyzers are thread-safe, and each analyzer reuses the tokenizer and filters it created on a thread for the
+ * next value it analyzes on the thread. Sharing one instance of each analyzer avoids building a new token stream
+ * chain (and its attributes and buffers) for every analyzed query value. The shared analyzers live as long as the
+ * application and are never closed.
+ */
+public final class LuceneAnalyzers {
+
+    private static final Analyzer SUMMARY = new LuceneSummaryAnalyzer();
+    private static final Analyzer REVERSED_SUMMARY = new LuceneSummaryAnalyzer(true);
+    private static final Analyzer IDENTIFIER = new LuceneIdentifierAnalyzer();
+    private static final Analyzer PATH = new LucenePathAnalyzer();
+    private static final Analyzer KEYWORD = new KeywordAnalyzer();
+    // Identifier analyzers producing n-grams of a single size, by size
+    private static final ConcurrentMap<Integer, Analyzer> IDENTIFIER_QUERY = new ConcurrentHashMap<Integer, Analyzer>();
+
+    static {
+        IDENTIFIER_QUERY.put(LuceneIdentifierAnalyzer.MIN_NGRAM_SIZE, IDENTIFIER);
+    }
+
+    private LuceneAnalyzers() {
+    }
+
+    /**
+     * @return The analyzer of event summaries and messages.
+     */
+    public static Analyzer summary() {
+        return SUMMARY;
+    }
+
+    /**
+     * @return The analyzer of element and sub element identifiers and titles.
+     */
+    public static Analyzer identifier() {
+        return IDENTIFIER;
+    }
+
+    /**
+     * Returns the analyzer of identifier searches on n-grams of a single size. A phrase of the consecutive n-grams
+     * of a value matches the n-grams of any size range which includes the size.
+     *
+     * @param gramSize The size of the n-grams.
+     * @return The analyzer producing the n-grams of the size.
+     */
+    public static Analyzer identifier(int gramSize) {
+        Analyzer analyzer = IDENTIFIER_QUERY.get(gramSize);
+        if (analyzer == null) {
+            final Analyzer created = new LuceneIdentifierAnalyzer(gramSize, gramSize);
+            analyzer = IDENTIFIER_QUERY.putIfAbsent(gramSize, created);
+            if (analyzer == null) {
+                analyzer = created;
+            } else {
+                created.close();
+            }
+        }
+        return analyzer;
+    }
+
+    /**
+     * @return The analyzer of event classes.
+     */
+    public static Analyzer path() {
+        return PATH;
+    }
+
+    /**
+     * Creates the analyzer of the index writers, which analyzes each field with its shared analyzer. Closing it
+     * doesn't close the shared analyzers.
+     *
+     * @return The analyzer of the event index.
+     */
+    public static Analyzer createIndexAnalyzer() {
+        return createIndexAnalyzer(new NGramIndexConfig());
+    }
+
+    /**
+     * Creates the analyzer of an index writer, which analyzes the identifier fields indexed with n-grams with the
+     * n-gram sizes of the index. Closing it doesn't close the shared analyzers.
+     *
+     * @param nGramConfig The n-gram indexing of the identifier fields of the index.
+     * @return The analyzer of the event index.
+     */
+    public static Analyzer createIndexAnalyzer(NGramIndexConfig nGramConfig) {
+        final Analyzer identifier = nGramConfig.getMinGram() == LuceneIdentifierAnalyzer.MIN_NGRAM_SIZE
+                && nGramConfig.getMaxGram() == LuceneIdentifierAnalyzer.MAX_NGRAM_SIZE ? IDENTIFIER :
+                new LuceneIdentifierAnalyzer(nGramConfig.getMinGram(), nGramConfig.getMaxGram());
+        Map<String, Analyzer> fieldAnalyzers = new HashMap<String, Analyzer>();
+        for (String field : nGramConfig.getFields()) {
+            fieldAnalyzers.put(field, identifier);
+        }
+        fieldAnalyzers.put(FIELD_SUMMARY, SUMMARY);
+        fieldAnalyzers.put(FIELD_EVENT_CLASS, PATH);
+        fieldAnalyzers.put(FIELD_MESSAGE, SUMMARY);
+        fieldAnalyzers.put(FIELD_SUMMARY_REVERSED, REVERSED_SUMMARY);
+        fieldAnalyzers.put(FIELD_MESSAGE_REVERSED, REVERSED_SUMMARY);
+        return new PerFieldAnalyzerWrapper(KEYWORD, fieldAnalyzers);
+    }
+
+    /**
+     * Tokenizes the text the same way as when the field is indexed, reusing the token stream of the analyzer for
+     * the calling thread.
+     *
+     * @param analyzer The analyzer of the field.
+     * @param fieldName The field name in the index.
+     * @param text The text to tokenize.
+     * @return The tokens of the text.
+     * @throws IOException If the text can't be tokenized.
+     */
+    public static List<String> tokenize(Analyzer analyzer, String fieldName, String text) throws IOException {
+        final List<String> tokens = new ArrayList<String>();
+        final TokenStream ts = analyzer.tokenStream(fieldName, text);
+        try {
+            final CharTermAttribute term = ts.addAttribute(CharTermAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                tokens.add(term.toString());
+            }
+            ts.end();
+        } finally {
+            ts.close();
+        }
+        return tokens;
+    }
+}
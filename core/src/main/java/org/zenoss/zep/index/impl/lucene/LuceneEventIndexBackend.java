@@ -16,14 +16,20 @@ import com.google.api.client.util.Maps;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
-import com.google.common.util.concurrent.SimpleTimeLimiter;
-import com.google.common.util.concurrent.TimeLimiter;
-import com.google.common.util.concurrent.UncheckedTimeoutException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.*;
 import org.apache.lucene.search.*;
 import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.OpenBitSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,37 +46,71 @@ import org.zenoss.protobufs.zep.Zep.EventStatus;
 import org.zenoss.protobufs.zep.Zep.EventSummary;
 import org.zenoss.protobufs.zep.Zep.EventSummaryRequest;
 import org.zenoss.protobufs.zep.Zep.EventSummaryResult;
-import org.zenoss.protobufs.zep.Zep.EventTag;
+import org.zenoss.protobufs.zep.Zep.FilterOperator;
 import org.zenoss.zep.Messages;
 import org.zenoss.zep.UUIDGenerator;
 import org.zenoss.zep.ZepConstants;
 import org.zenoss.zep.ZepException;
+import org.zenoss.zep.ZepInstance;
 import org.zenoss.zep.dao.EventSummaryBaseDao;
+import org.zenoss.zep.index.BulkLoadIndexBackend;
+import org.zenoss.zep.index.EventSummaryPage;
 import org.zenoss.zep.index.IndexedDetailsConfiguration;
 import org.zenoss.zep.index.SavedSearchProcessor;
+import org.zenoss.zep.index.SearchDeadline;
+import org.zenoss.zep.index.ShadowIndexBackend;
+import org.zenoss.zep.index.SnapshotIndexBackend;
 import org.zenoss.zep.index.impl.BaseEventIndexBackend;
+import org.zenoss.zep.index.impl.EventFilterNormalizer;
+import org.zenoss.zep.index.impl.NGramIndexConfig;
+import org.zenoss.zep.index.impl.TagSeverityRollup;
 
 import jakarta.annotation.Resource;
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.Callable;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static org.zenoss.zep.index.impl.IndexConstants.*;
 
-public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSearch> {
+public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSearch> implements ShadowIndexBackend,
+        SnapshotIndexBackend, BulkLoadIndexBackend {
 
     private static final Logger logger = LoggerFactory.getLogger(LuceneEventIndexBackend.class);
 
+    private static final double MIN_REOPEN_STALE_SECONDS = 0.025;
+
     private final String name;
-    private final IndexWriter writer;
-    private final SearcherManager searcherManager;
+    // One of writer (with trackingIndexWriter) or partitions is set. Swapping in a shadow index replaces the
+    // writer and searcher manager, partitions replace their own slices.
+    private volatile IndexWriter writer;
+    private final LuceneIndexPartitions partitions;
+    private volatile ReferenceManager<IndexSearcher> searcherManager;
+    private final SearcherFactory searcherFactory;
     private final boolean archive;
     private final EventSummaryBaseDao eventSummaryBaseDao;
     private final LuceneFilterCacheManager filterCacheManager;
-    private final TrackingIndexWriter trackingIndexWriter;
-    private ControlledRealTimeReopenThread nrtManagerReopenThread;
+    private volatile TrackingIndexWriter trackingIndexWriter;
+    // Changes to the index take the read lock, swapping in the shadow index takes the write lock
+    private final ReadWriteLock indexLock = new ReentrantReadWriteLock();
+    private volatile IndexWriter shadowWriter = null;
+    private volatile LuceneIndexPartitions shadowPartitions = null;
+    private volatile boolean swapping = false;
+    // Bulk loads in progress, which leave out the events changed in the index while they were loaded
+    private final List<LuceneBulkLoad> bulkLoads = new CopyOnWriteArrayList<LuceneBulkLoad>();
+    // Set once the writer passed to the constructor has been replaced by a writer opened here
+    private boolean ownsWriter = false;
+    private volatile ControlledRealTimeReopenThread<IndexSearcher> nrtManagerReopenThread;
+    private volatile ScheduledExecutorService partitionsReopenExecutor;
     private int readerReopenInterval;
     private volatile boolean ready = false;
 
@@ -78,23 +118,99 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
     private int queryLimit = ZepConstants.DEFAULT_QUERY_LIMIT;
 
     private IndexedDetailsConfiguration indexedDetailsConfiguration;
+    private NGramIndexConfig nGramConfig = new NGramIndexConfig();
+    // The n-gram indexing the live index was built with, which it is written and searched with until a shadow
+    // index built with the configured n-gram indexing replaces it
+    private volatile NGramIndexConfig liveNGramConfig = this.nGramConfig;
+    // Analyzes the documents of the live index while its n-gram indexing isn't the configured one, else null
+    private volatile Analyzer liveAnalyzer = null;
+    private ZepInstance zepInstance;
 
     private MetricRegistry metrics;
     private int indexResultsCount = -1;
     private long luceneSearchTimeout = 0;
-    private TimeLimiter timeLimiter = null;
+    private final AtomicLong searchTimeouts = new AtomicLong();
+    private final ExecutorService searchExecutor;
+    private TagSeverityRollup tagSeverityRollup = null;
+    // Rollup changes staged in the writer, applied once they have been committed
+    private final Queue<RollupChange> pendingRollupChanges = new ConcurrentLinkedQueue<RollupChange>();
+    private LuceneEventSummaryCache eventSummaryCache = null;
+    private LuceneListResultCache listResultCache = null;
+    private volatile LuceneQueryPlanCache queryPlanCache = null;
+    private int savedSearchMaxKeysInMemory = 100000;
 
     public LuceneEventIndexBackend(String name, IndexWriter writer, EventSummaryBaseDao eventSummaryBaseDao,
                                    Integer maxClauseCount, LuceneFilterCacheManager filterCacheManager, int readerRefreshInterval,
                                    Messages messages, TaskScheduler scheduler, UUIDGenerator uuidGenerator,
                                    int tagSeverityCacheSize, int tagSeveritiesCacheTTL)
             throws IOException
+    {
+        this(name, writer, eventSummaryBaseDao, maxClauseCount, filterCacheManager, readerRefreshInterval, messages,
+                scheduler, uuidGenerator, tagSeverityCacheSize, tagSeveritiesCacheTTL, 0);
+    }
+
+    /**
+     * @param searchThreads The number of threads searching the segments of the index concurrently, or zero to
+     *                      search on the calling thread only.
+     */
+    public LuceneEventIndexBackend(String name, IndexWriter writer, EventSummaryBaseDao eventSummaryBaseDao,
+                                   Integer maxClauseCount, LuceneFilterCacheManager filterCacheManager, int readerRefreshInterval,
+                                   Messages messages, TaskScheduler scheduler, UUIDGenerator uuidGenerator,
+                                   int tagSeverityCacheSize, int tagSeveritiesCacheTTL, int searchThreads)
+            throws IOException
+    {
+        this(name, writer, null, eventSummaryBaseDao, maxClauseCount, filterCacheManager, readerRefreshInterval,
+                messages, scheduler, uuidGenerator, tagSeverityCacheSize, tagSeveritiesCacheTTL, searchThreads);
+    }
+
+    /**
+     * Creates a backend for an index split into time slices by last seen time, which are searched together.
+     *
+     * @param partitions The time slices of the index.
+     * @param searchThreads The number of threads searching the segments of the index concurrently, or zero to
+     *                      search on the calling thread only.
+     */
+    public LuceneEventIndexBackend(String name, LuceneIndexPartitions partitions,
+                                   EventSummaryBaseDao eventSummaryBaseDao, Integer maxClauseCount,
+                                   LuceneFilterCacheManager filterCacheManager, int readerRefreshInterval,
+                                   Messages messages, TaskScheduler scheduler, UUIDGenerator uuidGenerator,
+                                   int tagSeverityCacheSize, int tagSeveritiesCacheTTL, int searchThreads)
+            throws IOException
+    {
+        this(name, null, partitions, eventSummaryBaseDao, maxClauseCount, filterCacheManager, readerRefreshInterval,
+                messages, scheduler, uuidGenerator, tagSeverityCacheSize, tagSeveritiesCacheTTL, searchThreads);
+    }
+
+    private LuceneEventIndexBackend(String name, IndexWriter writer, LuceneIndexPartitions partitions,
+                                    EventSummaryBaseDao eventSummaryBaseDao, Integer maxClauseCount,
+                                    LuceneFilterCacheManager filterCacheManager, int readerRefreshInterval,
+                                    Messages messages, TaskScheduler scheduler, UUIDGenerator uuidGenerator,
+                                    int tagSeverityCacheSize, int tagSeveritiesCacheTTL, int searchThreads)
+            throws IOException
     {
         super(messages, scheduler, uuidGenerator, tagSeverityCacheSize, tagSeveritiesCacheTTL);
         this.name = name;
         this.writer = writer;
-        this.trackingIndexWriter = new TrackingIndexWriter(this.writer);
-        this.searcherManager = new SearcherManager(this.writer, true, null);
+        this.partitions = partitions;
+        this.trackingIndexWriter = (writer != null) ? new TrackingIndexWriter(this.writer) : null;
+        if (searchThreads > 0) {
+            this.searchExecutor = Executors.newFixedThreadPool(searchThreads,
+                    new ThreadFactoryBuilder().setNameFormat(name + "-search-%d").setDaemon(true).build());
+            logger.info("Searching {} with {} threads", name, searchThreads);
+        } else {
+            this.searchExecutor = null;
+        }
+        this.searcherFactory = new SearcherFactory() {
+            @Override
+            public IndexSearcher newSearcher(IndexReader reader) throws IOException {
+                return new IndexSearcher(reader, searchExecutor);
+            }
+        };
+        this.searcherManager = (partitions != null) ? partitions.newSearcherManager(this.searcherFactory)
+                : new SearcherManager(this.writer, true, this.searcherFactory);
+        if (writer != null && writer.getDirectory() instanceof FSDirectory) {
+            LuceneIndexDirectories.deleteLeftovers(getDirectory());
+        }
         this.eventSummaryBaseDao = eventSummaryBaseDao;
         this.archive = "event_archive".equals(name);
         this.filterCacheManager = filterCacheManager;
@@ -127,6 +243,43 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
         } catch (IllegalArgumentException ex) {
             // skipping if metrics already exists
         }
+        try {
+            this.metrics.register(this.getMetricName("SearchTimeouts"), (Gauge<Long>) searchTimeouts::get);
+        } catch (IllegalArgumentException ex) {
+            // skipping if metrics already exists
+        }
+        try {
+            this.metrics.register(this.getMetricName("DecodedEventCacheHitRatio"), (Gauge<Double>) () ->
+                    (eventSummaryCache == null) ? 0.0 : eventSummaryCache.getHitRatio());
+            this.metrics.register(this.getMetricName("DecodedEventCacheHits"), (Gauge<Long>) () ->
+                    (eventSummaryCache == null) ? 0L : eventSummaryCache.getHitCount());
+            this.metrics.register(this.getMetricName("DecodedEventCacheMisses"), (Gauge<Long>) () ->
+                    (eventSummaryCache == null) ? 0L : eventSummaryCache.getMissCount());
+            this.metrics.register(this.getMetricName("DecodedEventCacheWeight"), (Gauge<Long>) () ->
+                    (eventSummaryCache == null) ? 0L : eventSummaryCache.getWeight());
+        } catch (IllegalArgumentException ex) {
+            // skipping if metrics already exists
+        }
+        try {
+            this.metrics.register(this.getMetricName("ListResultCacheHitRatio"), (Gauge<Double>) () ->
+                    (listResultCache == null) ? 0.0 : listResultCache.getHitRatio());
+            this.metrics.register(this.getMetricName("ListResultCacheHits"), (Gauge<Long>) () ->
+                    (listResultCache == null) ? 0L : listResultCache.getHitCount());
+            this.metrics.register(this.getMetricName("ListResultCacheMisses"), (Gauge<Long>) () ->
+                    (listResultCache == null) ? 0L : listResultCache.getMissCount());
+        } catch (IllegalArgumentException ex) {
+            // skipping if metrics already exists
+        }
+        try {
+            this.metrics.register(this.getMetricName("QueryPlanCacheHitRatio"), (Gauge<Double>) () ->
+                    (queryPlanCache == null) ? 0.0 : queryPlanCache.getHitRatio());
+            this.metrics.register(this.getMetricName("QueryPlanCacheHits"), (Gauge<Long>) () ->
+                    (queryPlanCache == null) ? 0L : queryPlanCache.getHitCount());
+            this.metrics.register(this.getMetricName("QueryPlanCacheMisses"), (Gauge<Long>) () ->
+                    (queryPlanCache == null) ? 0L : queryPlanCache.getMissCount());
+        } catch (IllegalArgumentException ex) {
+            // skipping if metrics already exists
+        }
     }
 
     public void init() {
@@ -151,6 +304,7 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
                     searchToEventSummaryResult(searcher, query, sort, Sets.newHashSet(FIELD_PROTOBUF), 0, 1000);
                     logger.info("Done warming cache for {}!", name);
                     ready = true;
+                    rebuildTagSeverityRollup();
                 } catch (Exception e) {
                     logger.error("Failed to warm cache for {}", name);
                     e.printStackTrace();
@@ -171,11 +325,29 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
 
     private synchronized void startReopenThread() {
         stopReopenThread();
+        if (this.partitions != null) {
+            // Partitions have no single writer to track generations of - reopen at the interval, flush() reopens
+            // the searchers itself
+            logger.debug("Starting partitions reopen thread");
+            this.partitionsReopenExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat(name + " Partitions Reopen Thread").setDaemon(true).build());
+            this.partitionsReopenExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        searcherManager.maybeRefresh();
+                    } catch (IOException | RuntimeException e) {
+                        logger.warn("Failed to reopen searcher of " + name, e);
+                    }
+                }
+            }, this.readerReopenInterval, this.readerReopenInterval, TimeUnit.SECONDS);
+            return;
+        }
         logger.debug("Starting NRT Reopen Thread");
-        // Max = min on this because min only matters when you call
-        // waitForGeneration() on the NRTManager, which we never do
+        // Searchers are reopened every readerReopenInterval seconds, or within MIN_REOPEN_STALE_SECONDS
+        // when flush() waits for the changes it committed to become searchable.
         this.nrtManagerReopenThread = new ControlledRealTimeReopenThread<IndexSearcher>(this.trackingIndexWriter, this.searcherManager,
-                this.readerReopenInterval, this.readerReopenInterval);
+                this.readerReopenInterval, Math.min(this.readerReopenInterval, MIN_REOPEN_STALE_SECONDS));
         this.nrtManagerReopenThread.setName(name + "NRT Reopen Thread");
         this.nrtManagerReopenThread.setPriority(Math.min(Thread.currentThread().getPriority() + 2, Thread.MAX_PRIORITY));
         this.nrtManagerReopenThread.setDaemon(true);
@@ -183,6 +355,11 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
     }
 
     private synchronized void stopReopenThread() {
+        if (this.partitionsReopenExecutor != null) {
+            logger.debug("Stopping partitions reopen thread");
+            this.partitionsReopenExecutor.shutdown();
+            this.partitionsReopenExecutor = null;
+        }
         if (this.nrtManagerReopenThread != null) {
             if (this.nrtManagerReopenThread.isAlive()) {
                 logger.debug("Stopping NRT Reopen Thread");
@@ -208,12 +385,23 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
     public synchronized void close() {
         super.close();
         closeSearcherManager();
+        discardShadow();
+        if (this.ownsWriter) {
+            try {
+                this.writer.close();
+                this.writer.getDirectory().close();
+            } catch (IOException e) {
+                logger.error("Unable to close IndexWriter: {}", e);
+            }
+        }
+        if (this.searchExecutor != null) {
+            this.searchExecutor.shutdown();
+        }
     }
 
     public void setLuceneSearchTimeout(int luceneSearchTimeout) {
         if (luceneSearchTimeout > 0) {
             this.luceneSearchTimeout = luceneSearchTimeout;
-            this.timeLimiter = SimpleTimeLimiter.create(Executors.newCachedThreadPool());
             logger.info("Lucene search timeout set to " + this.luceneSearchTimeout + " seconds.");
         }
     }
@@ -230,12 +418,24 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
 
     @Override
     public long count() throws ZepException {
-        return this.writer.numDocs();
+        this.indexLock.readLock().lock();
+        try {
+            if (this.partitions != null) {
+                return this.partitions.numDocs();
+            }
+            return this.writer.numDocs();
+        } finally {
+            this.indexLock.readLock().unlock();
+        }
     }
 
     @Override
     public long sizeInBytes() {
+        this.indexLock.readLock().lock();
         try {
+            if (this.partitions != null) {
+                return this.partitions.sizeInBytes();
+            }
             Directory directory = writer.getDirectory();
             long size = 0L;
             for (String name : directory.listAll()) {
@@ -245,6 +445,8 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
         } catch (IOException e) {
             logger.warn("Cannot get index size.");
             return -1L;
+        } finally {
+            this.indexLock.readLock().unlock();
         }
     }
 
@@ -261,6 +463,50 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
         this.indexedDetailsConfiguration = indexedDetailsConfiguration;
     }
 
+    /**
+     * Sets the n-gram indexing of the identifier fields, which must match the analyzer of the index writer.
+     * An index built with another n-gram indexing keeps being written and searched with it until it is rebuilt.
+     *
+     * @param nGramConfig The n-gram indexing of the identifier fields of the index.
+     */
+    public void setNgramConfig(NGramIndexConfig nGramConfig) {
+        this.nGramConfig = nGramConfig;
+        final Map<String, String> commitData = (this.partitions != null) ? this.partitions.getCommitData() :
+                this.writer.getCommitData();
+        NGramIndexConfig recorded = NGramIndexConfig.fromProperties(commitData);
+        if (recorded == null) {
+            // Indexes which don't record their n-gram indexing were built with the default one
+            recorded = (count() > 0) ? new NGramIndexConfig() : nGramConfig;
+        }
+        setLiveNGramConfig(recorded);
+    }
+
+    /**
+     * Writes and searches the live index with the n-gram indexing, which is recorded with the next commit.
+     */
+    private void setLiveNGramConfig(NGramIndexConfig liveNGramConfig) {
+        if (liveNGramConfig.equals(this.nGramConfig)) {
+            this.liveAnalyzer = null;
+        } else {
+            logger.info("Searching {} with n-grams {} until it is rebuilt with n-grams {}", name, liveNGramConfig,
+                    this.nGramConfig);
+            this.liveAnalyzer = LuceneEventIndexMapper.createAnalyzer(liveNGramConfig);
+        }
+        this.liveNGramConfig = liveNGramConfig;
+        if (this.partitions != null) {
+            this.partitions.setCommitData(liveNGramConfig.toProperties());
+        } else {
+            this.writer.setCommitData(liveNGramConfig.toProperties());
+        }
+    }
+
+    /**
+     * @param zepInstance Configures the writers of the shadow indexes, like the writer of the live index.
+     */
+    public void setZepInstance(ZepInstance zepInstance) {
+        this.zepInstance = zepInstance;
+    }
+
     /**
      * Sets the maximum number of results returned in a query from ZEP.
      *
@@ -274,22 +520,245 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
         }
     }
 
+    /**
+     * Enables the in-memory rollup used to count event tag severities for simple filters. The rollup is built
+     * from the index when the backend is initialized.
+     *
+     * @param enabled Whether to maintain the rollup.
+     */
+    public void setTagSeverityRollupEnabled(boolean enabled) {
+        this.tagSeverityRollup = enabled ? new TagSeverityRollup() : null;
+    }
+
+    /**
+     * Enables the cache of event summaries decoded from the index, so events listed again aren't decompressed
+     * and parsed again. Only used by indexes which store the event protobufs (the event summary index).
+     *
+     * @param cacheSizeMB The maximum estimated heap size of the cached events in megabytes, or zero to disable.
+     */
+    public void setDecodedEventCacheSizeMB(int cacheSizeMB) {
+        if (cacheSizeMB > 0 && !this.archive) {
+            this.eventSummaryCache = new LuceneEventSummaryCache(cacheSizeMB * 1024L * 1024L);
+            logger.info("Decoded event cache for {} set to {} MB", name, cacheSizeMB);
+        } else {
+            this.eventSummaryCache = null;
+        }
+    }
+
+    /**
+     * Enables the cache of list results for the current index reader, so identical list requests made between
+     * index refreshes only search the index once.
+     *
+     * @param maxEvents The maximum number of events held by all cached results, or zero to disable.
+     */
+    public void setListResultCacheMaxEvents(int maxEvents) {
+        if (maxEvents > 0) {
+            this.listResultCache = new LuceneListResultCache(maxEvents);
+            logger.info("List result cache for {} set to {} events", name, maxEvents);
+        } else {
+            this.listResultCache = null;
+        }
+    }
+
+    /**
+     * Enables the cache of the queries compiled from event filters, keyed on the canonical form of the filters.
+     *
+     * @param maxQueries The maximum number of cached queries, or zero to disable.
+     */
+    public void setQueryPlanCacheSize(int maxQueries) {
+        if (maxQueries > 0) {
+            this.queryPlanCache = new LuceneQueryPlanCache(maxQueries);
+            logger.info("Query plan cache for {} set to {} queries", name, maxQueries);
+        } else {
+            this.queryPlanCache = null;
+        }
+    }
+
+    /**
+     * Sets the number of event keys (24 bytes each) a saved search holds in memory. The keys of saved searches
+     * matching more events are written to a temporary file.
+     *
+     * @param maxKeys The maximum number of keys held in memory by a saved search.
+     */
+    public void setSavedSearchMaxKeysInMemory(int maxKeys) {
+        this.savedSearchMaxKeysInMemory = Math.max(maxKeys, 0);
+    }
+
+    /**
+     * A change to the tag severity rollup.
+     */
+    private interface RollupChange {
+        void apply(TagSeverityRollup rollup);
+    }
+
+    /**
+     * Queues a change to the rollup matching a change staged in the index writer. Changes are only applied to
+     * the rollup once the writer has committed them, so the rollup never counts events a failed commit left out
+     * of the index.
+     */
+    private void stageRollupChange(RollupChange change) {
+        if (this.tagSeverityRollup != null) {
+            this.pendingRollupChanges.add(change);
+        }
+    }
+
+    /**
+     * Applies the oldest queued rollup changes after a successful commit.
+     *
+     * @param count The number of changes queued before the commit started.
+     */
+    private void applyRollupChanges(int count) {
+        final TagSeverityRollup rollup = this.tagSeverityRollup;
+        for (int i = 0; i < count; i++) {
+            final RollupChange change = this.pendingRollupChanges.poll();
+            if (change == null) {
+                break;
+            }
+            if (rollup != null) {
+                change.apply(rollup);
+            }
+        }
+    }
+
+    @Override
+    protected TagSeverityRollup getTagSeverityRollup() {
+        return this.tagSeverityRollup;
+    }
+
+    private void rebuildTagSeverityRollup() {
+        final TagSeverityRollup rollup = this.tagSeverityRollup;
+        if (rollup == null) {
+            return;
+        }
+        try {
+            rollup.rebuild(new TagSeverityRollup.Loader() {
+                @Override
+                public void load(TagSeverityRollup target) throws ZepException {
+                    loadTagSeverityRollup(target);
+                }
+            });
+            logger.info("Built tag severity rollup for {}", name);
+        } catch (ZepException e) {
+            logger.warn("Failed to build tag severity rollup for " + name + ", tag severities will be searched", e);
+        }
+    }
+
+    private void loadTagSeverityRollup(TagSeverityRollup rollup) throws ZepException {
+        IndexSearcher searcher = null;
+        try {
+            // Updates are blocked while the rollup is rebuilt, make all earlier changes visible
+            this.indexLock.readLock().lock();
+            try {
+                this.searcherManager.maybeRefreshBlocking();
+                searcher = this.searcherManager.acquire();
+            } finally {
+                this.indexLock.readLock().unlock();
+            }
+            loadTagSeverityRollup(searcher.getIndexReader(), rollup);
+        } catch (IOException e) {
+            throw new ZepException(e);
+        } finally {
+            returnSearcher(searcher);
+        }
+    }
+
+    /**
+     * Passes every event in the index to the rollup, reading only the doc values of the events.
+     */
+    static void loadTagSeverityRollup(IndexReader indexReader, TagSeverityRollup rollup)
+            throws IOException, ZepException {
+        final List<String> tags = new ArrayList<String>();
+        final BytesRef term = new BytesRef();
+        for (AtomicReaderContext context : indexReader.leaves()) {
+            final AtomicReader reader = context.reader();
+            if (reader.numDocs() == 0) {
+                continue;
+            }
+            final SortedDocValues uuids = reader.getSortedDocValues(FIELD_UUID);
+            final SortedSetDocValues tagValues = reader.getSortedSetDocValues(FIELD_TAGS);
+            final NumericDocValues severities = reader.getNumericDocValues(FIELD_SEVERITY);
+            final NumericDocValues statuses = reader.getNumericDocValues(FIELD_STATUS);
+            final NumericDocValues counts = reader.getNumericDocValues(FIELD_COUNT);
+            final NumericDocValues lastSeenTimes = reader.getNumericDocValues(FIELD_LAST_SEEN_TIME);
+            if (uuids == null || severities == null || statuses == null || counts == null ||
+                    lastSeenTimes == null) {
+                throw new ZepException("Index was written without doc values");
+            }
+            final Bits liveDocs = reader.getLiveDocs();
+            for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                if (liveDocs != null && !liveDocs.get(doc)) {
+                    continue;
+                }
+                tags.clear();
+                if (tagValues != null) {
+                    tagValues.setDocument(doc);
+                    long ord;
+                    while ((ord = tagValues.nextOrd()) != SortedSetDocValues.NO_MORE_ORDS) {
+                        tagValues.lookupOrd(ord, term);
+                        tags.add(term.utf8ToString());
+                    }
+                }
+                uuids.get(doc, term);
+                rollup.update(term.utf8ToString(), tags, (int) severities.get(doc), (int) statuses.get(doc),
+                        (int) counts.get(doc), lastSeenTimes.get(doc));
+            }
+        }
+    }
+
     @Override
     public void index(EventSummary event) throws ZepException {
-        Document doc = LuceneEventIndexMapper.fromEventSummary(
-                event,
-                indexedDetailsConfiguration.getEventDetailItemsByName(),
-                this.archive);
-        try {
-            this.trackingIndexWriter.updateDocument(
-                    new Term(FIELD_UUID, event.getUuid()),
-                    doc);
+        final Map<String, EventDetailItem> detailItems = indexedDetailsConfiguration.getEventDetailItemsByName();
+        this.indexLock.readLock().lock();
+        try {
+            final Analyzer liveAnalyzer = this.liveAnalyzer;
+            Document doc = LuceneEventIndexMapper.fromEventSummary(event, detailItems, this.archive,
+                    this.liveNGramConfig);
+            final Term term = new Term(FIELD_UUID, event.getUuid());
+            if (liveAnalyzer == null) {
+                if (this.partitions != null) {
+                    this.partitions.updateDocument(term, event.getLastSeenTime(), doc);
+                } else {
+                    this.trackingIndexWriter.updateDocument(term, doc);
+                }
+            } else {
+                if (this.partitions != null) {
+                    this.partitions.updateDocument(term, event.getLastSeenTime(), doc, liveAnalyzer);
+                } else {
+                    this.trackingIndexWriter.updateDocument(term, doc, liveAnalyzer);
+                }
+                // Shadow indexes are built with the configured n-gram indexing
+                if (hasShadowIndex()) {
+                    doc = LuceneEventIndexMapper.fromEventSummary(event, detailItems, this.archive, this.nGramConfig);
+                }
+            }
+            updateShadowDocument(term, event.getLastSeenTime(), doc);
+            stageRollupChange(rollup -> rollup.update(event));
+            touchBulkLoads(event.getUuid());
         } catch (IOException e) {
             throw new ZepException(e);
         } catch (OutOfMemoryError e) {
             logger.error("OutOfMemoryException thrown while indexing event - {} : {}", event.getUuid(), e);
             closeSearcherManager();
             throw e;
+        } finally {
+            this.indexLock.readLock().unlock();
+        }
+    }
+
+    private void touchBulkLoads(String uuid) {
+        for (LuceneBulkLoad bulkLoad : this.bulkLoads) {
+            bulkLoad.touched.add(uuid);
+        }
+    }
+
+    private void updateShadowDocument(Term term, long lastSeen, Document doc) throws IOException {
+        final LuceneIndexPartitions shadowPartitions = this.shadowPartitions;
+        if (shadowPartitions != null) {
+            shadowPartitions.updateDocument(term, lastSeen, doc);
+        }
+        final IndexWriter shadowWriter = this.shadowWriter;
+        if (shadowWriter != null) {
+            shadowWriter.updateDocument(term, doc);
         }
     }
 
@@ -301,10 +770,18 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
 
     @Override
     public void delete(String eventUuid) throws ZepException {
+        this.indexLock.readLock().lock();
         try {
-            this.trackingIndexWriter.deleteDocuments(new Term(FIELD_UUID, eventUuid));
+            deleteDocuments(new Term(FIELD_UUID, eventUuid));
+            stageRollupChange(rollup -> rollup.delete(eventUuid));
+            touchBulkLoads(eventUuid);
+            if (this.eventSummaryCache != null) {
+                this.eventSummaryCache.invalidate(eventUuid);
+            }
         } catch (IOException e) {
             throw new ZepException(e);
+        } finally {
+            this.indexLock.readLock().unlock();
         }
         logger.debug("Deleted eventUuid: {}", eventUuid);
     }
@@ -312,6 +789,7 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
     @Override
     public void delete(Collection<String> eventUuids) throws ZepException {
         if (eventUuids.isEmpty()) return;
+        this.indexLock.readLock().lock();
         try {
             Term[] terms = new Term[eventUuids.size()];
             int i = 0;
@@ -319,36 +797,96 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
                 terms[i] = new Term(FIELD_UUID, uuid);
                 i++;
             }
-            this.trackingIndexWriter.deleteDocuments(terms);
+            deleteDocuments(terms);
+            stageRollupChange(rollup -> rollup.delete(eventUuids));
+            for (String uuid : eventUuids) {
+                touchBulkLoads(uuid);
+            }
+            if (this.eventSummaryCache != null) {
+                this.eventSummaryCache.invalidateAll(eventUuids);
+            }
         } catch (IOException e) {
             throw new ZepException(e);
         } catch (OutOfMemoryError e) {
             logger.error("OutOfMemoryException thrown while deleting eventUuids : {} - {}", eventUuids, e);
             closeSearcherManager();
             throw e;
+        } finally {
+            this.indexLock.readLock().unlock();
         }
         logger.debug("Deleted eventUuids: {}", eventUuids);
     }
 
+    private void deleteDocuments(Term... terms) throws IOException {
+        if (this.partitions != null) {
+            this.partitions.deleteDocuments(terms);
+        } else {
+            this.trackingIndexWriter.deleteDocuments(terms);
+        }
+        final LuceneIndexPartitions shadowPartitions = this.shadowPartitions;
+        if (shadowPartitions != null) {
+            shadowPartitions.deleteDocuments(terms);
+        }
+        final IndexWriter shadowWriter = this.shadowWriter;
+        if (shadowWriter != null) {
+            shadowWriter.deleteDocuments(terms);
+        }
+    }
+
     @Override
     public void flush() throws ZepException {
+        this.indexLock.readLock().lock();
         try {
-            this.writer.commit();
+            // Changes are staged in the writer before they are queued, so these are all part of the commit
+            final int rollupChanges = this.pendingRollupChanges.size();
+            if (this.partitions != null) {
+                this.partitions.commit();
+                applyRollupChanges(rollupChanges);
+                // Partitions have no reopen thread to wait for, reopen the searchers here
+                this.searcherManager.maybeRefreshBlocking();
+            } else {
+                this.writer.commit();
+                applyRollupChanges(rollupChanges);
+                // Commits are grouped by the indexer, so callers of flush() expect the changes to be searchable.
+                final ControlledRealTimeReopenThread<IndexSearcher> reopenThread = this.nrtManagerReopenThread;
+                if (reopenThread != null && reopenThread.isAlive()) {
+                    reopenThread.waitForGeneration(this.trackingIndexWriter.getGeneration());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ZepException(e);
         } catch (IOException e) {
             throw new ZepException(e);
         } catch (OutOfMemoryError e) {
             logger.error("OutOfMemoryException thrown while commiting event changes: {} ",e);
             closeSearcherManager();
             throw e;
+        } finally {
+            this.indexLock.readLock().unlock();
         }
         logger.debug("Flushed");
     }
 
     private IndexSearcher getSearcher() throws IOException {
-        if (this.readerReopenInterval == 0) {
-            this.searcherManager.maybeRefresh();
+        final ReferenceManager<IndexSearcher> manager = this.searcherManager;
+        // While a shadow index is swapped in the last searcher of the replaced index is used without refreshing
+        if (this.readerReopenInterval == 0 && !this.swapping) {
+            try {
+                manager.maybeRefresh();
+            } catch (AlreadyClosedException e) {
+                // The writer was closed by a swap started after checking
+            }
+        }
+        try {
+            return manager.acquire();
+        } catch (AlreadyClosedException e) {
+            if (manager == this.searcherManager) {
+                throw e;
+            }
+            // The searchers of the replaced index were closed once the shadow index was swapped in
+            return this.searcherManager.acquire();
         }
-        return this.searcherManager.acquire();
     }
 
     private void returnSearcher(IndexSearcher searcher) throws ZepException {
@@ -375,15 +913,93 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
         return listInternal(request, UUID_FIELDS);
     }
 
-    private EventSummaryResult listInternal(EventSummaryRequest request, Set<String> fieldsToLoad) throws ZepException {
+    @Override
+    public EventSummaryPage listAfter(EventSummaryRequest request, String cursor) throws ZepException {
+        return listAfterInternal(request, cursor, PROTO_FIELDS);
+    }
+
+    @Override
+    public EventSummaryPage listUuidsAfter(EventSummaryRequest request, String cursor) throws ZepException {
+        return listAfterInternal(request, cursor, UUID_FIELDS);
+    }
+
+    private EventSummaryPage listAfterInternal(EventSummaryRequest request, String cursor, Set<String> fieldsToLoad)
+            throws ZepException {
+        IndexSearcher searcher = null;
+        long now = System.currentTimeMillis();
+        Query query = null;
+        try {
+            searcher = getSearcher();
+            query = buildQuery(searcher.getIndexReader(), request.getEventFilter(), request.getExclusionFilter());
+            Sort sort = LuceneSearchCursor.withTieBreaker(buildSort(request.getSortList()));
+            FieldDoc after = null;
+            if (!EventSummaryPage.isFirstPage(cursor)) {
+                try {
+                    after = LuceneSearchCursor.decode(sort, cursor);
+                } catch (IllegalArgumentException e) {
+                    throw new ZepException(messages.getMessage("invalid_cursor", cursor), e);
+                }
+            }
+            return searchAfterToEventSummaryPage(searcher, query, sort, fieldsToLoad, after, request.getLimit());
+        } catch (IOException e) {
+            throw new ZepException(e.getLocalizedMessage(), e);
+        } catch (OutOfMemoryError e) {
+            logger.error("OutOfMemoryException thrown while performing listAfterInternal search : {}", e);
+            closeSearcherManager();
+            throw e;
+        } finally {
+            returnSearcher(searcher);
+            if (query != null) {
+                logger.debug("Query {} finished in {} milliseconds", query, System.currentTimeMillis() - now);
+            }
+        }
+    }
+
+    private EventSummaryResult listInternal(final EventSummaryRequest request, final Set<String> fieldsToLoad)
+            throws ZepException {
         IndexSearcher searcher = null;
         long now = System.currentTimeMillis();
         Query query = null;
         try {
             searcher = getSearcher();
             query = buildQuery(searcher.getIndexReader(), request.getEventFilter(), request.getExclusionFilter());
-            Sort sort = buildSort(request.getSortList());
-            return searchToEventSummaryResult(searcher, query, sort, fieldsToLoad, request.getOffset(), request.getLimit());
+            final Sort sort = buildSort(request.getSortList());
+            final IndexReader reader = searcher.getIndexReader();
+            if (this.listResultCache == null || !(reader instanceof DirectoryReader)) {
+                return searchToEventSummaryResult(searcher, query, sort, fieldsToLoad, request.getOffset(),
+                        request.getLimit());
+            }
+            final IndexSearcher cacheSearcher = searcher;
+            final Query cacheQuery = query;
+            return this.listResultCache.get(((DirectoryReader) reader).getVersion(), request, fieldsToLoad,
+                    new LuceneListResultCache.Loader() {
+                        private boolean partial = false;
+
+                        @Override
+                        public EventSummaryResult load() throws ZepException {
+                            // Searched under a deadline of its own to tell whether this search timed out, even when
+                            // the request has no deadline or an earlier search of the request already timed out
+                            final SearchDeadline requestDeadline = SearchDeadline.current();
+                            final long timeoutMillis = (requestDeadline != null && requestDeadline.isLimited())
+                                    ? Math.max(requestDeadline.getRemainingMillis(), 1L) : 0L;
+                            try (SearchDeadline deadline = SearchDeadline.start(timeoutMillis)) {
+                                final EventSummaryResult result = searchToEventSummaryResult(cacheSearcher,
+                                        cacheQuery, sort, fieldsToLoad, request.getOffset(), request.getLimit());
+                                this.partial = deadline.isTimedOut();
+                                if (this.partial && requestDeadline != null) {
+                                    requestDeadline.markTimedOut();
+                                }
+                                return result;
+                            } catch (IOException e) {
+                                throw new ZepException(e.getLocalizedMessage(), e);
+                            }
+                        }
+
+                        @Override
+                        public boolean isPartial() {
+                            return this.partial;
+                        }
+                    });
         } catch (IOException e) {
             throw new ZepException(e.getLocalizedMessage(), e);
         } catch (OutOfMemoryError e) {
@@ -398,40 +1014,91 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
         }
     }
 
-    private TopDocs timeLimitedSearch(final IndexSearcher searcher, final Query query,
-                                         final Sort sort, final int offset, final int limit, final int numDocs)
+    /**
+     * Searches for the top documents, collecting matches only until the configured search timeout or the
+     * {@link SearchDeadline} of the request has passed. The time limit is checked cooperatively by the collector
+     * against Lucene's shared timer thread, so the search runs on the calling thread and is never interrupted.
+     * A search which runs out of time returns the best matches collected so far and marks the deadline of the
+     * request as timed out.
+     */
+    private TopDocs timeLimitedSearch(final IndexSearcher searcher, final Query query, final Sort sort,
+                                      final FieldDoc after, final int offset, final int limit, final int numDocs)
         throws ZepException {
 
-        TopDocs docs;
+        if (after != null) {
+            logger.debug("Query: {}, Sort: {}, After: {}, Limit: {}", query, sort, after, limit);
+        } else if (sort != null) {
+            logger.debug("Query: {}, Sort: {}, Offset: {}, Limit: {}", query, sort, offset, limit);
+        } else {
+            logger.debug("Query: {}, Offset: {}, Limit: {}", query, offset, limit);
+        }
+
+        final SearchDeadline deadline = SearchDeadline.current();
+        long timeoutMillis = (this.luceneSearchTimeout > 0) ? TimeUnit.SECONDS.toMillis(this.luceneSearchTimeout)
+                : Long.MAX_VALUE;
+        if (deadline != null && deadline.isLimited()) {
+            // At least one tick so an expired deadline still returns what is found immediately
+            timeoutMillis = Math.min(timeoutMillis, Math.max(deadline.getRemainingMillis(), 1L));
+        }
+
+        try {
+            if (timeoutMillis == Long.MAX_VALUE) {
+                if (after != null) {
+                    return searcher.searchAfter(after, query, null, numDocs, sort);
+                }
+                return (sort != null) ? searcher.search(query, null, numDocs, sort) : searcher.search(query, null, numDocs);
+            }
 
-        Callable search_call = new Callable<TopDocs>() {
-            public TopDocs call() throws Exception {
-                TopDocs tdocs;
+            // Same bounds and collectors as IndexSearcher uses for a top documents search. With a search executor
+            // each segment is collected separately and the segment results are merged, as IndexSearcher does.
+            final int numHits = Math.min(numDocs, Math.max(1, searcher.getIndexReader().maxDoc()));
+            final int numSegments = searcher.getIndexReader().leaves().size();
+            final boolean parallel = this.searchExecutor != null && numSegments > 1;
+            final int numCollectors = parallel ? numSegments : 1;
+            final long baseline = TimeLimitingCollector.getGlobalCounter().get();
+            final List<TopDocsCollector<?>> topDocsCollectors = new ArrayList<TopDocsCollector<?>>(numCollectors);
+            final List<TimeLimitingCollector> collectors = new ArrayList<TimeLimitingCollector>(numCollectors);
+            for (int i = 0; i < numCollectors; i++) {
+                final TopDocsCollector<?> topDocsCollector;
                 if (sort != null) {
-                    logger.debug("Query: {}, Sort: {}, Offset: {}, Limit: {}", query, sort, offset, limit);
-                    tdocs = searcher.search(query, null, numDocs, sort);
+                    topDocsCollector = TopFieldCollector.create(sort, numHits, after, true, false, false, false);
                 } else {
-                    logger.debug("Query: {}, Offset: {}, Limit: {}", query, offset, limit);
-                    tdocs = searcher.search(query, null, numDocs);
+                    topDocsCollector = TopScoreDocCollector.create(numHits, after, false);
                 }
-                return tdocs;
+                final TimeLimitingCollector collector = new TimeLimitingCollector(topDocsCollector,
+                        TimeLimitingCollector.getGlobalCounter(), timeoutMillis);
+                // All segments share the same time budget
+                collector.setBaseline(baseline);
+                topDocsCollectors.add(topDocsCollector);
+                collectors.add(collector);
             }
-        };
 
-        try {
-            if (this.luceneSearchTimeout > 0) {
-                docs = (TopDocs)this.timeLimiter.callWithTimeout(search_call, this.luceneSearchTimeout, TimeUnit.SECONDS);
+            boolean complete = true;
+            if (parallel) {
+                complete = LuceneSegmentSearcher.search(searcher, query, this.searchExecutor, collectors);
+            } else {
+                try {
+                    searcher.search(query, collectors.get(0));
+                } catch (TimeLimitingCollector.TimeExceededException e) {
+                    complete = false;
+                }
             }
-            else
-                docs = (TopDocs)search_call.call();
-        }
-        catch (UncheckedTimeoutException e) {
-            String msg = "Lucene search exceeded time limit ( " + this.luceneSearchTimeout + " seconds.)";
-            if (sort != null)
-                logger.warn(msg + "Query: {}, Sort: {}, Offset: {}, Limit: {}", query, sort, offset, limit);
-            else
-                logger.warn(msg + "Query: {}, Offset: {}, Limit: {}", query, offset, limit);
-            throw new ZepException(msg + e.getLocalizedMessage(), e);
+            if (!complete) {
+                if (deadline != null) {
+                    deadline.markTimedOut();
+                }
+                this.searchTimeouts.incrementAndGet();
+                logger.warn("Lucene search exceeded time limit ({} ms), returning partial results. Query: {}, " +
+                        "Sort: {}, Offset: {}, Limit: {}", timeoutMillis, query, sort, offset, limit);
+            }
+            if (!parallel) {
+                return topDocsCollectors.get(0).topDocs();
+            }
+            final TopDocs[] segmentDocs = new TopDocs[numCollectors];
+            for (int i = 0; i < numCollectors; i++) {
+                segmentDocs[i] = topDocsCollectors.get(i).topDocs();
+            }
+            return TopDocs.merge(sort, numHits, segmentDocs);
         }
         catch (OutOfMemoryError oome) {
             logger.error("OutOfMemoryException thrown while performing time limited search : {}", oome);
@@ -441,8 +1108,6 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
             logger.error("Exception performing timed search: ", e);
             throw new ZepException(e.getLocalizedMessage(), e);
         }
-
-        return docs;
     }
 
     private EventSummaryResult searchToEventSummaryResult(IndexSearcher searcher, Query query, Sort sort,
@@ -461,7 +1126,7 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
         // Lucene doesn't like querying for 0 documents - search for at least one here
         final int numDocs = Math.max(limit + offset, 1);
 
-        final TopDocs docs = this.timeLimitedSearch(searcher, query, sort, offset, limit, numDocs);
+        final TopDocs docs = this.timeLimitedSearch(searcher, query, sort, null, offset, limit, numDocs);
 
         this.indexResultsCount = docs.totalHits;
         logger.debug("Found {} results", docs.totalHits);
@@ -475,45 +1140,129 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
         // Return the number of results they asked for (the query has to return at least one match
         // but the request may specified a limit of zero).
         final int lastDocument = Math.min(limit + offset, docs.scoreDocs.length);
+        addEvents(result, searcher, docs.scoreDocs, offset, lastDocument, fieldsToLoad);
+        return result.build();
+    }
+
+    /**
+     * Searches for the page of documents following the cursor position. Only the documents of the page are
+     * collected, so the cost of a page doesn't depend on how deep it is in the result.
+     */
+    private EventSummaryPage searchAfterToEventSummaryPage(IndexSearcher searcher, Query query, Sort sort,
+                                                           Set<String> fieldsToLoad, FieldDoc after, int limit)
+            throws IOException, ZepException {
+        if (limit < 0) {
+            throw new ZepException(messages.getMessage("invalid_query_limit", limit));
+        }
+        if (limit > queryLimit) {
+            limit = queryLimit;
+        }
+
+        // Search for one more document than requested to find out if there is another page
+        final TopDocs docs = this.timeLimitedSearch(searcher, query, sort, after, 0, limit, limit + 1);
+
+        this.indexResultsCount = docs.totalHits;
+        logger.debug("Found {} results", docs.totalHits);
+        EventSummaryResult.Builder result = EventSummaryResult.newBuilder();
+        result.setTotal(docs.totalHits);
+        result.setLimit(limit);
 
+        final int lastDocument = Math.min(limit, docs.scoreDocs.length);
+        addEvents(result, searcher, docs.scoreDocs, 0, lastDocument, fieldsToLoad);
+
+        String nextCursor = null;
+        if (docs.scoreDocs.length > limit) {
+            if (limit > 0) {
+                nextCursor = LuceneSearchCursor.encode(sort, (FieldDoc) docs.scoreDocs[limit - 1]);
+            } else {
+                // Nothing was returned - continue from the same position
+                nextCursor = (after != null) ? LuceneSearchCursor.encode(sort, after) : EventSummaryPage.FIRST_PAGE;
+            }
+        }
+        return new EventSummaryPage(result.build(), nextCursor);
+    }
+
+    private void addEvents(EventSummaryResult.Builder result, IndexSearcher searcher, ScoreDoc[] scoreDocs,
+                           int offset, int lastDocument, Set<String> fieldsToLoad)
+            throws IOException, ZepException {
         if (this.archive && !UUID_FIELDS.equals(fieldsToLoad)) {
             // Event archive only stores UUID & last_seen - have to query results from database
-            Map<String, EventSummary> sortedResults = Maps.newLinkedHashMap();
-            Set<EventSummary> toLookup = Sets.newHashSetWithExpectedSize(lastDocument);
+            List<EventSummary> keys = Lists.newArrayListWithCapacity(Math.max(lastDocument - offset, 0));
             Set<String> uuidAndLastSeen = Sets.newHashSet(FIELD_UUID, FIELD_LAST_SEEN_TIME);
             for (int i = offset; i < lastDocument; i++) {
-                Document doc = searcher.doc(docs.scoreDocs[i].doc, uuidAndLastSeen);
-                EventSummary event = LuceneEventIndexMapper.toEventSummary(doc);
-                sortedResults.put(event.getUuid(), null);
-                toLookup.add(event);
-            }
-
-            if (!toLookup.isEmpty()) {
-                final long beforeLookup = System.currentTimeMillis();
-                logger.debug("Looking up {} events by UUID", toLookup.size());
-                List<EventSummary> events = eventSummaryBaseDao.findByKey(toLookup);
-                if (events.size() != toLookup.size()) {
-                    logger.info("Event archive index out of sync - expected {} results, found {} results",
-                            toLookup.size(), events.size());
-                }
-                for (EventSummary event : events)
-                    sortedResults.put(event.getUuid(), event); // a re-insertion -- lucene sort is preserved.
-
-                for (EventSummary event : sortedResults.values())
-                    if (event != null)
-                        result.addEvents(event);
-                logger.debug("Query spent {} milliseconds to lookup {} events by UUID.",
-                        System.currentTimeMillis() - beforeLookup, toLookup.size());
-            } else {
-                logger.debug("Query did not have to lookup any events by UUID");
+                Document doc = searcher.doc(scoreDocs[i].doc, uuidAndLastSeen);
+                keys.add(LuceneEventIndexMapper.toEventSummary(doc));
+            }
+            addArchiveEvents(result, keys);
+        } else if (this.eventSummaryCache != null && PROTO_FIELDS.equals(fieldsToLoad)) {
+            final List<AtomicReaderContext> leaves = searcher.getIndexReader().leaves();
+            final BytesRef uuid = new BytesRef();
+            for (int i = offset; i < lastDocument; i++) {
+                result.addEvents(getCachedEventSummary(searcher, leaves, scoreDocs[i].doc, uuid));
             }
-
         } else {
             for (int i = offset; i < lastDocument; i++) {
-                result.addEvents(LuceneEventIndexMapper.toEventSummary(searcher.doc(docs.scoreDocs[i].doc, fieldsToLoad)));
+                result.addEvents(LuceneEventIndexMapper.toEventSummary(searcher.doc(scoreDocs[i].doc, fieldsToLoad)));
             }
         }
-        return result.build();
+    }
+
+    /**
+     * Adds the archived events with the keys (UUID and last seen time) to the result in the order of the keys,
+     * reading them from the database.
+     */
+    private void addArchiveEvents(EventSummaryResult.Builder result, List<EventSummary> keys) throws ZepException {
+        Map<String, EventSummary> sortedResults = Maps.newLinkedHashMap();
+        Set<EventSummary> toLookup = Sets.newHashSetWithExpectedSize(keys.size());
+        for (EventSummary key : keys) {
+            sortedResults.put(key.getUuid(), null);
+            toLookup.add(key);
+        }
+
+        if (!toLookup.isEmpty()) {
+            final long beforeLookup = System.currentTimeMillis();
+            logger.debug("Looking up {} events by UUID", toLookup.size());
+            List<EventSummary> events = eventSummaryBaseDao.findByKey(toLookup);
+            if (events.size() != toLookup.size()) {
+                logger.info("Event archive index out of sync - expected {} results, found {} results",
+                        toLookup.size(), events.size());
+            }
+            for (EventSummary event : events)
+                sortedResults.put(event.getUuid(), event); // a re-insertion -- lucene sort is preserved.
+
+            for (EventSummary event : sortedResults.values())
+                if (event != null)
+                    result.addEvents(event);
+            logger.debug("Query spent {} milliseconds to lookup {} events by UUID.",
+                    System.currentTimeMillis() - beforeLookup, toLookup.size());
+        } else {
+            logger.debug("Query did not have to lookup any events by UUID");
+        }
+    }
+
+    /**
+     * Returns the event for the document from the decoded event cache, decoding and caching its stored protobuf
+     * if the cache doesn't hold the indexed version. The cache is keyed by the UUID and update time doc values,
+     * so a cache hit doesn't read the stored fields.
+     */
+    private EventSummary getCachedEventSummary(IndexSearcher searcher, List<AtomicReaderContext> leaves, int doc,
+                                               BytesRef uuid) throws IOException, ZepException {
+        final AtomicReaderContext leaf = leaves.get(ReaderUtil.subIndex(doc, leaves));
+        final SortedDocValues uuids = leaf.reader().getSortedDocValues(FIELD_UUID);
+        final NumericDocValues updateTimes = leaf.reader().getNumericDocValues(FIELD_UPDATE_TIME);
+        if (uuids == null || updateTimes == null) {
+            // Segment written before the doc values were indexed
+            return LuceneEventIndexMapper.toEventSummary(searcher.doc(doc, PROTO_FIELDS));
+        }
+        final int segmentDoc = doc - leaf.docBase;
+        uuids.get(segmentDoc, uuid);
+        final long updateTime = updateTimes.get(segmentDoc);
+        EventSummary event = this.eventSummaryCache.get(uuid.utf8ToString(), updateTime);
+        if (event == null) {
+            event = LuceneEventIndexMapper.toEventSummary(searcher.doc(doc, PROTO_FIELDS));
+            this.eventSummaryCache.put(event);
+        }
+        return event;
     }
 
     @Override
@@ -557,7 +1306,27 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
             LuceneQueryBuilder query = new LuceneQueryBuilder(filterCacheManager,
                     searcher.getIndexReader(), this.indexedDetailsConfiguration);
             query.addRange(FIELD_LAST_SEEN_TIME, null, threshold.getTime());
-            this.trackingIndexWriter.deleteDocuments(query.build());
+            final Query purgeQuery = query.build();
+            this.indexLock.readLock().lock();
+            try {
+                if (this.partitions != null) {
+                    // Drops the partitions older than the threshold instead of deleting their documents
+                    this.partitions.purge(threshold.getTime(), purgeQuery);
+                } else {
+                    this.trackingIndexWriter.deleteDocuments(purgeQuery);
+                }
+                final LuceneIndexPartitions shadowPartitions = this.shadowPartitions;
+                if (shadowPartitions != null) {
+                    shadowPartitions.purge(threshold.getTime(), purgeQuery);
+                }
+                final IndexWriter shadowWriter = this.shadowWriter;
+                if (shadowWriter != null) {
+                    shadowWriter.deleteDocuments(purgeQuery);
+                }
+            } finally {
+                this.indexLock.readLock().unlock();
+            }
+            stageRollupChange(rollup -> rollup.purge(threshold.getTime()));
             flush();
         } catch (IOException e) {
             throw new ZepException(e);
@@ -573,8 +1342,31 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
     @Override
     public void clear() throws ZepException {
         logger.debug("Deleting all events for: {}", name);
+        this.indexLock.readLock().lock();
         try {
-            this.trackingIndexWriter.deleteAll();
+            if (this.partitions != null) {
+                this.partitions.deleteAll();
+            } else {
+                this.trackingIndexWriter.deleteAll();
+            }
+            final LuceneIndexPartitions shadowPartitions = this.shadowPartitions;
+            if (shadowPartitions != null) {
+                shadowPartitions.deleteAll();
+            }
+            final IndexWriter shadowWriter = this.shadowWriter;
+            if (shadowWriter != null) {
+                shadowWriter.deleteAll();
+            }
+            stageRollupChange(TagSeverityRollup::clear);
+            if (this.eventSummaryCache != null) {
+                this.eventSummaryCache.invalidateAll();
+            }
+            if (this.listResultCache != null) {
+                this.listResultCache.invalidateAll();
+            }
+            if (this.queryPlanCache != null) {
+                this.queryPlanCache.invalidateReaderDependent();
+            }
             flush();
         } catch (IOException e) {
             throw new ZepException(e);
@@ -582,7 +1374,278 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
             logger.error("OutOfMemoryException thrown while clearing events for {} : {} ",name, e);
             closeSearcherManager();
             throw e;
+        } finally {
+            this.indexLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean startShadowIndex() throws ZepException {
+        this.indexLock.writeLock().lock();
+        try {
+            discardShadow();
+            if (this.partitions != null) {
+                final LuceneIndexPartitions shadowPartitions = this.partitions.newShadow();
+                shadowPartitions.setCommitData(this.nGramConfig.toProperties());
+                this.shadowPartitions = shadowPartitions;
+            } else if (this.writer.getDirectory() instanceof FSDirectory) {
+                final File shadowDirectory = LuceneIndexDirectories.shadowOf(getDirectory());
+                LuceneIndexDirectories.delete(shadowDirectory);
+                final IndexWriter shadowWriter = new IndexWriter(new MMapDirectory(shadowDirectory),
+                        newIndexWriterConfig());
+                shadowWriter.setCommitData(this.nGramConfig.toProperties());
+                this.shadowWriter = shadowWriter;
+            } else {
+                logger.info("Index of {} isn't stored in a directory, it can't be rebuilt side by side", name);
+                // Rebuilt in place instead
+                setLiveNGramConfig(this.nGramConfig);
+                return false;
+            }
+            logger.info("Started shadow index of {}", name);
+            return true;
+        } catch (IOException e) {
+            throw new ZepException(e);
+        } finally {
+            this.indexLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean hasShadowIndex() {
+        return this.shadowPartitions != null || this.shadowWriter != null;
+    }
+
+    @Override
+    public BulkLoad startBulkLoad() throws ZepException {
+        if (hasShadowIndex()) {
+            // Events are indexed into the shadow index with another configuration
+            return null;
+        }
+        final Analyzer liveAnalyzer = this.liveAnalyzer;
+        final Analyzer analyzer = (liveAnalyzer != null) ? liveAnalyzer
+                : (this.partitions != null) ? this.partitions.getAnalyzer() : this.writer.getAnalyzer();
+        try {
+            final LuceneBulkLoad bulkLoad = new LuceneBulkLoad(analyzer, this.liveNGramConfig);
+            this.bulkLoads.add(bulkLoad);
+            return bulkLoad;
+        } catch (IOException e) {
+            throw new ZepException(e);
+        }
+    }
+
+    @Override
+    public void indexShadow(Collection<EventSummary> events) throws ZepException {
+        final Map<String, EventDetailItem> detailItems = indexedDetailsConfiguration.getEventDetailItemsByName();
+        this.indexLock.readLock().lock();
+        try {
+            if (!hasShadowIndex()) {
+                throw new ZepException("No shadow index of " + name);
+            }
+            for (EventSummary event : events) {
+                final Document doc = LuceneEventIndexMapper.fromEventSummary(event, detailItems, this.archive,
+                        this.nGramConfig);
+                updateShadowDocument(new Term(FIELD_UUID, event.getUuid()), event.getLastSeenTime(), doc);
+            }
+        } catch (IOException e) {
+            throw new ZepException(e);
+        } finally {
+            this.indexLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void swapShadowIndex() throws ZepException {
+        try {
+            if (this.partitions != null) {
+                swapShadowPartitions();
+            } else {
+                swapShadowWriter();
+            }
+        } catch (IOException e) {
+            throw new ZepException(e);
+        }
+        if (this.listResultCache != null) {
+            // Versions of the readers of the new index don't follow the versions of the replaced one
+            this.listResultCache.invalidateAll();
+        }
+        if (this.queryPlanCache != null) {
+            this.queryPlanCache.invalidateReaderDependent();
+        }
+        logger.info("Swapped in shadow index of {}", name);
+    }
+
+    private void swapShadowPartitions() throws IOException, ZepException {
+        final LuceneIndexPartitions shadow = this.shadowPartitions;
+        if (shadow == null) {
+            throw new ZepException("No shadow index of " + name);
+        }
+        // Commit outside of the lock, so updates only wait for the changes made since
+        shadow.commit();
+        this.indexLock.writeLock().lock();
+        this.swapping = true;
+        try {
+            this.shadowPartitions = null;
+            this.partitions.replaceWith(shadow);
+            setLiveNGramConfig(this.nGramConfig);
+        } finally {
+            this.swapping = false;
+            this.indexLock.writeLock().unlock();
+        }
+        this.searcherManager.maybeRefreshBlocking();
+    }
+
+    private void swapShadowWriter() throws IOException, ZepException {
+        final IndexWriter shadow = this.shadowWriter;
+        if (shadow == null) {
+            throw new ZepException("No shadow index of " + name);
+        }
+        // Commit outside of the lock, so updates only wait for the changes made since
+        shadow.commit();
+        final ReferenceManager<IndexSearcher> replaced = this.searcherManager;
+        this.indexLock.writeLock().lock();
+        this.swapping = true;
+        try {
+            this.shadowWriter = null;
+            final File directory = getDirectory();
+            final File shadowDirectory = ((FSDirectory) shadow.getDirectory()).getDirectory();
+            final IndexWriterConfig config = newIndexWriterConfig();
+            stopReopenThread();
+            shadow.close();
+            shadow.getDirectory().close();
+            // Searchers keep reading the replaced index until they are released
+            this.writer.close();
+            if (this.ownsWriter) {
+                this.writer.getDirectory().close();
+            }
+            try {
+                LuceneIndexDirectories.replace(directory, shadowDirectory);
+            } finally {
+                // Opens the shadow index, or the replaced index again if it couldn't be moved
+                this.writer = new IndexWriter(new MMapDirectory(directory), config);
+                this.ownsWriter = true;
+                this.trackingIndexWriter = new TrackingIndexWriter(this.writer);
+                this.searcherManager = new SearcherManager(this.writer, true, this.searcherFactory);
+                if (this.readerReopenInterval != 0) {
+                    startReopenThread();
+                }
+                // The index the shadow index was moved to or the index which couldn't be replaced
+                final NGramIndexConfig recorded = NGramIndexConfig.fromProperties(this.writer.getCommitData());
+                setLiveNGramConfig((recorded != null) ? recorded : this.liveNGramConfig);
+            }
+        } finally {
+            this.swapping = false;
+            this.indexLock.writeLock().unlock();
+        }
+        replaced.close();
+    }
+
+    @Override
+    public void startRebuildInPlace() {
+        this.indexLock.writeLock().lock();
+        try {
+            setLiveNGramConfig(this.nGramConfig);
+        } finally {
+            this.indexLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void discardShadowIndex() {
+        this.indexLock.writeLock().lock();
+        try {
+            discardShadow();
+        } finally {
+            this.indexLock.writeLock().unlock();
+        }
+    }
+
+    private void discardShadow() {
+        try {
+            final LuceneIndexPartitions shadowPartitions = this.shadowPartitions;
+            if (shadowPartitions != null) {
+                this.shadowPartitions = null;
+                shadowPartitions.discard();
+                logger.info("Discarded shadow index of {}", name);
+            }
+            final IndexWriter shadowWriter = this.shadowWriter;
+            if (shadowWriter != null) {
+                this.shadowWriter = null;
+                final Directory directory = shadowWriter.getDirectory();
+                shadowWriter.rollback();
+                directory.close();
+                LuceneIndexDirectories.delete(((FSDirectory) directory).getDirectory());
+                logger.info("Discarded shadow index of {}", name);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to delete shadow index of " + name, e);
+        }
+    }
+
+    @Override
+    public long snapshot(File directory) throws ZepException {
+        final File copy = LuceneIndexDirectories.shadowOf(directory);
+        final long maxUpdateTime;
+        // Keeps the index from being swapped while it is copied
+        this.indexLock.readLock().lock();
+        try {
+            LuceneIndexDirectories.delete(copy);
+            if (!copy.mkdirs()) {
+                throw new IOException("Unable to create snapshot directory: " + copy.getAbsolutePath());
+            }
+            if (this.partitions != null) {
+                maxUpdateTime = this.partitions.snapshot(copy);
+            } else {
+                maxUpdateTime = LuceneIndexDirectories.copyCommit(this.writer, copy);
+            }
+            LuceneIndexDirectories.replace(directory, copy);
+        } catch (IOException e) {
+            throw new ZepException(e);
+        } finally {
+            this.indexLock.readLock().unlock();
+        }
+        logger.info("Took snapshot of {} in {} with events updated through {}", name, directory,
+                new Date(maxUpdateTime));
+        return maxUpdateTime;
+    }
+
+    @Override
+    public void restoreSnapshot(File directory) throws ZepException {
+        if (!directory.isDirectory()) {
+            throw new ZepException("No snapshot of " + name + " in " + directory.getAbsolutePath());
         }
+        this.indexLock.readLock().lock();
+        try {
+            if (this.partitions != null) {
+                this.partitions.restoreSnapshot(directory);
+            } else {
+                final Directory snapshot = FSDirectory.open(directory);
+                try {
+                    this.trackingIndexWriter.deleteAll();
+                    this.trackingIndexWriter.addIndexes(snapshot);
+                } finally {
+                    snapshot.close();
+                }
+            }
+            // Snapshots are only restored if they were taken of an index built with the current configuration
+            setLiveNGramConfig(this.nGramConfig);
+            flush();
+        } catch (IOException e) {
+            throw new ZepException(e);
+        } finally {
+            this.indexLock.readLock().unlock();
+        }
+        // The restored events were never passed to the rollup
+        rebuildTagSeverityRollup();
+        logger.info("Restored {} from snapshot in {}", name, directory);
+    }
+
+    private File getDirectory() {
+        return ((FSDirectory) this.writer.getDirectory()).getDirectory();
+    }
+
+    // Writers of shadow indexes and swapped in indexes are configured like the writer of the live index
+    private IndexWriterConfig newIndexWriterConfig() {
+        return LuceneEventIndexMapper.createIndexWriterConfig(this.writer.getAnalyzer(), this.zepInstance);
     }
 
     private Sort buildSort(List<EventSort> sortList) throws ZepException {
@@ -596,32 +1659,29 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
         return new Sort(fields.toArray(new SortField[fields.size()]));
     }
 
+    /**
+     * Every sort field is written with doc values by {@link LuceneEventIndexMapper}, which the comparators read
+     * directly instead of un-inverting the indexed terms of each new segment into the field cache.
+     */
     private List<SortField> createSortField(EventSort sort) throws ZepException {
         final List<SortField> sortFields = new ArrayList<SortField>(2);
         boolean reverse = (sort.getDirection() == Direction.DESCENDING);
 
-        FieldComparatorSource termOrdValcomparator = new FieldComparatorSource() {
-            @Override
-            public FieldComparator<?> newComparator(String fieldname, int numHits, int sortPos, boolean reversed) throws IOException {
-                return new FieldComparator.TermOrdValComparator(numHits, fieldname);
-            }
-        };
-
         switch (sort.getField()) {
             case COUNT:
                 sortFields.add(new SortField(FIELD_COUNT, SortField.Type.LONG, reverse));
                 break;
             case ELEMENT_IDENTIFIER:
-                sortFields.add(new SortField(FIELD_ELEMENT_IDENTIFIER_NOT_ANALYZED, termOrdValcomparator, reverse));
+                sortFields.add(new SortField(FIELD_ELEMENT_IDENTIFIER_NOT_ANALYZED, SortField.Type.STRING, reverse));
                 break;
             case ELEMENT_SUB_IDENTIFIER:
-                sortFields.add(new SortField(FIELD_ELEMENT_SUB_IDENTIFIER_NOT_ANALYZED, termOrdValcomparator, reverse));
+                sortFields.add(new SortField(FIELD_ELEMENT_SUB_IDENTIFIER_NOT_ANALYZED, SortField.Type.STRING, reverse));
                 break;
             case ELEMENT_TITLE:
-                sortFields.add(new SortField(FIELD_ELEMENT_TITLE_NOT_ANALYZED, termOrdValcomparator, reverse));
+                sortFields.add(new SortField(FIELD_ELEMENT_TITLE_NOT_ANALYZED, SortField.Type.STRING, reverse));
                 break;
             case ELEMENT_SUB_TITLE:
-                sortFields.add(new SortField(FIELD_ELEMENT_SUB_TITLE_NOT_ANALYZED, termOrdValcomparator, reverse));
+                sortFields.add(new SortField(FIELD_ELEMENT_SUB_TITLE_NOT_ANALYZED, SortField.Type.STRING, reverse));
                 break;
             case EVENT_CLASS:
                 sortFields.add(new SortField(FIELD_EVENT_CLASS_NOT_ANALYZED, SortField.Type.STRING, reverse));
@@ -712,9 +1772,43 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
         return sortFields;
     }
 
-    private Query buildQuery(IndexReader reader, EventFilter filter, EventFilter exclusionFilter) throws ZepException {
-        final BooleanQuery filterQuery = buildQueryFromFilter(reader, filter);
-        final BooleanQuery exclusionQuery = buildQueryFromFilter(reader, exclusionFilter);
+    private Query buildQuery(final IndexReader reader, EventFilter filter, EventFilter exclusionFilter)
+            throws ZepException {
+        final EventFilter canonicalFilter = EventFilterNormalizer.normalize(filter);
+        final EventFilter canonicalExclusionFilter = EventFilterNormalizer.normalize(exclusionFilter);
+        final LuceneQueryPlanCache planCache = this.queryPlanCache;
+        // The live index is searched for the n-grams it was built with, not those of a shadow index
+        final NGramIndexConfig nGramConfig = this.liveNGramConfig;
+        final Query query;
+        if (planCache == null) {
+            query = compileQuery(reader, nGramConfig, canonicalFilter, canonicalExclusionFilter).getQuery();
+        } else {
+            final long readerVersion = (reader instanceof DirectoryReader) ?
+                    ((DirectoryReader) reader).getVersion() : -1L;
+            // Queries of detail and identifier filters are built for the indexed details and n-grams they were
+            // compiled with
+            final Object config = Arrays.asList((this.indexedDetailsConfiguration == null) ? null :
+                    this.indexedDetailsConfiguration.getEventDetailItemsByName(), nGramConfig);
+            query = planCache.get(readerVersion, config, canonicalFilter, canonicalExclusionFilter,
+                    new LuceneQueryPlanCache.Compiler() {
+                        @Override
+                        public LuceneQueryPlanCache.Plan compile() throws ZepException {
+                            return compileQuery(reader, nGramConfig, canonicalFilter, canonicalExclusionFilter);
+                        }
+                    });
+        }
+        logger.debug("Filter: {}, Exclusion filter: {}, Query: {}", filter, exclusionFilter, query);
+        // Partitions change over time, the restriction isn't cached
+        return restrictToPartitions(query, canonicalFilter);
+    }
+
+    private LuceneQueryPlanCache.Plan compileQuery(IndexReader reader, NGramIndexConfig nGramConfig,
+                                                   EventFilter filter, EventFilter exclusionFilter)
+            throws ZepException {
+        final LuceneQueryBuilder filterBuilder = newQueryBuilder(reader, nGramConfig, filter);
+        final LuceneQueryBuilder exclusionBuilder = newQueryBuilder(reader, nGramConfig, exclusionFilter);
+        final BooleanQuery filterQuery = (filterBuilder == null) ? null : filterBuilder.build();
+        final BooleanQuery exclusionQuery = (exclusionBuilder == null) ? null : exclusionBuilder.build();
         final Query query;
 
         if (filterQuery == null && exclusionQuery == null) {
@@ -730,18 +1824,34 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
             bq.add(new MatchAllDocsQuery(), Occur.MUST);
             query = bq;
         }
-        logger.debug("Filter: {}, Exclusion filter: {}, Query: {}", filter, exclusionFilter, query);
-        return query;
+        final boolean readerDependent = (filterBuilder != null && filterBuilder.isReaderDependent()) ||
+                (exclusionBuilder != null && exclusionBuilder.isReaderDependent());
+        return new LuceneQueryPlanCache.Plan(query, readerDependent);
     }
 
-    private BooleanQuery buildQueryFromFilter(IndexReader reader, EventFilter filter) throws ZepException {
+    /**
+     * Skips the partitions of a partitioned index which can't hold events in the last seen range of the filter.
+     * Only the last seen ranges of a filter which requires all of its criteria to match restrict the search; the
+     * event must match one of the ranges.
+     */
+    private Query restrictToPartitions(Query query, EventFilter filter) {
+        if (this.partitions == null || filter == null || filter.getLastSeenCount() == 0 ||
+                filter.getOperator() == FilterOperator.OR) {
+            return query;
+        }
+        final Filter partitionFilter = this.partitions.newLastSeenFilter(filter.getLastSeenList());
+        return (partitionFilter == null) ? query : new FilteredQuery(query, partitionFilter);
+    }
+
+    private LuceneQueryBuilder newQueryBuilder(IndexReader reader, NGramIndexConfig nGramConfig, EventFilter filter)
+            throws ZepException {
         if (filter == null) {
             return null;
         }
         LuceneQueryBuilder qb = new LuceneQueryBuilder(filter.getOperator(), filterCacheManager,
-                reader, indexedDetailsConfiguration);
+                reader, indexedDetailsConfiguration, nGramConfig);
         qb.addFilter(filter);
-        return qb.build();
+        return qb;
     }
 
     protected void searchEventTagSeverities(EventFilter filter, EventTagSeverityCounter counter) throws ZepException {
@@ -749,30 +1859,31 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
         IndexSearcher searcher = null;
         try {
             searcher = getSearcher();
-            final Query query = buildQueryFromFilter(searcher.getIndexReader(), filter);
-            final OpenBitSet docs = new OpenBitSet(searcher.getIndexReader().maxDoc());
-            searcher.search(query, new Collector() {
-                private int docBase;
-
-                @Override
-                public void setScorer(Scorer scorer) throws IOException {
+            final Query query = buildQuery(searcher.getIndexReader(), filter, null);
+            final int maxDoc = searcher.getIndexReader().maxDoc();
+            final int numSegments = searcher.getIndexReader().leaves().size();
+            final OpenBitSet docs;
+            if (this.searchExecutor != null && numSegments > 1) {
+                // Count each segment concurrently
+                final EventTagSeverityCounter segmentCounter = synchronizedCounter(counter);
+                final List<LuceneTagSeverityCollector> collectors =
+                        new ArrayList<LuceneTagSeverityCollector>(numSegments);
+                for (int i = 0; i < numSegments; i++) {
+                    collectors.add(new LuceneTagSeverityCollector(segmentCounter, maxDoc));
                 }
-
-                @Override
-                public void collect(int doc) throws IOException {
-                    docs.set(docBase + doc);
-                }
-
-                @Override
-                public void setNextReader(AtomicReaderContext atomicReaderContext) throws IOException {
-                    this.docBase = atomicReaderContext.docBase;
+                LuceneSegmentSearcher.search(searcher, query, this.searchExecutor, collectors);
+                docs = new OpenBitSet(maxDoc);
+                for (LuceneTagSeverityCollector collector : collectors) {
+                    collector.finish();
+                    docs.union(collector.getUncountedDocs());
                 }
-
-                @Override
-                public boolean acceptsDocsOutOfOrder() {
-                    return true;
-                }
-            });
+            } else {
+                final LuceneTagSeverityCollector collector = new LuceneTagSeverityCollector(counter, maxDoc);
+                searcher.search(query, collector);
+                collector.finish();
+                docs = collector.getUncountedDocs();
+            }
+            // Events indexed before tags, severity, status and count were written as doc values
             int docId;
             final DocIdSetIterator it = docs.iterator();
             while ((docId = it.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
@@ -793,8 +1904,8 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
                         boolean acknowledged = EventStatus.STATUS_ACKNOWLEDGED.equals(EventStatus.valueOf(Integer.parseInt(doc.get(FIELD_STATUS))));
                         EventSeverity severity = EventSeverity.valueOf(Integer.parseInt(doc.get(FIELD_SEVERITY)));
 
-                        // get the map for each filter and update the count
-                        for (String tag : doc.getValues(FIELD_TAGS))
+                        // get the map for each filter and update the count, once per tag like the doc values
+                        for (String tag : new LinkedHashSet<String>(Arrays.asList(doc.getValues(FIELD_TAGS))))
                             counter.update(tag, severity, count, acknowledged);
                         continue;
                     } else {
@@ -814,11 +1925,8 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
                 }
                 // Build tag severities from passed in filter
                 else {
-                    for (String uuid : Arrays.asList(actor.getElementUuid(), actor.getElementSubUuid()))
+                    for (String uuid : TagSeverityRollup.getTagUuids(summary))
                         counter.update(uuid, severity, count, acknowledged);
-                    for (EventTag tag : occurrence.getTagsList())
-                        for (String tagUuid : tag.getUuidList())
-                            counter.update(tagUuid, severity, count, acknowledged);
                 }
             }
         } catch (IOException e) {
@@ -832,6 +1940,160 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
         }
     }
 
+    private static EventTagSeverityCounter synchronizedCounter(final EventTagSeverityCounter counter) {
+        return new EventTagSeverityCounter() {
+            @Override
+            public synchronized void update(String uuid, EventSeverity severity, int count, boolean acknowledged) {
+                counter.update(uuid, severity, count, acknowledged);
+            }
+
+            @Override
+            public synchronized void update(String uuid, EventSeverity severity, int events, int acknowledgedEvents,
+                                            int count) {
+                counter.update(uuid, severity, events, acknowledgedEvents, count);
+            }
+        };
+    }
+
+    /**
+     * Loads events into an index in memory, which is merged into the live index when committed. Merging the
+     * segments of the loaded index doesn't analyze the events again, and the live index only looks up the events
+     * once per commit to delete their previous documents.
+     */
+    private final class LuceneBulkLoad implements BulkLoad {
+        private final Analyzer analyzer;
+        private final NGramIndexConfig loadNGramConfig;
+        // Events changed in the live index since the last commit, whose loaded documents are left out
+        private final Set<String> touched = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        private final Map<String, EventSummary> loaded = new LinkedHashMap<String, EventSummary>();
+        private RAMDirectory loadDirectory;
+        private IndexWriter loadWriter;
+
+        private LuceneBulkLoad(Analyzer analyzer, NGramIndexConfig loadNGramConfig) throws IOException {
+            this.analyzer = analyzer;
+            this.loadNGramConfig = loadNGramConfig;
+            open();
+        }
+
+        private void open() throws IOException {
+            this.loadDirectory = new RAMDirectory();
+            this.loadWriter = new IndexWriter(this.loadDirectory, new IndexWriterConfig(LUCENE_VERSION, this.analyzer));
+        }
+
+        private void discard() {
+            try {
+                this.loadWriter.rollback();
+            } catch (IOException e) {
+                logger.warn("Failed to close bulk load of " + name, e);
+            }
+            this.loadDirectory.close();
+            this.loaded.clear();
+        }
+
+        @Override
+        public void index(Collection<EventSummary> events) throws ZepException {
+            final Map<String, EventDetailItem> detailItems = indexedDetailsConfiguration.getEventDetailItemsByName();
+            try {
+                for (EventSummary event : events) {
+                    final Document doc = LuceneEventIndexMapper.fromEventSummary(event, detailItems, archive,
+                            this.loadNGramConfig);
+                    this.loadWriter.updateDocument(new Term(FIELD_UUID, event.getUuid()), doc);
+                    this.loaded.put(event.getUuid(), event);
+                }
+            } catch (IOException e) {
+                throw new ZepException(e);
+            }
+        }
+
+        @Override
+        public int commit() throws ZepException {
+            if (this.loaded.isEmpty()) {
+                return 0;
+            }
+            // Changes to the live index wait for the merge, so none of them is overwritten by a loaded document
+            indexLock.writeLock().lock();
+            try {
+                final List<EventSummary> events = new ArrayList<EventSummary>(this.loaded.size());
+                for (EventSummary event : this.loaded.values()) {
+                    if (!this.touched.contains(event.getUuid())) {
+                        events.add(event);
+                    }
+                }
+                if (hasShadowIndex() || !this.loadNGramConfig.equals(liveNGramConfig)) {
+                    // Started or swapped in a shadow index since the events were loaded
+                    index(events);
+                } else {
+                    merge(events);
+                }
+                this.touched.clear();
+                return events.size();
+            } catch (IOException e) {
+                throw new ZepException(e);
+            } finally {
+                indexLock.writeLock().unlock();
+                discard();
+                try {
+                    open();
+                } catch (IOException e) {
+                    // Nothing more can be loaded, close() still works
+                    logger.warn("Failed to restart bulk load of " + name, e);
+                }
+            }
+        }
+
+        private void merge(List<EventSummary> events) throws IOException {
+            final DirectoryReader reader = DirectoryReader.open(this.loadWriter, true);
+            try {
+                final List<AtomicReader> parts = new ArrayList<AtomicReader>(reader.leaves().size());
+                for (AtomicReaderContext context : reader.leaves()) {
+                    final AtomicReader segment = context.reader();
+                    final FixedBitSet docs = new FixedBitSet(segment.maxDoc());
+                    final Bits liveDocs = segment.getLiveDocs();
+                    if (liveDocs == null) {
+                        docs.set(0, segment.maxDoc());
+                    } else {
+                        for (int doc = 0; doc < segment.maxDoc(); doc++) {
+                            if (liveDocs.get(doc)) {
+                                docs.set(doc);
+                            }
+                        }
+                    }
+                    for (String uuid : this.touched) {
+                        final DocsEnum docsEnum = segment.termDocsEnum(new Term(FIELD_UUID, uuid));
+                        if (docsEnum != null) {
+                            int doc;
+                            while ((doc = docsEnum.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+                                docs.clear(doc);
+                            }
+                        }
+                    }
+                    parts.add(new LuceneIndexPartitions.LiveDocsReader(segment, docs));
+                }
+                final Term[] terms = new Term[events.size()];
+                for (int i = 0; i < terms.length; i++) {
+                    terms[i] = new Term(FIELD_UUID, events.get(i).getUuid());
+                }
+                deleteDocuments(terms);
+                if (partitions != null) {
+                    partitions.addIndexes(new MultiReader(parts.toArray(new IndexReader[parts.size()]), false));
+                } else {
+                    trackingIndexWriter.addIndexes(parts.toArray(new IndexReader[parts.size()]));
+                }
+                for (EventSummary event : events) {
+                    stageRollupChange(rollup -> rollup.update(event));
+                }
+            } finally {
+                reader.close();
+            }
+        }
+
+        @Override
+        public void close() {
+            bulkLoads.remove(this);
+            discard();
+        }
+    }
+
     private class Processor implements SavedSearchProcessor<LuceneSavedSearch> {
         private final Set<String> fieldsToLoad;
         public Processor(Set<String> fieldsToLoad) {
@@ -839,25 +2101,110 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
         }
         @Override
         public EventSummaryResult result(LuceneSavedSearch search, int offset, int limit) throws ZepException {
-            IndexReader reader = search.getReader();
-            reader.incRef();
+            if (limit < 0) {
+                throw new ZepException(messages.getMessage("invalid_query_limit", limit));
+            }
+            if (limit > queryLimit) {
+                limit = queryLimit;
+            }
+            if (offset < 0) {
+                offset = 0;
+            }
+            EventSummaryResult.Builder result = EventSummaryResult.newBuilder();
+            result.setTotal(search.getTotal());
+            result.setLimit(limit);
+            // Events deleted since the search was saved are left out, and replaced by the events of the next keys
+            int position = offset;
             try {
-                IndexSearcher searcher = new IndexSearcher(reader);
-                return searchToEventSummaryResult(searcher, search.getQuery(), search.getSort(), fieldsToLoad, offset, limit);
+                while (result.getEventsCount() < limit && position < search.getTotal()) {
+                    final List<EventSummary> keys = search.getKeys(position, limit - result.getEventsCount());
+                    if (keys.isEmpty()) {
+                        break;
+                    }
+                    position += keys.size();
+                    if (UUID_FIELDS.equals(fieldsToLoad)) {
+                        for (EventSummary key : keys) {
+                            result.addEvents(EventSummary.newBuilder().setUuid(key.getUuid()));
+                        }
+                    } else if (archive) {
+                        addArchiveEvents(result, keys);
+                    } else {
+                        addIndexedEvents(result, keys);
+                    }
+                }
             } catch (IOException e) {
                 throw new ZepException(e);
             }
-            finally {
-                try {
-                    if (reader != null)
-                        reader.decRef();
-                } catch (IOException ex) {
-                    logger.warn("Exception decrementing reference count", ex);
+            if (search.getTotal() > position) {
+                result.setNextOffset(position);
+            }
+            return result.build();
+        }
+    }
+
+    /**
+     * Adds the events with the keys to the result in the order of the keys, reading them from the current index.
+     * Events no longer in the index (moved to the archive since the search was saved) are left out.
+     */
+    private void addIndexedEvents(EventSummaryResult.Builder result, List<EventSummary> keys)
+            throws IOException, ZepException {
+        IndexSearcher searcher = null;
+        try {
+            searcher = getSearcher();
+            final List<AtomicReaderContext> leaves = searcher.getIndexReader().leaves();
+            final BytesRef uuid = new BytesRef();
+            for (EventSummary key : keys) {
+                final int doc = findDocument(leaves, key.getUuid());
+                if (doc < 0) {
+                    continue;
+                }
+                if (this.eventSummaryCache != null) {
+                    result.addEvents(getCachedEventSummary(searcher, leaves, doc, uuid));
+                } else {
+                    result.addEvents(LuceneEventIndexMapper.toEventSummary(searcher.doc(doc, PROTO_FIELDS)));
                 }
             }
+        } finally {
+            returnSearcher(searcher);
         }
     }
 
+    /**
+     * @return The document of the event in the reader, or -1 if it isn't indexed.
+     */
+    private static int findDocument(List<AtomicReaderContext> leaves, String uuid) throws IOException {
+        final BytesRef term = new BytesRef(uuid);
+        TermsEnum termsEnum = null;
+        DocsEnum docsEnum = null;
+        for (AtomicReaderContext leaf : leaves) {
+            final Terms terms = leaf.reader().terms(FIELD_UUID);
+            if (terms == null) {
+                continue;
+            }
+            termsEnum = terms.iterator(termsEnum);
+            if (termsEnum.seekExact(term)) {
+                docsEnum = termsEnum.docs(leaf.reader().getLiveDocs(), docsEnum, DocsEnum.FLAG_NONE);
+                final int doc = docsEnum.nextDoc();
+                if (doc != DocIdSetIterator.NO_MORE_DOCS) {
+                    return leaf.docBase + doc;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Collects the keys of the events matching the query in the order of the sort. Searches which aren't sorted
+     * are ordered by relevance, like unsaved searches. The matches are read in chunks of as many events as a saved
+     * search holds in memory, so searches matching fewer events are read in a single search.
+     */
+    private LuceneSavedSearchKeys collectSavedSearchKeys(IndexReader reader, Query query, Sort sort)
+            throws IOException {
+        final IndexSearcher searcher = new IndexSearcher(reader);
+        return LuceneSavedSearchKeys.collect(searcher, query, LuceneSearchCursor.withTieBreaker(sort).rewrite(searcher),
+                Math.max(this.savedSearchMaxKeysInMemory, this.queryLimit), this.savedSearchMaxKeysInMemory);
+    }
+
     private final Processor searchProcessor = new Processor(PROTO_FIELDS);
     private final Processor searchUuidsProcessor = new Processor(UUID_FIELDS);
 
@@ -877,27 +2224,32 @@ public class LuceneEventIndexBackend extends BaseEventIndexBackend<LuceneSavedSe
             throw new ZepException("Invalid timeout: " + eventQuery.getTimeout());
 
         IndexReader reader;
+        this.indexLock.readLock().lock();
         try {
-            reader = DirectoryReader.open(writer, false);
+            reader = (this.partitions != null) ? this.partitions.openReader() : DirectoryReader.open(writer, false);
         } catch (IOException e) {
             String msg = "Unable to get Lucene reader";
             logger.warn(msg, e);
             throw new ZepException(msg, e);
+        } finally {
+            this.indexLock.readLock().unlock();
         }
         try {
             final Query query = buildQuery(reader, eventQuery.getEventFilter(), eventQuery.getExclusionFilter());
             final Sort sort = buildSort(eventQuery.getSortList());
-            return new LuceneSavedSearch(uuid, reader, query, sort, eventQuery.getTimeout());
+            return new LuceneSavedSearch(uuid, collectSavedSearchKeys(reader, query, sort), eventQuery.getTimeout());
         } catch (Exception e) {
+            if (e instanceof ZepException) {
+                throw (ZepException) e;
+            }
+            throw new ZepException(e.getLocalizedMessage(), e);
+        } finally {
+            // The saved search only holds the keys of the events, the reader isn't pinned until it times out
             try {
                 reader.decRef();
             } catch (IOException ex) {
                 logger.warn("Exception decrementing reference count", ex);
             }
-            if (e instanceof ZepException) {
-                throw (ZepException) e;
-            }
-            throw new ZepException(e.getLocalizedMessage(), e);
         }
     }
 }
@@ -11,18 +11,24 @@
 package org.zenoss.zep.index.impl.lucene;
 
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.core.KeywordAnalyzer;
-import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoubleDocValuesField;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.Field.Index;
 import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.FloatDocValuesField;
 import org.apache.lucene.document.FloatField;
 import org.apache.lucene.document.IntField;
 import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
 import org.apache.lucene.document.DoubleField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.KeepOnlyLastCommitDeletionPolicy;
+import org.apache.lucene.index.SnapshotDeletionPolicy;
 import org.apache.lucene.util.BytesRef;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,15 +41,17 @@ import org.zenoss.protobufs.zep.Zep.EventTag;
 import org.zenoss.zep.ZepException;
 import org.zenoss.zep.ZepInstance;
 import org.zenoss.zep.index.impl.BaseEventIndexMapper;
+import org.zenoss.zep.index.impl.NGramIndexConfig;
 import org.zenoss.zep.utils.IpUtils;
 
 import java.io.StringReader;
 import java.net.Inet6Address;
 import java.net.InetAddress;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.zenoss.zep.index.impl.IndexConstants.FIELD_AGENT;
 import static org.zenoss.zep.index.impl.IndexConstants.FIELD_COUNT;
@@ -65,6 +73,7 @@ import static org.zenoss.zep.index.impl.IndexConstants.FIELD_FINGERPRINT;
 import static org.zenoss.zep.index.impl.IndexConstants.FIELD_FIRST_SEEN_TIME;
 import static org.zenoss.zep.index.impl.IndexConstants.FIELD_LAST_SEEN_TIME;
 import static org.zenoss.zep.index.impl.IndexConstants.FIELD_MESSAGE;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_MESSAGE_REVERSED;
 import static org.zenoss.zep.index.impl.IndexConstants.FIELD_MONITOR;
 import static org.zenoss.zep.index.impl.IndexConstants.FIELD_PROTOBUF;
 import static org.zenoss.zep.index.impl.IndexConstants.FIELD_SEVERITY;
@@ -72,31 +81,34 @@ import static org.zenoss.zep.index.impl.IndexConstants.FIELD_STATUS;
 import static org.zenoss.zep.index.impl.IndexConstants.FIELD_STATUS_CHANGE_TIME;
 import static org.zenoss.zep.index.impl.IndexConstants.FIELD_SUMMARY;
 import static org.zenoss.zep.index.impl.IndexConstants.FIELD_SUMMARY_NOT_ANALYZED;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_SUMMARY_REVERSED;
 import static org.zenoss.zep.index.impl.IndexConstants.FIELD_TAGS;
 import static org.zenoss.zep.index.impl.IndexConstants.FIELD_UPDATE_TIME;
 import static org.zenoss.zep.index.impl.IndexConstants.FIELD_UUID;
 import static org.zenoss.zep.index.impl.IndexConstants.IP_ADDRESS_TYPE_4;
 import static org.zenoss.zep.index.impl.IndexConstants.IP_ADDRESS_TYPE_6;
 import static org.zenoss.zep.index.impl.IndexConstants.IP_ADDRESS_TYPE_SUFFIX;
+import static org.zenoss.zep.index.impl.IndexConstants.IP_ADDRESS_V4_SUFFIX;
+import static org.zenoss.zep.index.impl.IndexConstants.IP_ADDRESS_V6_HIGH_SUFFIX;
+import static org.zenoss.zep.index.impl.IndexConstants.IP_ADDRESS_V6_LOW_SUFFIX;
+import static org.zenoss.zep.index.impl.IndexConstants.IP_ADDRESS_V6_MULTI_SUFFIX;
 import static org.zenoss.zep.index.impl.IndexConstants.LUCENE_VERSION;
 import static org.zenoss.zep.index.impl.IndexConstants.SORT_SUFFIX;
 
 public class LuceneEventIndexMapper extends BaseEventIndexMapper {
 
     public static Analyzer createAnalyzer() {
-        Map<String, Analyzer> fieldAnalyzers = new HashMap<String, Analyzer>();
-        fieldAnalyzers.put(FIELD_ELEMENT_IDENTIFIER, new LuceneIdentifierAnalyzer());
-        fieldAnalyzers.put(FIELD_ELEMENT_SUB_IDENTIFIER, new LuceneIdentifierAnalyzer());
-        fieldAnalyzers.put(FIELD_ELEMENT_TITLE, new LuceneIdentifierAnalyzer());
-        fieldAnalyzers.put(FIELD_ELEMENT_SUB_TITLE, new LuceneIdentifierAnalyzer());
-        fieldAnalyzers.put(FIELD_SUMMARY, new LuceneSummaryAnalyzer());
-        fieldAnalyzers.put(FIELD_EVENT_CLASS, new LucenePathAnalyzer());
-        fieldAnalyzers.put(FIELD_MESSAGE, new LuceneSummaryAnalyzer());
-        return new PerFieldAnalyzerWrapper(new KeywordAnalyzer(), fieldAnalyzers);
+        return LuceneAnalyzers.createIndexAnalyzer();
+    }
+
+    public static Analyzer createAnalyzer(NGramIndexConfig nGramConfig) {
+        return LuceneAnalyzers.createIndexAnalyzer(nGramConfig);
     }
 
     public static IndexWriterConfig createIndexWriterConfig(Analyzer analyzer, ZepInstance zepInstance) {
         IndexWriterConfig indexWriterConfig = new IndexWriterConfig(LUCENE_VERSION, analyzer);
+        // Keeps the commits copied by index snapshots until they are released
+        indexWriterConfig.setIndexDeletionPolicy(new SnapshotDeletionPolicy(new KeepOnlyLastCommitDeletionPolicy()));
         Map<String, String> cfg = zepInstance.getConfig();
         String ramBufferSizeMb = cfg.get("zep.index.ram_buffer_size_mb");
         if (ramBufferSizeMb != null) {
@@ -113,7 +125,14 @@ public class LuceneEventIndexMapper extends BaseEventIndexMapper {
 
     private static final Logger logger = LoggerFactory.getLogger(LuceneEventIndexMapper.class);
 
+    private static final NGramIndexConfig DEFAULT_NGRAM_CONFIG = new NGramIndexConfig();
+
     public static Document fromEventSummary(EventSummary summary, Map<String, EventDetailItem> detailsConfig, boolean isArchive) throws ZepException {
+        return fromEventSummary(summary, detailsConfig, isArchive, DEFAULT_NGRAM_CONFIG);
+    }
+
+    public static Document fromEventSummary(EventSummary summary, Map<String, EventDetailItem> detailsConfig,
+                                            boolean isArchive, NGramIndexConfig nGramConfig) throws ZepException {
         Document doc = new Document();
 
         // Store the entire serialized protobuf so we can reproduce the entire event from the index.
@@ -124,9 +143,11 @@ public class LuceneEventIndexMapper extends BaseEventIndexMapper {
 
         // Store the UUID for more lightweight queries against the index
         doc.add(new Field(FIELD_UUID, summary.getUuid(), Store.YES, Index.NOT_ANALYZED_NO_NORMS));
+        addSortedDocValues(doc, FIELD_UUID, summary.getUuid());
 
         doc.add(new Field(FIELD_CURRENT_USER_NAME, summary.getCurrentUserName(), Store.NO,
                 Index.NOT_ANALYZED_NO_NORMS));
+        addSortedDocValues(doc, FIELD_CURRENT_USER_NAME, summary.getCurrentUserName());
 
         doc.add(new IntField(FIELD_STATUS, summary.getStatus().getNumber(), Store.YES));
         doc.add(new LongField(FIELD_COUNT, summary.getCount(), Store.YES));
@@ -134,56 +155,77 @@ public class LuceneEventIndexMapper extends BaseEventIndexMapper {
         doc.add(new LongField(FIELD_FIRST_SEEN_TIME, summary.getFirstSeenTime(), Store.NO));
         doc.add(new LongField(FIELD_STATUS_CHANGE_TIME, summary.getStatusChangeTime(), Store.NO));
         doc.add(new LongField(FIELD_UPDATE_TIME, summary.getUpdateTime(), Store.NO));
+        doc.add(new NumericDocValuesField(FIELD_STATUS, summary.getStatus().getNumber()));
+        doc.add(new NumericDocValuesField(FIELD_COUNT, summary.getCount()));
+        doc.add(new NumericDocValuesField(FIELD_LAST_SEEN_TIME, summary.getLastSeenTime()));
+        doc.add(new NumericDocValuesField(FIELD_FIRST_SEEN_TIME, summary.getFirstSeenTime()));
+        doc.add(new NumericDocValuesField(FIELD_STATUS_CHANGE_TIME, summary.getStatusChangeTime()));
+        doc.add(new NumericDocValuesField(FIELD_UPDATE_TIME, summary.getUpdateTime()));
 
         Event event = summary.getOccurrence(0);
         doc.add(new Field(FIELD_FINGERPRINT, event.getFingerprint(), Store.NO, Index.NOT_ANALYZED_NO_NORMS));
+        addSortedDocValues(doc, FIELD_FINGERPRINT, event.getFingerprint());
         doc.add(new Field(FIELD_SUMMARY, event.getSummary(), Store.NO, Index.ANALYZED_NO_NORMS));
+        doc.add(new Field(FIELD_SUMMARY_REVERSED, event.getSummary(), Store.NO, Index.ANALYZED_NO_NORMS));
         doc.add(new Field(FIELD_SUMMARY_NOT_ANALYZED, event.getSummary().toLowerCase(), Store.NO, Index.NOT_ANALYZED_NO_NORMS));
+        addSortedDocValues(doc, FIELD_SUMMARY_NOT_ANALYZED, event.getSummary().toLowerCase());
         doc.add(new IntField(FIELD_SEVERITY, event.getSeverity().getNumber(), Store.YES));
+        doc.add(new NumericDocValuesField(FIELD_SEVERITY, event.getSeverity().getNumber()));
 
         doc.add(new Field(FIELD_EVENT_CLASS, event.getEventClass(), Store.NO, Index.ANALYZED_NO_NORMS));
         // Store with a trailing slash to make lookups simpler
         doc.add(new Field(FIELD_EVENT_CLASS_NOT_ANALYZED, event.getEventClass().toLowerCase() + "/", Store.NO,
                 Index.NOT_ANALYZED_NO_NORMS));
+        addSortedDocValues(doc, FIELD_EVENT_CLASS_NOT_ANALYZED, event.getEventClass().toLowerCase() + "/");
         doc.add(new Field(FIELD_AGENT, event.getAgent(), Store.NO, Index.NOT_ANALYZED_NO_NORMS));
+        addSortedDocValues(doc, FIELD_AGENT, event.getAgent());
         doc.add(new Field(FIELD_MONITOR, event.getMonitor(), Store.NO, Index.NOT_ANALYZED_NO_NORMS));
+        addSortedDocValues(doc, FIELD_MONITOR, event.getMonitor());
         doc.add(new Field(FIELD_EVENT_KEY, event.getEventKey(), Store.NO, Index.NOT_ANALYZED_NO_NORMS));
+        addSortedDocValues(doc, FIELD_EVENT_KEY, event.getEventKey());
         doc.add(new Field(FIELD_EVENT_CLASS_KEY, event.getEventClassKey(), Store.NO, Index.NOT_ANALYZED_NO_NORMS));
+        addSortedDocValues(doc, FIELD_EVENT_CLASS_KEY, event.getEventClassKey());
         doc.add(new Field(FIELD_EVENT_GROUP, event.getEventGroup(), Store.NO, Index.NOT_ANALYZED_NO_NORMS));
+        addSortedDocValues(doc, FIELD_EVENT_GROUP, event.getEventGroup());
         doc.add(new Field(FIELD_MESSAGE, event.getMessage(), Store.NO, Index.ANALYZED_NO_NORMS));
+        doc.add(new Field(FIELD_MESSAGE_REVERSED, event.getMessage(), Store.NO, Index.ANALYZED_NO_NORMS));
 
         for (EventTag tag : event.getTagsList()) {
             for (String tagUuid : tag.getUuidList()) {
-                doc.add(new Field(FIELD_TAGS, tagUuid, Store.YES, Index.NOT_ANALYZED_NO_NORMS));
+                addTag(doc, tagUuid);
             }
         }
 
         EventActor actor = event.getActor();
         String uuid = actor.getElementUuid();
         if (uuid != null && !uuid.isEmpty()) {
-            doc.add(new Field(FIELD_TAGS, uuid, Store.YES, Index.NOT_ANALYZED_NO_NORMS));
+            addTag(doc, uuid);
         }
 
         String id = actor.getElementIdentifier();
-        doc.add(new Field(FIELD_ELEMENT_IDENTIFIER, id, Store.NO, Index.ANALYZED_NO_NORMS));
+        addIdentifierField(doc, FIELD_ELEMENT_IDENTIFIER, id, nGramConfig);
         doc.add(new Field(FIELD_ELEMENT_IDENTIFIER_NOT_ANALYZED, id.toLowerCase(), Store.NO, Index.NOT_ANALYZED_NO_NORMS));
+        addSortedDocValues(doc, FIELD_ELEMENT_IDENTIFIER_NOT_ANALYZED, id.toLowerCase());
 
         String title = actor.getElementTitle();
-        doc.add(new Field(FIELD_ELEMENT_TITLE, title, Store.NO, Index.ANALYZED_NO_NORMS));
+        addIdentifierField(doc, FIELD_ELEMENT_TITLE, title, nGramConfig);
         doc.add(new Field(FIELD_ELEMENT_TITLE_NOT_ANALYZED, title.toLowerCase(), Store.NO, Index.NOT_ANALYZED_NO_NORMS));
+        addSortedDocValues(doc, FIELD_ELEMENT_TITLE_NOT_ANALYZED, title.toLowerCase());
 
         String subUuid = actor.getElementSubUuid();
         if (subUuid != null && !subUuid.isEmpty()) {
-            doc.add(new Field(FIELD_TAGS, subUuid, Store.YES, Index.NOT_ANALYZED_NO_NORMS));
+            addTag(doc, subUuid);
         }
 
         String subId = actor.getElementSubIdentifier();
-        doc.add(new Field(FIELD_ELEMENT_SUB_IDENTIFIER, subId, Store.NO, Index.ANALYZED_NO_NORMS));
+        addIdentifierField(doc, FIELD_ELEMENT_SUB_IDENTIFIER, subId, nGramConfig);
         doc.add(new Field(FIELD_ELEMENT_SUB_IDENTIFIER_NOT_ANALYZED, subId.toLowerCase(), Store.NO, Index.NOT_ANALYZED_NO_NORMS));
+        addSortedDocValues(doc, FIELD_ELEMENT_SUB_IDENTIFIER_NOT_ANALYZED, subId.toLowerCase());
 
         String subTitle = actor.getElementSubTitle();
-        doc.add(new Field(FIELD_ELEMENT_SUB_TITLE, subTitle, Store.NO, Index.ANALYZED_NO_NORMS));
+        addIdentifierField(doc, FIELD_ELEMENT_SUB_TITLE, subTitle, nGramConfig);
         doc.add(new Field(FIELD_ELEMENT_SUB_TITLE_NOT_ANALYZED, subTitle.toLowerCase(), Store.NO, Index.NOT_ANALYZED_NO_NORMS));
+        addSortedDocValues(doc, FIELD_ELEMENT_SUB_TITLE_NOT_ANALYZED, subTitle.toLowerCase());
         // find details  for indexing
         List<EventDetail> evtDetails = event.getDetailsList();
 
@@ -192,6 +234,8 @@ public class LuceneEventIndexMapper extends BaseEventIndexMapper {
         //     - Null numeric details are indexed using the Java min Integer
         //     - Null text details are indexed using the bell character
         // The values defined in the zep facade for null details must match the above values
+        // Doc values hold a single value per document, so only the first value of a detail is used for sorting.
+        final Set<String> sortedDetails = new HashSet<String>();
         Iterator<Map.Entry<String, EventDetailItem>> it = detailsConfig.entrySet().iterator();
         while (it.hasNext()) {
             boolean found = false;
@@ -211,15 +255,23 @@ public class LuceneEventIndexMapper extends BaseEventIndexMapper {
                 switch (detailDefn.getType()) {
                     case INTEGER:
                         doc.add(new IntField(detailKeyName, Integer.MIN_VALUE, Store.NO));
+                        doc.add(new NumericDocValuesField(detailKeyName, Integer.MIN_VALUE));
                         break;
                     case FLOAT:
                         doc.add(new FloatField(detailKeyName, Integer.MIN_VALUE, Store.NO));
+                        doc.add(new FloatDocValuesField(detailKeyName, Integer.MIN_VALUE));
                         break;
                     case LONG:
                         doc.add(new LongField(detailKeyName, Integer.MIN_VALUE, Store.NO));
+                        doc.add(new NumericDocValuesField(detailKeyName, Integer.MIN_VALUE));
                         break;
                     case DOUBLE:
                         doc.add(new DoubleField(detailKeyName, Integer.MIN_VALUE, Store.NO));
+                        doc.add(new DoubleDocValuesField(detailKeyName, Integer.MIN_VALUE));
+                        break;
+                    case STRING:
+                        doc.add(new Field(detailKeyName, Character.toString((char)07), Store.NO, Index.NOT_ANALYZED_NO_NORMS));
+                        addSortedDocValues(doc, detailKeyName, Character.toString((char)07));
                         break;
                     default:
                         doc.add(new Field(detailKeyName, Character.toString((char)07), Store.NO, Index.NOT_ANALYZED_NO_NORMS));
@@ -236,14 +288,23 @@ public class LuceneEventIndexMapper extends BaseEventIndexMapper {
             if (detailDefn != null) {
                 String detailKeyName = DETAIL_INDEX_PREFIX + detailDefn.getKey();
                 for (String detailValue : eDetail.getValueList()) {
+                    final boolean sortable = !sortedDetails.contains(detailKeyName);
                     switch (detailDefn.getType()) {
                         case STRING:
                             doc.add(new Field(detailKeyName, detailValue, Store.NO, Index.NOT_ANALYZED_NO_NORMS));
+                            if (sortable) {
+                                addSortedDocValues(doc, detailKeyName, detailValue);
+                                sortedDetails.add(detailKeyName);
+                            }
                             break;
                         case INTEGER:
                             try {
                                 int intValue = Integer.parseInt(detailValue);
                                 doc.add(new IntField(detailKeyName, intValue, Store.NO));
+                                if (sortable) {
+                                    doc.add(new NumericDocValuesField(detailKeyName, intValue));
+                                    sortedDetails.add(detailKeyName);
+                                }
                             } catch (Exception e) {
                                 logger.warn("Invalid numeric(int) data reported for detail {}: {}", detailName,
                                         detailValue);
@@ -253,6 +314,10 @@ public class LuceneEventIndexMapper extends BaseEventIndexMapper {
                             try {
                                 float floatValue = Float.parseFloat(detailValue);
                                 doc.add(new FloatField(detailKeyName, floatValue, Store.NO));
+                                if (sortable) {
+                                    doc.add(new FloatDocValuesField(detailKeyName, floatValue));
+                                    sortedDetails.add(detailKeyName);
+                                }
                             } catch (Exception e) {
                                 logger.warn("Invalid numeric(float) data reported for detail {}: {}", detailName,
                                         detailValue);
@@ -262,6 +327,10 @@ public class LuceneEventIndexMapper extends BaseEventIndexMapper {
                             try {
                                 long longValue = Long.parseLong(detailValue);
                                 doc.add(new LongField(detailKeyName, longValue, Store.NO));
+                                if (sortable) {
+                                    doc.add(new NumericDocValuesField(detailKeyName, longValue));
+                                    sortedDetails.add(detailKeyName);
+                                }
                             } catch (Exception e) {
                                 logger.warn("Invalid numeric(long) data reported for detail {}: {}", detailName,
                                         detailValue);
@@ -271,6 +340,10 @@ public class LuceneEventIndexMapper extends BaseEventIndexMapper {
                             try {
                                 double doubleValue = Double.parseDouble(detailValue);
                                 doc.add(new DoubleField(detailKeyName, doubleValue, Store.NO));
+                                if (sortable) {
+                                    doc.add(new DoubleDocValuesField(detailKeyName, doubleValue));
+                                    sortedDetails.add(detailKeyName);
+                                }
                             } catch (Exception e) {
                                 logger.warn("Invalid numeric(double) data reported for detail {}: {}", detailName,
                                         detailValue);
@@ -280,7 +353,9 @@ public class LuceneEventIndexMapper extends BaseEventIndexMapper {
                             try {
                                 if (!detailValue.isEmpty()) {
                                     final InetAddress addr = IpUtils.parseAddress(detailValue);
-                                    createIpAddressFields(doc, detailKeyName, addr);
+                                    createIpAddressFields(doc, detailKeyName, addr, sortable,
+                                            countIpv6Addresses(eDetail.getValueList()) > 1);
+                                    sortedDetails.add(detailKeyName);
                                 }
                             } catch (Exception e) {
                                 logger.warn("Invalid IP address data reported for detail {}: {}", detailName,
@@ -288,7 +363,8 @@ public class LuceneEventIndexMapper extends BaseEventIndexMapper {
                             }
                             break;
                         case PATH:
-                            createPathFields(doc, detailKeyName, detailValue);
+                            createPathFields(doc, detailKeyName, detailValue, sortable);
+                            sortedDetails.add(detailKeyName);
                             break;
                         default:
                             logger.warn("Configured detail {} uses unknown data type: {}, skipping", detailName, detailDefn.getType());
@@ -300,20 +376,87 @@ public class LuceneEventIndexMapper extends BaseEventIndexMapper {
         return doc;
     }
 
-    private static void createPathFields(Document doc, String detailKeyName, String detailValue) {
+    private static void createPathFields(Document doc, String detailKeyName, String detailValue, boolean sortable) {
         String lowerCaseDetailValue = detailValue.toLowerCase();
         doc.add(new TextField(detailKeyName, new LucenePathTokenizer(new StringReader(lowerCaseDetailValue))));
         // Store with a trailing slash
         doc.add(new Field(detailKeyName + SORT_SUFFIX, lowerCaseDetailValue + "/", Store.NO,
                 Index.NOT_ANALYZED_NO_NORMS));
+        if (sortable) {
+            addSortedDocValues(doc, detailKeyName + SORT_SUFFIX, lowerCaseDetailValue + "/");
+        }
     }
 
-    private static void createIpAddressFields(Document doc, String detailKeyName, InetAddress value) {
+    /**
+     * Indexes an IP address for substring, exact and range searches. Range searches use the numeric fields of the
+     * address, the two halves of an IPv6 address are only indexed as numbers if the detail has a single IPv6
+     * address (the halves of different addresses would match ranges neither address is in).
+     */
+    private static void createIpAddressFields(Document doc, String detailKeyName, InetAddress value,
+                                              boolean sortable, boolean multipleIpv6) {
         final String typeVal = (value instanceof Inet6Address) ? IP_ADDRESS_TYPE_6 : IP_ADDRESS_TYPE_4;
+        final String sortVal = IpUtils.canonicalIpAddress(value);
         doc.add(new Field(detailKeyName + IP_ADDRESS_TYPE_SUFFIX, typeVal, Store.NO, Index.NOT_ANALYZED_NO_NORMS));
-        doc.add(new Field(detailKeyName + SORT_SUFFIX, IpUtils.canonicalIpAddress(value), Store.NO,
-                Index.NOT_ANALYZED_NO_NORMS));
+        doc.add(new Field(detailKeyName + SORT_SUFFIX, sortVal, Store.NO, Index.NOT_ANALYZED_NO_NORMS));
+        final long[] numericVal = IpUtils.toSortableLongs(value);
+        if (numericVal.length == 1) {
+            doc.add(new LongField(detailKeyName + IP_ADDRESS_V4_SUFFIX, numericVal[0], Store.NO));
+        } else if (!multipleIpv6) {
+            doc.add(new LongField(detailKeyName + IP_ADDRESS_V6_HIGH_SUFFIX, numericVal[0], Store.NO));
+            doc.add(new LongField(detailKeyName + IP_ADDRESS_V6_LOW_SUFFIX, numericVal[1], Store.NO));
+        } else {
+            doc.add(new Field(detailKeyName + IP_ADDRESS_V6_MULTI_SUFFIX, sortVal, Store.NO,
+                    Index.NOT_ANALYZED_NO_NORMS));
+        }
         doc.add(new Field(detailKeyName, new LuceneIpTokenizer(new StringReader(value.getHostAddress()))));
+        if (sortable) {
+            addSortedDocValues(doc, detailKeyName + IP_ADDRESS_TYPE_SUFFIX, typeVal);
+            addSortedDocValues(doc, detailKeyName + SORT_SUFFIX, sortVal);
+        }
+    }
+
+    private static int countIpv6Addresses(List<String> values) {
+        int count = 0;
+        for (String value : values) {
+            if (value.indexOf(':') >= 0) {
+                try {
+                    if (IpUtils.parseAddress(value) instanceof Inet6Address) {
+                        count++;
+                    }
+                } catch (IllegalArgumentException e) {
+                    // Not indexed
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds a tag UUID, which is also written as doc values so tag severities can be counted without loading
+     * the stored fields of each event.
+     */
+    private static void addTag(Document doc, String tagUuid) {
+        doc.add(new Field(FIELD_TAGS, tagUuid, Store.YES, Index.NOT_ANALYZED_NO_NORMS));
+        doc.add(new SortedSetDocValuesField(FIELD_TAGS, new BytesRef(tagUuid)));
+    }
+
+    private static void addIdentifierField(Document doc, String name, String value, NGramIndexConfig nGramConfig) {
+        // Identifier fields without n-grams are only searched on their lowercase values
+        if (nGramConfig.isEnabled(name)) {
+            doc.add(new Field(name, value, Store.NO, Index.ANALYZED_NO_NORMS));
+        }
+    }
+
+    /**
+     * Adds a sorted doc values field used to sort on a string field, so sorting doesn't have to un-invert the
+     * indexed terms. Values longer than the maximum term length only sort on their prefix.
+     */
+    private static void addSortedDocValues(Document doc, String name, String value) {
+        final BytesRef bytes = new BytesRef(value);
+        if (bytes.length > IndexWriter.MAX_TERM_LENGTH) {
+            bytes.length = IndexWriter.MAX_TERM_LENGTH;
+        }
+        doc.add(new SortedDocValuesField(name, bytes));
     }
 
     public static EventSummary toEventSummary(Document item) throws ZepException {
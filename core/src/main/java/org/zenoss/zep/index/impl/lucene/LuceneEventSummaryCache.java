@@ -0,0 +1,131 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl.lucene;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import org.zenoss.protobufs.zep.Zep.EventSummary;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the event summaries decoded from the compressed protobufs stored in the index, so pages of events
+ * which are fetched again (consoles refresh the same top events every few seconds) skip decompressing and
+ * parsing them.
+ * <p>
+ * Entries are looked up by UUID and update time, which the caller reads from doc values without loading the
+ * stored fields. Every change to an event sets a new update time, so a cached event which has since changed
+ * is a miss and is replaced by the newly decoded version. The cache is bounded by the estimated heap size of
+ * the cached events.
+ */
+class LuceneEventSummaryCache {
+
+    // Rough heap size of a parsed protobuf message (objects, strings and collections) per serialized byte
+    private static final int HEAP_BYTES_PER_SERIALIZED_BYTE = 4;
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final Cache<String, EventSummary> events;
+    private final AtomicLong weight = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates the cache.
+     *
+     * @param maximumWeight The maximum estimated heap size of the cached events in bytes.
+     */
+    LuceneEventSummaryCache(long maximumWeight) {
+        this.events = CacheBuilder.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher(new Weigher<String, EventSummary>() {
+                    @Override
+                    public int weigh(String uuid, EventSummary event) {
+                        return LuceneEventSummaryCache.weigh(uuid, event);
+                    }
+                })
+                .removalListener(new RemovalListener<String, EventSummary>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<String, EventSummary> notification) {
+                        weight.addAndGet(-weigh(notification.getKey(), notification.getValue()));
+                    }
+                })
+                .build();
+    }
+
+    private static int weigh(String uuid, EventSummary event) {
+        return ENTRY_OVERHEAD + 2 * uuid.length() + HEAP_BYTES_PER_SERIALIZED_BYTE * event.getSerializedSize();
+    }
+
+    /**
+     * Returns the cached event if it has the specified update time.
+     *
+     * @param uuid The UUID of the event.
+     * @param updateTime The update time of the indexed event.
+     * @return The cached event, or null if it isn't cached or the cached version is out of date.
+     */
+    EventSummary get(String uuid, long updateTime) {
+        final EventSummary event = this.events.getIfPresent(uuid);
+        if (event == null || event.getUpdateTime() != updateTime) {
+            // An out of date event is replaced by the caller
+            this.misses.incrementAndGet();
+            return null;
+        }
+        this.hits.incrementAndGet();
+        return event;
+    }
+
+    void put(EventSummary event) {
+        this.weight.addAndGet(weigh(event.getUuid(), event));
+        this.events.put(event.getUuid(), event);
+    }
+
+    void invalidate(String uuid) {
+        this.events.invalidate(uuid);
+    }
+
+    void invalidateAll(Collection<String> uuids) {
+        this.events.invalidateAll(uuids);
+    }
+
+    void invalidateAll() {
+        this.events.invalidateAll();
+    }
+
+    /**
+     * Returns the share of lookups answered from the cache.
+     *
+     * @return The hit ratio, between 0 and 1.
+     */
+    double getHitRatio() {
+        final long hitCount = this.hits.get();
+        final long lookups = hitCount + this.misses.get();
+        return (lookups == 0) ? 1.0 : (double) hitCount / lookups;
+    }
+
+    long getHitCount() {
+        return this.hits.get();
+    }
+
+    long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * Returns the estimated heap size of the cached events.
+     *
+     * @return The weight in bytes.
+     */
+    long getWeight() {
+        return this.weight.get();
+    }
+}
@@ -9,107 +9,414 @@
 
 package org.zenoss.zep.index.impl.lucene;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.SegmentReader;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.queries.TermsFilter;
-import org.apache.lucene.search.CachingWrapperFilter;
+import org.apache.lucene.search.BitsFilteredDocIdSet;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.NGramPhraseQuery;
 import org.apache.lucene.search.PrefixFilter;
 import org.apache.lucene.search.QueryWrapperFilter;
 import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.WAH8DocIdSet;
+import org.apache.lucene.util.automaton.CompiledAutomaton;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import jakarta.annotation.Resource;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Caches the documents matched by the prefix, terms, wildcard and n-gram filters of queries, and the terms matched
+ * by the wildcard patterns of phrase queries.
+ * <p>
+ * The matches are cached per index segment, keyed by the filter and the core of the segment, so a reader reopened
+ * after changes reuses the matches of the segments which didn't change and only the new segments are filtered.
+ * Deletions are applied when the cached matches are used, like {@link org.apache.lucene.search.CachingWrapperFilter}.
+ * Entries are weighed by the memory of their compressed doc id sets and share a single heap budget, whatever the
+ * filter type or index they belong to. The matches of a segment are dropped when the segment is closed.
+ * <p>
+ * The terms matching a wildcard pattern are also cached per segment under the same budget, so expanding the
+ * pattern again only walks the term dictionaries of new segments. Expansions are bounded, patterns matching more
+ * terms only search the first terms (in term order) instead of building huge queries. Truncated expansions are
+ * counted in a metric, and logged as a warning once per pattern.
+ */
 public class LuceneFilterCacheManager {
 
     private static final Logger logger = LoggerFactory.getLogger(LuceneFilterCacheManager.class);
 
+    private static final int DEFAULT_MAX_SIZE_MB = 64;
+    private static final int DEFAULT_MAX_TERM_EXPANSIONS = 1024;
+    private static final int MAX_WARNED_PATTERNS = 1024;
+
+    // Approximate memory of a term beyond its bytes
+    private static final long TERM_SIZE_IN_BYTES = 32L;
+
+    // Matches no documents, takes no memory beyond the entry
+    private static final DocIdSet EMPTY_DOCIDSET = new WAH8DocIdSet.Builder().build();
+
     public enum FilterType {
         PREFIX, TERMS, WILDCARD, NGRAM
     }
 
-    private final LoadingCache<Term, CachingWrapperFilter> prefixCache;
-    private final LoadingCache<Set<Term>, CachingWrapperFilter> termsCache;
-    private final LoadingCache<Term, CachingWrapperFilter> wildcardCache;
-    private final LoadingCache<List<Term>, CachingWrapperFilter> nGramCache;
+    // Kind of the entries holding the terms of a segment matching a wildcard pattern
+    private enum ExpansionType {
+        WILDCARD_TERMS
+    }
+
+    private final Cache<SegmentKey, Object> segmentCache;
+    private final Set<Object> closeListenedCores = ConcurrentHashMap.newKeySet();
+    private final SegmentReader.CoreClosedListener coreClosedListener = new SegmentReader.CoreClosedListener() {
+        @Override
+        public void onClose(Object ownerCoreCacheKey) {
+            closeListenedCores.remove(ownerCoreCacheKey);
+            final Iterator<SegmentKey> it = segmentCache.asMap().keySet().iterator();
+            while (it.hasNext()) {
+                if (it.next().coreKey == ownerCoreCacheKey) {
+                    it.remove();
+                }
+            }
+        }
+    };
+
+    private volatile int maxTermExpansions = DEFAULT_MAX_TERM_EXPANSIONS;
+    private final AtomicLong truncatedExpansions = new AtomicLong();
+    // Patterns whose truncation was logged as a warning
+    private final Cache<Term, Boolean> warnedPatterns = CacheBuilder.newBuilder()
+            .maximumSize(MAX_WARNED_PATTERNS).build();
 
     public LuceneFilterCacheManager() {
+        this(DEFAULT_MAX_SIZE_MB);
+    }
 
-        prefixCache = CacheBuilder.newBuilder()
-                .maximumSize(1000)
-                .build(
-                        new CacheLoader<Term, CachingWrapperFilter>() {
-                            @Override
-                            public CachingWrapperFilter load(Term t) throws Exception {
-                                logger.debug("Encountered a new PrefixFilter term: {}", t);
-                                return new CachingWrapperFilter(new PrefixFilter(t));
-                            }
-                        }
-                );
-
-        wildcardCache = CacheBuilder.newBuilder()
-                .maximumSize(1000)
-                .build(
-                        new CacheLoader<Term, CachingWrapperFilter>() {
-                            @Override
-                            public CachingWrapperFilter load(Term t) throws Exception {
-                                logger.debug("Encountered a new WildcardQuery term: {}", t);
-                                return new CachingWrapperFilter(new QueryWrapperFilter(new WildcardQuery(t)));
-                            }
-                        }
-                );
-
-        termsCache = CacheBuilder.newBuilder()
-                .maximumSize(1000)
-                .build(
-                        new CacheLoader<Set<Term>, CachingWrapperFilter>() {
-                            @Override
-                            public CachingWrapperFilter load(Set<Term> t) throws Exception {
-                                logger.debug("Encountered a new TermsFilter term: {}", t);
-                                TermsFilter termsFilter = new TermsFilter(Lists.newArrayList(t));
-                                return new CachingWrapperFilter(termsFilter);
-                            }
-                        }
-                );
-
-        nGramCache = CacheBuilder.newBuilder()
-                .maximumSize(1000)
-                .build(
-                        new CacheLoader<List<Term>, CachingWrapperFilter>() {
-                            @Override
-                            public CachingWrapperFilter load(List<Term> t) throws Exception {
-                                logger.debug("Encountered a new NGramPhaseQuery term: {}", t);
-                                NGramPhraseQuery pq = new NGramPhraseQuery(LuceneIdentifierAnalyzer.MIN_NGRAM_SIZE);
-                                for (Term term : t) {
-                                    pq.add(term);
-                                }
-                                return new CachingWrapperFilter(new QueryWrapperFilter(pq));
-                            }
-                        }
-                );
+    /**
+     * @param maxSizeMB The maximum memory of the cached matches of all filters, in megabytes.
+     */
+    public LuceneFilterCacheManager(int maxSizeMB) {
+        this.segmentCache = CacheBuilder.newBuilder()
+                .maximumWeight(Math.max(maxSizeMB, 0) * 1024L * 1024L)
+                .weigher(new Weigher<SegmentKey, Object>() {
+                    @Override
+                    public int weigh(SegmentKey key, Object value) {
+                        return (int) Math.min(Integer.MAX_VALUE, SegmentKey.SIZE_IN_BYTES + sizeInBytes(value));
+                    }
+                })
+                .recordStats()
+                .build();
+        logger.info("Lucene filter cache set to {} MB", maxSizeMB);
+    }
+
+    @Resource(name="metrics")
+    public void setMetrics(MetricRegistry metrics) {
+        try {
+            metrics.register(MetricRegistry.name(getClass().getSimpleName(), "hitRatio"),
+                    (Gauge<Double>) () -> segmentCache.stats().hitRate());
+            metrics.register(MetricRegistry.name(getClass().getSimpleName(), "hits"),
+                    (Gauge<Long>) () -> segmentCache.stats().hitCount());
+            metrics.register(MetricRegistry.name(getClass().getSimpleName(), "misses"),
+                    (Gauge<Long>) () -> segmentCache.stats().missCount());
+            metrics.register(MetricRegistry.name(getClass().getSimpleName(), "evictions"),
+                    (Gauge<Long>) () -> segmentCache.stats().evictionCount());
+            metrics.register(MetricRegistry.name(getClass().getSimpleName(), "entries"),
+                    (Gauge<Long>) segmentCache::size);
+            metrics.register(MetricRegistry.name(getClass().getSimpleName(), "sizeInBytes"),
+                    (Gauge<Long>) this::sizeInBytes);
+            metrics.register(MetricRegistry.name(getClass().getSimpleName(), "truncatedTermExpansions"),
+                    (Gauge<Long>) truncatedExpansions::get);
+        } catch (IllegalArgumentException ex) {
+            // skipping if metrics already exists
+        }
+    }
+
+    /**
+     * Sets the maximum number of terms a wildcard pattern is expanded to.
+     *
+     * @param maxTermExpansions The maximum number of terms.
+     */
+    public void setMaxTermExpansions(int maxTermExpansions) {
+        this.maxTermExpansions = Math.max(maxTermExpansions, 1);
     }
 
     public Filter get(FilterType name, Term... key) {
         switch (name) {
             case NGRAM:
-                return nGramCache.getUnchecked(ImmutableList.copyOf(key));
+                return new SegmentCachingFilter(name, ImmutableList.copyOf(key));
             case PREFIX:
-                return prefixCache.getUnchecked(key[0]);
             case WILDCARD:
-                return wildcardCache.getUnchecked(key[0]);
+                return new SegmentCachingFilter(name, key[0]);
             case TERMS:
             default:
-                return termsCache.getUnchecked(ImmutableSet.copyOf(key));
+                return new SegmentCachingFilter(FilterType.TERMS, ImmutableSet.copyOf(key));
+        }
+    }
+
+    /**
+     * @return The estimated memory of the cached matches, in bytes.
+     */
+    public long sizeInBytes() {
+        long size = 0L;
+        for (Object value : this.segmentCache.asMap().values()) {
+            size += SegmentKey.SIZE_IN_BYTES + sizeInBytes(value);
         }
+        return size;
     }
 
+    private static long sizeInBytes(Object value) {
+        if (value instanceof WAH8DocIdSet) {
+            return ((WAH8DocIdSet) value).ramBytesUsed();
+        }
+        if (value instanceof BytesRef[]) {
+            long size = RamUsageEstimator.NUM_BYTES_ARRAY_HEADER;
+            for (BytesRef term : (BytesRef[]) value) {
+                size += TERM_SIZE_IN_BYTES + term.length;
+            }
+            return size;
+        }
+        return 0L;
+    }
+
+    /**
+     * Expands the wildcard pattern to the terms of the reader matching it, looking up the terms of each segment
+     * in the cache.
+     *
+     * @param reader The reader.
+     * @param pattern The wildcard pattern, in the field of the terms.
+     * @return The matching terms in term order, at most the maximum number of term expansions.
+     * @throws IOException If the terms can't be read.
+     */
+    public Term[] getMatchingTerms(IndexReader reader, final Term pattern) throws IOException {
+        final int maxTerms = this.maxTermExpansions;
+        final CompiledAutomaton[] compiled = new CompiledAutomaton[1];
+        final TreeSet<BytesRef> matches = new TreeSet<BytesRef>();
+        boolean truncated = false;
+        for (final AtomicReaderContext context : reader.leaves()) {
+            final BytesRef[] segmentMatches = (BytesRef[]) getSegmentValue(ExpansionType.WILDCARD_TERMS, pattern,
+                    context.reader(), new Callable<Object>() {
+                @Override
+                public Object call() throws IOException {
+                    if (compiled[0] == null) {
+                        compiled[0] = new CompiledAutomaton(WildcardQuery.toAutomaton(pattern));
+                    }
+                    return expand(compiled[0], context.reader().terms(pattern.field()), maxTerms);
+                }
+            });
+            // Expansions cached with a larger bound can hold more terms
+            truncated |= segmentMatches.length > maxTerms;
+            for (BytesRef match : segmentMatches) {
+                matches.add(match);
+            }
+            while (matches.size() > maxTerms) {
+                matches.pollLast();
+                truncated = true;
+            }
+        }
+        if (truncated) {
+            this.truncatedExpansions.incrementAndGet();
+            // Searches repeat the same patterns (e.g. refreshing consoles), only warn once per pattern
+            if (this.warnedPatterns.asMap().putIfAbsent(pattern, Boolean.TRUE) == null) {
+                logger.warn("Wildcard {} matches more than {} terms, only the first {} are searched", pattern,
+                        maxTerms, maxTerms);
+            } else {
+                logger.debug("Wildcard {} truncated to {} terms", pattern, maxTerms);
+            }
+        }
+        final Term[] terms = new Term[matches.size()];
+        int i = 0;
+        for (BytesRef match : matches) {
+            terms[i++] = new Term(pattern.field(), match);
+        }
+        return terms;
+    }
+
+    /**
+     * Walks the terms of a segment matching the automaton, stopping after one term more than the maximum so
+     * the caller knows the expansion was truncated.
+     */
+    private static BytesRef[] expand(CompiledAutomaton compiled, Terms terms, int maxTerms) throws IOException {
+        if (terms == null) {
+            return new BytesRef[0];
+        }
+        final List<BytesRef> matches = new ArrayList<BytesRef>();
+        final TermsEnum termsEnum = compiled.getTermsEnum(terms);
+        BytesRef match;
+        while ((match = termsEnum.next()) != null) {
+            matches.add(BytesRef.deepCopyOf(match));
+            if (matches.size() > maxTerms) {
+                break;
+            }
+        }
+        return matches.toArray(new BytesRef[matches.size()]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Filter createFilter(FilterType type, Object key) {
+        switch (type) {
+            case NGRAM:
+                logger.debug("Encountered a new NGramPhaseQuery term: {}", key);
+                // The n-grams of a query all have the same size
+                final List<Term> grams = (List<Term>) key;
+                NGramPhraseQuery pq = new NGramPhraseQuery(grams.isEmpty() ?
+                        LuceneIdentifierAnalyzer.MIN_NGRAM_SIZE : grams.get(0).text().length());
+                for (Term term : grams) {
+                    pq.add(term);
+                }
+                return new QueryWrapperFilter(pq);
+            case PREFIX:
+                logger.debug("Encountered a new PrefixFilter term: {}", key);
+                return new PrefixFilter((Term) key);
+            case WILDCARD:
+                logger.debug("Encountered a new WildcardQuery term: {}", key);
+                return new QueryWrapperFilter(new WildcardQuery((Term) key));
+            case TERMS:
+            default:
+                logger.debug("Encountered a new TermsFilter term: {}", key);
+                return new TermsFilter(Lists.newArrayList((Set<Term>) key));
+        }
+    }
+
+    /**
+     * Looks up the matches of the filter in the segment of the cache, filtering the segment if they aren't cached.
+     */
+    private DocIdSet getDocIdSet(final FilterType type, final Object key, final AtomicReaderContext context)
+            throws IOException {
+        return (DocIdSet) getSegmentValue(type, key, context.reader(), new Callable<Object>() {
+            @Override
+            public Object call() throws IOException {
+                // Match all documents of the segment, the deletions of the reader are applied to the cached set
+                final DocIdSet docIdSet = createFilter(type, key).getDocIdSet(context, null);
+                final DocIdSetIterator it = (docIdSet == null) ? null : docIdSet.iterator();
+                if (it == null) {
+                    return EMPTY_DOCIDSET;
+                }
+                return new WAH8DocIdSet.Builder().add(it).build();
+            }
+        });
+    }
+
+    /**
+     * Looks up a value cached for the segment, loading it if it isn't cached. Values of the segment are
+     * discarded when the segment is closed.
+     */
+    private Object getSegmentValue(Object type, Object key, AtomicReader reader, Callable<Object> loader)
+            throws IOException {
+        final Object coreKey = reader.getCoreCacheKey();
+        if (reader instanceof SegmentReader && this.closeListenedCores.add(coreKey)) {
+            ((SegmentReader) reader).addCoreClosedListener(this.coreClosedListener);
+        }
+        try {
+            return this.segmentCache.get(new SegmentKey(type, key, coreKey), loader);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private final class SegmentCachingFilter extends Filter {
+        private final FilterType type;
+        private final Object key;
+
+        private SegmentCachingFilter(FilterType type, Object key) {
+            this.type = type;
+            this.key = key;
+        }
+
+        @Override
+        public DocIdSet getDocIdSet(AtomicReaderContext context, Bits acceptDocs) throws IOException {
+            final DocIdSet docIdSet = LuceneFilterCacheManager.this.getDocIdSet(this.type, this.key, context);
+            return (docIdSet == EMPTY_DOCIDSET) ? null : BitsFilteredDocIdSet.wrap(docIdSet, acceptDocs);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SegmentCachingFilter)) {
+                return false;
+            }
+            final SegmentCachingFilter other = (SegmentCachingFilter) o;
+            return this.type == other.type && this.key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.type.hashCode() + this.key.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "SegmentCachingFilter(" + this.type + ":" + this.key + ")";
+        }
+    }
+
+    private static final class SegmentKey {
+        // Rough size of the key and cache entry, so entries of empty sets aren't weightless
+        private static final long SIZE_IN_BYTES = 64L;
+
+        // A FilterType, or an ExpansionType
+        private final Object type;
+        private final Object key;
+        private final Object coreKey;
+        private final int hashCode;
+
+        private SegmentKey(Object type, Object key, Object coreKey) {
+            this.type = type;
+            this.key = key;
+            this.coreKey = coreKey;
+            this.hashCode = 31 * (31 * type.hashCode() + key.hashCode()) + System.identityHashCode(coreKey);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SegmentKey)) {
+                return false;
+            }
+            final SegmentKey other = (SegmentKey) o;
+            return this.hashCode == other.hashCode && this.coreKey == other.coreKey && this.type.equals(other.type)
+                    && this.key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
 }
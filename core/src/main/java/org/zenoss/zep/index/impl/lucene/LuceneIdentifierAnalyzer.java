@@ -27,12 +27,28 @@ public final class LuceneIdentifierAnalyzer extends Analyzer {
     public static final int MIN_NGRAM_SIZE = IndexConstants.MIN_NGRAM_SIZE;
     public static final int MAX_NGRAM_SIZE = IndexConstants.MAX_NGRAM_SIZE;
 
+    private final int minGram;
+    private final int maxGram;
+
+    public LuceneIdentifierAnalyzer() {
+        this(MIN_NGRAM_SIZE, MAX_NGRAM_SIZE);
+    }
+
+    /**
+     * @param minGram The size of the smallest n-grams.
+     * @param maxGram The size of the largest n-grams.
+     */
+    public LuceneIdentifierAnalyzer(int minGram, int maxGram) {
+        this.minGram = minGram;
+        this.maxGram = maxGram;
+    }
+
     @Override
     protected TokenStreamComponents createComponents(String s, Reader reader) {
         final Tokenizer source = new WhitespaceTokenizer(IndexConstants.LUCENE_VERSION, reader);
         TokenStream filter = new LowerCaseFilter(IndexConstants.LUCENE_VERSION, source);
         // Use the 4.3 NGram filter here because it changed a lot >=4.4
-        filter = new NGramTokenFilter(Version.LUCENE_43, filter, MIN_NGRAM_SIZE, MAX_NGRAM_SIZE);
+        filter = new NGramTokenFilter(Version.LUCENE_43, filter, minGram, maxGram);
         return new TokenStreamComponents(source, filter);
     }
 }
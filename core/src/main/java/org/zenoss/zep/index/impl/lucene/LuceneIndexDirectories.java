@@ -0,0 +1,169 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl.lucene;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexDeletionPolicy;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.SnapshotDeletionPolicy;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.util.Bits;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_UPDATE_TIME;
+
+/**
+ * Locates and moves the directories of indexes rebuilt side by side with the live index.
+ * <p>
+ * A shadow index is written to {@code <directory>.shadow} next to the live index. Replacing the live index moves
+ * the live directory to {@code <directory>.old} and the shadow directory to the live directory, then deletes the
+ * old directory. Both directories are left over if the server stops during a rebuild, and are deleted when the
+ * index is opened again.
+ * <p>
+ * Snapshots of an index are copied the same way: the commit is copied to {@code <snapshot>.shadow}, which then
+ * replaces the previous snapshot.
+ */
+final class LuceneIndexDirectories {
+
+    private LuceneIndexDirectories() {
+    }
+
+    static File shadowOf(File directory) {
+        return new File(directory.getParentFile(), directory.getName() + ".shadow");
+    }
+
+    private static File retiredOf(File directory) {
+        return new File(directory.getParentFile(), directory.getName() + ".old");
+    }
+
+    /**
+     * Deletes the shadow and old directories left over next to the live index by an interrupted rebuild.
+     *
+     * @param directory The directory of the live index.
+     * @throws IOException If the directories can't be deleted.
+     */
+    static void deleteLeftovers(File directory) throws IOException {
+        delete(shadowOf(directory));
+        delete(retiredOf(directory));
+    }
+
+    /**
+     * Moves the shadow directory in place of the live directory. The writers of both indexes must be closed;
+     * open readers of the replaced index keep reading its deleted files until they are released.
+     *
+     * @param directory The directory of the live index.
+     * @param shadow The directory of the shadow index.
+     * @throws IOException If the directories can't be moved.
+     */
+    static void replace(File directory, File shadow) throws IOException {
+        final File retired = retiredOf(directory);
+        delete(retired);
+        if (directory.exists()) {
+            Files.move(directory.toPath(), retired.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(shadow.toPath(), directory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        delete(retired);
+    }
+
+    /**
+     * Commits the writer and copies the files of the commit to the target directory. The writer must be configured
+     * with a {@link SnapshotDeletionPolicy}, which keeps the files of the commit while they are copied even if
+     * later commits and merges no longer use them.
+     *
+     * @param writer The writer of the index.
+     * @param target The directory the files are copied to.
+     * @return The latest update time of the events in the copied commit, or zero if it has none.
+     * @throws IOException If the index can't be committed or the files can't be copied.
+     */
+    static long copyCommit(IndexWriter writer, File target) throws IOException {
+        final IndexDeletionPolicy policy = writer.getConfig().getIndexDeletionPolicy();
+        if (!(policy instanceof SnapshotDeletionPolicy)) {
+            throw new IOException("Index in " + writer.getDirectory() + " doesn't keep snapshots");
+        }
+        final SnapshotDeletionPolicy snapshots = (SnapshotDeletionPolicy) policy;
+        writer.commit();
+        final IndexCommit commit = snapshots.snapshot();
+        try {
+            final Directory copy = FSDirectory.open(target);
+            try {
+                for (String name : commit.getFileNames()) {
+                    commit.getDirectory().copy(copy, name, name, IOContext.READONCE);
+                }
+            } finally {
+                copy.close();
+            }
+            return maxUpdateTime(commit);
+        } finally {
+            snapshots.release(commit);
+            // Files of the released commit which are no longer used aren't deleted until the next commit otherwise
+            writer.deleteUnusedFiles();
+        }
+    }
+
+    private static long maxUpdateTime(IndexCommit commit) throws IOException {
+        long max = 0L;
+        final DirectoryReader reader = DirectoryReader.open(commit);
+        try {
+            for (AtomicReaderContext context : reader.leaves()) {
+                final FieldCache.Longs updateTimes = FieldCache.DEFAULT.getLongs(context.reader(), FIELD_UPDATE_TIME,
+                        FieldCache.NUMERIC_UTILS_LONG_PARSER, false);
+                final Bits liveDocs = context.reader().getLiveDocs();
+                for (int doc = 0; doc < context.reader().maxDoc(); doc++) {
+                    if (liveDocs == null || liveDocs.get(doc)) {
+                        max = Math.max(max, updateTimes.get(doc));
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return max;
+    }
+
+    /**
+     * Deletes the directory with all of its files and sub-directories, if it exists.
+     *
+     * @param directory The directory.
+     * @throws IOException If the directory can't be deleted.
+     */
+    static void delete(File directory) throws IOException {
+        if (!directory.exists()) {
+            return;
+        }
+        Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                if (e != null) {
+                    throw e;
+                }
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
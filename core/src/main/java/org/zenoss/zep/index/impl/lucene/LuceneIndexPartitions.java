@@ -0,0 +1,896 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl.lucene;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FilterAtomicReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexReaderContext;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BitsFilteredDocIdSet;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zenoss.protobufs.util.Util.TimestampRange;
+import org.zenoss.zep.ZepInstance;
+import org.zenoss.zep.dao.impl.PartitionTableConfig;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_LAST_SEEN_TIME;
+
+/**
+ * An index split into time slices by the last seen time of the events, matching the partitions of the event
+ * archive table.
+ * <p>
+ * Each slice is a separate index in a sub-directory of the base directory named after the range of last seen
+ * times it holds ({@code <start>-<end>}, in milliseconds). Purging drops whole slices instead of deleting their
+ * documents by query, and searches see all slices through one {@link MultiReader}, skipping the slices outside
+ * of the last seen range of the query (see {@link #newLastSeenFilter(Long, Long)}).
+ * <p>
+ * An event is written to the slice holding its last seen time. The last seen time of an archived event doesn't
+ * change, so updating an event only replaces the document in its own slice.
+ */
+public class LuceneIndexPartitions implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(LuceneIndexPartitions.class);
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("(\\d+)-(\\d+)");
+
+    private final File baseDirectory;
+    private final long partitionMillis;
+    private final Analyzer analyzer;
+    private final ZepInstance zepInstance;
+    private final ConcurrentSkipListMap<Long, Partition> partitions = new ConcurrentSkipListMap<Long, Partition>();
+    // Writing to the slices takes the read lock, dropping slices the write lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Recorded in the commits of slices created later
+    private volatile Map<String, String> commitData = Collections.emptyMap();
+
+    /**
+     * Opens the slices of the index in the base directory. An unpartitioned index left in the base directory by
+     * an earlier version is split into slices (see {@link #splitUnpartitionedIndex()}).
+     *
+     * @param baseDirectory The directory holding the slices.
+     * @param analyzer The analyzer of the index writers.
+     * @param zepInstance Configures the index writers.
+     * @param partitionTableConfig The partitioning of the database table, which sets the time covered by a slice.
+     * @throws IOException If the slices can't be opened.
+     */
+    public LuceneIndexPartitions(File baseDirectory, Analyzer analyzer, ZepInstance zepInstance,
+                                 PartitionTableConfig partitionTableConfig) throws IOException {
+        this(baseDirectory, analyzer, zepInstance, partitionTableConfig.getPartitionUnit().toMillis(
+                partitionTableConfig.getPartitionDuration()));
+        LuceneIndexDirectories.deleteLeftovers(baseDirectory);
+        splitUnpartitionedIndex();
+    }
+
+    private LuceneIndexPartitions(File baseDirectory, Analyzer analyzer, ZepInstance zepInstance,
+                                  long partitionMillis) throws IOException {
+        this.baseDirectory = baseDirectory;
+        this.partitionMillis = partitionMillis;
+        this.analyzer = analyzer;
+        this.zepInstance = zepInstance;
+        openPartitions();
+    }
+
+    private void openPartitions() throws IOException {
+        if (!this.baseDirectory.isDirectory() && !this.baseDirectory.mkdirs()) {
+            throw new IOException("Unable to create index directory: " + this.baseDirectory.getAbsolutePath());
+        }
+        final File[] files = this.baseDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                final Matcher matcher = PARTITION_NAME.matcher(file.getName());
+                if (file.isDirectory() && matcher.matches()) {
+                    final Partition partition = new Partition(Long.parseLong(matcher.group(1)),
+                            Long.parseLong(matcher.group(2)), file);
+                    this.partitions.put(partition.start, partition);
+                }
+            }
+        }
+        logger.info("Opened {} partitions of the index in {}", this.partitions.size(), this.baseDirectory);
+    }
+
+    /**
+     * Splits an unpartitioned index left in the base directory by an earlier version into slices. The slices are
+     * written to a shadow directory which then replaces the base directory, so the unpartitioned index is only
+     * deleted once all of its documents are in the slices, and it is split again if the server stops before.
+     * Slices left next to the unpartitioned index (by a downgrade) are replaced too, the unpartitioned index is the
+     * one which was kept up to date.
+     */
+    private void splitUnpartitionedIndex() throws IOException {
+        final File shadowDirectory = LuceneIndexDirectories.shadowOf(this.baseDirectory);
+        final Directory directory = FSDirectory.open(this.baseDirectory);
+        try {
+            if (!DirectoryReader.indexExists(directory)) {
+                return;
+            }
+            logger.info("Splitting unpartitioned index in {} into partitions", this.baseDirectory);
+            LuceneIndexDirectories.delete(shadowDirectory);
+            final LuceneIndexPartitions shadow = new LuceneIndexPartitions(shadowDirectory, this.analyzer,
+                    this.zepInstance, this.partitionMillis);
+            boolean split = false;
+            try {
+                final DirectoryReader reader = DirectoryReader.open(directory);
+                try {
+                    final int numDocs = shadow.addIndexes(reader);
+                    logger.info("Split {} documents into {} partitions of the index in {}", numDocs,
+                            shadow.partitions.size(), this.baseDirectory);
+                } finally {
+                    reader.close();
+                }
+                // Commits the slices
+                shadow.close();
+                split = true;
+            } finally {
+                if (!split) {
+                    shadow.discard();
+                }
+            }
+        } finally {
+            directory.close();
+        }
+        this.lock.writeLock().lock();
+        try {
+            close();
+            try {
+                LuceneIndexDirectories.replace(this.baseDirectory, shadowDirectory);
+            } finally {
+                openPartitions();
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the documents of another index to the slices holding their last seen times, without analyzing them
+     * again, so fields which aren't stored are kept. The segments of the index are merged into each slice with
+     * their documents of other slices hidden, one slice at a time, leaving out the segments without documents in
+     * the slice. The documents replace no existing documents.
+     *
+     * @param reader Reads the index.
+     * @return The number of documents added.
+     * @throws IOException If the index can't be read or the slices can't be written.
+     */
+    public int addIndexes(IndexReader reader) throws IOException {
+        final List<AtomicReader> segments = new ArrayList<AtomicReader>();
+        final List<FieldCache.Longs> lastSeenTimes = new ArrayList<FieldCache.Longs>();
+        final Map<Long, Partition> slices = new TreeMap<Long, Partition>();
+        int numDocs = 0;
+        this.lock.readLock().lock();
+        try {
+            for (AtomicReaderContext context : reader.leaves()) {
+                final AtomicReader segment = context.reader();
+                // Read from doc values where the index has them, uninverted from the numeric terms otherwise
+                final FieldCache.Longs lastSeen = FieldCache.DEFAULT.getLongs(segment, FIELD_LAST_SEEN_TIME,
+                        FieldCache.NUMERIC_UTILS_LONG_PARSER, false);
+                final Bits liveDocs = segment.getLiveDocs();
+                for (int doc = 0; doc < segment.maxDoc(); doc++) {
+                    if (liveDocs == null || liveDocs.get(doc)) {
+                        final Partition partition = getPartition(lastSeen.get(doc));
+                        slices.put(partition.start, partition);
+                    }
+                }
+                segments.add(segment);
+                lastSeenTimes.add(lastSeen);
+            }
+            for (Partition partition : slices.values()) {
+                final List<IndexReader> parts = new ArrayList<IndexReader>();
+                for (int i = 0; i < segments.size(); i++) {
+                    final AtomicReader segment = segments.get(i);
+                    final FieldCache.Longs lastSeen = lastSeenTimes.get(i);
+                    final Bits liveDocs = segment.getLiveDocs();
+                    final FixedBitSet docs = new FixedBitSet(segment.maxDoc());
+                    for (int doc = 0; doc < segment.maxDoc(); doc++) {
+                        final long time = lastSeen.get(doc);
+                        if ((liveDocs == null || liveDocs.get(doc)) && time >= partition.start
+                                && time < partition.end) {
+                            docs.set(doc);
+                        }
+                    }
+                    if (docs.cardinality() > 0) {
+                        final LiveDocsReader part = new LiveDocsReader(segment, docs);
+                        parts.add(part);
+                        numDocs += part.numDocs();
+                    }
+                }
+                partition.writer.addIndexes(parts.toArray(new IndexReader[parts.size()]));
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return numDocs;
+    }
+
+    /**
+     * Adds or replaces the document of an event in the slice holding its last seen time.
+     *
+     * @param term The UUID term of the event.
+     * @param lastSeen The last seen time of the event.
+     * @param doc The document of the event.
+     * @throws IOException If the document can't be written.
+     */
+    public void updateDocument(Term term, long lastSeen, Document doc) throws IOException {
+        updateDocument(term, lastSeen, doc, this.analyzer);
+    }
+
+    /**
+     * Adds or replaces the document of an event in the slice holding its last seen time, analyzing it with
+     * another analyzer than the analyzer of the index writers.
+     *
+     * @param term The UUID term of the event.
+     * @param lastSeen The last seen time of the event.
+     * @param doc The document of the event.
+     * @param analyzer Analyzes the document.
+     * @throws IOException If the document can't be written.
+     */
+    public void updateDocument(Term term, long lastSeen, Document doc, Analyzer analyzer) throws IOException {
+        this.lock.readLock().lock();
+        try {
+            getPartition(lastSeen).writer.updateDocument(term, doc, analyzer);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The analyzer of the index writers.
+     */
+    public Analyzer getAnalyzer() {
+        return this.analyzer;
+    }
+
+    /**
+     * Deletes the documents matching any of the terms from every slice.
+     *
+     * @param terms The terms.
+     * @throws IOException If the documents can't be deleted.
+     */
+    public void deleteDocuments(Term... terms) throws IOException {
+        this.lock.readLock().lock();
+        try {
+            for (Partition partition : this.partitions.values()) {
+                partition.writer.deleteDocuments(terms);
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drops the slices holding only events last seen before the threshold, and deletes the documents matching
+     * the query from the slice holding the threshold.
+     *
+     * @param threshold The last seen time before which events are purged.
+     * @param query Matches the events last seen before the threshold.
+     * @return The number of slices dropped.
+     * @throws IOException If the slices can't be dropped or the documents can't be deleted.
+     */
+    public int purge(long threshold, Query query) throws IOException {
+        int dropped = 0;
+        this.lock.writeLock().lock();
+        try {
+            final Iterator<Partition> it = this.partitions.values().iterator();
+            while (it.hasNext()) {
+                final Partition partition = it.next();
+                if (partition.start >= threshold) {
+                    break;
+                }
+                if (partition.end <= threshold) {
+                    it.remove();
+                    partition.drop();
+                    dropped++;
+                } else {
+                    partition.writer.deleteDocuments(query);
+                }
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        if (dropped > 0) {
+            logger.info("Dropped {} partitions of the index in {}", dropped, this.baseDirectory);
+        }
+        return dropped;
+    }
+
+    /**
+     * Drops every slice.
+     *
+     * @throws IOException If the slices can't be dropped.
+     */
+    public void deleteAll() throws IOException {
+        this.lock.writeLock().lock();
+        try {
+            final Iterator<Partition> it = this.partitions.values().iterator();
+            while (it.hasNext()) {
+                final Partition partition = it.next();
+                it.remove();
+                partition.drop();
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Commits the changes of every slice.
+     *
+     * @throws IOException If the changes can't be committed.
+     */
+    public void commit() throws IOException {
+        this.lock.readLock().lock();
+        try {
+            for (Partition partition : this.partitions.values()) {
+                partition.writer.commit();
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records user data in the next commit of every slice, including the slices created later.
+     *
+     * @param commitData The user data.
+     */
+    public void setCommitData(Map<String, String> commitData) {
+        this.lock.readLock().lock();
+        try {
+            this.commitData = commitData;
+            for (Partition partition : this.partitions.values()) {
+                partition.writer.setCommitData(commitData);
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The user data of the last commit of a slice, or an empty map if no slice recorded any.
+     */
+    public Map<String, String> getCommitData() {
+        this.lock.readLock().lock();
+        try {
+            for (Partition partition : this.partitions.values()) {
+                final Map<String, String> data = partition.writer.getCommitData();
+                if (!data.isEmpty()) {
+                    return data;
+                }
+            }
+            return this.commitData;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public int numDocs() {
+        this.lock.readLock().lock();
+        try {
+            int numDocs = 0;
+            for (Partition partition : this.partitions.values()) {
+                numDocs += partition.writer.numDocs();
+            }
+            return numDocs;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public long sizeInBytes() throws IOException {
+        this.lock.readLock().lock();
+        try {
+            long size = 0L;
+            for (Partition partition : this.partitions.values()) {
+                for (String name : partition.directory.listAll()) {
+                    size += partition.directory.fileLength(name);
+                }
+            }
+            return size;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Opens a near real-time reader of all slices, which is closed with its last reference.
+     *
+     * @return The reader.
+     * @throws IOException If a slice can't be opened.
+     */
+    public IndexReader openReader() throws IOException {
+        this.lock.readLock().lock();
+        try {
+            final List<IndexReader> readers = new ArrayList<IndexReader>(this.partitions.size());
+            try {
+                for (Partition partition : this.partitions.values()) {
+                    readers.add(DirectoryReader.open(partition.writer, false));
+                }
+            } catch (IOException e) {
+                for (IndexReader reader : readers) {
+                    reader.decRef();
+                }
+                throw e;
+            }
+            return new MultiReader(readers.toArray(new IndexReader[readers.size()]));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Creates a manager of searchers over all slices. Refreshing the manager reopens the slices which changed,
+     * opens the slices created since the last refresh and leaves out the dropped slices.
+     *
+     * @param searcherFactory Creates the searchers.
+     * @return The searcher manager.
+     * @throws IOException If a slice can't be opened.
+     */
+    public ReferenceManager<IndexSearcher> newSearcherManager(SearcherFactory searcherFactory) throws IOException {
+        return new PartitionSearcherManager(searcherFactory);
+    }
+
+    /**
+     * Creates a filter which leaves out the slices (segments of the slice readers of a searcher from
+     * {@link #newSearcherManager(SearcherFactory)}) without events in the range of last seen times, so they
+     * aren't searched at all. It doesn't filter the documents of the remaining slices.
+     *
+     * @param from The start of the range (inclusive), or null if unbounded.
+     * @param to The end of the range (inclusive), or null if unbounded.
+     * @return The filter.
+     */
+    public Filter newLastSeenFilter(final Long from, final Long to) {
+        return new Filter() {
+            @Override
+            public DocIdSet getDocIdSet(AtomicReaderContext context, Bits acceptDocs) throws IOException {
+                final Partition partition = getPartition(context);
+                if (partition != null && !partition.overlaps(from, to)) {
+                    return null;
+                }
+                return BitsFilteredDocIdSet.wrap(new AllDocIdSet(context.reader().maxDoc()), acceptDocs);
+            }
+
+            @Override
+            public String toString() {
+                return "LastSeenPartitionFilter(" + from + "," + to + ")";
+            }
+        };
+    }
+
+    /**
+     * Creates a filter which leaves out the slices without events in any of the ranges of last seen times. The
+     * slices overlapping the smallest range holding all of the ranges (their hull) are searched, including the
+     * slices between the ranges.
+     *
+     * @param ranges The ranges of last seen times.
+     * @return The filter, or null if there are no ranges or the hull is unbounded on both ends.
+     */
+    public Filter newLastSeenFilter(List<TimestampRange> ranges) {
+        if (ranges.isEmpty()) {
+            return null;
+        }
+        Long from = Long.MAX_VALUE, to = Long.MIN_VALUE;
+        for (TimestampRange range : ranges) {
+            from = (from == null || !range.hasStartTime()) ? null : Math.min(from, range.getStartTime());
+            to = (to == null || !range.hasEndTime()) ? null : Math.max(to, range.getEndTime());
+        }
+        if (from == null && to == null) {
+            return null;
+        }
+        return newLastSeenFilter(from, to);
+    }
+
+    private Partition getPartition(AtomicReaderContext context) {
+        if (context.parent == null || !(context.parent.reader() instanceof DirectoryReader)) {
+            return null;
+        }
+        final Directory directory = ((DirectoryReader) context.parent.reader()).directory();
+        for (Partition partition : this.partitions.values()) {
+            if (partition.directory == directory) {
+                return partition;
+            }
+        }
+        // Dropped since the searcher was opened
+        return null;
+    }
+
+    private Partition getPartition(long lastSeen) throws IOException {
+        Map.Entry<Long, Partition> floor = this.partitions.floorEntry(lastSeen);
+        if (floor != null && lastSeen < floor.getValue().end) {
+            return floor.getValue();
+        }
+        synchronized (this) {
+            floor = this.partitions.floorEntry(lastSeen);
+            if (floor != null && lastSeen < floor.getValue().end) {
+                return floor.getValue();
+            }
+            long start = Math.floorDiv(lastSeen, this.partitionMillis) * this.partitionMillis;
+            long end = start + this.partitionMillis;
+            // Slices created with an earlier partition duration keep their ranges, don't overlap them
+            if (floor != null) {
+                start = Math.max(start, floor.getValue().end);
+            }
+            final Map.Entry<Long, Partition> ceiling = this.partitions.higherEntry(lastSeen);
+            if (ceiling != null) {
+                end = Math.min(end, ceiling.getKey());
+            }
+            final Partition partition = new Partition(start, end, new File(this.baseDirectory, start + "-" + end));
+            this.partitions.put(start, partition);
+            logger.info("Created partition of the index in {}", partition.file);
+            return partition;
+        }
+    }
+
+    /**
+     * Commits every slice and copies the commit of each slice to a sub-directory of the target directory named
+     * like the slice. Slices can't be dropped while they are copied.
+     *
+     * @param target The directory of the snapshot.
+     * @return The latest update time of the events copied, or zero if no slice has events.
+     * @throws IOException If a slice can't be committed or copied.
+     */
+    public long snapshot(File target) throws IOException {
+        long maxUpdateTime = 0L;
+        this.lock.readLock().lock();
+        try {
+            for (Partition partition : this.partitions.values()) {
+                maxUpdateTime = Math.max(maxUpdateTime, LuceneIndexDirectories.copyCommit(partition.writer,
+                        new File(target, partition.file.getName())));
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return maxUpdateTime;
+    }
+
+    /**
+     * Replaces the slices of this index with the slices of a snapshot taken by {@link #snapshot(File)}. The
+     * restored slices keep the ranges of last seen times they had when the snapshot was taken.
+     *
+     * @param source The directory of the snapshot.
+     * @throws IOException If the slices can't be restored.
+     */
+    public void restoreSnapshot(File source) throws IOException {
+        deleteAll();
+        int restored = 0;
+        this.lock.writeLock().lock();
+        try {
+            final File[] files = source.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    final Matcher matcher = PARTITION_NAME.matcher(file.getName());
+                    if (!file.isDirectory() || !matcher.matches()) {
+                        continue;
+                    }
+                    final Partition partition = new Partition(Long.parseLong(matcher.group(1)),
+                            Long.parseLong(matcher.group(2)), new File(this.baseDirectory, file.getName()));
+                    this.partitions.put(partition.start, partition);
+                    final Directory snapshot = FSDirectory.open(file);
+                    try {
+                        partition.writer.addIndexes(snapshot);
+                    } finally {
+                        snapshot.close();
+                    }
+                    partition.writer.commit();
+                    restored++;
+                }
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        logger.info("Restored {} partitions of the index in {} from {}", restored, this.baseDirectory, source);
+    }
+
+    /**
+     * Creates an empty index with the same slicing next to this one, for rebuilding the index side by side with
+     * this one. An existing shadow index is deleted.
+     *
+     * @return The shadow index.
+     * @throws IOException If the shadow index can't be created.
+     */
+    public LuceneIndexPartitions newShadow() throws IOException {
+        final File shadowDirectory = LuceneIndexDirectories.shadowOf(this.baseDirectory);
+        LuceneIndexDirectories.delete(shadowDirectory);
+        return new LuceneIndexPartitions(shadowDirectory, this.analyzer, this.zepInstance, this.partitionMillis);
+    }
+
+    /**
+     * Replaces the slices of this index with the slices of a shadow index created by {@link #newShadow()}, which
+     * is closed. Searchers keep reading the replaced slices until they are released, searchers of this index
+     * opened afterwards read the new slices.
+     *
+     * @param shadow The shadow index.
+     * @throws IOException If the slices can't be replaced.
+     */
+    public void replaceWith(LuceneIndexPartitions shadow) throws IOException {
+        // Commit outside of the lock, so only the changes made since are written while readers wait
+        shadow.commit();
+        commit();
+        this.lock.writeLock().lock();
+        try {
+            shadow.close();
+            close();
+            try {
+                LuceneIndexDirectories.replace(this.baseDirectory, shadow.baseDirectory);
+            } finally {
+                // Opens the shadow slices, or the previous slices again if they couldn't be replaced
+                openPartitions();
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Closes the index without committing it and deletes its directory.
+     *
+     * @throws IOException If the index can't be deleted.
+     */
+    public void discard() throws IOException {
+        this.lock.writeLock().lock();
+        try {
+            for (Partition partition : this.partitions.values()) {
+                partition.writer.rollback();
+                partition.directory.close();
+            }
+            this.partitions.clear();
+            LuceneIndexDirectories.delete(this.baseDirectory);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.lock.writeLock().lock();
+        try {
+            IOException failure = null;
+            for (Partition partition : this.partitions.values()) {
+                try {
+                    partition.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            this.partitions.clear();
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private final class Partition {
+        private final long start;
+        private final long end;
+        private final File file;
+        private final Directory directory;
+        private final IndexWriter writer;
+
+        private Partition(long start, long end, File file) throws IOException {
+            this.start = start;
+            this.end = end;
+            this.file = file;
+            this.directory = new MMapDirectory(file);
+            this.writer = new IndexWriter(this.directory,
+                    LuceneEventIndexMapper.createIndexWriterConfig(analyzer, zepInstance));
+            if (!commitData.isEmpty()) {
+                this.writer.setCommitData(commitData);
+            }
+        }
+
+        private boolean overlaps(Long from, Long to) {
+            return (from == null || from < this.end) && (to == null || to >= this.start);
+        }
+
+        private void close() throws IOException {
+            try {
+                this.writer.close();
+            } finally {
+                this.directory.close();
+            }
+        }
+
+        private void drop() throws IOException {
+            // Open searchers keep reading the deleted files until they are released
+            this.writer.rollback();
+            for (String name : this.directory.listAll()) {
+                this.directory.deleteFile(name);
+            }
+            this.directory.close();
+            if (!this.file.delete()) {
+                logger.warn("Unable to delete partition directory: {}", this.file.getAbsolutePath());
+            }
+        }
+    }
+
+    private final class PartitionSearcherManager extends ReferenceManager<IndexSearcher> {
+        private final SearcherFactory searcherFactory;
+
+        private PartitionSearcherManager(SearcherFactory searcherFactory) throws IOException {
+            this.searcherFactory = searcherFactory;
+            this.current = SearcherManager.getSearcher(searcherFactory, openMultiReader(null));
+        }
+
+        @Override
+        protected void decRef(IndexSearcher reference) throws IOException {
+            reference.getIndexReader().decRef();
+        }
+
+        @Override
+        protected IndexSearcher refreshIfNeeded(IndexSearcher referenceToRefresh) throws IOException {
+            final IndexReader reader = openMultiReader(referenceToRefresh.getIndexReader());
+            return (reader == null) ? null : SearcherManager.getSearcher(this.searcherFactory, reader);
+        }
+
+        @Override
+        protected boolean tryIncRef(IndexSearcher reference) {
+            return reference.getIndexReader().tryIncRef();
+        }
+
+        @Override
+        protected int getRefCount(IndexSearcher reference) {
+            return reference.getIndexReader().getRefCount();
+        }
+
+        /**
+         * Opens a reader of all slices, sharing the readers of the slices which didn't change with the previous
+         * reader.
+         *
+         * @return The reader, or null if no slice changed since the previous reader was opened.
+         */
+        private IndexReader openMultiReader(IndexReader previous) throws IOException {
+            final Map<Directory, DirectoryReader> previousReaders = new IdentityHashMap<Directory, DirectoryReader>();
+            if (previous != null) {
+                for (IndexReaderContext child : previous.getContext().children()) {
+                    final DirectoryReader reader = (DirectoryReader) child.reader();
+                    previousReaders.put(reader.directory(), reader);
+                }
+            }
+            lock.readLock().lock();
+            final List<IndexReader> opened = new ArrayList<IndexReader>();
+            try {
+                boolean changed = (previous == null);
+                final List<IndexReader> readers = new ArrayList<IndexReader>(partitions.size());
+                for (Partition partition : partitions.values()) {
+                    final DirectoryReader previousReader = previousReaders.remove(partition.directory);
+                    DirectoryReader reader = (previousReader == null) ? DirectoryReader.open(partition.writer, true)
+                            : DirectoryReader.openIfChanged(previousReader, partition.writer, true);
+                    if (reader == null) {
+                        reader = previousReader;
+                    } else {
+                        opened.add(reader);
+                        changed = true;
+                    }
+                    readers.add(reader);
+                }
+                // Readers of dropped slices are left out
+                if (!changed && previousReaders.isEmpty()) {
+                    return null;
+                }
+                // Takes a reference to each slice reader, shared readers are released with the last multi reader
+                return new MultiReader(readers.toArray(new IndexReader[readers.size()]), false);
+            } finally {
+                lock.readLock().unlock();
+                for (IndexReader reader : opened) {
+                    reader.decRef();
+                }
+            }
+        }
+    }
+
+    /**
+     * A segment showing only some of its documents, for adding them to another index with
+     * {@link IndexWriter#addIndexes(IndexReader...)}.
+     */
+    static final class LiveDocsReader extends FilterAtomicReader {
+        private final FixedBitSet liveDocs;
+        private final int numDocs;
+
+        LiveDocsReader(AtomicReader in, FixedBitSet liveDocs) {
+            super(in);
+            this.liveDocs = liveDocs;
+            this.numDocs = liveDocs.cardinality();
+        }
+
+        @Override
+        public Bits getLiveDocs() {
+            return this.liveDocs;
+        }
+
+        @Override
+        public int numDocs() {
+            return this.numDocs;
+        }
+    }
+
+    /**
+     * Matches every document of a segment, leaving deleted documents to {@link BitsFilteredDocIdSet}.
+     */
+    private static final class AllDocIdSet extends DocIdSet {
+        private final int maxDoc;
+
+        private AllDocIdSet(int maxDoc) {
+            this.maxDoc = maxDoc;
+        }
+
+        @Override
+        public DocIdSetIterator iterator() {
+            return new DocIdSetIterator() {
+                private int doc = -1;
+
+                @Override
+                public int docID() {
+                    return doc;
+                }
+
+                @Override
+                public int nextDoc() {
+                    return advance(doc + 1);
+                }
+
+                @Override
+                public int advance(int target) {
+                    doc = (target < maxDoc) ? target : NO_MORE_DOCS;
+                    return doc;
+                }
+
+                @Override
+                public long cost() {
+                    return maxDoc;
+                }
+            };
+        }
+
+        @Override
+        public Bits bits() {
+            return new Bits.MatchAllBits(maxDoc);
+        }
+
+        @Override
+        public boolean isCacheable() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl.lucene;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.zenoss.protobufs.zep.Zep.EventSummaryRequest;
+import org.zenoss.protobufs.zep.Zep.EventSummaryResult;
+import org.zenoss.zep.ZepException;
+import org.zenoss.zep.index.impl.EventFilterNormalizer;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the results of list requests for the current generation of the index reader.
+ * <p>
+ * Consoles left open on the same filter send identical requests every few seconds, which all search the same
+ * reader until the index is refreshed. The first request for a reader generation searches the index, and
+ * identical requests made at the same time wait for its result instead of searching too. All entries are
+ * discarded as soon as a request is made against a newer reader, so results are never older than the reader
+ * they would have been searched with. Entries are keyed by the reader generation too, so the result of a search
+ * which was still running when the generation changed is never returned for a request against the newer reader.
+ * <p>
+ * Requests are keyed with their filters in canonical form (see {@link EventFilterNormalizer}), so consoles which
+ * list their filter criteria in a different order share entries.
+ * <p>
+ * Partial results of searches which ran out of time are never cached.
+ */
+class LuceneListResultCache {
+
+    /**
+     * Searches the index for a list request.
+     */
+    interface Loader {
+        /**
+         * @return The result of the search.
+         * @throws ZepException If the search fails.
+         */
+        EventSummaryResult load() throws ZepException;
+
+        /**
+         * @return True if the result returned by the last {@link #load()} only holds part of the matches.
+         */
+        boolean isPartial();
+    }
+
+    private final Cache<Key, EventSummaryResult> results;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long generation = -1L;
+    private long epoch = 0L;
+
+    /**
+     * Creates the cache.
+     *
+     * @param maximumEvents The maximum number of events held by all cached results.
+     */
+    LuceneListResultCache(long maximumEvents) {
+        this.results = CacheBuilder.newBuilder()
+                .maximumWeight(maximumEvents)
+                .weigher(new Weigher<Key, EventSummaryResult>() {
+                    @Override
+                    public int weigh(Key key, EventSummaryResult result) {
+                        return 1 + result.getEventsCount();
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Returns the cached result of the request, searching the index with the loader if it isn't cached for
+     * the reader generation.
+     *
+     * @param generation The version of the reader the request is searched with.
+     * @param request The list request.
+     * @param fieldsToLoad The stored fields loaded for each event of the result.
+     * @param loader Searches the index.
+     * @return The result of the request.
+     * @throws ZepException If the search fails.
+     */
+    EventSummaryResult get(long generation, EventSummaryRequest request, Set<String> fieldsToLoad,
+                           final Loader loader) throws ZepException {
+        final long epoch;
+        synchronized (this) {
+            if (generation > this.generation) {
+                this.results.invalidateAll();
+                this.generation = generation;
+            } else if (generation < this.generation) {
+                // Searcher acquired before the last refresh - don't cache stale results
+                return loader.load();
+            }
+            epoch = this.epoch;
+        }
+        final Key key = new Key(epoch, generation, normalize(request), fieldsToLoad);
+        final boolean[] loaded = new boolean[1];
+        try {
+            final EventSummaryResult result = this.results.get(key, new Callable<EventSummaryResult>() {
+                @Override
+                public EventSummaryResult call() throws ZepException, PartialResultException {
+                    loaded[0] = true;
+                    final EventSummaryResult result = loader.load();
+                    if (loader.isPartial()) {
+                        throw new PartialResultException(result);
+                    }
+                    return result;
+                }
+            });
+            (loaded[0] ? this.misses : this.hits).incrementAndGet();
+            return result;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof PartialResultException) {
+                this.misses.incrementAndGet();
+                if (!loaded[0]) {
+                    // Waited for a search which ran out of time - search again with this request's time limit
+                    return loader.load();
+                }
+                return ((PartialResultException) e.getCause()).result;
+            }
+            if (e.getCause() instanceof ZepException) {
+                throw (ZepException) e.getCause();
+            }
+            throw new ZepException(e.getCause());
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Discards all entries. The next request starts a new generation, whatever the version of its reader (the
+     * readers of a swapped in index start at lower versions).
+     */
+    synchronized void invalidateAll() {
+        this.results.invalidateAll();
+        this.generation = -1L;
+        // Results of searches still running against the previous index don't match the keys of the new one
+        this.epoch++;
+    }
+
+    /**
+     * Returns the share of requests answered from the cache.
+     *
+     * @return The hit ratio, between 0 and 1.
+     */
+    double getHitRatio() {
+        final long hitCount = this.hits.get();
+        final long requests = hitCount + this.misses.get();
+        return (requests == 0) ? 1.0 : (double) hitCount / requests;
+    }
+
+    long getHitCount() {
+        return this.hits.get();
+    }
+
+    long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * Returns the request with its filters in canonical form.
+     *
+     * @param request The list request.
+     * @return The request to key the cache with.
+     */
+    static EventSummaryRequest normalize(EventSummaryRequest request) {
+        if (!request.hasEventFilter() && !request.hasExclusionFilter()) {
+            return request;
+        }
+        final EventSummaryRequest.Builder builder = request.toBuilder();
+        if (request.hasEventFilter()) {
+            builder.setEventFilter(EventFilterNormalizer.normalize(request.getEventFilter()));
+        }
+        if (request.hasExclusionFilter()) {
+            builder.setExclusionFilter(EventFilterNormalizer.normalize(request.getExclusionFilter()));
+        }
+        return builder.build();
+    }
+
+    private static final class Key {
+        private final long epoch;
+        private final long generation;
+        private final EventSummaryRequest request;
+        private final Set<String> fieldsToLoad;
+        private final int hashCode;
+
+        private Key(long epoch, long generation, EventSummaryRequest request, Set<String> fieldsToLoad) {
+            this.epoch = epoch;
+            this.generation = generation;
+            this.request = request;
+            this.fieldsToLoad = fieldsToLoad;
+            this.hashCode = 31 * (31 * Long.hashCode(generation) + request.hashCode()) + fieldsToLoad.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return this.hashCode == other.hashCode && this.epoch == other.epoch
+                    && this.generation == other.generation && this.request.equals(other.request)
+                    && this.fieldsToLoad.equals(other.fieldsToLoad);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+
+    private static final class PartialResultException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final transient EventSummaryResult result;
+
+        private PartialResultException(EventSummaryResult result) {
+            super(null, null, false, false);
+            this.result = result;
+        }
+    }
+}
@@ -12,15 +12,12 @@ package org.zenoss.zep.index.impl.lucene;
 
 import com.google.protobuf.ProtocolMessageEnum;
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.reverse.ReverseStringFilter;
 import org.apache.lucene.index.*;
 import org.apache.lucene.queries.BooleanFilter;
 import org.apache.lucene.queries.FilterClause;
 import org.apache.lucene.search.*;
 import org.apache.lucene.util.BytesRef;
-import org.apache.lucene.util.automaton.Automaton;
-import org.apache.lucene.util.automaton.CompiledAutomaton;
 import org.springframework.util.StringUtils;
 import org.zenoss.protobufs.util.Util.TimestampRange;
 import org.zenoss.protobufs.zep.Zep.EventDetailItem;
@@ -30,43 +27,69 @@ import org.zenoss.zep.ZepException;
 import org.zenoss.zep.index.IndexedDetailsConfiguration;
 import org.zenoss.zep.index.impl.BaseQueryBuilder;
 import org.zenoss.zep.index.impl.IndexConstants;
+import org.zenoss.zep.index.impl.NGramIndexConfig;
 import org.zenoss.zep.utils.IpRange;
 import org.zenoss.zep.utils.IpUtils;
 
 import java.io.IOException;
-import java.io.StringReader;
 import java.net.InetAddress;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.zenoss.zep.index.impl.lucene.LuceneFilterCacheManager.FilterType.*;
 
 public class LuceneQueryBuilder extends BaseQueryBuilder<LuceneQueryBuilder> {
+    private static final NGramIndexConfig DEFAULT_NGRAM_CONFIG = new NGramIndexConfig();
+
     private final IndexedDetailsConfiguration indexedDetailsConfiguration;
     private final LuceneFilterCacheManager filterCache;
     private final IndexReader reader;
+    private final NGramIndexConfig nGramConfig;
+    // Set by the builder and its sub-builders when terms are looked up in the reader
+    private final AtomicBoolean readerTermsUsed;
 
     public LuceneQueryBuilder(LuceneFilterCacheManager fcm, IndexReader reader,
                               IndexedDetailsConfiguration configuration) {
-        this(Occur.MUST, fcm, reader, configuration);
+        this(Occur.MUST, fcm, reader, configuration, DEFAULT_NGRAM_CONFIG, new AtomicBoolean());
     }
 
     public LuceneQueryBuilder(FilterOperator op, LuceneFilterCacheManager fcm, IndexReader reader,
                               IndexedDetailsConfiguration configuration) {
-        this(op == FilterOperator.OR ? Occur.SHOULD : Occur.MUST, fcm, reader, configuration);
+        this(op, fcm, reader, configuration, DEFAULT_NGRAM_CONFIG);
+    }
+
+    public LuceneQueryBuilder(FilterOperator op, LuceneFilterCacheManager fcm, IndexReader reader,
+                              IndexedDetailsConfiguration configuration, NGramIndexConfig nGramConfig) {
+        this(op == FilterOperator.OR ? Occur.SHOULD : Occur.MUST, fcm, reader, configuration, nGramConfig,
+                new AtomicBoolean());
     }
 
     private LuceneQueryBuilder(Occur occur, LuceneFilterCacheManager fcm, IndexReader reader,
-                               IndexedDetailsConfiguration configuration) {
+                               IndexedDetailsConfiguration configuration, NGramIndexConfig nGramConfig,
+                               AtomicBoolean readerTermsUsed) {
         super(occur);
         this.filterCache = fcm;
         this.reader = reader;
         this.indexedDetailsConfiguration = configuration;
+        this.nGramConfig = nGramConfig;
+        this.readerTermsUsed = readerTermsUsed;
     }
 
     @Override
     protected LuceneQueryBuilder subBuilder(Occur occur) {
-        return new LuceneQueryBuilder(occur, filterCache, reader, indexedDetailsConfiguration);
+        return new LuceneQueryBuilder(occur, filterCache, reader, indexedDetailsConfiguration, nGramConfig,
+                readerTermsUsed);
+    }
+
+    /**
+     * Returns whether the query built depends on the terms of the reader (wildcards expanded to the matching terms
+     * of the index), in which case it is only valid for the reader it was built with.
+     *
+     * @return True if terms were looked up in the reader while building the query.
+     */
+    public boolean isReaderDependent() {
+        return this.readerTermsUsed.get();
     }
 
     @Override
@@ -182,7 +205,7 @@ public class LuceneQueryBuilder extends BaseQueryBuilder<LuceneQueryBuilder> {
     private void buildFullTextFilters(List<Filter> filters, String fieldName, Set<String> values) throws ZepException {
         if (values == null || values.isEmpty()) return;
 
-        Analyzer analyzer = new LuceneSummaryAnalyzer();
+        Analyzer analyzer = LuceneAnalyzers.summary();
         BooleanFilter outerFilter = new BooleanFilter(); // SHOULD
         for (String value : values) {
             // If we encounter a term which starts with a quote, start a new multi-phrase query.
@@ -207,7 +230,7 @@ public class LuceneQueryBuilder extends BaseQueryBuilder<LuceneQueryBuilder> {
 
                 if (pq == null) {
                     // We aren't in quoted string - just add as query on field
-                    Term term = new Term(fieldName, token);
+                    Term term = toWildcardTerm(fieldName, token);
                     innerFilter.add(filterCache.get(WILDCARD, term), BooleanClause.Occur.MUST);
                 } else {
                     final boolean endsWithQuote = token.endsWith("\"");
@@ -254,7 +277,7 @@ public class LuceneQueryBuilder extends BaseQueryBuilder<LuceneQueryBuilder> {
 
     private void buildIdentifierFilters(List<Filter> filters, String fieldName, Set<String> values) throws ZepException {
         if (values == null || values.isEmpty()) return;
-        final Analyzer analyzer = new LuceneIdentifierAnalyzer();
+        final boolean nGrams = nGramConfig.isEnabled(fieldName);
         for (String value : values) {
             final Filter filter;
             value = StringUtils.trimTrailingCharacter(value, '*');
@@ -263,10 +286,19 @@ public class LuceneQueryBuilder extends BaseQueryBuilder<LuceneQueryBuilder> {
 
             if (value.isEmpty() || !unquoted.equals(value)) {
                 filter = filterCache.get(WILDCARD, new Term(nonAnalyzed(fieldName), unquoted.toLowerCase()));
-            } else if (value.length() < LuceneIdentifierAnalyzer.MIN_NGRAM_SIZE) {
+            } else if (!nGrams) {
+                // Without n-grams, substrings are only found by enumerating the values of the field
+                filter = filterCache.get(WILDCARD, new Term(nonAnalyzed(fieldName), "*" + value.toLowerCase() + "*"));
+            } else if (value.length() < nGramConfig.getMinGram()) {
                 filter = filterCache.get(PREFIX, new Term(fieldName, value.toLowerCase()));
+            } else if (nGramConfig.getMinGram() != nGramConfig.getMaxGram() && isMultiWord(value)) {
+                // The n-grams of a word are indexed one size after the other, so n-grams of the same size in
+                // consecutive words aren't at consecutive positions and a phrase across words can't match them
+                filter = filterCache.get(WILDCARD, new Term(nonAnalyzed(fieldName), "*" + value.toLowerCase() + "*"));
             } else {
-                // Use NGramPhraseQuery (new in Lucene 3.5 and optimized for searching NGram fields)
+                // Use NGramPhraseQuery (new in Lucene 3.5 and optimized for searching NGram fields) on the largest
+                // n-grams which fit the value, which match it with the fewest terms
+                final Analyzer analyzer = LuceneAnalyzers.identifier(nGramConfig.getQueryGram(value));
                 List<String> tokens = getTokens(fieldName, analyzer, value);
                 Term[] terms = new Term[tokens.size()];
                 int i = 0;
@@ -278,6 +310,10 @@ public class LuceneQueryBuilder extends BaseQueryBuilder<LuceneQueryBuilder> {
         }
     }
 
+    private static boolean isMultiWord(String value) {
+        return value.trim().split("\\s+").length > 1;
+    }
+
     private void buildIpAddressFilters(List<Filter> filters, String fieldName, Set<InetAddress> values) throws ZepException {
         if (values == null || values.isEmpty()) return;
         Set<String> hosts = new HashSet<String>(values.size());
@@ -288,14 +324,58 @@ public class LuceneQueryBuilder extends BaseQueryBuilder<LuceneQueryBuilder> {
 
     private void buildIpAddressRangeFilters(List<Filter> filters, String fieldName, Set<IpRange> values) throws ZepException {
         if (values == null || values.isEmpty()) return;
-        Set<Range<BytesRef>> ranges = new HashSet<Range<BytesRef>>(values.size());
         for (IpRange range : values) {
-            BytesRef from  = new BytesRef(IpUtils.canonicalIpAddress(range.getFrom()));
-            BytesRef to = new BytesRef(IpUtils.canonicalIpAddress(range.getTo()));
-            filters.add(new TermRangeFilter(fieldName + "_sort", from, to, true, true));
+            final long[] from = IpUtils.toSortableLongs(range.getFrom());
+            final long[] to = IpUtils.toSortableLongs(range.getTo());
+            if (from.length == 1) {
+                filters.add(NumericRangeFilter.newLongRange(fieldName + IndexConstants.IP_ADDRESS_V4_SUFFIX,
+                        from[0], to[0], true, true));
+            } else {
+                final BooleanFilter bf = new BooleanFilter();
+                bf.add(newIpv6RangeFilter(fieldName, from, to), BooleanClause.Occur.SHOULD);
+                // Details with several IPv6 addresses only have their canonical addresses indexed
+                bf.add(new TermRangeFilter(fieldName + IndexConstants.IP_ADDRESS_V6_MULTI_SUFFIX,
+                        new BytesRef(IpUtils.canonicalIpAddress(range.getFrom())),
+                        new BytesRef(IpUtils.canonicalIpAddress(range.getTo())), true, true),
+                        BooleanClause.Occur.SHOULD);
+                filters.add(bf);
+            }
         }
     }
 
+    /**
+     * Matches the IPv6 addresses from the high and low 64 bits of the first address to the high and low 64 bits
+     * of the last address.
+     */
+    private static Filter newIpv6RangeFilter(String fieldName, long[] from, long[] to) {
+        final String highField = fieldName + IndexConstants.IP_ADDRESS_V6_HIGH_SUFFIX;
+        final String lowField = fieldName + IndexConstants.IP_ADDRESS_V6_LOW_SUFFIX;
+        if (from[1] == Long.MIN_VALUE && to[1] == Long.MAX_VALUE) {
+            // Block of /64 or larger
+            return NumericRangeFilter.newLongRange(highField, from[0], to[0], true, true);
+        }
+        final BooleanFilter bf = new BooleanFilter();
+        if (from[0] == to[0]) {
+            bf.add(NumericRangeFilter.newLongRange(highField, from[0], from[0], true, true),
+                    BooleanClause.Occur.MUST);
+            bf.add(NumericRangeFilter.newLongRange(lowField, from[1], to[1], true, true), BooleanClause.Occur.MUST);
+            return bf;
+        }
+        final BooleanFilter first = new BooleanFilter();
+        first.add(NumericRangeFilter.newLongRange(highField, from[0], from[0], true, true), BooleanClause.Occur.MUST);
+        first.add(NumericRangeFilter.newLongRange(lowField, from[1], null, true, true), BooleanClause.Occur.MUST);
+        bf.add(first, BooleanClause.Occur.SHOULD);
+        if (to[0] > from[0] + 1) {
+            bf.add(NumericRangeFilter.newLongRange(highField, from[0], to[0], false, false),
+                    BooleanClause.Occur.SHOULD);
+        }
+        final BooleanFilter last = new BooleanFilter();
+        last.add(NumericRangeFilter.newLongRange(highField, to[0], to[0], true, true), BooleanClause.Occur.MUST);
+        last.add(NumericRangeFilter.newLongRange(lowField, null, to[1], true, true), BooleanClause.Occur.MUST);
+        bf.add(last, BooleanClause.Occur.SHOULD);
+        return bf;
+    }
+
     private void buildIpAddressSubstringFilters(List<Filter> filters, String fieldName, Set<String> values) throws ZepException {
         if (values == null || values.isEmpty()) return;
         for (String val : values) {
@@ -373,7 +453,7 @@ public class LuceneQueryBuilder extends BaseQueryBuilder<LuceneQueryBuilder> {
 
     private void buildPathFilters(List<Filter> filters, String fieldName, Set<String> values) throws ZepException {
         if (values == null || values.isEmpty()) return;
-        final Analyzer analyzer = new LucenePathAnalyzer();
+        final Analyzer analyzer = LuceneAnalyzers.path();
         for (String value : values) {
             final Filter filter;
             String value_without_leading_wildcard = StringUtils.trimLeadingCharacter(value, '*');
@@ -455,53 +535,61 @@ public class LuceneQueryBuilder extends BaseQueryBuilder<LuceneQueryBuilder> {
      * @throws ZepException If an exception occur.
      */
     private static List<String> getTokens(String fieldName, Analyzer analyzer, String query) throws ZepException {
-        final List<String> tokens = new ArrayList<String>();
         try {
-            TokenStream ts = analyzer.tokenStream(fieldName, new StringReader(query));
-            CharTermAttribute term = ts.addAttribute(CharTermAttribute.class);
-            try {
-                ts.reset();
-                while (ts.incrementToken()) {
-                    tokens.add(term.toString());
-                }
-                ts.end();
-            } catch (IOException e) {
-                throw new ZepException(e.getLocalizedMessage(), e);
-            } finally {
-                ts.close();
-            }
+            return LuceneAnalyzers.tokenize(analyzer, fieldName, query);
         } catch (IOException e) {
             throw new ZepException(e.getLocalizedMessage(), e);
         }
-        return tokens;
     }
 
-    private static Term[] getMatchingTerms(String fieldName, IndexReader reader, String value)
+    private Term[] getMatchingTerms(String fieldName, IndexReader reader, String value)
             throws ZepException {
         // Don't search for matches if text doesn't contain wildcards
         if (value.indexOf('*') == -1 && value.indexOf('?') == -1)
             return new Term[]{new Term(fieldName, value)};
 
+        this.readerTermsUsed.set(true);
+
         logger.debug("getMatchingTerms: field={}, value={}", fieldName, value);
-        List<Term> matches = new ArrayList<Term>();
-        Automaton automaton = WildcardQuery.toAutomaton(new Term(fieldName, value));
-        CompiledAutomaton compiled = new CompiledAutomaton(automaton);
         try {
-            Terms terms = SlowCompositeReaderWrapper.wrap(reader).terms(fieldName);
-            TermsEnum wildcardTermEnum = compiled.getTermsEnum(terms);
-            BytesRef match;
-            while (wildcardTermEnum.next() != null) {
-                match = wildcardTermEnum.term();
-                logger.debug("Match: {}", match);
-                matches.add(new Term(fieldName, match.utf8ToString()));
+            final Term pattern = toWildcardTerm(fieldName, value);
+            final Term[] matches = filterCache.getMatchingTerms(reader, pattern);
+            if (pattern.field().equals(fieldName)) {
+                return matches;
             }
-            return matches.toArray(new Term[matches.size()]);
+            final Term[] terms = new Term[matches.length];
+            for (int i = 0; i < matches.length; i++) {
+                terms[i] = new Term(fieldName, reverse(matches[i].text()));
+            }
+            return terms;
         } catch (IOException e) {
             throw new ZepException(e.getLocalizedMessage(), e);
         }
     }
 
-    private static MultiPhraseQuery createIpAddressMultiPhraseQuery(String fieldName, IndexReader reader, String[] tokens)
+    /**
+     * Returns the term of a wildcard pattern. Patterns of a field indexed reversed which start with a wildcard
+     * and don't end with one (e.g. <code>*fail</code>) are reversed (<code>liaf*</code>) on the reversed field, so
+     * the terms they match are found from their leading characters instead of scanning every term of the field.
+     */
+    static Term toWildcardTerm(String fieldName, String pattern) {
+        final String reversedField = IndexConstants.REVERSED.get(fieldName);
+        if (reversedField != null && !pattern.isEmpty() && isWildcard(pattern.charAt(0)) &&
+                !isWildcard(pattern.charAt(pattern.length() - 1))) {
+            return new Term(reversedField, reverse(pattern));
+        }
+        return new Term(fieldName, pattern);
+    }
+
+    private static boolean isWildcard(char c) {
+        return c == '*' || c == '?';
+    }
+
+    private static String reverse(String value) {
+        return ReverseStringFilter.reverse(IndexConstants.LUCENE_VERSION, value);
+    }
+
+    private MultiPhraseQuery createIpAddressMultiPhraseQuery(String fieldName, IndexReader reader, String[] tokens)
             throws ZepException {
         final MultiPhraseQuery pq = new MultiPhraseQuery();
         for (String token : tokens) {
@@ -0,0 +1,175 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl.lucene;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.lucene.search.Query;
+import org.zenoss.protobufs.zep.Zep.EventFilter;
+import org.zenoss.zep.ZepException;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the queries compiled from canonical event filters (see
+ * {@link org.zenoss.zep.index.impl.EventFilterNormalizer}).
+ * <p>
+ * Most queries only depend on their filters and the configuration they were compiled with (the indexed event
+ * details), and are reused until evicted. Queries holding the terms of the index matched by a wildcard are only
+ * reused with the reader they were compiled with, they are compiled again for a newer reader.
+ */
+class LuceneQueryPlanCache {
+
+    /**
+     * Compiles the query of a filter.
+     */
+    interface Compiler {
+        /**
+         * @return The compiled query.
+         * @throws ZepException If the query can't be compiled.
+         */
+        Plan compile() throws ZepException;
+    }
+
+    /**
+     * A compiled query. Cached queries are shared by searches and must not be modified.
+     */
+    static final class Plan {
+        private final Query query;
+        private final boolean readerDependent;
+        private final long readerVersion;
+
+        /**
+         * @param query The query.
+         * @param readerDependent True if the query holds terms looked up in the reader.
+         */
+        Plan(Query query, boolean readerDependent) {
+            this(query, readerDependent, -1L);
+        }
+
+        private Plan(Query query, boolean readerDependent, long readerVersion) {
+            this.query = query;
+            this.readerDependent = readerDependent;
+            this.readerVersion = readerVersion;
+        }
+
+        Query getQuery() {
+            return this.query;
+        }
+    }
+
+    private final Cache<Key, Plan> plans;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maximumSize The maximum number of cached queries.
+     */
+    LuceneQueryPlanCache(int maximumSize) {
+        this.plans = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    /**
+     * Returns the cached query of the filters, compiling it if it isn't cached or was compiled for another reader.
+     *
+     * @param readerVersion The version of the reader the query is searched with, or -1 if it has no version.
+     * @param config The configuration the query is compiled with, may be null. Queries compiled with a previous
+     *               configuration are no longer used, and are evicted like queries no longer searched.
+     * @param filter The canonical filter, may be null.
+     * @param exclusionFilter The canonical exclusion filter, may be null.
+     * @param compiler Compiles the query.
+     * @return The query.
+     * @throws ZepException If the query can't be compiled.
+     */
+    Query get(long readerVersion, Object config, EventFilter filter, EventFilter exclusionFilter,
+              Compiler compiler) throws ZepException {
+        final Key key = new Key(config, filter, exclusionFilter);
+        final Plan cached = this.plans.getIfPresent(key);
+        if (cached != null && (!cached.readerDependent ||
+                (readerVersion >= 0 && cached.readerVersion == readerVersion))) {
+            this.hits.incrementAndGet();
+            return cached.query;
+        }
+        this.misses.incrementAndGet();
+        final Plan plan = compiler.compile();
+        if (!plan.readerDependent) {
+            this.plans.put(key, plan);
+        } else if (readerVersion >= 0 && (cached == null || cached.readerVersion < readerVersion)) {
+            // Don't replace the query of a newer reader with the query of a searcher acquired before a refresh
+            this.plans.put(key, new Plan(plan.query, true, readerVersion));
+        }
+        return plan.query;
+    }
+
+    /**
+     * Discards the queries holding terms of the readers, whose versions don't follow the versions of the readers
+     * of a swapped in index.
+     */
+    void invalidateReaderDependent() {
+        for (Iterator<Plan> it = this.plans.asMap().values().iterator(); it.hasNext(); ) {
+            if (it.next().readerDependent) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the share of queries taken from the cache.
+     *
+     * @return The hit ratio, between 0 and 1.
+     */
+    double getHitRatio() {
+        final long hitCount = this.hits.get();
+        final long requests = hitCount + this.misses.get();
+        return (requests == 0) ? 1.0 : (double) hitCount / requests;
+    }
+
+    long getHitCount() {
+        return this.hits.get();
+    }
+
+    long getMissCount() {
+        return this.misses.get();
+    }
+
+    private static final class Key {
+        private final Object config;
+        private final EventFilter filter;
+        private final EventFilter exclusionFilter;
+        private final int hashCode;
+
+        private Key(Object config, EventFilter filter, EventFilter exclusionFilter) {
+            this.config = config;
+            this.filter = filter;
+            this.exclusionFilter = exclusionFilter;
+            this.hashCode = Objects.hashCode(config, filter, exclusionFilter);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return this.hashCode == other.hashCode && Objects.equal(this.config, other.config)
+                    && Objects.equal(this.filter, other.filter)
+                    && Objects.equal(this.exclusionFilter, other.exclusionFilter);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+}
@@ -9,50 +9,52 @@
 
 package org.zenoss.zep.index.impl.lucene;
 
-import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.search.Query;
-import org.apache.lucene.search.Sort;
+import org.zenoss.protobufs.zep.Zep.EventSummary;
 import org.zenoss.zep.index.impl.SavedSearch;
 
 import java.io.IOException;
+import java.util.List;
 
+/**
+ * A saved search holding the keys of the events it matched when it was created, rather than a reference to the
+ * index reader it was searched with. Pages of events are read from the current index (or the database for the
+ * event archive), so the segments of the reader can be released by merges as soon as the search is saved.
+ */
 public final class LuceneSavedSearch extends SavedSearch {
-    private IndexReader reader;
-    private final Query query;
-    private final Sort sort;
+    private final LuceneSavedSearchKeys keys;
 
-    public LuceneSavedSearch(String uuid, IndexReader reader, Query query, Sort sort, int timeout) {
+    LuceneSavedSearch(String uuid, LuceneSavedSearchKeys keys, int timeout) {
         super(uuid, timeout);
-        this.reader = reader;
-        this.query = query;
-        this.sort = sort;
+        this.keys = keys;
     }
 
-    public IndexReader getReader() {
-        return this.reader;
+    /**
+     * @return The number of events matched by the search.
+     */
+    public int getTotal() {
+        return this.keys.size();
     }
 
-    public Query getQuery() {
-        return this.query;
+    /**
+     * Returns the keys of a page of the matched events.
+     *
+     * @param offset The position of the first event.
+     * @param limit The maximum number of events.
+     * @return The events, with only the UUID and last seen time set.
+     * @throws IOException If the keys can't be read.
+     */
+    public List<EventSummary> getKeys(int offset, int limit) throws IOException {
+        return this.keys.get(offset, limit);
     }
 
-    public Sort getSort() {
-        return sort;
-    }
-
-    public synchronized void close() throws IOException {
-        if (this.reader != null) {
-            this.reader.decRef();
-            this.reader = null;
-        }
+    public void close() throws IOException {
+        this.keys.close();
     }
 
     @Override
     public String toString() {
         return "LuceneSavedSearch{uuid=" + getUuid() +
-                ", reader=" + reader +
-                ", query=" + query +
-                ", sort=" + sort +
+                ", total=" + keys.size() +
                 ", timeout=" + getTimeout() +
                 '}';
     }
@@ -0,0 +1,276 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl.lucene;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.util.BytesRef;
+import org.zenoss.protobufs.zep.Zep.EventSummary;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_LAST_SEEN_TIME;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_UUID;
+
+/**
+ * The keys (UUID and last seen time) of the events matched by a saved search, in the order of the search.
+ * <p>
+ * Each key takes 24 bytes. Up to a maximum number of keys are held in memory, the keys of larger searches are
+ * spilled to a temporary file which is read a page at a time, so the memory held by a saved search is bounded
+ * whatever the number of events it matched.
+ */
+final class LuceneSavedSearchKeys implements Closeable {
+
+    private static final int KEY_LONGS = 3;
+    private static final int KEY_BYTES = KEY_LONGS * 8;
+
+    private static final Set<String> KEY_FIELDS = ImmutableSet.of(FIELD_UUID, FIELD_LAST_SEEN_TIME);
+
+    private final int size;
+    private final long[] keys;
+    private File file;
+
+    private LuceneSavedSearchKeys(int size, long[] keys, File file) {
+        this.size = size;
+        this.keys = keys;
+        this.file = file;
+    }
+
+    /**
+     * Searches the query and collects the keys of the matching events in the order of the sort. The matches are
+     * read a chunk at a time, each search continuing after the last match of the previous chunk, so only one chunk
+     * of matches and the keys held in memory by the builder are in memory at a time.
+     *
+     * @param searcher The searcher of the saved search.
+     * @param query The query of the saved search.
+     * @param sort The sort of the keys, which must end on a unique field (see
+     *             {@link LuceneSearchCursor#withTieBreaker(Sort)}) and be rewritten for the searcher.
+     * @param chunkSize The number of matches read at a time.
+     * @param maxKeysInMemory The maximum number of keys held in memory.
+     * @return The keys.
+     * @throws IOException If the index can't be searched or the keys can't be spilled.
+     */
+    static LuceneSavedSearchKeys collect(IndexSearcher searcher, Query query, Sort sort, int chunkSize,
+                                         int maxKeysInMemory) throws IOException {
+        final List<AtomicReaderContext> leaves = searcher.getIndexReader().leaves();
+        final BytesRef uuid = new BytesRef();
+        final Builder keys = new Builder(maxKeysInMemory);
+        boolean built = false;
+        try {
+            FieldDoc after = null;
+            TopDocs docs;
+            do {
+                docs = searcher.searchAfter(after, query, null, chunkSize, sort, false, false);
+                for (ScoreDoc scoreDoc : docs.scoreDocs) {
+                    final AtomicReaderContext leaf = leaves.get(ReaderUtil.subIndex(scoreDoc.doc, leaves));
+                    final SortedDocValues uuids = leaf.reader().getSortedDocValues(FIELD_UUID);
+                    final NumericDocValues lastSeenTimes = leaf.reader().getNumericDocValues(FIELD_LAST_SEEN_TIME);
+                    if (uuids != null && lastSeenTimes != null) {
+                        final int segmentDoc = scoreDoc.doc - leaf.docBase;
+                        uuids.get(segmentDoc, uuid);
+                        keys.add(uuid.utf8ToString(), lastSeenTimes.get(segmentDoc));
+                    } else {
+                        // Segment written before the doc values were indexed
+                        final Document doc = searcher.doc(scoreDoc.doc, KEY_FIELDS);
+                        keys.add(doc.get(FIELD_UUID), Long.parseLong(doc.get(FIELD_LAST_SEEN_TIME)));
+                    }
+                }
+                if (docs.scoreDocs.length > 0) {
+                    after = (FieldDoc) docs.scoreDocs[docs.scoreDocs.length - 1];
+                }
+            } while (docs.scoreDocs.length == chunkSize);
+            final LuceneSavedSearchKeys result = keys.build();
+            built = true;
+            return result;
+        } finally {
+            if (!built) {
+                keys.discard();
+            }
+        }
+    }
+
+    /**
+     * @return The number of events matched by the search.
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * @return The file the keys were spilled to, or null if they are held in memory or were closed.
+     */
+    synchronized File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Returns a page of keys.
+     *
+     * @param offset The position of the first key.
+     * @param limit The maximum number of keys.
+     * @return The events of the page, with only the UUID and last seen time set.
+     * @throws IOException If the keys can't be read from the spill file, or the keys were closed.
+     */
+    synchronized List<EventSummary> get(int offset, int limit) throws IOException {
+        final int end = (int) Math.min((long) offset + limit, this.size);
+        if (offset >= end) {
+            return Collections.emptyList();
+        }
+        final long[] page;
+        final int pageOffset;
+        if (this.keys != null) {
+            page = this.keys;
+            pageOffset = offset;
+        } else {
+            page = read(offset, end - offset);
+            pageOffset = 0;
+        }
+        final List<EventSummary> events = new ArrayList<EventSummary>(end - offset);
+        for (int i = 0; i < end - offset; i++) {
+            final int k = (pageOffset + i) * KEY_LONGS;
+            events.add(EventSummary.newBuilder().setUuid(new UUID(page[k], page[k + 1]).toString())
+                    .setLastSeenTime(page[k + 2]).build());
+        }
+        return events;
+    }
+
+    private long[] read(int offset, int count) throws IOException {
+        if (this.file == null) {
+            throw new IOException("Saved search is closed");
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(count * KEY_BYTES);
+        try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+            long position = (long) offset * KEY_BYTES;
+            while (buffer.hasRemaining()) {
+                final int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Saved search file truncated: " + this.file.getAbsolutePath());
+                }
+                position += read;
+            }
+        }
+        buffer.flip();
+        final long[] page = new long[count * KEY_LONGS];
+        buffer.asLongBuffer().get(page);
+        return page;
+    }
+
+    /**
+     * Deletes the spill file, if any.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.file != null) {
+            final File file = this.file;
+            this.file = null;
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Unable to delete saved search file: " + file.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Collects the keys in the order of the search, spilling them to a temporary file once there are more than
+     * the maximum number of keys held in memory.
+     */
+    static final class Builder {
+        private final int maxKeysInMemory;
+        private long[] keys = new long[64 * KEY_LONGS];
+        private int size = 0;
+        private File file = null;
+        private DataOutputStream out = null;
+
+        /**
+         * @param maxKeysInMemory The maximum number of keys held in memory.
+         */
+        Builder(int maxKeysInMemory) {
+            this.maxKeysInMemory = maxKeysInMemory;
+        }
+
+        void add(String uuid, long lastSeen) throws IOException {
+            final UUID key = UUID.fromString(uuid);
+            if (this.out == null && this.size >= this.maxKeysInMemory) {
+                spill();
+            }
+            if (this.out != null) {
+                this.out.writeLong(key.getMostSignificantBits());
+                this.out.writeLong(key.getLeastSignificantBits());
+                this.out.writeLong(lastSeen);
+            } else {
+                final int k = this.size * KEY_LONGS;
+                if (k + KEY_LONGS > this.keys.length) {
+                    this.keys = Arrays.copyOf(this.keys,
+                            (int) Math.min(2L * this.keys.length, (long) this.maxKeysInMemory * KEY_LONGS));
+                }
+                this.keys[k] = key.getMostSignificantBits();
+                this.keys[k + 1] = key.getLeastSignificantBits();
+                this.keys[k + 2] = lastSeen;
+            }
+            this.size++;
+        }
+
+        private void spill() throws IOException {
+            this.file = File.createTempFile("zep-saved-search", ".keys");
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file)));
+            for (int i = 0; i < this.size * KEY_LONGS; i++) {
+                this.out.writeLong(this.keys[i]);
+            }
+            this.keys = null;
+        }
+
+        LuceneSavedSearchKeys build() throws IOException {
+            if (this.out != null) {
+                this.out.close();
+                this.out = null;
+                return new LuceneSavedSearchKeys(this.size, null, this.file);
+            }
+            return new LuceneSavedSearchKeys(this.size, Arrays.copyOf(this.keys, this.size * KEY_LONGS), null);
+        }
+
+        /**
+         * Deletes the spill file of keys which won't be built.
+         */
+        void discard() {
+            try {
+                if (this.out != null) {
+                    this.out.close();
+                }
+            } catch (IOException e) {
+                // Ignored
+            }
+            if (this.file != null && !this.file.delete()) {
+                this.file.deleteOnExit();
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl.lucene;
+
+import com.google.common.io.BaseEncoding;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_UUID;
+
+/**
+ * Encodes the position of the last returned document of a sorted search as an opaque continuation token for
+ * {@link org.apache.lucene.search.IndexSearcher#searchAfter}.
+ * <p>
+ * The token holds the sort values of the last document rather than its document id, so it stays valid across
+ * index reopens and merges. Searches paged with a cursor are sorted by {@link #withTieBreaker(Sort)}, which ends
+ * on the unique event UUID so every document has a distinct position and no event is skipped or repeated when
+ * several events share the same sort values.
+ */
+final class LuceneSearchCursor {
+
+    private static final int VERSION = 1;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_INT = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_FLOAT = 3;
+    private static final byte TYPE_DOUBLE = 4;
+    private static final byte TYPE_BYTES = 5;
+
+    private static final SortField UUID_SORT_FIELD = new SortField(FIELD_UUID, SortField.Type.STRING);
+
+    private static final BaseEncoding ENCODING = BaseEncoding.base64Url().omitPadding();
+
+    private LuceneSearchCursor() {
+    }
+
+    /**
+     * Returns the sort ending on the event UUID. Unsorted searches are sorted by relevance first.
+     *
+     * @param sort The requested sort, or null for relevance.
+     * @return The sort used for cursor paging.
+     */
+    static Sort withTieBreaker(Sort sort) {
+        final SortField[] fields = (sort == null) ? new SortField[] { SortField.FIELD_SCORE } : sort.getSort();
+        if (fields.length > 0 && UUID_SORT_FIELD.equals(fields[fields.length - 1])) {
+            return sort;
+        }
+        final SortField[] withUuid = Arrays.copyOf(fields, fields.length + 1);
+        withUuid[fields.length] = UUID_SORT_FIELD;
+        return new Sort(withUuid);
+    }
+
+    // Sort.hashCode() includes enum identity hash codes, which differ between runs
+    private static int sortKey(Sort sort) {
+        return sort.toString().hashCode();
+    }
+
+    /**
+     * Encodes the position of a document returned by a search with the specified sort.
+     *
+     * @param sort The sort of the search, as returned from {@link #withTieBreaker(Sort)}.
+     * @param last The last document of the page.
+     * @return The continuation token.
+     */
+    static String encode(Sort sort, FieldDoc last) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(VERSION);
+            out.writeInt(sortKey(sort));
+            out.writeShort(last.fields.length);
+            for (Object value : last.fields) {
+                if (value == null) {
+                    out.writeByte(TYPE_NULL);
+                } else if (value instanceof Integer) {
+                    out.writeByte(TYPE_INT);
+                    out.writeInt((Integer) value);
+                } else if (value instanceof Long) {
+                    out.writeByte(TYPE_LONG);
+                    out.writeLong((Long) value);
+                } else if (value instanceof Float) {
+                    out.writeByte(TYPE_FLOAT);
+                    out.writeFloat((Float) value);
+                } else if (value instanceof Double) {
+                    out.writeByte(TYPE_DOUBLE);
+                    out.writeDouble((Double) value);
+                } else if (value instanceof BytesRef) {
+                    final BytesRef ref = (BytesRef) value;
+                    out.writeByte(TYPE_BYTES);
+                    out.writeShort(ref.length);
+                    out.write(ref.bytes, ref.offset, ref.length);
+                } else {
+                    throw new IllegalArgumentException("Unsupported sort value: " + value.getClass().getName());
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            // Not thrown writing to memory
+            throw new IllegalStateException(e);
+        }
+        return ENCODING.encode(bytes.toByteArray());
+    }
+
+    /**
+     * Decodes a continuation token into the document to search after.
+     *
+     * @param sort The sort of the search, as returned from {@link #withTieBreaker(Sort)}.
+     * @param cursor The continuation token.
+     * @return The position to continue the search from.
+     * @throws IllegalArgumentException If the token is malformed or was returned from a search with another sort.
+     */
+    static FieldDoc decode(Sort sort, String cursor) {
+        try {
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(ENCODING.decode(cursor)));
+            if (in.readByte() != VERSION) {
+                throw new IllegalArgumentException("Unsupported cursor version");
+            }
+            if (in.readInt() != sortKey(sort)) {
+                throw new IllegalArgumentException("Cursor doesn't match the sort of the search");
+            }
+            final int numFields = in.readShort();
+            if (numFields != sort.getSort().length) {
+                throw new IllegalArgumentException("Cursor doesn't match the sort of the search");
+            }
+            final Object[] fields = new Object[numFields];
+            for (int i = 0; i < numFields; i++) {
+                final byte type = in.readByte();
+                switch (type) {
+                    case TYPE_NULL:
+                        fields[i] = null;
+                        break;
+                    case TYPE_INT:
+                        fields[i] = in.readInt();
+                        break;
+                    case TYPE_LONG:
+                        fields[i] = in.readLong();
+                        break;
+                    case TYPE_FLOAT:
+                        fields[i] = in.readFloat();
+                        break;
+                    case TYPE_DOUBLE:
+                        fields[i] = in.readDouble();
+                        break;
+                    case TYPE_BYTES:
+                        final byte[] value = new byte[in.readUnsignedShort()];
+                        in.readFully(value);
+                        fields[i] = new BytesRef(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Invalid cursor value type: " + type);
+                }
+            }
+            if (in.available() > 0) {
+                throw new IllegalArgumentException("Trailing data in cursor");
+            }
+            // Ties on every sort value (only the last document itself, as the UUID is unique) are skipped
+            return new FieldDoc(Integer.MAX_VALUE, Float.NaN, fields);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Truncated cursor", e);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl.lucene;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TimeLimitingCollector;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.ThreadInterruptedException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Searches the segments of an index concurrently, each segment with its own collector.
+ * <p>
+ * {@link IndexSearcher} only uses its executor for top documents searches; a search with a custom collector
+ * walks the segments one after another on the calling thread. This runs the segments of such searches on the
+ * search executor instead, while the calling thread searches the first segment itself. The caller merges the
+ * per segment collectors once the search returns.
+ */
+final class LuceneSegmentSearcher {
+
+    private LuceneSegmentSearcher() {
+    }
+
+    /**
+     * Searches each segment of the searcher's reader with the collector at the same position in the list.
+     *
+     * @param searcher The searcher.
+     * @param query The query.
+     * @param executor Runs the searches of all but the first segment.
+     * @param collectors One collector per segment (leaf) of the reader.
+     * @return False if the search of any segment was stopped by a {@link TimeLimitingCollector}, in which case its
+     *         collector only holds the matches found until then.
+     * @throws IOException If the index can't be read.
+     */
+    static boolean search(IndexSearcher searcher, Query query, ExecutorService executor,
+                          List<? extends Collector> collectors) throws IOException {
+        final List<AtomicReaderContext> leaves = searcher.getIndexReader().leaves();
+        if (collectors.size() != leaves.size()) {
+            throw new IllegalArgumentException("Expected " + leaves.size() + " collectors, got " + collectors.size());
+        }
+        if (leaves.isEmpty()) {
+            return true;
+        }
+        final Weight weight = searcher.createNormalizedWeight(query);
+        final List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(leaves.size() - 1);
+        for (int i = 1; i < leaves.size(); i++) {
+            final AtomicReaderContext leaf = leaves.get(i);
+            final Collector collector = collectors.get(i);
+            futures.add(executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws IOException {
+                    return searchLeaf(weight, leaf, collector);
+                }
+            }));
+        }
+
+        boolean complete = true;
+        Throwable failure = null;
+        try {
+            complete = searchLeaf(weight, leaves.get(0), collectors.get(0));
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        }
+        // Wait for every segment so no collector is still in use when this returns
+        for (Future<Boolean> future : futures) {
+            try {
+                complete &= future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(false);
+                if (failure == null) {
+                    failure = new ThreadInterruptedException(e);
+                }
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            }
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new IOException(failure);
+        }
+        return complete;
+    }
+
+    private static boolean searchLeaf(Weight weight, AtomicReaderContext leaf, Collector collector)
+            throws IOException {
+        try {
+            collector.setNextReader(leaf);
+            final Scorer scorer = weight.scorer(leaf, !collector.acceptsDocsOutOfOrder(), true,
+                    leaf.reader().getLiveDocs());
+            if (scorer != null) {
+                scorer.score(collector);
+            }
+            return true;
+        } catch (CollectionTerminatedException e) {
+            // The collector doesn't need more matches from this segment
+            return true;
+        } catch (TimeLimitingCollector.TimeExceededException e) {
+            return false;
+        }
+    }
+}
@@ -15,20 +15,34 @@ import org.apache.lucene.analysis.core.LowerCaseFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.reverse.ReverseStringFilter;
 import org.zenoss.zep.index.impl.IndexConstants;
 
 import java.io.Reader;
 
 /**
  * Analyzer used for event summaries and messages. Uses combination of lower case filter and
- * whitespace tokenizer.
+ * whitespace tokenizer. The reversed analyzer also reverses the tokens, for the reversed full text fields.
  */
 public final class LuceneSummaryAnalyzer extends Analyzer {
 
+    private final boolean reversed;
+
+    public LuceneSummaryAnalyzer() {
+        this(false);
+    }
+
+    public LuceneSummaryAnalyzer(boolean reversed) {
+        this.reversed = reversed;
+    }
+
     @Override
     protected TokenStreamComponents createComponents(String s, Reader reader) {
         final Tokenizer source = new WhitespaceTokenizer(IndexConstants.LUCENE_VERSION, reader);
         TokenStream filter = new LowerCaseFilter(IndexConstants.LUCENE_VERSION, source);
+        if (this.reversed) {
+            filter = new ReverseStringFilter(IndexConstants.LUCENE_VERSION, filter);
+        }
         return new TokenStreamComponents(source, filter);
     }
 }
@@ -0,0 +1,169 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl.lucene;
+
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.OpenBitSet;
+import org.zenoss.protobufs.zep.Zep.EventSeverity;
+import org.zenoss.protobufs.zep.Zep.EventStatus;
+import org.zenoss.zep.index.impl.BaseEventIndexBackend.EventTagSeverityCounter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_COUNT;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_SEVERITY;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_STATUS;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_TAGS;
+
+/**
+ * Rolls up event tag severities from the tag, severity, status and count doc values of the matching events
+ * without loading any stored fields.
+ * <p>
+ * Counts are accumulated per tag ordinal within a segment and only resolved to tag UUIDs once the segment is
+ * done, so the counter sees one update per tag and severity of each segment. Matches in segments written
+ * without these doc values are recorded in {@link #getUncountedDocs()} for the caller to count from the
+ * stored fields. {@link #finish()} must be called after the search.
+ * <p>
+ * Sorted set doc values hold each tag UUID of a document once, so an event whose tags repeat a UUID (e.g. its
+ * element UUID, which is also indexed as a tag) counts once for that tag. The counts from stored fields and
+ * from the {@link org.zenoss.zep.index.impl.TagSeverityRollup} count each tag of an event once as well.
+ */
+class LuceneTagSeverityCollector extends Collector {
+
+    private static final EventSeverity[] SEVERITIES;
+    static {
+        int max = 0;
+        for (EventSeverity severity : EventSeverity.values()) {
+            max = Math.max(max, severity.getNumber());
+        }
+        SEVERITIES = new EventSeverity[max + 1];
+        for (EventSeverity severity : EventSeverity.values()) {
+            SEVERITIES[severity.getNumber()] = severity;
+        }
+    }
+
+    // Per severity: number of events, number of acknowledged events, sum of event counts
+    private static final int STRIDE = 3;
+
+    private final EventTagSeverityCounter counter;
+    private final long maxDoc;
+    private OpenBitSet uncountedDocs = null;
+    private final Map<Long, int[]> segmentCounts = new HashMap<Long, int[]>();
+    private int docBase;
+    private SortedSetDocValues tags;
+    private NumericDocValues severities;
+    private NumericDocValues statuses;
+    private NumericDocValues counts;
+
+    public LuceneTagSeverityCollector(EventTagSeverityCounter counter, int maxDoc) {
+        this.counter = counter;
+        this.maxDoc = maxDoc;
+    }
+
+    @Override
+    public void setScorer(Scorer scorer) throws IOException {
+    }
+
+    @Override
+    public void setNextReader(AtomicReaderContext context) throws IOException {
+        flushSegment();
+        final AtomicReader reader = context.reader();
+        this.docBase = context.docBase;
+        this.tags = reader.getSortedSetDocValues(FIELD_TAGS);
+        this.severities = reader.getNumericDocValues(FIELD_SEVERITY);
+        this.statuses = reader.getNumericDocValues(FIELD_STATUS);
+        this.counts = reader.getNumericDocValues(FIELD_COUNT);
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+        if (severities == null || statuses == null || counts == null) {
+            // Only allocated for indexes with segments written before the doc values
+            if (uncountedDocs == null) {
+                uncountedDocs = new OpenBitSet(maxDoc);
+            }
+            uncountedDocs.set(docBase + doc);
+            return;
+        }
+        if (tags == null) {
+            // Events without any tags in a segment where no event has tags
+            return;
+        }
+        final int severity = (int) severities.get(doc);
+        if (severity < 0 || severity >= SEVERITIES.length || SEVERITIES[severity] == null) {
+            return;
+        }
+        final int offset = severity * STRIDE;
+        final boolean acknowledged = statuses.get(doc) == EventStatus.STATUS_ACKNOWLEDGED.getNumber();
+        final int count = (int) counts.get(doc);
+        tags.setDocument(doc);
+        long ord;
+        while ((ord = tags.nextOrd()) != SortedSetDocValues.NO_MORE_ORDS) {
+            int[] tagCounts = segmentCounts.get(ord);
+            if (tagCounts == null) {
+                tagCounts = new int[SEVERITIES.length * STRIDE];
+                segmentCounts.put(ord, tagCounts);
+            }
+            tagCounts[offset] += 1;
+            if (acknowledged) {
+                tagCounts[offset + 1] += 1;
+            }
+            tagCounts[offset + 2] += count;
+        }
+    }
+
+    @Override
+    public boolean acceptsDocsOutOfOrder() {
+        return true;
+    }
+
+    /**
+     * Passes the counts of the last segment to the counter.
+     */
+    public void finish() {
+        flushSegment();
+    }
+
+    /**
+     * Returns the matching documents which couldn't be counted from doc values.
+     *
+     * @return The (top level) document ids of the matching documents without doc values.
+     */
+    public OpenBitSet getUncountedDocs() {
+        return (uncountedDocs != null) ? uncountedDocs : new OpenBitSet(0);
+    }
+
+    private void flushSegment() {
+        if (segmentCounts.isEmpty()) {
+            return;
+        }
+        final BytesRef term = new BytesRef();
+        for (Map.Entry<Long, int[]> entry : segmentCounts.entrySet()) {
+            tags.lookupOrd(entry.getKey(), term);
+            final String uuid = term.utf8ToString();
+            final int[] tagCounts = entry.getValue();
+            for (int i = 0; i < SEVERITIES.length; i++) {
+                final int offset = i * STRIDE;
+                if (tagCounts[offset] > 0) {
+                    counter.update(uuid, SEVERITIES[i], tagCounts[offset], tagCounts[offset + 1],
+                            tagCounts[offset + 2]);
+                }
+            }
+        }
+        segmentCounts.clear();
+    }
+}
@@ -0,0 +1,118 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+
+package org.zenoss.zep.index.impl.solr;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zenoss.zep.index.impl.IndexConstants;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pages through the results of the Solr query of a saved search with cursors instead of offsets.
+ * <p>
+ * Solr collects the first offset + rows documents of a query to return a page at an offset, so paging through all
+ * the results of a query with offsets takes quadratic time. A cursor continues after the sort values of the last
+ * document of the previous page, so each page only collects its own documents. The cursor following each page is
+ * remembered under the offset of the next page, and a request for that offset continues from it. Requests for
+ * other offsets (the first request at a non-zero offset, or pages requested out of order) fall back to offsets.
+ * <p>
+ * The cursors are only valid for the query they were returned for, so each saved search (or export, which pages
+ * through a saved search) has its own pager, which is discarded with it. All pages must be requested with the
+ * same query, sort and filters; only the offset, rows and returned fields may differ.
+ * <p>
+ * Cursors need a total order of the documents, so the unique key of the index is added as the last sort field.
+ */
+final class SolrCursorPager {
+
+    private static final Logger logger = LoggerFactory.getLogger(SolrCursorPager.class);
+
+    private final Cache<Integer, String> cursorMarks;
+    private final AtomicLong cursorPages = new AtomicLong();
+    private final AtomicLong offsetPages = new AtomicLong();
+
+    /**
+     * @param maxCursors The maximum number of cursors remembered. Zero disables cursors.
+     */
+    SolrCursorPager(int maxCursors) {
+        this.cursorMarks = maxCursors > 0 ? CacheBuilder.newBuilder().maximumSize(maxCursors).<Integer, String>build()
+                : null;
+    }
+
+    /**
+     * Queries a page of results, continuing from the cursor of the previous page if there is one.
+     *
+     * @param server The Solr server.
+     * @param query The query of the saved search, with the offset and number of rows of the page. It isn't
+     *              modified.
+     * @return The response of the page.
+     * @throws SolrServerException If the query fails.
+     */
+    QueryResponse query(SolrServer server, SolrQuery query) throws SolrServerException {
+        // Copies of queries only keep the serialized sort parameter
+        final String sort = query.get(CommonParams.SORT);
+        if (this.cursorMarks == null || sort == null || sort.isEmpty()) {
+            this.offsetPages.incrementAndGet();
+            return server.query(query);
+        }
+        final SolrQuery page = query.getCopy();
+        if (!hasUniqueKeySort(sort)) {
+            page.set(CommonParams.SORT, sort + ',' + IndexConstants.FIELD_UUID + " asc");
+        }
+        final int offset = (query.getStart() == null) ? 0 : query.getStart();
+        final String cursorMark = (offset == 0) ? CursorMarkParams.CURSOR_MARK_START :
+                this.cursorMarks.getIfPresent(offset);
+        if (cursorMark == null) {
+            logger.debug("No cursor at offset {} of query: {}", offset, query);
+            this.offsetPages.incrementAndGet();
+            return server.query(page);
+        }
+        page.remove(CommonParams.START);
+        page.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+        final QueryResponse response = server.query(page);
+        this.cursorPages.incrementAndGet();
+        final String nextCursorMark = response.getNextCursorMark();
+        if (nextCursorMark != null && response.getResults() != null && !response.getResults().isEmpty()) {
+            this.cursorMarks.put(offset + response.getResults().size(), nextCursorMark);
+        }
+        return response;
+    }
+
+    /**
+     * @return The number of pages queried from a cursor.
+     */
+    long getCursorPages() {
+        return this.cursorPages.get();
+    }
+
+    /**
+     * @return The number of pages queried at an offset.
+     */
+    long getOffsetPages() {
+        return this.offsetPages.get();
+    }
+
+    private static boolean hasUniqueKeySort(String sort) {
+        for (String clause : sort.split(",")) {
+            if (IndexConstants.FIELD_UUID.equals(clause.trim().split("\\s+")[0])) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -98,6 +98,7 @@ public class SolrEventIndexBackend extends BaseEventIndexBackend<SolrSavedSearch
     private final int concurrentUploadQueueSize;
     private final int concurrentThreads;
     private SolrServer updateServer;
+    private volatile int cursorCacheSize = 1000;
 
     public SolrEventIndexBackend(String name, String server, IndexedDetailsConfiguration indexedDetailsConfiguration,
                                  EventArchiveDao archiveDao, int shards, int replicationFactor, int maxShardsPerNode,
@@ -225,6 +226,16 @@ public class SolrEventIndexBackend extends BaseEventIndexBackend<SolrSavedSearch
         }
     }
 
+    /**
+     * Sets the maximum number of cursors remembered by each saved search (and export) to continue from the end of
+     * its previous page. Listings which aren't saved always page with offsets.
+     *
+     * @param maxCursors The maximum number of cursors. Zero disables cursors, paging with offsets.
+     */
+    public void setCursorCacheSize(int maxCursors) {
+        this.cursorCacheSize = maxCursors;
+    }
+
     public synchronized void setOptimizeThreshold(final int threshold) {
         final int old = optimizeThreshold;
         if (old != threshold) {
@@ -439,7 +450,7 @@ public class SolrEventIndexBackend extends BaseEventIndexBackend<SolrSavedSearch
                                              request.hasOffset() ? request.getOffset() : null,
                                              sorts,
                                              SolrFieldFilter.UUID_LAST_SEEN_AND_PROTOBUF);
-        return execute(solrQuery, false);
+        return execute(solrQuery, false, null);
     }
 
     @Override
@@ -452,17 +463,21 @@ public class SolrEventIndexBackend extends BaseEventIndexBackend<SolrSavedSearch
                 request.hasOffset() ? request.getOffset() : null,
                 sorts,
                 SolrFieldFilter.JUST_UUID);
-        return execute(solrQuery, true);
+        return execute(solrQuery, true, null);
     }
 
-    private EventSummaryResult execute(final SolrQuery query, boolean justUuids) throws ZepException {
+    /**
+     * @param cursorPager Pages through the results of a saved search, or null to query at the offset.
+     */
+    private EventSummaryResult execute(final SolrQuery query, boolean justUuids, SolrCursorPager cursorPager)
+            throws ZepException {
         EventSummaryResult.Builder result = EventSummaryResult.newBuilder();
 
         logger.debug("Searching SOLR for events matching: {}", query.getQuery());
         final long now = logger.isDebugEnabled() ? System.currentTimeMillis() : 0;
         final QueryResponse response;
         try {
-            response = queryServer.query(query);
+            response = (cursorPager != null) ? cursorPager.query(queryServer, query) : queryServer.query(query);
             final int numFound = (int) response.getResults().getNumFound();
             result.setTotal(numFound);
             if (query.getRows() != null) {
@@ -555,7 +570,7 @@ public class SolrEventIndexBackend extends BaseEventIndexBackend<SolrSavedSearch
                 query.setRows(limit);
                 query.setStart(offset);
                 query.setFields(IndexConstants.FIELD_UUID, IndexConstants.FIELD_LAST_SEEN_TIME, IndexConstants.FIELD_PROTOBUF);
-                return execute(query, false);
+                return execute(query, false, search.getCursorPager());
             }
         };
     }
@@ -570,7 +585,7 @@ public class SolrEventIndexBackend extends BaseEventIndexBackend<SolrSavedSearch
                 query.setRows(limit);
                 query.setStart(offset);
                 query.setFields(IndexConstants.FIELD_UUID, IndexConstants.FIELD_LAST_SEEN_TIME);
-                return execute(query, true);
+                return execute(query, true, search.getCursorPager());
             }
         };
     }
@@ -582,7 +597,7 @@ public class SolrEventIndexBackend extends BaseEventIndexBackend<SolrSavedSearch
         SolrQuery solrQuery = buildSolrQuery(query.getEventFilter(),
                 query.getExclusionFilter(),
                 null, null, sorts, null);
-        return new SolrSavedSearch(uuid, query.getTimeout(), solrQuery);
+        return new SolrSavedSearch(uuid, query.getTimeout(), solrQuery, cursorCacheSize);
     }
 
     private SolrQuery buildSolrQuery(EventFilter filter, EventFilter exclusionFilter,
@@ -30,6 +30,7 @@ public class SolrEventIndexBackendFactory implements FactoryBean<SolrEventIndexB
     private int concurrentThreads = 4;
     private int tagSeverityCacheSize = 0;
     private int tagSeverityCacheTTL = 3600;
+    private int cursorCacheSize = 1000;
     private Messages messages;
     private TaskScheduler scheduler;
     private UUIDGenerator uuidGenerator;
@@ -74,6 +75,10 @@ public class SolrEventIndexBackendFactory implements FactoryBean<SolrEventIndexB
         this.tagSeverityCacheTTL = tagSeverityCacheTTL;
     }
 
+    public void setCursorCacheSize(int cursorCacheSize) {
+        this.cursorCacheSize = cursorCacheSize;
+    }
+
     public void setSolrURL(String solrURL) {
         this.solrURL = solrURL;
     }
@@ -140,6 +145,7 @@ public class SolrEventIndexBackendFactory implements FactoryBean<SolrEventIndexB
         backend = new SolrEventIndexBackend(name, solrURL, config, dao, shards, replicationFactor, maxShardsPerNode,
                 concurrentUploadQueueSize, concurrentThreads, messages, scheduler, uuidGenerator, tagSeverityCacheSize,
                 tagSeverityCacheTTL);
+        backend.setCursorCacheSize(cursorCacheSize);
         backend.start();
 
         return backend;
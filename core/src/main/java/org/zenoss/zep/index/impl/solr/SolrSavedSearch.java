@@ -17,16 +17,30 @@ import java.io.IOException;
 public final class SolrSavedSearch extends SavedSearch {
 
     private final SolrQuery solrQuery;
+    private final SolrCursorPager cursorPager;
 
     public SolrSavedSearch(String uuid, int timeout, SolrQuery solrQuery) {
+        this(uuid, timeout, solrQuery, 0);
+    }
+
+    /**
+     * @param maxCursors The maximum number of cursors remembered to continue the pages of the search. Zero pages
+     *                   with offsets.
+     */
+    public SolrSavedSearch(String uuid, int timeout, SolrQuery solrQuery, int maxCursors) {
         super(uuid, timeout);
         this.solrQuery = solrQuery;
+        this.cursorPager = new SolrCursorPager(maxCursors);
     }
 
     public SolrQuery getSolrQuery() {
         return solrQuery;
     }
 
+    SolrCursorPager getCursorPager() {
+        return cursorPager;
+    }
+
     @Override
     public final void close() throws IOException {
         // do nothing
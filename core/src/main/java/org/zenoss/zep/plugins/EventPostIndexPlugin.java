@@ -31,9 +31,9 @@ public abstract class EventPostIndexPlugin extends EventPlugin {
     public void preProcessEvents(Collection<EventSummary> eventSummaries, EventPostIndexContext context) throws ZepException {}
 
     /**
-     * Processes the eventSummary. At this time, the index has not yet been
-     * committed, so any process that will immediately rely on a consistent
-     * index state should wait until the batch is ended.
+     * Processes the eventSummary. The index has been committed by the time
+     * this is called. Plug-ins may run on their own thread behind the
+     * indexer, so the index may already contain newer changes.
      * 
      * @param eventSummary The eventSummary to process.
      * @param context Context passed to EventPostIndexPlugin.
@@ -41,19 +41,26 @@ import org.zenoss.zep.ZepException;
 import org.zenoss.zep.dao.EventStoreDao;
 import org.zenoss.zep.index.EventIndexDao;
 import org.zenoss.zep.index.EventIndexer;
+import org.zenoss.zep.index.EventSummaryPage;
+import org.zenoss.zep.index.SearchDeadline;
 import org.zenoss.zep.plugins.EventUpdateContext;
 import org.zenoss.zep.plugins.EventUpdatePlugin;
+import org.zenoss.zep.rest.QueryAdmissionController.Permit;
+import org.zenoss.zep.rest.QueryAdmissionController.QueryType;
 
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.MultivaluedMap;
 import jakarta.ws.rs.core.Response;
@@ -77,6 +84,23 @@ import java.util.concurrent.Semaphore;
 public class EventsResource {
     private static final Logger logger = LoggerFactory.getLogger(EventsResource.class);
 
+    /**
+     * Response header holding the cursor of the next page of a list request made with the "cursor" query
+     * parameter. The header is omitted on the last page.
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Zep-Next-Cursor";
+
+    /**
+     * Optional request header limiting the time spent searching the index for the request, in milliseconds.
+     */
+    public static final String SEARCH_TIMEOUT_HEADER = "X-Zep-Search-Timeout";
+
+    /**
+     * Response header set to "true" when the search ran out of time and the result only holds the events found
+     * until then.
+     */
+    public static final String PARTIAL_RESULT_HEADER = "X-Zep-Partial-Result";
+
     @Autowired
     protected MetricRegistry metricRegistry;
 
@@ -89,6 +113,7 @@ public class EventsResource {
     private PluginService pluginService;
     private Semaphore archiveSemaphore = null;
     private int maxArchiveRequests = -1;
+    private QueryAdmissionController admissionController = null;
 
     public void setMaxArchiveRequests(int archiveRequestLimit) {
         if(archiveRequestLimit > 0) {
@@ -98,6 +123,10 @@ public class EventsResource {
         }
     }
 
+    public void setAdmissionController(QueryAdmissionController admissionController) {
+        this.admissionController = admissionController;
+    }
+
     public void setQueryLimit(int limit) {
         if (limit > 0) {
             this.queryLimit = limit;
@@ -187,10 +216,13 @@ public class EventsResource {
 
     public Response createSavedSearchInternal(EventIndexDao indexDao, EventQuery query, @Context UriInfo ui)
             throws URISyntaxException, ZepException {
-        // Make sure index is up to date with latest events prior to creating the saved search
+        // Make sure index is up to date with latest events prior to creating the saved search. This isn't a query,
+        // so it is done before waiting for admission rather than holding a permit for the duration.
         eventSummaryIndexer.indexFully();
-        String uuid = indexDao.createSavedSearch(query);
-        return Response.created(new URI(ui.getRequestUri().toString() + '/' + uuid)).build();
+        try (Permit permit = admit(QueryType.SAVED_SEARCH, QueryAdmissionController.estimateCost(query))) {
+            String uuid = indexDao.createSavedSearch(query);
+            return Response.created(new URI(ui.getRequestUri().toString() + '/' + uuid)).build();
+        }
     }
 
     @GET
@@ -199,9 +231,11 @@ public class EventsResource {
     @GZIP
     public Response listSavedSearch(@PathParam("searchUuid") String searchUuid,
                                     @QueryParam("offset") String offsetStr,
-                                    @QueryParam("limit") String limitStr) throws ZepException {
+                                    @QueryParam("limit") String limitStr,
+                                    @HeaderParam(SEARCH_TIMEOUT_HEADER) String searchTimeout) throws ZepException {
         try (Timer.Context ignored = metricRegistry.timer("EventsResource.listSavedSearch").time()){
-            return listSavedSearchInternal(this.eventSummaryIndexDao, searchUuid, offsetStr, limitStr);
+            return listSavedSearchInternal(this.eventSummaryIndexDao, searchUuid, offsetStr, limitStr,
+                    parseSearchTimeout(searchTimeout));
         }
     }
 
@@ -211,14 +245,16 @@ public class EventsResource {
     @GZIP
     public Response listArchiveSavedSearch(@PathParam("searchUuid") String searchUuid,
                                     @QueryParam("offset") String offsetStr,
-                                    @QueryParam("limit") String limitStr) throws ZepException {
+                                    @QueryParam("limit") String limitStr,
+                                    @HeaderParam(SEARCH_TIMEOUT_HEADER) String searchTimeout) throws ZepException {
         try (Timer.Context ignored = metricRegistry.timer("EventsResource.listArchiveSavedSearch").time()){
-            return listSavedSearchInternal(this.eventArchiveIndexDao, searchUuid, offsetStr, limitStr);
+            return listSavedSearchInternal(this.eventArchiveIndexDao, searchUuid, offsetStr, limitStr,
+                    parseSearchTimeout(searchTimeout));
         }
     }
 
     private Response listSavedSearchInternal(EventIndexDao indexDao, String searchUuid, String offsetStr,
-                                             String limitStr) throws ZepException {
+                                             String limitStr, long searchTimeout) throws ZepException {
         int offset = 0;
         if (offsetStr != null) {
             offset = Integer.parseInt(offsetStr);
@@ -234,8 +270,9 @@ public class EventsResource {
             }
         }
         Response response;
-        try {
-            response = Response.ok(indexDao.savedSearch(searchUuid, offset, limit)).build();
+        try (Permit permit = admit(QueryType.SAVED_SEARCH, QueryAdmissionController.estimatePageCost(limit));
+             SearchDeadline deadline = SearchDeadline.start(searchTimeout)) {
+            response = partial(Response.ok(indexDao.savedSearch(searchUuid, offset, limit)), deadline).build();
         } catch (ZepException e) {
             if (e.getLocalizedMessage() != null && e.getLocalizedMessage().startsWith("ZEP0001E")) {
                 response = Response.status(Status.NOT_FOUND).entity(e.getLocalizedMessage()).type(MediaType.TEXT_PLAIN_TYPE).build();
@@ -411,20 +448,99 @@ public class EventsResource {
     @Path("/")
     @Produces({ MediaType.APPLICATION_JSON, ProtobufConstants.CONTENT_TYPE_PROTOBUF })
     @GZIP
-    public EventSummaryResult listEventIndex(EventSummaryRequest request)
+    public Response listEventIndex(EventSummaryRequest request, @QueryParam("cursor") String cursor,
+                                   @HeaderParam(SEARCH_TIMEOUT_HEADER) String searchTimeout)
             throws ZepException {
-        try (Timer.Context ignored = metricRegistry.timer("EventsResource.listEventIndex").time()){
-            return this.eventSummaryIndexDao.list(request);
+        final long timeout = parseSearchTimeout(searchTimeout);
+        try (Timer.Context ignored = metricRegistry.timer("EventsResource.listEventIndex").time();
+             Permit permit = admit(QueryType.LIST, QueryAdmissionController.estimateCost(request))){
+            return listResponse(this.eventSummaryIndexDao, request, cursor, timeout);
+        }
+    }
+
+    /**
+     * Lists the events matching the request. Without a cursor the request is paged by its offset, otherwise the
+     * page following the cursor ("*" for the first page) is returned along with the cursor of the next page in
+     * the {@link #NEXT_CURSOR_HEADER} header. The cost of a cursor page doesn't grow with its depth.
+     */
+    private static Response listResponse(EventIndexDao indexDao, EventSummaryRequest request, String cursor,
+                                         long searchTimeout) throws ZepException {
+        try (SearchDeadline deadline = SearchDeadline.start(searchTimeout)) {
+            final Response.ResponseBuilder response;
+            if (cursor == null) {
+                response = Response.ok(indexDao.list(request));
+            } else {
+                final EventSummaryPage page = indexDao.listAfter(request, cursor);
+                response = Response.ok(page.getResult());
+                if (page.getNextCursor() != null) {
+                    response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+                }
+            }
+            return partial(response, deadline).build();
+        }
+    }
+
+    /**
+     * Parses the {@link #SEARCH_TIMEOUT_HEADER} header. Invalid timeouts are answered with HTTP 400.
+     *
+     * @return The search timeout in milliseconds, or zero for no timeout.
+     */
+    private static long parseSearchTimeout(String searchTimeout) {
+        if (searchTimeout == null || searchTimeout.trim().isEmpty()) {
+            return 0L;
+        }
+        long timeout;
+        try {
+            timeout = Long.parseLong(searchTimeout.trim());
+        } catch (NumberFormatException e) {
+            timeout = -1L;
+        }
+        if (timeout < 0L) {
+            throw new WebApplicationException(Response.status(Status.BAD_REQUEST)
+                    .entity("Invalid " + SEARCH_TIMEOUT_HEADER + " header: " + searchTimeout)
+                    .type(MediaType.TEXT_PLAIN_TYPE).build());
         }
+        return timeout;
     }
 
-    private EventSummaryResult getEventArchiveResults(EventSummaryRequest request) throws ZepException {
+    private static Response.ResponseBuilder partial(Response.ResponseBuilder response, SearchDeadline deadline) {
+        if (deadline.isTimedOut()) {
+            response.header(PARTIAL_RESULT_HEADER, Boolean.TRUE.toString());
+        }
+        return response;
+    }
 
-        EventSummaryResult result = null;
+    private int estimateTagSeveritiesCost(EventFilter filter) {
+        if (this.admissionController == null) {
+            return QueryAdmissionController.estimateCost(filter);
+        }
+        return this.admissionController.estimateTagSeveritiesCost(filter);
+    }
+
+    /**
+     * Waits for the admission controller to let the query run. Shed queries are answered with HTTP 429.
+     */
+    private Permit admit(QueryType type, int cost) {
+        if (this.admissionController == null) {
+            return Permit.NONE;
+        }
+        try {
+            return this.admissionController.admit(type, cost);
+        } catch (QueryRejectedException e) {
+            throw new WebApplicationException(Response.status(Status.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, e.getRetryAfterSeconds())
+                    .entity(e.getLocalizedMessage()).type(MediaType.TEXT_PLAIN_TYPE).build());
+        }
+    }
+
+    private Response getEventArchiveResults(EventSummaryRequest request, String cursor, long searchTimeout)
+            throws ZepException {
+
+        Response result = null;
 
         if (this.archiveSemaphore == null || this.archiveSemaphore.tryAcquire()) {
             try {
-                result = this.eventArchiveIndexDao.list(request);
+                result = listResponse(this.eventArchiveIndexDao, request, cursor, searchTimeout);
             }
             catch (ZepException ze) {
                 throw ze;
@@ -449,10 +565,13 @@ public class EventsResource {
     @Path("archive")
     @Produces({ MediaType.APPLICATION_JSON, ProtobufConstants.CONTENT_TYPE_PROTOBUF })
     @GZIP
-    public EventSummaryResult listEventIndexArchive(EventSummaryRequest request)
+    public Response listEventIndexArchive(EventSummaryRequest request, @QueryParam("cursor") String cursor,
+                                          @HeaderParam(SEARCH_TIMEOUT_HEADER) String searchTimeout)
             throws ZepException {
-        try (Timer.Context ignored = metricRegistry.timer("EventsResource.listEventIndexArchive").time()){
-            return this.getEventArchiveResults(request);
+        final long timeout = parseSearchTimeout(searchTimeout);
+        try (Timer.Context ignored = metricRegistry.timer("EventsResource.listEventIndexArchive").time();
+             Permit permit = admit(QueryType.ARCHIVE, QueryAdmissionController.estimateCost(request))){
+            return this.getEventArchiveResults(request, cursor, timeout);
         }
     }
 
@@ -460,10 +579,15 @@ public class EventsResource {
     @Path("/")
     @Produces({ MediaType.APPLICATION_JSON, ProtobufConstants.CONTENT_TYPE_PROTOBUF })
     @GZIP
-    public EventSummaryResult listEventIndexGet(@Context UriInfo ui)
+    public Response listEventIndexGet(@Context UriInfo ui, @HeaderParam(SEARCH_TIMEOUT_HEADER) String searchTimeout)
             throws ParseException, ZepException {
+        final long timeout = parseSearchTimeout(searchTimeout);
         try (Timer.Context ignored = metricRegistry.timer("EventsResource.listEventIndexGet").time()){
-            return this.eventSummaryIndexDao.list(eventSummaryRequestFromUriInfo(ui));
+            final EventSummaryRequest request = eventSummaryRequestFromUriInfo(ui);
+            try (Permit permit = admit(QueryType.LIST, QueryAdmissionController.estimateCost(request))) {
+                return listResponse(this.eventSummaryIndexDao, request, ui.getQueryParameters().getFirst("cursor"),
+                        timeout);
+            }
         }
     }
 
@@ -471,10 +595,16 @@ public class EventsResource {
     @Path("archive")
     @Produces({ MediaType.APPLICATION_JSON, ProtobufConstants.CONTENT_TYPE_PROTOBUF })
     @GZIP
-    public EventSummaryResult listEventIndexArchiveGet(@Context UriInfo ui)
+    public Response listEventIndexArchiveGet(@Context UriInfo ui,
+                                             @HeaderParam(SEARCH_TIMEOUT_HEADER) String searchTimeout)
             throws ParseException, ZepException {
+        final long timeout = parseSearchTimeout(searchTimeout);
         try (Timer.Context ignored = metricRegistry.timer("EventsResource.listEventIndexArchiveGet").time()){
-            return this.getEventArchiveResults(eventSummaryRequestFromUriInfo(ui));
+            final EventSummaryRequest request = eventSummaryRequestFromUriInfo(ui);
+            try (Permit permit = admit(QueryType.ARCHIVE, QueryAdmissionController.estimateCost(request))) {
+                return this.getEventArchiveResults(request, ui.getQueryParameters().getFirst("cursor"),
+                        timeout);
+            }
         }
     }
 
@@ -483,7 +613,8 @@ public class EventsResource {
     @Produces({ MediaType.APPLICATION_JSON, ProtobufConstants.CONTENT_TYPE_PROTOBUF })
     @GZIP
     public EventTagSeveritiesSet getEventTagSeverities(EventFilter filter) throws ZepException {
-        try (Timer.Context ignored = metricRegistry.timer("EventsResource.getEventTagSeverities").time()){
+        try (Timer.Context ignored = metricRegistry.timer("EventsResource.getEventTagSeverities").time();
+             Permit permit = admit(QueryType.TAG_SEVERITIES, estimateTagSeveritiesCost(filter))){
             return this.eventSummaryIndexDao.getEventTagSeverities(filter);
         }
     }
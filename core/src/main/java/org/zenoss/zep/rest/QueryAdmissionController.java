@@ -0,0 +1,421 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.rest;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zenoss.protobufs.zep.Zep.EventDetailFilter;
+import org.zenoss.protobufs.zep.Zep.EventFilter;
+import org.zenoss.protobufs.zep.Zep.EventQuery;
+import org.zenoss.protobufs.zep.Zep.EventSummaryRequest;
+import org.zenoss.protobufs.zep.Zep.EventTagFilter;
+import org.zenoss.zep.index.impl.TagSeverityRollup;
+
+import jakarta.annotation.Resource;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control for the index queries made through the REST API.
+ * <p>
+ * Every query is given a cost estimated from its filter, sort and limit (see {@link #estimateCost(EventFilter)}).
+ * At most <code>maxConcurrentQueries</code> queries run at once, of which at most
+ * <code>maxConcurrentExpensiveQueries</code> may cost <code>expensiveQueryCost</code> or more. Queries which
+ * can't run immediately wait in a queue ordered by {@link QueryType} priority, then cost, then arrival, so
+ * console queries and cheap queries go first. A query is rejected with a {@link QueryRejectedException} (sent to
+ * the client as HTTP 429 with a Retry-After header) when the queue is full or it waited longer than
+ * <code>maxQueueWaitMillis</code>.
+ * <p>
+ * Admission control is disabled by default, as clients which don't retry rejected queries would see them fail.
+ */
+public class QueryAdmissionController {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryAdmissionController.class);
+
+    /**
+     * The kinds of queries, in the order they are admitted from the queue.
+     */
+    public enum QueryType {
+        LIST,
+        TAG_SEVERITIES,
+        SAVED_SEARCH,
+        ARCHIVE
+    }
+
+    /**
+     * A running query. Closing the permit lets the next query in.
+     */
+    public static final class Permit implements AutoCloseable {
+        /**
+         * A permit for a query which isn't subject to admission control.
+         */
+        public static final Permit NONE = new Permit(null, false);
+
+        private final QueryAdmissionController controller;
+        private final boolean expensive;
+        private boolean closed = false;
+
+        private Permit(QueryAdmissionController controller, boolean expensive) {
+            this.controller = controller;
+            this.expensive = expensive;
+        }
+
+        @Override
+        public void close() {
+            if (controller != null) {
+                controller.release(this);
+            }
+        }
+    }
+
+    private static final class Waiter {
+        private final QueryType type;
+        private final int cost;
+        private final boolean expensive;
+        private final long sequence;
+
+        private Waiter(QueryType type, int cost, boolean expensive, long sequence) {
+            this.type = type;
+            this.cost = cost;
+            this.expensive = expensive;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final Comparator<Waiter> ADMISSION_ORDER = new Comparator<Waiter>() {
+        @Override
+        public int compare(Waiter w1, Waiter w2) {
+            int cmp = w1.type.compareTo(w2.type);
+            if (cmp == 0) {
+                cmp = Integer.compare(w1.cost, w2.cost);
+            }
+            if (cmp == 0) {
+                cmp = Long.compare(w1.sequence, w2.sequence);
+            }
+            return cmp;
+        }
+    };
+
+    // Estimated cost of the parts of a query
+    private static final int BASE_COST = 1;
+    private static final int TERM_COST = 1;
+    private static final int IDENTIFIER_COST = 2;
+    private static final int WILDCARD_COST = 3;
+    private static final int LEADING_WILDCARD_COST = 10;
+    private static final int FULL_TEXT_COST = 5;
+    private static final int TAGS_PER_COST = 10;
+    private static final int SORT_COST = 1;
+    private static final int RESULTS_PER_COST = 100;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final TreeSet<Waiter> waiting = new TreeSet<Waiter>(ADMISSION_ORDER);
+    private int running = 0;
+    private int runningExpensive = 0;
+    private long sequence = 0;
+
+    private boolean enabled = false;
+    private int maxConcurrentQueries = 16;
+    private int maxConcurrentExpensiveQueries = 4;
+    private int expensiveQueryCost = 20;
+    private int maxQueueDepth = 100;
+    private long maxQueueWaitMillis = 5000L;
+    private int retryAfterSeconds = 2;
+    private boolean tagSeverityRollupEnabled = true;
+
+    private Meter rejected = new Meter();
+    private Timer queueWait = new Timer();
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void setMaxConcurrentQueries(int maxConcurrentQueries) {
+        this.maxConcurrentQueries = Math.max(1, maxConcurrentQueries);
+    }
+
+    public void setMaxConcurrentExpensiveQueries(int maxConcurrentExpensiveQueries) {
+        this.maxConcurrentExpensiveQueries = Math.max(1, maxConcurrentExpensiveQueries);
+    }
+
+    public void setExpensiveQueryCost(int expensiveQueryCost) {
+        this.expensiveQueryCost = expensiveQueryCost;
+    }
+
+    public void setMaxQueueDepth(int maxQueueDepth) {
+        this.maxQueueDepth = Math.max(0, maxQueueDepth);
+    }
+
+    public void setMaxQueueWaitMillis(long maxQueueWaitMillis) {
+        this.maxQueueWaitMillis = Math.max(0L, maxQueueWaitMillis);
+    }
+
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+    }
+
+    public void setTagSeverityRollupEnabled(boolean tagSeverityRollupEnabled) {
+        this.tagSeverityRollupEnabled = tagSeverityRollupEnabled;
+    }
+
+    @Resource(name="metrics")
+    public void setBean(MetricRegistry metrics) {
+        final String prefix = QueryAdmissionController.class.getSimpleName();
+        try {
+            metrics.register(MetricRegistry.name(prefix, "queueDepth"), (Gauge<Integer>) this::getQueueDepth);
+        } catch (IllegalArgumentException ex) {
+            // skipping if metrics already exists
+        }
+        try {
+            metrics.register(MetricRegistry.name(prefix, "running"), (Gauge<Integer>) this::getRunning);
+        } catch (IllegalArgumentException ex) {
+            // skipping if metrics already exists
+        }
+        try {
+            metrics.register(MetricRegistry.name(prefix, "runningExpensive"),
+                    (Gauge<Integer>) this::getRunningExpensive);
+        } catch (IllegalArgumentException ex) {
+            // skipping if metrics already exists
+        }
+        this.rejected = metrics.meter(MetricRegistry.name(prefix, "rejected"));
+        this.queueWait = metrics.timer(MetricRegistry.name(prefix, "queueWait"));
+    }
+
+    /**
+     * Waits until the query may run.
+     *
+     * @param type The kind of query.
+     * @param cost The estimated cost of the query.
+     * @return The permit to close once the query is done.
+     * @throws QueryRejectedException If the query is shed.
+     */
+    public Permit admit(QueryType type, int cost) throws QueryRejectedException {
+        final boolean expensive = cost >= expensiveQueryCost;
+        if (!enabled) {
+            return Permit.NONE;
+        }
+        lock.lock();
+        try {
+            if (waiting.isEmpty() && canRun(expensive)) {
+                return start(expensive);
+            }
+            if (waiting.size() >= maxQueueDepth) {
+                throw reject(type, cost, "queue full");
+            }
+            final Waiter waiter = new Waiter(type, cost, expensive, sequence++);
+            waiting.add(waiter);
+            final long startNanos = System.nanoTime();
+            try {
+                long nanos = TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMillis);
+                while (!isNext(waiter)) {
+                    if (nanos <= 0L) {
+                        throw reject(type, cost, "timed out waiting in queue");
+                    }
+                    nanos = changed.awaitNanos(nanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw reject(type, cost, "interrupted waiting in queue");
+            } finally {
+                waiting.remove(waiter);
+                queueWait.update(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                // Another waiter may be next now
+                changed.signalAll();
+            }
+            return start(expensive);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return waiting.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getRunning() {
+        lock.lock();
+        try {
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getRunningExpensive() {
+        lock.lock();
+        try {
+            return runningExpensive;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean canRun(boolean expensive) {
+        return running < maxConcurrentQueries && (!expensive || runningExpensive < maxConcurrentExpensiveQueries);
+    }
+
+    /**
+     * A waiter is next if it can run and no waiter ahead of it can, so a queued expensive query which has to wait
+     * for an expensive slot doesn't hold up the cheap queries behind it.
+     */
+    private boolean isNext(Waiter waiter) {
+        for (Waiter ahead : waiting) {
+            if (ahead == waiter) {
+                return canRun(waiter.expensive);
+            }
+            if (canRun(ahead.expensive)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private Permit start(boolean expensive) {
+        running++;
+        if (expensive) {
+            runningExpensive++;
+        }
+        return new Permit(this, expensive);
+    }
+
+    private void release(Permit permit) {
+        lock.lock();
+        try {
+            if (permit.closed) {
+                return;
+            }
+            permit.closed = true;
+            running--;
+            if (permit.expensive) {
+                runningExpensive--;
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private QueryRejectedException reject(QueryType type, int cost, String reason) {
+        rejected.mark();
+        logger.warn("Rejected {} query with cost {}: {} (running: {}, expensive: {}, queued: {})",
+                type, cost, reason, running, runningExpensive, waiting.size());
+        return new QueryRejectedException("Too many concurrent index queries: " + reason, retryAfterSeconds);
+    }
+
+    /**
+     * Estimates the cost of an event list query.
+     *
+     * @param request The request.
+     * @return The estimated cost.
+     */
+    public static int estimateCost(EventSummaryRequest request) {
+        return estimateCost(request.getEventFilter()) + estimateFilterCost(request.getExclusionFilter())
+                + SORT_COST * request.getSortCount() + request.getLimit() / RESULTS_PER_COST;
+    }
+
+    /**
+     * Estimates the cost of fetching a page of a saved search, which has already been parsed into a query.
+     *
+     * @param limit The number of results requested.
+     * @return The estimated cost.
+     */
+    public static int estimatePageCost(int limit) {
+        return BASE_COST + limit / RESULTS_PER_COST;
+    }
+
+    /**
+     * Estimates the cost of creating a saved search.
+     *
+     * @param query The query of the saved search.
+     * @return The estimated cost.
+     */
+    public static int estimateCost(EventQuery query) {
+        return estimateCost(query.getEventFilter()) + estimateFilterCost(query.getExclusionFilter())
+                + SORT_COST * query.getSortCount();
+    }
+
+    /**
+     * Estimates the cost of an event tag severities query. When the {@link TagSeverityRollup} is enabled, filters
+     * answered from it without searching the index have the base cost.
+     *
+     * @param filter The filter.
+     * @return The estimated cost.
+     */
+    public int estimateTagSeveritiesCost(EventFilter filter) {
+        return (tagSeverityRollupEnabled && TagSeverityRollup.canCount(filter)) ? BASE_COST : estimateCost(filter);
+    }
+
+    /**
+     * Estimates the cost of searching the index with a filter. Wildcards, and leading wildcards in particular,
+     * expand to many terms and full text matches are scored over analyzed text, so they cost more than matching
+     * exact terms.
+     *
+     * @param filter The filter.
+     * @return The estimated cost.
+     */
+    public static int estimateCost(EventFilter filter) {
+        return BASE_COST + estimateFilterCost(filter);
+    }
+
+    private static int estimateFilterCost(EventFilter filter) {
+        int cost = 0;
+        cost += termsCost(filter.getCurrentUserNameList(), TERM_COST);
+        cost += termsCost(filter.getElementIdentifierList(), IDENTIFIER_COST);
+        cost += termsCost(filter.getElementTitleList(), IDENTIFIER_COST);
+        cost += termsCost(filter.getElementSubIdentifierList(), IDENTIFIER_COST);
+        cost += termsCost(filter.getElementSubTitleList(), IDENTIFIER_COST);
+        cost += termsCost(filter.getFingerprintList(), TERM_COST);
+        cost += termsCost(filter.getEventSummaryList(), FULL_TEXT_COST);
+        cost += termsCost(filter.getMessageList(), FULL_TEXT_COST);
+        cost += termsCost(filter.getAgentList(), TERM_COST);
+        cost += termsCost(filter.getMonitorList(), TERM_COST);
+        cost += termsCost(filter.getEventKeyList(), TERM_COST);
+        cost += termsCost(filter.getEventClassKeyList(), TERM_COST);
+        cost += termsCost(filter.getEventGroupList(), TERM_COST);
+        cost += termsCost(filter.getEventClassList(), TERM_COST);
+        cost += termsCost(filter.getUuidList(), TERM_COST);
+        for (EventTagFilter tagFilter : filter.getTagFilterList()) {
+            cost += tagFilter.getTagUuidsCount() / TAGS_PER_COST;
+        }
+        for (EventDetailFilter detailFilter : filter.getDetailsList()) {
+            cost += termsCost(detailFilter.getValueList(), TERM_COST);
+        }
+        for (EventFilter subfilter : filter.getSubfilterList()) {
+            cost += estimateFilterCost(subfilter);
+        }
+        return cost;
+    }
+
+    private static int termsCost(Collection<String> values, int termCost) {
+        int cost = 0;
+        for (String value : values) {
+            if (value.startsWith("*") || value.startsWith("?")) {
+                cost += LEADING_WILDCARD_COST;
+            } else if (value.indexOf('*') >= 0 || value.indexOf('?') >= 0) {
+                cost += WILDCARD_COST;
+            } else {
+                cost += termCost;
+            }
+        }
+        return cost;
+    }
+}
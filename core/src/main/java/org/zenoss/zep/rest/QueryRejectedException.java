@@ -0,0 +1,35 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.rest;
+
+import org.zenoss.zep.ZepException;
+
+/**
+ * Thrown when the {@link QueryAdmissionController} sheds a query because the index is too busy to run it.
+ */
+public class QueryRejectedException extends ZepException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int retryAfterSeconds;
+
+    public QueryRejectedException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Returns how long the client should wait before retrying the query.
+     *
+     * @return The delay in seconds.
+     */
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
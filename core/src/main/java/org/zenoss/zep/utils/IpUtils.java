@@ -109,6 +109,27 @@ public final class IpUtils {
         return sb.toString();
     }
 
+    /**
+     * Converts the IP address to numbers which sort like the addresses, used to index addresses as numeric
+     * fields. An IPv4 address is converted to one number (between 0 and 2^32-1). An IPv6 address is converted
+     * to two numbers (the high and low 64 bits of the address) with their sign bit flipped, so the signed
+     * comparison of the numbers orders the addresses.
+     *
+     * @param addr IP address.
+     * @return One number for an IPv4 address, the high and low numbers of an IPv6 address.
+     */
+    public static long[] toSortableLongs(InetAddress addr) {
+        final byte[] addrbytes = addr.getAddress();
+        final ByteBuffer buffer = ByteBuffer.wrap(addrbytes);
+        if (addrbytes.length == 4) {
+            return new long[] { buffer.getInt() & 0xffffffffL };
+        }
+        else if (addrbytes.length == 16) {
+            return new long[] { buffer.getLong() ^ Long.MIN_VALUE, buffer.getLong() ^ Long.MIN_VALUE };
+        }
+        throw new IllegalStateException("Unexpected InetAddress storage");
+    }
+
     /**
      * Converts a netmask to the number of prefix bits.
      * 
@@ -230,39 +251,49 @@ public final class IpUtils {
      *     <li>STARTADDR-ENDADDR</li>
      *     <li>ADDR (Converts to a range that includes just the address).</li>
      * </ul>
+     * <p>Whitespace around the addresses is ignored. A netmask must be a CIDR netmask of the same
+     * address family as the address.</p>
      * 
      * @param ipRange IP range string.
      * @return An IP range representing the start and end of the IP range.
      * @throws IllegalArgumentException If the specified IP range is invalid.
      */
     public static IpRange parseRange(String ipRange) throws IllegalArgumentException {
+        ipRange = ipRange.trim();
         final int slashIndex, dashIndex;
         final IpRange range;
         if ((slashIndex = ipRange.indexOf('/')) > 0) {
-            final InetAddress from = parseAddress(ipRange.substring(0, slashIndex));
+            final InetAddress from = parseAddress(ipRange.substring(0, slashIndex).trim());
+            final String maskOrBits = ipRange.substring(slashIndex+1).trim();
             InetAddress mask;
             try {
-                mask = parseAddress(ipRange.substring(slashIndex+1));
+                mask = parseAddress(maskOrBits);
             } catch (IllegalArgumentException e) {
                 try {
-                    int prefixBits = Integer.parseInt(ipRange.substring(slashIndex+1));
+                    int prefixBits = Integer.parseInt(maskOrBits);
                     mask = prefixBitsToNetmask(prefixBits, from instanceof Inet6Address);
                 } catch (NumberFormatException nfe) {
                     throw new IllegalArgumentException(nfe.getLocalizedMessage(), nfe);
                 }
             }
+            if (mask.getAddress().length != from.getAddress().length) {
+                throw new IllegalArgumentException("Invalid IP range: " + ipRange);
+            }
+            // Rejects masks which aren't a CIDR block (e.g. 255.0.255.0)
+            netmaskToPrefixBits(mask);
             range = new IpRange(firstAddress(from, mask), lastAddress(from, mask));
         }
         else if ((dashIndex = ipRange.indexOf('-')) > 0) {
-            final InetAddress from = parseAddress(ipRange.substring(0, dashIndex));
+            final InetAddress from = parseAddress(ipRange.substring(0, dashIndex).trim());
+            final String toOrLast = ipRange.substring(dashIndex+1).trim();
             InetAddress to = null;
             try {
-                to = parseAddress(ipRange.substring(dashIndex+1));
+                to = parseAddress(toOrLast);
             } catch (IllegalArgumentException e) {
                 final byte[] fromAddr = from.getAddress();
                 if (fromAddr.length == 4) {
                     try {
-                        final int lastByte = Integer.parseInt(ipRange.substring(dashIndex+1));
+                        final int lastByte = Integer.parseInt(toOrLast);
                         if (lastByte < 0 || lastByte > 255) {
                             throw new IllegalArgumentException("Invalid IP range: " + ipRange);
                         }
@@ -276,7 +307,7 @@ public final class IpUtils {
                 }
                 else if (fromAddr.length == 16) {
                     try {
-                        final int lastTwoBytes = Integer.parseInt(ipRange.substring(dashIndex+1), 16);
+                        final int lastTwoBytes = Integer.parseInt(toOrLast, 16);
                         if (lastTwoBytes < 0 || lastTwoBytes > 0xffff) {
                             throw new IllegalArgumentException("Invalid IP range: " + ipRange);
                         }
@@ -0,0 +1,10 @@
+-- Copyright (C) 2026, Zenoss Inc.  All Rights Reserved.
+
+--
+-- Index the update time, so an event index restored from a snapshot only reads the rows changed since
+--
+
+ALTER TABLE event_summary ADD INDEX event_summary_update_time_idx (update_time, uuid);
+ALTER TABLE event_archive ADD INDEX event_archive_update_time_idx (update_time, uuid);
+
+INSERT INTO schema_version (version, installed_time) VALUES(10, NOW());
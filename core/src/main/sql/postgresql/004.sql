@@ -0,0 +1,11 @@
+--
+-- Index the update time, so an event index restored from a snapshot only reads the rows changed since
+--
+
+DROP INDEX IF EXISTS event_summary_update_time_idx;
+CREATE INDEX event_summary_update_time_idx ON event_summary(update_time, uuid);
+
+DROP INDEX IF EXISTS event_archive_update_time_idx;
+CREATE INDEX event_archive_update_time_idx ON event_archive(update_time, uuid);
+
+INSERT INTO schema_version (version, installed_time) VALUES(4, NOW());
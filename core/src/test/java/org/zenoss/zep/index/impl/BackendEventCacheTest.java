@@ -0,0 +1,102 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.zenoss.protobufs.zep.Zep.EventSummary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link BackendEventCache}.
+ */
+public class BackendEventCacheTest {
+
+    private BackendEventCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new BackendEventCache(100, 5, TimeUnit.MINUTES);
+    }
+
+    private static EventSummary event(String uuid, long lastSeen, long updateTime) {
+        return EventSummary.newBuilder().setUuid(uuid).setLastSeenTime(lastSeen).setUpdateTime(updateTime).build();
+    }
+
+    private static EventSummary key(String uuid, long lastSeen) {
+        return EventSummary.newBuilder().setUuid(uuid).setLastSeenTime(lastSeen).build();
+    }
+
+    @Test
+    public void testCollectSharesRowsBetweenBackends() {
+        final EventSummary event = event("a", 10L, 100L);
+        cache.put(event);
+
+        // Each backend finds the row passed in by the indexer instead of reading it again
+        for (int backend = 0; backend < 2; backend++) {
+            final List<EventSummary> found = new ArrayList<EventSummary>();
+            final Set<EventSummary> missing = cache.collect(Collections.singletonList(key("a", 10L)), found);
+            assertTrue(missing.isEmpty());
+            assertEquals(Collections.singletonList(event), found);
+        }
+        assertEquals(2L, cache.getHitCount());
+        assertEquals(0L, cache.getMissCount());
+    }
+
+    @Test
+    public void testCollectMissesOtherLastSeen() {
+        cache.put(event("a", 10L, 100L));
+        final List<EventSummary> found = new ArrayList<EventSummary>();
+        final Set<EventSummary> missing = cache.collect(Arrays.asList(key("a", 11L), key("b", 10L)), found);
+        assertTrue(found.isEmpty());
+        assertEquals(2, missing.size());
+        assertEquals(0L, cache.getHitCount());
+        assertEquals(2L, cache.getMissCount());
+    }
+
+    @Test
+    public void testOlderRowDoesNotReplaceNewer() {
+        final EventSummary newer = event("a", 10L, 200L);
+        cache.put(newer);
+        // A slow database read returning an older version of the row
+        cache.put(event("a", 10L, 100L));
+
+        final List<EventSummary> found = new ArrayList<EventSummary>();
+        cache.collect(Collections.singletonList(key("a", 10L)), found);
+        assertEquals(Collections.singletonList(newer), found);
+
+        final EventSummary newest = event("a", 20L, 300L);
+        cache.put(newest);
+        found.clear();
+        cache.collect(Collections.singletonList(key("a", 20L)), found);
+        assertEquals(Collections.singletonList(newest), found);
+    }
+
+    @Test
+    public void testInvalidate() {
+        cache.putAll(Arrays.asList(event("a", 10L, 100L), event("b", 10L, 100L), event("c", 10L, 100L)));
+        cache.invalidate("a");
+        cache.invalidateAll(Collections.singletonList("b"));
+
+        final List<EventSummary> found = new ArrayList<EventSummary>();
+        final Set<EventSummary> missing = cache.collect(
+                Arrays.asList(key("a", 10L), key("b", 10L), key("c", 10L)), found);
+        assertEquals(1, found.size());
+        assertEquals("c", found.get(0).getUuid());
+        assertEquals(2, missing.size());
+    }
+}
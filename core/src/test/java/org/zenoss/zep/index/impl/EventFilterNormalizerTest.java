@@ -0,0 +1,134 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl;
+
+import org.junit.Test;
+import org.zenoss.protobufs.util.Util.TimestampRange;
+import org.zenoss.protobufs.zep.Zep.EventDetailFilter;
+import org.zenoss.protobufs.zep.Zep.EventFilter;
+import org.zenoss.protobufs.zep.Zep.EventSeverity;
+import org.zenoss.protobufs.zep.Zep.EventTagFilter;
+import org.zenoss.protobufs.zep.Zep.FilterOperator;
+import org.zenoss.protobufs.zep.Zep.NumberRange;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link EventFilterNormalizer}.
+ */
+public class EventFilterNormalizerTest {
+
+    private static TimestampRange range(Long start, Long end) {
+        final TimestampRange.Builder range = TimestampRange.newBuilder();
+        if (start != null) {
+            range.setStartTime(start);
+        }
+        if (end != null) {
+            range.setEndTime(end);
+        }
+        return range.build();
+    }
+
+    @Test
+    public void testNull() {
+        assertNull(EventFilterNormalizer.normalize(null));
+    }
+
+    @Test
+    public void testValuesSortedWithoutDuplicates() {
+        final EventFilter filter = EventFilter.newBuilder().addElementIdentifier("host2")
+                .addElementIdentifier("host1").addElementIdentifier("host2")
+                .addSeverity(EventSeverity.SEVERITY_CRITICAL).addSeverity(EventSeverity.SEVERITY_WARNING)
+                .addSeverity(EventSeverity.SEVERITY_CRITICAL).build();
+        final EventFilter normalized = EventFilterNormalizer.normalize(filter);
+        assertEquals(Arrays.asList("host1", "host2"), normalized.getElementIdentifierList());
+        assertEquals(Arrays.asList(EventSeverity.SEVERITY_WARNING, EventSeverity.SEVERITY_CRITICAL),
+                normalized.getSeverityList());
+
+        // Filters listing the same values in another order are equal once normalized
+        assertEquals(normalized, EventFilterNormalizer.normalize(EventFilter.newBuilder()
+                .addSeverity(EventSeverity.SEVERITY_WARNING).addSeverity(EventSeverity.SEVERITY_CRITICAL)
+                .addElementIdentifier("host1").addElementIdentifier("host2").build()));
+    }
+
+    @Test
+    public void testRangesMerged() {
+        final EventFilter filter = EventFilter.newBuilder().addLastSeen(range(50L, 100L)).addLastSeen(range(10L, 20L))
+                .addLastSeen(range(15L, 30L)).addLastSeen(range(90L, null))
+                .addCountRange(NumberRange.newBuilder().setFrom(5L).setTo(10L))
+                .addCountRange(NumberRange.newBuilder().setTo(6L)).build();
+        final EventFilter normalized = EventFilterNormalizer.normalize(filter);
+        assertEquals(Arrays.asList(range(10L, 30L), range(50L, null)), normalized.getLastSeenList());
+        assertEquals(Arrays.asList(NumberRange.newBuilder().setTo(10L).build()), normalized.getCountRangeList());
+    }
+
+    @Test
+    public void testInvertedRangesKept() {
+        // Left for the query builders to reject
+        final EventFilter filter = EventFilter.newBuilder().addFirstSeen(range(20L, 10L))
+                .addFirstSeen(range(1L, 2L)).build();
+        assertEquals(2, EventFilterNormalizer.normalize(filter).getFirstSeenCount());
+    }
+
+    @Test
+    public void testDefaultOperatorCleared() {
+        final FilterOperator defaultOperator = EventFilter.getDefaultInstance().getOperator();
+        final EventFilter normalized = EventFilterNormalizer.normalize(EventFilter.newBuilder()
+                .setOperator(defaultOperator).addAgent("zenping").build());
+        assertFalse(normalized.hasOperator());
+        assertEquals(EventFilter.newBuilder().addAgent("zenping").build(), normalized);
+
+        final FilterOperator other = (defaultOperator == FilterOperator.OR) ? FilterOperator.AND : FilterOperator.OR;
+        assertEquals(other, EventFilterNormalizer.normalize(EventFilter.newBuilder().setOperator(other)
+                .addAgent("zenping").build()).getOperator());
+    }
+
+    @Test
+    public void testTagAndDetailFilters() {
+        final EventFilter filter = EventFilter.newBuilder()
+                .addTagFilter(EventTagFilter.newBuilder().addTagUuids("b").addTagUuids("a"))
+                .addTagFilter(EventTagFilter.newBuilder())
+                .addTagFilter(EventTagFilter.newBuilder().addTagUuids("a").addTagUuids("b"))
+                .addDetails(EventDetailFilter.newBuilder().setKey("detail").addValue("2").addValue("1"))
+                .build();
+        final EventFilter normalized = EventFilterNormalizer.normalize(filter);
+        // Tag filters without tags match every event
+        assertEquals(1, normalized.getTagFilterCount());
+        assertEquals(Arrays.asList("a", "b"), normalized.getTagFilter(0).getTagUuidsList());
+        assertEquals(1, normalized.getDetailsCount());
+        assertEquals(Arrays.asList("1", "2"), normalized.getDetails(0).getValueList());
+    }
+
+    @Test
+    public void testSubfilters() {
+        final EventFilter sub1 = EventFilter.newBuilder().addAgent("zenping").addAgent("zenperfsnmp").build();
+        final EventFilter sub2 = EventFilter.newBuilder().addMonitor("localhost").build();
+        final EventFilter filter = EventFilter.newBuilder().setOperator(FilterOperator.OR).addSubfilter(sub2)
+                .addSubfilter(sub1).addSubfilter(EventFilter.newBuilder().setOperator(FilterOperator.OR))
+                .addSubfilter(EventFilter.newBuilder().addAgent("zenperfsnmp").addAgent("zenping")).build();
+        final EventFilter normalized = EventFilterNormalizer.normalize(filter);
+        // Sub-filters without criteria are dropped and equal sub-filters are merged
+        assertEquals(2, normalized.getSubfilterCount());
+        assertTrue(normalized.getSubfilterList().contains(EventFilterNormalizer.normalize(sub1)));
+        assertTrue(normalized.getSubfilterList().contains(EventFilterNormalizer.normalize(sub2)));
+        assertEquals(normalized, EventFilterNormalizer.normalize(EventFilter.newBuilder()
+                .setOperator(FilterOperator.OR).addSubfilter(sub1).addSubfilter(sub2).build()));
+    }
+
+    @Test
+    public void testIdempotent() {
+        final EventFilter filter = EventFilter.newBuilder().addEventSummary("disk").addEventSummary("cpu")
+                .addLastSeen(range(10L, 20L)).addLastSeen(range(5L, 12L))
+                .addTagFilter(EventTagFilter.newBuilder().addTagUuids("b").addTagUuids("a")).build();
+        final EventFilter normalized = EventFilterNormalizer.normalize(filter);
+        assertEquals(normalized, EventFilterNormalizer.normalize(normalized));
+    }
+}
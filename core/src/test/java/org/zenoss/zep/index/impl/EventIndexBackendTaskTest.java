@@ -0,0 +1,61 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl;
+
+import org.junit.Test;
+import org.zenoss.protobufs.zep.Zep.EventSummary;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link EventIndexBackendTask}.
+ */
+public class EventIndexBackendTaskTest {
+
+    @Test
+    public void testEventRoundTrip() throws Exception {
+        final EventSummary event = EventSummary.newBuilder().setUuid("a").setLastSeenTime(10L).setUpdateTime(100L)
+                .build();
+        final EventIndexBackendTask task = EventIndexBackendTask.Index(event);
+        final String serialized = task.toString();
+
+        final EventIndexBackendTask parsed = EventIndexBackendTask.parse(serialized);
+        assertEquals(EventIndexBackendTask.Op.INDEX_EVENT, parsed.op);
+        assertEquals("a", parsed.uuid);
+        assertEquals(Long.valueOf(10L), parsed.lastSeen);
+        assertTrue(parsed.hasEvent());
+        // The committed version of the event, not whatever the database holds by the time it is processed
+        assertEquals(event, parsed.getEvent());
+        // Work queues complete tasks by their serialized form
+        assertEquals(serialized, parsed.toString());
+    }
+
+    @Test
+    public void testParseTaskWithoutEvent() throws Exception {
+        final EventIndexBackendTask parsed = EventIndexBackendTask.parse("op:INDEX_EVENT,uuid:a,lastSeen:10");
+        assertEquals("a", parsed.uuid);
+        assertEquals(Long.valueOf(10L), parsed.lastSeen);
+        assertFalse(parsed.hasEvent());
+        assertNull(parsed.getEvent());
+        assertEquals("op:INDEX_EVENT,uuid:a,lastSeen:10", parsed.toString());
+    }
+
+    @Test
+    public void testFlush() {
+        final EventIndexBackendTask parsed = EventIndexBackendTask.parse(EventIndexBackendTask.Flush().toString());
+        assertEquals(EventIndexBackendTask.Op.FLUSH, parsed.op);
+        assertNull(parsed.uuid);
+        assertFalse(parsed.hasEvent());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseInvalidOp() {
+        EventIndexBackendTask.parse("op:UNKNOWN,uuid:a");
+    }
+}
@@ -1450,6 +1450,18 @@ public class EventIndexDaoImplIT extends AbstractTransactionalJUnit4SpringContex
                 return archiveDao.listBatch(batchParams, maxUpdateTime, limit);
             }
 
+            @Override
+            public EventBatch listBatch(EventBatchParams batchParams, String fromUuid, String toUuid,
+                                        long maxUpdateTime, int limit) throws ZepException {
+                return archiveDao.listBatch(batchParams, fromUuid, toUuid, maxUpdateTime, limit);
+            }
+
+            @Override
+            public EventBatch listBatchUpdatedAfter(EventBatchParams batchParams, long minUpdateTime,
+                                                    long maxUpdateTime, int limit) throws ZepException {
+                return archiveDao.listBatchUpdatedAfter(batchParams, minUpdateTime, maxUpdateTime, limit);
+            }
+
             @Override
             public void importEvent(EventSummary eventSummary) throws ZepException {
                 archiveDao.importEvent(eventSummary);
@@ -0,0 +1,91 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link GroupCommitPolicy}.
+ */
+public class GroupCommitPolicyTest {
+
+    private static final long INTERVAL = 1000L;
+    private static final int MAX_EVENTS = 100;
+    private static final long MAX_BYTES = 10000L;
+
+    private GroupCommitPolicy policy;
+
+    @Before
+    public void setUp() {
+        policy = new GroupCommitPolicy(INTERVAL, MAX_EVENTS, MAX_BYTES);
+    }
+
+    @Test
+    public void testTrickleCommitsWithoutDelay() {
+        policy.staged(10, 100L, false, 5000L);
+        assertFalse(policy.shouldCommit(false, 5000L));
+        // Nothing more is waiting on the index queue, so the group is committed once the pipeline is empty
+        assertEquals(0L, policy.commitDelay(false, 5000L));
+    }
+
+    @Test
+    public void testBacklogWaitsForInterval() {
+        policy.staged(50, 100L, true, 5000L);
+        assertFalse(policy.shouldCommit(false, 5000L));
+        assertEquals(INTERVAL, policy.commitDelay(false, 5000L));
+        assertEquals(400L, policy.commitDelay(false, 5600L));
+
+        // The age of the group is measured from its first batch
+        policy.staged(10, 100L, true, 5900L);
+        assertFalse(policy.shouldCommit(false, 5900L));
+        assertEquals(100L, policy.commitDelay(false, 5900L));
+        assertTrue(policy.shouldCommit(false, 6000L));
+        assertEquals(0L, policy.commitDelay(false, 6200L));
+    }
+
+    @Test
+    public void testMaxEvents() {
+        policy.staged(60, 100L, true, 5000L);
+        assertFalse(policy.shouldCommit(false, 5000L));
+        policy.staged(40, 100L, true, 5001L);
+        assertEquals(MAX_EVENTS, policy.getStagedEvents());
+        assertTrue(policy.shouldCommit(false, 5001L));
+    }
+
+    @Test
+    public void testMaxBytes() {
+        policy.staged(1, MAX_BYTES - 1, true, 5000L);
+        assertFalse(policy.shouldCommit(false, 5000L));
+        policy.staged(1, 1L, true, 5000L);
+        assertEquals(MAX_BYTES, policy.getStagedBytes());
+        assertTrue(policy.shouldCommit(false, 5000L));
+    }
+
+    @Test
+    public void testCommitRequested() {
+        policy.staged(1, 1L, true, 5000L);
+        assertTrue(policy.shouldCommit(true, 5000L));
+        assertEquals(0L, policy.commitDelay(true, 5000L));
+    }
+
+    @Test
+    public void testResetStartsNewGroup() {
+        policy.staged(99, MAX_BYTES - 1, true, 5000L);
+        policy.reset();
+        assertEquals(0, policy.getStagedEvents());
+        assertEquals(0L, policy.getStagedBytes());
+
+        policy.staged(1, 1L, true, 8000L);
+        assertFalse(policy.shouldCommit(false, 8000L));
+        assertEquals(INTERVAL, policy.commitDelay(false, 8000L));
+    }
+}
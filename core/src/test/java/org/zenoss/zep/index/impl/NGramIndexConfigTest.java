@@ -0,0 +1,97 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_ELEMENT_IDENTIFIER;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_ELEMENT_SUB_TITLE;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_ELEMENT_TITLE;
+
+/**
+ * Unit tests for {@link NGramIndexConfig}.
+ */
+public class NGramIndexConfigTest {
+
+    @Test
+    public void testDefault() {
+        final NGramIndexConfig config = new NGramIndexConfig();
+        assertEquals(new HashSet<String>(NGramIndexConfig.IDENTIFIER_FIELDS), config.getFields());
+        assertEquals(IndexConstants.MIN_NGRAM_SIZE, config.getMinGram());
+        assertEquals(IndexConstants.MAX_NGRAM_SIZE, config.getMaxGram());
+        assertTrue(config.isDefault());
+        assertTrue(new NGramIndexConfig(FIELD_ELEMENT_TITLE + "," + FIELD_ELEMENT_SUB_TITLE + ","
+                + String.join(",", NGramIndexConfig.IDENTIFIER_FIELDS), IndexConstants.MIN_NGRAM_SIZE,
+                IndexConstants.MAX_NGRAM_SIZE).isDefault());
+    }
+
+    @Test
+    public void testFields() {
+        final NGramIndexConfig config = new NGramIndexConfig(" " + FIELD_ELEMENT_IDENTIFIER + ",,unknown, "
+                + FIELD_ELEMENT_TITLE, 3, 3);
+        assertEquals(new HashSet<String>(Arrays.asList(FIELD_ELEMENT_IDENTIFIER, FIELD_ELEMENT_TITLE)),
+                config.getFields());
+        assertTrue(config.isEnabled(FIELD_ELEMENT_IDENTIFIER));
+        assertFalse(config.isEnabled(FIELD_ELEMENT_SUB_TITLE));
+        assertFalse(config.isEnabled("unknown"));
+        assertFalse(config.isDefault());
+
+        // No identifier field is indexed with n-grams
+        assertTrue(new NGramIndexConfig("", 3, 3).getFields().isEmpty());
+    }
+
+    @Test
+    public void testInvalidSizes() {
+        NGramIndexConfig config = new NGramIndexConfig(FIELD_ELEMENT_IDENTIFIER, 0, 5);
+        assertEquals(IndexConstants.MIN_NGRAM_SIZE, config.getMinGram());
+        assertEquals(5, config.getMaxGram());
+
+        config = new NGramIndexConfig(FIELD_ELEMENT_IDENTIFIER, 4, 2);
+        assertEquals(4, config.getMinGram());
+        assertEquals(4, config.getMaxGram());
+    }
+
+    @Test
+    public void testQueryGram() {
+        final NGramIndexConfig config = new NGramIndexConfig(FIELD_ELEMENT_IDENTIFIER, 3, 5);
+        assertEquals(5, config.getQueryGram("router1"));
+        assertEquals(4, config.getQueryGram("eth0"));
+        assertEquals(3, config.getQueryGram("abc"));
+        // Shorter values are searched with the smallest n-grams
+        assertEquals(3, config.getQueryGram("ab"));
+        // The shortest word of the value
+        assertEquals(4, config.getQueryGram(" router1  eth0 "));
+        assertEquals(3, new NGramIndexConfig().getQueryGram("router1"));
+    }
+
+    @Test
+    public void testProperties() {
+        final NGramIndexConfig config = new NGramIndexConfig(FIELD_ELEMENT_IDENTIFIER + "," + FIELD_ELEMENT_TITLE,
+                3, 5);
+        final Map<String, String> properties = config.toProperties();
+        final NGramIndexConfig read = NGramIndexConfig.fromProperties(properties);
+        assertEquals(config, read);
+        assertEquals(config.hashCode(), read.hashCode());
+        assertEquals(config.toString(), read.toString());
+        assertNotEquals(config, new NGramIndexConfig(FIELD_ELEMENT_IDENTIFIER + "," + FIELD_ELEMENT_TITLE, 3, 4));
+        assertNotEquals(config, new NGramIndexConfig(FIELD_ELEMENT_IDENTIFIER, 3, 5));
+
+        assertEquals(new NGramIndexConfig("", 3, 3),
+                NGramIndexConfig.fromProperties(new NGramIndexConfig("", 3, 3).toProperties()));
+        assertNull(NGramIndexConfig.fromProperties(Collections.<String, String>emptyMap()));
+        properties.put("ngram_max_gram", "five");
+        assertNull(NGramIndexConfig.fromProperties(properties));
+    }
+}
@@ -0,0 +1,125 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl;
+
+import com.codahale.metrics.Timer;
+import org.junit.Before;
+import org.junit.Test;
+import org.zenoss.protobufs.zep.Zep.EventSummary;
+import org.zenoss.zep.ZepException;
+import org.zenoss.zep.index.WorkQueue;
+import org.zenoss.zep.plugins.EventPostIndexPlugin;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link PostIndexPluginWorker}.
+ */
+public class PostIndexPluginWorkerTest {
+
+    private WorkQueue queue;
+    private PostIndexPluginWorker worker;
+
+    @Before
+    public void setUp() {
+        queue = createMock(WorkQueue.class);
+        final EventPostIndexPlugin plugin = createNiceMock(EventPostIndexPlugin.class);
+        expect(plugin.getId()).andReturn("TestPlugin").anyTimes();
+        replay(plugin);
+        worker = new PostIndexPluginWorker(plugin, queue, null, null, new Timer(), 100);
+    }
+
+    private static List<EventSummary> events(String... uuids) {
+        final EventSummary[] events = new EventSummary[uuids.length];
+        for (int i = 0; i < uuids.length; i++) {
+            events[i] = EventSummary.newBuilder().setUuid(uuids[i]).setLastSeenTime(1000L + i).build();
+        }
+        return Arrays.asList(events);
+    }
+
+    @Test
+    public void testSubmitToFullQueueFails() {
+        worker.setMaxQueueSize(10L);
+        expect(queue.size()).andReturn(9L);
+        replay(queue);
+        try {
+            worker.submit(events("a", "b"));
+            fail("Expected the full work queue to refuse the events");
+        } catch (ZepException e) {
+            // Nothing was added to the queue, so the batch can be retried in full
+        }
+        verify(queue);
+    }
+
+    @Test
+    public void testSubmitWithinLimit() throws ZepException {
+        worker.setMaxQueueSize(10L);
+        expect(queue.size()).andReturn(8L);
+        queue.addAll(anyObject(Collection.class));
+        expectLastCall();
+        replay(queue);
+        worker.submit(events("a", "b"));
+        verify(queue);
+    }
+
+    @Test
+    public void testSubmitToEmptyQueueAcceptsLargeBatch() throws ZepException {
+        // A batch larger than the limit would never fit, so it is accepted once the queue has drained
+        worker.setMaxQueueSize(1L);
+        expect(queue.size()).andReturn(0L);
+        queue.addAll(anyObject(Collection.class));
+        expectLastCall();
+        replay(queue);
+        worker.submit(events("a", "b"));
+        verify(queue);
+    }
+
+    @Test
+    public void testSubmitUnbounded() throws ZepException {
+        queue.addAll(anyObject(Collection.class));
+        expectLastCall();
+        replay(queue);
+        worker.submit(events("a", "b"));
+        verify(queue);
+    }
+
+    @Test
+    public void testQueueFailureIsReported() {
+        queue.addAll(anyObject(Collection.class));
+        expectLastCall().andThrow(new IllegalStateException("connection refused"));
+        replay(queue);
+        try {
+            worker.submit(Collections.<EventSummary>emptyList());
+            fail("Expected the queue failure to be reported to the indexer");
+        } catch (ZepException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        verify(queue);
+    }
+
+    @Test
+    public void testQueueSizeFailureIsReported() {
+        worker.setMaxQueueSize(10L);
+        expect(queue.size()).andThrow(new IllegalStateException("connection refused"));
+        replay(queue);
+        try {
+            worker.checkCapacity(1);
+            fail("Expected the queue failure to be reported to the indexer");
+        } catch (ZepException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        verify(queue);
+    }
+}
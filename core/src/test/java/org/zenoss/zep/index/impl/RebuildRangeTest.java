@@ -0,0 +1,101 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl;
+
+import org.junit.Test;
+import org.zenoss.zep.index.impl.MultiBackendEventIndexDao.RebuildRange;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link RebuildRange}.
+ */
+public class RebuildRangeTest {
+
+    @Test
+    public void testSplit() {
+        final List<RebuildRange> ranges = RebuildRange.split(1, "rebuild");
+        assertEquals(4, ranges.size());
+        assertNull(ranges.get(0).fromUuid);
+        assertEquals("40000000-0000-0000-0000-000000000000", ranges.get(0).toUuid);
+        assertEquals("40000000-0000-0000-0000-000000000000", ranges.get(1).fromUuid);
+        assertEquals("80000000-0000-0000-0000-000000000000", ranges.get(1).toUuid);
+        assertEquals("c0000000-0000-0000-0000-000000000000", ranges.get(2).toUuid);
+        assertEquals("c0000000-0000-0000-0000-000000000000", ranges.get(3).fromUuid);
+        assertNull(ranges.get(3).toUuid);
+    }
+
+    @Test
+    public void testRangesAreContiguous() {
+        for (int threads : new int[] { 1, 3, 7, 64 }) {
+            final List<RebuildRange> ranges = RebuildRange.split(threads, "rebuild");
+            assertEquals(threads * 4, ranges.size());
+            assertNull(ranges.get(0).fromUuid);
+            assertNull(ranges.get(ranges.size() - 1).toUuid);
+            for (int i = 1; i < ranges.size(); i++) {
+                final String boundary = ranges.get(i).fromUuid;
+                assertEquals(ranges.get(i - 1).toUuid, boundary);
+                // Valid UUIDs, increasing in the order of the database
+                assertEquals(boundary, UUID.fromString(boundary).toString());
+                if (i > 1) {
+                    assertTrue(boundary, boundary.compareTo(ranges.get(i - 1).fromUuid) > 0);
+                }
+            }
+        }
+    }
+
+    private static int countContaining(List<RebuildRange> ranges, String uuid) {
+        int count = 0;
+        for (RebuildRange range : ranges) {
+            if ((range.fromUuid == null || uuid.compareTo(range.fromUuid) > 0) &&
+                    (range.toUuid == null || uuid.compareTo(range.toUuid) <= 0)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testEveryUuidInOneRange() {
+        final List<RebuildRange> ranges = RebuildRange.split(3, "rebuild");
+        final Random random = new Random(40L);
+        for (int i = 0; i < 1000; i++) {
+            final String uuid = new UUID(random.nextLong(), random.nextLong()).toString();
+            assertEquals(uuid, 1, countContaining(ranges, uuid));
+        }
+        assertEquals(1, countContaining(ranges, "00000000-0000-0000-0000-000000000000"));
+        assertEquals(1, countContaining(ranges, "ffffffff-ffff-ffff-ffff-ffffffffffff"));
+        for (RebuildRange range : ranges.subList(1, ranges.size())) {
+            // Ranges are exclusive of their start and inclusive of their end
+            assertEquals(1, countContaining(ranges, range.fromUuid));
+        }
+    }
+
+    @Test
+    public void testStoreKeys() {
+        final Set<String> keys = new HashSet<String>();
+        for (RebuildRange range : RebuildRange.split(2, "rebuild")) {
+            keys.add(new String(range.storeKey));
+        }
+        assertEquals(8, keys.size());
+        assertTrue(keys.contains("rebuild:ranges:8:0"));
+        assertTrue(keys.contains("rebuild:ranges:8:7"));
+
+        // Splitting for another number of threads starts the ranges over
+        for (RebuildRange range : RebuildRange.split(3, "rebuild")) {
+            assertFalse(keys.contains(new String(range.storeKey)));
+        }
+    }
+}
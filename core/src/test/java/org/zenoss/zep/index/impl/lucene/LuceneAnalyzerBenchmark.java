@@ -0,0 +1,180 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+
+
+package org.zenoss.zep.index.impl.lucene;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_ELEMENT_IDENTIFIER;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_ELEMENT_TITLE;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_EVENT_CLASS;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_MESSAGE;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_SUMMARY;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_SUMMARY_REVERSED;
+
+/**
+ * Compares the time and allocation of tokenizing the analyzed values of a query with a new analyzer for each
+ * value (as the query builders used to) with tokenizing them with the shared analyzers of
+ * {@link LuceneAnalyzers}.
+ * <p>
+ * It also compares analyzing the fields of indexed events with the analyzer each index writer used to build for
+ * itself, reused for all the documents of the writer, with the index analyzer built from the shared analyzers.
+ * Both reuse their token streams per thread, so sharing the analyzers is only expected not to slow down
+ * indexing.
+ * <p>
+ * This isn't run as part of the test suite. Run it from the test classpath with:
+ * <pre>
+ *     java -Dzep.benchmark.iterations=200000 org.zenoss.zep.index.impl.lucene.LuceneAnalyzerBenchmark
+ * </pre>
+ * Allocation is measured with the per-thread allocation counter of HotSpot JVMs.
+ */
+public class LuceneAnalyzerBenchmark {
+
+    private static final String SUMMARY = "Threshold of disk usage exceeded: current value 97.3% on /var/lib/mysql";
+    private static final String IDENTIFIER = "web-prod-042.dc1.example.com";
+    private static final String EVENT_CLASS = "/Perf/Filesystem/Usage";
+
+    public static void main(String[] args) throws Exception {
+        final int iterations = Integer.getInteger("zep.benchmark.iterations", 200000);
+
+        // Warm up both paths
+        for (int i = 0; i < iterations / 10; i++) {
+            queryWithNewAnalyzers();
+            queryWithSharedAnalyzers();
+        }
+        final Analyzer writerAnalyzer = createWriterAnalyzer();
+        final Analyzer indexAnalyzer = LuceneAnalyzers.createIndexAnalyzer();
+        for (int i = 0; i < iterations / 10; i++) {
+            analyzeDocument(writerAnalyzer);
+            analyzeDocument(indexAnalyzer);
+        }
+
+        long start = System.nanoTime();
+        long allocated = allocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            queryWithNewAnalyzers();
+        }
+        print("Query values, new analyzers", iterations, System.nanoTime() - start, allocatedBytes() - allocated);
+
+        start = System.nanoTime();
+        allocated = allocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            queryWithSharedAnalyzers();
+        }
+        print("Query values, shared analyzers", iterations, System.nanoTime() - start,
+                allocatedBytes() - allocated);
+
+        start = System.nanoTime();
+        allocated = allocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            analyzeDocument(writerAnalyzer);
+        }
+        print("Event fields, analyzer of the writer", iterations, System.nanoTime() - start,
+                allocatedBytes() - allocated);
+
+        start = System.nanoTime();
+        allocated = allocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            analyzeDocument(indexAnalyzer);
+        }
+        print("Event fields, shared analyzers", iterations, System.nanoTime() - start,
+                allocatedBytes() - allocated);
+        writerAnalyzer.close();
+    }
+
+    private static int queryWithNewAnalyzers() throws IOException {
+        int tokens = 0;
+        tokens += tokenizeWithReader(new LuceneSummaryAnalyzer(), FIELD_SUMMARY, SUMMARY);
+        tokens += tokenizeWithReader(new LuceneIdentifierAnalyzer(), FIELD_ELEMENT_IDENTIFIER, IDENTIFIER);
+        tokens += tokenizeWithReader(new LucenePathAnalyzer(), FIELD_EVENT_CLASS, EVENT_CLASS);
+        return tokens;
+    }
+
+    private static int queryWithSharedAnalyzers() throws IOException {
+        int tokens = 0;
+        tokens += LuceneAnalyzers.tokenize(LuceneAnalyzers.summary(), FIELD_SUMMARY, SUMMARY).size();
+        tokens += LuceneAnalyzers.tokenize(LuceneAnalyzers.identifier(), FIELD_ELEMENT_IDENTIFIER, IDENTIFIER).size();
+        tokens += LuceneAnalyzers.tokenize(LuceneAnalyzers.path(), FIELD_EVENT_CLASS, EVENT_CLASS).size();
+        return tokens;
+    }
+
+    /**
+     * The analyzer an index writer used to build with its own instances of the field analyzers.
+     */
+    private static Analyzer createWriterAnalyzer() {
+        final Map<String, Analyzer> fieldAnalyzers = new HashMap<String, Analyzer>();
+        fieldAnalyzers.put(FIELD_ELEMENT_IDENTIFIER, new LuceneIdentifierAnalyzer());
+        fieldAnalyzers.put(FIELD_ELEMENT_TITLE, new LuceneIdentifierAnalyzer());
+        fieldAnalyzers.put(FIELD_SUMMARY, new LuceneSummaryAnalyzer());
+        fieldAnalyzers.put(FIELD_EVENT_CLASS, new LucenePathAnalyzer());
+        fieldAnalyzers.put(FIELD_MESSAGE, new LuceneSummaryAnalyzer());
+        fieldAnalyzers.put(FIELD_SUMMARY_REVERSED, new LuceneSummaryAnalyzer(true));
+        return new PerFieldAnalyzerWrapper(new KeywordAnalyzer(), fieldAnalyzers);
+    }
+
+    private static int analyzeDocument(Analyzer analyzer) throws IOException {
+        int tokens = 0;
+        tokens += consume(analyzer.tokenStream(FIELD_SUMMARY, SUMMARY));
+        tokens += consume(analyzer.tokenStream(FIELD_SUMMARY_REVERSED, SUMMARY));
+        tokens += consume(analyzer.tokenStream(FIELD_MESSAGE, SUMMARY));
+        tokens += consume(analyzer.tokenStream(FIELD_ELEMENT_IDENTIFIER, IDENTIFIER));
+        tokens += consume(analyzer.tokenStream(FIELD_ELEMENT_TITLE, IDENTIFIER));
+        tokens += consume(analyzer.tokenStream(FIELD_EVENT_CLASS, EVENT_CLASS));
+        return tokens;
+    }
+
+    private static int tokenizeWithReader(Analyzer analyzer, String fieldName, String text) throws IOException {
+        try {
+            return consume(analyzer.tokenStream(fieldName, new StringReader(text)));
+        } finally {
+            analyzer.close();
+        }
+    }
+
+    private static int consume(TokenStream ts) throws IOException {
+        final List<String> tokens = new ArrayList<String>();
+        try {
+            final CharTermAttribute term = ts.addAttribute(CharTermAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                tokens.add(term.toString());
+            }
+            ts.end();
+        } finally {
+            ts.close();
+        }
+        return tokens.size();
+    }
+
+    private static long allocatedBytes() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0L;
+    }
+
+    private static void print(String name, int iterations, long nanos, long bytes) {
+        System.out.printf("%s: %.2f us, %d bytes allocated per iteration%n", name, nanos / 1e3 / iterations,
+                bytes / iterations);
+    }
+}
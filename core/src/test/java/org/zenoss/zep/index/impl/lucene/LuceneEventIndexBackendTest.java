@@ -0,0 +1,312 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl.lucene;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.scheduling.TaskScheduler;
+import org.zenoss.protobufs.zep.Zep.EventDetailItem;
+import org.zenoss.protobufs.zep.Zep.EventFilter;
+import org.zenoss.protobufs.zep.Zep.EventQuery;
+import org.zenoss.protobufs.zep.Zep.EventStatus;
+import org.zenoss.protobufs.zep.Zep.EventSummary;
+import org.zenoss.protobufs.zep.Zep.EventSummaryRequest;
+import org.zenoss.protobufs.zep.Zep.EventSummaryResult;
+import org.zenoss.zep.Messages;
+import org.zenoss.zep.UUIDGenerator;
+import org.zenoss.zep.ZepException;
+import org.zenoss.zep.ZepInstance;
+import org.zenoss.zep.dao.EventSummaryBaseDao;
+import org.zenoss.zep.dao.impl.EventTestUtils;
+import org.zenoss.zep.index.BulkLoadIndexBackend;
+import org.zenoss.zep.index.impl.NGramIndexConfig;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link LuceneEventIndexBackend}.
+ */
+public class LuceneEventIndexBackendTest {
+
+    private static final ZepInstance ZEP_INSTANCE = new ZepInstance() {
+        @Override
+        public String getId() {
+            return "test";
+        }
+
+        @Override
+        public Map<String, String> getConfig() {
+            return Collections.emptyMap();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File indexDirectory;
+    private IndexWriter writer;
+    private LuceneEventIndexBackend backend;
+
+    @Before
+    public void setUp() throws Exception {
+        indexDirectory = new File(folder.getRoot(), "summary");
+        writer = new IndexWriter(FSDirectory.open(indexDirectory), LuceneEventIndexMapper.createIndexWriterConfig(
+                LuceneEventIndexMapper.createAnalyzer(), ZEP_INSTANCE));
+        backend = newBackend(writer);
+    }
+
+    private static LuceneEventIndexBackend newBackend(IndexWriter writer) throws Exception {
+        final LuceneEventIndexBackend backend = new LuceneEventIndexBackend("event_summary", writer,
+                createNiceMock(EventSummaryBaseDao.class), 1024, new LuceneFilterCacheManager(), 0,
+                createNiceMock(Messages.class), createNiceMock(TaskScheduler.class),
+                createNiceMock(UUIDGenerator.class), 0, 3600);
+        backend.setIndexDetailsConfiguration(() -> Collections.<String, EventDetailItem>emptyMap());
+        backend.setZepInstance(ZEP_INSTANCE);
+        return backend;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        backend.close();
+        // Only closes the writer of the test if no shadow index replaced it
+        writer.close();
+        writer.getDirectory().close();
+    }
+
+    private static EventSummary createEvent(String uuid) {
+        return createEvent(uuid, 1);
+    }
+
+    private static EventSummary createEvent(String uuid, int count) {
+        return EventSummary.newBuilder().setUuid(uuid).addOccurrence(EventTestUtils.createSampleEvent())
+                .setStatus(EventStatus.STATUS_NEW).setCount(count).setFirstSeenTime(1000L).setLastSeenTime(1000L)
+                .setStatusChangeTime(1000L).setUpdateTime(1000L).build();
+    }
+
+    private long countByIdentifier(String identifier) throws ZepException {
+        return backend.list(EventSummaryRequest.newBuilder().setEventFilter(
+                EventFilter.newBuilder().addElementIdentifier(identifier)).build()).getTotal();
+    }
+
+    @Test
+    public void testSwapShadowIndex() throws Exception {
+        backend.index(Arrays.asList(createEvent("live1"), createEvent("live2"), createEvent("deleted")));
+        backend.flush();
+
+        assertTrue(backend.startShadowIndex());
+        assertTrue(backend.hasShadowIndex());
+        final File shadowDirectory = LuceneIndexDirectories.shadowOf(indexDirectory);
+        assertTrue(shadowDirectory.isDirectory());
+
+        // Changes made during the rebuild go to both indexes
+        backend.index(createEvent("indexed"));
+        backend.delete("deleted");
+        backend.flush();
+        // The rebuild reads the events of the database, without the deleted event
+        backend.indexShadow(Arrays.asList(createEvent("live1"), createEvent("live2")));
+
+        // Searches keep using the live index until the swap
+        assertNotNull(backend.findByUuid("live1"));
+        assertEquals(3L, backend.count());
+
+        backend.swapShadowIndex();
+        assertFalse(backend.hasShadowIndex());
+        assertFalse(shadowDirectory.exists());
+        assertEquals(3L, backend.count());
+        assertNotNull(backend.findByUuid("live1"));
+        assertNotNull(backend.findByUuid("indexed"));
+        assertNull(backend.findByUuid("deleted"));
+
+        // The swapped in index is written to the live directory
+        backend.index(createEvent("after"));
+        backend.flush();
+        assertNotNull(backend.findByUuid("after"));
+        assertEquals(4L, backend.count());
+    }
+
+    @Test
+    public void testShadowIndexOnlyHasRebuiltEvents() throws Exception {
+        backend.index(Arrays.asList(createEvent("live1"), createEvent("stale")));
+        backend.flush();
+
+        assertTrue(backend.startShadowIndex());
+        backend.indexShadow(Collections.singletonList(createEvent("live1")));
+        assertNotNull(backend.findByUuid("stale"));
+
+        // Events of the live index which weren't rebuilt are gone once the shadow index is swapped in
+        backend.swapShadowIndex();
+        assertEquals(1L, backend.count());
+        assertNull(backend.findByUuid("stale"));
+    }
+
+    @Test
+    public void testDiscardShadowIndex() throws Exception {
+        backend.index(createEvent("live1"));
+        backend.flush();
+
+        assertTrue(backend.startShadowIndex());
+        backend.indexShadow(Collections.singletonList(createEvent("shadow")));
+        backend.discardShadowIndex();
+        assertFalse(backend.hasShadowIndex());
+        assertFalse(LuceneIndexDirectories.shadowOf(indexDirectory).exists());
+
+        assertEquals(1L, backend.count());
+        assertNull(backend.findByUuid("shadow"));
+        backend.index(createEvent("live2"));
+        backend.flush();
+        assertEquals(2L, backend.count());
+    }
+
+    @Test
+    public void testSnapshotRestore() throws Exception {
+        backend.index(Arrays.asList(createEvent("uuid1"), createEvent("uuid2")));
+        final File snapshot = new File(folder.getRoot(), "snapshots/event_summary");
+        assertEquals(1000L, backend.snapshot(snapshot));
+        assertTrue(snapshot.isDirectory());
+        assertFalse(LuceneIndexDirectories.shadowOf(snapshot).exists());
+
+        backend.delete("uuid1");
+        backend.index(createEvent("uuid3"));
+        backend.flush();
+
+        // Replaces the contents of the index
+        backend.restoreSnapshot(snapshot);
+        assertEquals(2L, backend.count());
+        assertNotNull(backend.findByUuid("uuid1"));
+        assertNull(backend.findByUuid("uuid3"));
+
+        // Taking another snapshot replaces the previous one
+        backend.index(createEvent("uuid4"));
+        backend.snapshot(snapshot);
+        backend.clear();
+        backend.restoreSnapshot(snapshot);
+        assertEquals(3L, backend.count());
+    }
+
+    @Test
+    public void testSavedSearchSkipsDeletedEvents() throws Exception {
+        final String[] uuids = new String[6];
+        for (int i = 0; i < uuids.length; i++) {
+            uuids[i] = "00000000-0000-0000-0000-00000000000" + i;
+            backend.index(createEvent(uuids[i]));
+        }
+        backend.flush();
+        final LuceneSavedSearch search = backend.buildSavedSearch("search",
+                EventQuery.newBuilder().setTimeout(60).build());
+        try {
+            backend.delete(Arrays.asList(uuids[1], uuids[2], uuids[5]));
+            backend.flush();
+
+            // The page is filled with the events after the deleted ones
+            EventSummaryResult result = backend.savedSearchProcessor().result(search, 0, 2);
+            assertEquals(6, result.getTotal());
+            assertEquals(2, result.getEventsCount());
+            assertEquals(uuids[0], result.getEvents(0).getUuid());
+            assertEquals(uuids[3], result.getEvents(1).getUuid());
+            assertEquals(4, result.getNextOffset());
+
+            // Deleted events at the end of the keys leave the last page short
+            result = backend.savedSearchProcessor().result(search, result.getNextOffset(), 2);
+            assertEquals(1, result.getEventsCount());
+            assertEquals(uuids[4], result.getEvents(0).getUuid());
+            assertFalse(result.hasNextOffset());
+        } finally {
+            search.close();
+        }
+    }
+
+    @Test
+    public void testBulkLoad() throws Exception {
+        backend.index(Arrays.asList(createEvent("replaced", 1), createEvent("updated", 1)));
+        backend.flush();
+
+        final BulkLoadIndexBackend.BulkLoad bulkLoad = backend.startBulkLoad();
+        assertNotNull(bulkLoad);
+        try {
+            bulkLoad.index(Arrays.asList(createEvent("replaced", 2), createEvent("updated", 2),
+                    createEvent("loaded", 2), createEvent("deleted", 2)));
+            // Nothing is searchable before the load is committed
+            assertEquals(2L, backend.count());
+
+            // Changes made to the index while loading win over the loaded events
+            backend.index(createEvent("updated", 3));
+            backend.delete("deleted");
+            assertEquals(2, bulkLoad.commit());
+            backend.flush();
+            assertEquals(3L, backend.count());
+            assertEquals(2, backend.findByUuid("replaced").getCount());
+            assertEquals(3, backend.findByUuid("updated").getCount());
+            assertEquals(2, backend.findByUuid("loaded").getCount());
+            assertNull(backend.findByUuid("deleted"));
+
+            // Loads more after a commit, changes made before the commit no longer count
+            bulkLoad.index(Collections.singletonList(createEvent("updated", 4)));
+            assertEquals(1, bulkLoad.commit());
+            backend.flush();
+            assertEquals(3L, backend.count());
+            assertEquals(4, backend.findByUuid("updated").getCount());
+
+            // Events loaded but not committed are discarded
+            bulkLoad.index(Collections.singletonList(createEvent("discarded")));
+        } finally {
+            bulkLoad.close();
+        }
+        backend.flush();
+        assertNull(backend.findByUuid("discarded"));
+
+        // Shadow indexes are written with their own configuration, so they are rebuilt one event at a time
+        assertTrue(backend.startShadowIndex());
+        assertNull(backend.startBulkLoad());
+        backend.discardShadowIndex();
+    }
+
+    @Test
+    public void testNGramConfigKeptUntilSwap() throws Exception {
+        backend.setNgramConfig(new NGramIndexConfig());
+        backend.index(createEvent("live1"));
+        backend.flush();
+
+        // Opened again with larger n-grams
+        final NGramIndexConfig nGramConfig = new NGramIndexConfig(
+                String.join(",", NGramIndexConfig.IDENTIFIER_FIELDS), 4, 5);
+        backend.close();
+        writer.close();
+        writer = new IndexWriter(writer.getDirectory(), LuceneEventIndexMapper.createIndexWriterConfig(
+                LuceneEventIndexMapper.createAnalyzer(nGramConfig), ZEP_INSTANCE));
+        backend = newBackend(writer);
+        backend.setNgramConfig(nGramConfig);
+
+        // The live index is written and searched with the n-grams it was built with until it is rebuilt
+        backend.index(createEvent("live2"));
+        backend.flush();
+        assertEquals(2L, countByIdentifier("evicenam"));
+        assertEquals(2L, countByIdentifier("dev"));
+
+        assertTrue(backend.startShadowIndex());
+        backend.index(createEvent("indexed"));
+        backend.indexShadow(Arrays.asList(createEvent("live1"), createEvent("live2")));
+        backend.flush();
+        assertEquals(3L, countByIdentifier("evicenam"));
+
+        backend.swapShadowIndex();
+        assertEquals(3L, countByIdentifier("evicenam"));
+        assertEquals(3L, countByIdentifier("devi"));
+    }
+}
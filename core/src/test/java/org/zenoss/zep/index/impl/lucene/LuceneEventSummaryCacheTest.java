@@ -0,0 +1,105 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl.lucene;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.zenoss.protobufs.zep.Zep.EventSummary;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link LuceneEventSummaryCache}.
+ */
+public class LuceneEventSummaryCacheTest {
+
+    private LuceneEventSummaryCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new LuceneEventSummaryCache(1024L * 1024L);
+    }
+
+    private static EventSummary createEvent(String uuid, long updateTime) {
+        return EventSummary.newBuilder().setUuid(uuid).setUpdateTime(updateTime).build();
+    }
+
+    @Test
+    public void testHitOnSameUpdateTime() {
+        final EventSummary event = createEvent("uuid1", 1000L);
+        cache.put(event);
+        assertSame(event, cache.get("uuid1", 1000L));
+        assertEquals(1L, cache.getHitCount());
+        assertEquals(0L, cache.getMissCount());
+        assertEquals(1.0, cache.getHitRatio(), 0.0);
+    }
+
+    @Test
+    public void testMissOnChangedUpdateTime() {
+        cache.put(createEvent("uuid1", 1000L));
+        // The indexed event was updated since it was cached
+        assertNull(cache.get("uuid1", 2000L));
+        assertNull(cache.get("uuid2", 1000L));
+        assertEquals(0L, cache.getHitCount());
+        assertEquals(2L, cache.getMissCount());
+
+        // The caller replaces the out of date version with the newly decoded one
+        final EventSummary updated = createEvent("uuid1", 2000L);
+        cache.put(updated);
+        assertSame(updated, cache.get("uuid1", 2000L));
+        assertNull(cache.get("uuid1", 1000L));
+        assertEquals(0.25, cache.getHitRatio(), 0.0);
+    }
+
+    @Test
+    public void testWeight() {
+        assertEquals(0L, cache.getWeight());
+        cache.put(createEvent("uuid1", 1000L));
+        final long weight = cache.getWeight();
+        assertTrue(weight > 0L);
+
+        // Replacing an entry releases the weight of the old one
+        cache.put(createEvent("uuid1", 2000L));
+        assertEquals(weight, cache.getWeight());
+        cache.put(createEvent("uuid2", 1000L));
+        assertEquals(2 * weight, cache.getWeight());
+
+        cache.invalidate("uuid1");
+        assertEquals(weight, cache.getWeight());
+        cache.invalidateAll();
+        assertEquals(0L, cache.getWeight());
+    }
+
+    @Test
+    public void testInvalidate() {
+        cache.put(createEvent("uuid1", 1000L));
+        cache.put(createEvent("uuid2", 1000L));
+        cache.put(createEvent("uuid3", 1000L));
+
+        cache.invalidate("uuid1");
+        assertNull(cache.get("uuid1", 1000L));
+        cache.invalidateAll(Arrays.asList("uuid2", "uuid4"));
+        assertNull(cache.get("uuid2", 1000L));
+        assertNotNull(cache.get("uuid3", 1000L));
+        cache.invalidateAll();
+        assertNull(cache.get("uuid3", 1000L));
+    }
+
+    @Test
+    public void testBoundedByWeight() {
+        final LuceneEventSummaryCache small = new LuceneEventSummaryCache(2048L);
+        for (int i = 0; i < 100; i++) {
+            small.put(createEvent("uuid" + i, 1000L));
+        }
+        assertTrue(small.getWeight() <= 2048L);
+        assertNotNull(small.get("uuid99", 1000L));
+    }
+}
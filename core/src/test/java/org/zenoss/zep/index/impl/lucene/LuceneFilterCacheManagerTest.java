@@ -0,0 +1,255 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl.lucene;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.FilteredQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zenoss.zep.index.impl.lucene.LuceneFilterCacheManager.FilterType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_ELEMENT_IDENTIFIER_NOT_ANALYZED;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_UUID;
+import static org.zenoss.zep.index.impl.IndexConstants.LUCENE_VERSION;
+
+/**
+ * Unit tests for {@link LuceneFilterCacheManager}.
+ */
+public class LuceneFilterCacheManagerTest {
+
+    private static final String FIELD = FIELD_ELEMENT_IDENTIFIER_NOT_ANALYZED;
+
+    private Directory directory;
+    private IndexWriter writer;
+    private LuceneFilterCacheManager cacheManager;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = new RAMDirectory();
+        writer = new IndexWriter(directory, new IndexWriterConfig(LUCENE_VERSION, new KeywordAnalyzer()));
+        cacheManager = new LuceneFilterCacheManager();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        writer.close();
+        directory.close();
+    }
+
+    private void index(String uuid, String value) throws IOException {
+        final Document doc = new Document();
+        doc.add(new StringField(FIELD_UUID, uuid, Field.Store.YES));
+        doc.add(new StringField(FIELD, value, Field.Store.NO));
+        writer.addDocument(doc);
+    }
+
+    private static long truncatedExpansions(MetricRegistry metrics) {
+        final Gauge<?> gauge = metrics.getGauges().get("LuceneFilterCacheManager.truncatedTermExpansions");
+        return (Long) gauge.getValue();
+    }
+
+    private static List<String> texts(Term[] terms) {
+        final List<String> texts = new ArrayList<String>(terms.length);
+        for (Term term : terms) {
+            assertEquals(FIELD, term.field());
+            texts.add(term.text());
+        }
+        return texts;
+    }
+
+    private static int count(DirectoryReader reader, Filter filter) throws IOException {
+        return new IndexSearcher(reader).search(new FilteredQuery(new MatchAllDocsQuery(), filter), 100).totalHits;
+    }
+
+    @Test
+    public void testSegmentMatchesReused() throws IOException {
+        index("1", "host1");
+        index("2", "host2");
+        writer.commit();
+        final Filter filter = cacheManager.get(FilterType.PREFIX, new Term(FIELD, "host"));
+
+        final DirectoryReader reader = DirectoryReader.open(directory);
+        try {
+            assertEquals(2, count(reader, filter));
+            final long size = cacheManager.sizeInBytes();
+            assertTrue(size > 0L);
+
+            // A reopened reader only filters the new segment, deletions are applied to the cached matches
+            index("3", "host3");
+            writer.deleteDocuments(new Term(FIELD_UUID, "1"));
+            writer.commit();
+            final DirectoryReader reopened = DirectoryReader.openIfChanged(reader);
+            try {
+                assertEquals(2, count(reopened, filter));
+                assertTrue(cacheManager.sizeInBytes() > size);
+            } finally {
+                reopened.close();
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testEvictedOnCoreClose() throws IOException {
+        index("1", "host1");
+        writer.commit();
+        index("2", "host2");
+        writer.commit();
+        final Filter prefix = cacheManager.get(FilterType.PREFIX, new Term(FIELD, "host"));
+        final Filter terms = cacheManager.get(FilterType.TERMS, new Term(FIELD, "host1"), new Term(FIELD, "host2"));
+
+        final DirectoryReader reader = DirectoryReader.open(directory);
+        assertEquals(2, reader.leaves().size());
+        assertEquals(2, count(reader, prefix));
+        assertEquals(2, count(reader, terms));
+        cacheManager.getMatchingTerms(reader, new Term(FIELD, "host*"));
+        final long size = cacheManager.sizeInBytes();
+        assertTrue(size > 0L);
+
+        // The merged segments are closed with the last reader using them
+        writer.forceMerge(1);
+        writer.commit();
+        final DirectoryReader merged = DirectoryReader.openIfChanged(reader);
+        try {
+            assertEquals(1, merged.leaves().size());
+            assertEquals(2, count(merged, prefix));
+            assertTrue(cacheManager.sizeInBytes() > size);
+            reader.close();
+            final long mergedSize = cacheManager.sizeInBytes();
+            assertTrue(mergedSize > 0L);
+            assertTrue(mergedSize < size);
+        } finally {
+            merged.close();
+        }
+        assertEquals(0L, cacheManager.sizeInBytes());
+    }
+
+    @Test
+    public void testMemoryBudget() throws IOException {
+        // Entries of filters on many segments don't fit in a budget of zero
+        cacheManager = new LuceneFilterCacheManager(0);
+        index("1", "host1");
+        writer.commit();
+        final Filter filter = cacheManager.get(FilterType.PREFIX, new Term(FIELD, "host"));
+        final DirectoryReader reader = DirectoryReader.open(directory);
+        try {
+            assertEquals(1, count(reader, filter));
+            assertEquals(1, count(reader, filter));
+            assertEquals(0L, cacheManager.sizeInBytes());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testMatchingTermsAcrossSegments() throws IOException {
+        index("1", "host1");
+        index("2", "host3");
+        index("3", "router1");
+        writer.commit();
+        index("4", "host2");
+        index("5", "host1");
+        writer.commit();
+        final DirectoryReader reader = DirectoryReader.open(directory);
+        try {
+            assertEquals(2, reader.leaves().size());
+            // Merged in term order without duplicates
+            assertEquals(Arrays.asList("host1", "host2", "host3"),
+                    texts(cacheManager.getMatchingTerms(reader, new Term(FIELD, "host?"))));
+            assertEquals(0, cacheManager.getMatchingTerms(reader, new Term(FIELD, "switch*")).length);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testTruncatedAcrossSegments() throws IOException {
+        final MetricRegistry metrics = new MetricRegistry();
+        cacheManager.setMetrics(metrics);
+        cacheManager.setMaxTermExpansions(3);
+        // Neither segment matches more than the maximum, their union does
+        index("1", "host1");
+        index("2", "host3");
+        index("3", "host5");
+        writer.commit();
+        index("4", "host2");
+        index("5", "host4");
+        writer.commit();
+        final DirectoryReader reader = DirectoryReader.open(directory);
+        try {
+            // The first terms of all segments are kept, not the terms of the first segments
+            assertEquals(Arrays.asList("host1", "host2", "host3"),
+                    texts(cacheManager.getMatchingTerms(reader, new Term(FIELD, "host*"))));
+            assertEquals(1L, truncatedExpansions(metrics));
+            assertEquals(Arrays.asList("host1", "host2", "host3"),
+                    texts(cacheManager.getMatchingTerms(reader, new Term(FIELD, "host*"))));
+            assertEquals(2L, truncatedExpansions(metrics));
+
+            // Expansions cached with a larger maximum are truncated to the new one
+            cacheManager.setMaxTermExpansions(2);
+            assertEquals(Arrays.asList("host1", "host2"),
+                    texts(cacheManager.getMatchingTerms(reader, new Term(FIELD, "host*"))));
+            assertEquals(3L, truncatedExpansions(metrics));
+
+            cacheManager.setMaxTermExpansions(10);
+            assertEquals(Arrays.asList("host1", "host2", "host3", "host4", "host5"),
+                    texts(cacheManager.getMatchingTerms(reader, new Term(FIELD, "host*"))));
+            assertEquals(3L, truncatedExpansions(metrics));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testTruncatedWithinSegment() throws IOException {
+        final MetricRegistry metrics = new MetricRegistry();
+        cacheManager.setMetrics(metrics);
+        cacheManager.setMaxTermExpansions(2);
+        index("1", "host1");
+        index("2", "host2");
+        index("3", "host3");
+        index("4", "router1");
+        index("5", "router2");
+        writer.commit();
+        final DirectoryReader reader = DirectoryReader.open(directory);
+        try {
+            assertEquals(Arrays.asList("host1", "host2"),
+                    texts(cacheManager.getMatchingTerms(reader, new Term(FIELD, "host*"))));
+            assertEquals(1L, truncatedExpansions(metrics));
+            // Exactly the maximum isn't truncated
+            assertEquals(Arrays.asList("router1", "router2"),
+                    texts(cacheManager.getMatchingTerms(reader, new Term(FIELD, "router*"))));
+            assertEquals(1L, truncatedExpansions(metrics));
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl.lucene;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.KeepOnlyLastCommitDeletionPolicy;
+import org.apache.lucene.index.SnapshotDeletionPolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_UPDATE_TIME;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_UUID;
+import static org.zenoss.zep.index.impl.IndexConstants.LUCENE_VERSION;
+
+/**
+ * Unit tests for {@link LuceneIndexDirectories}.
+ */
+public class LuceneIndexDirectoriesTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static IndexWriter openWriter(File directory, boolean snapshots) throws IOException {
+        final IndexWriterConfig config = new IndexWriterConfig(LUCENE_VERSION, new KeywordAnalyzer());
+        if (snapshots) {
+            config.setIndexDeletionPolicy(new SnapshotDeletionPolicy(new KeepOnlyLastCommitDeletionPolicy()));
+        }
+        return new IndexWriter(FSDirectory.open(directory), config);
+    }
+
+    private static void close(IndexWriter writer) throws IOException {
+        final Directory directory = writer.getDirectory();
+        writer.close();
+        directory.close();
+    }
+
+    private static void index(IndexWriter writer, String uuid) throws IOException {
+        index(writer, uuid, 1000L);
+    }
+
+    private static void index(IndexWriter writer, String uuid, long updateTime) throws IOException {
+        final Document doc = new Document();
+        doc.add(new StringField(FIELD_UUID, uuid, Field.Store.YES));
+        doc.add(new NumericDocValuesField(FIELD_UPDATE_TIME, updateTime));
+        writer.updateDocument(new Term(FIELD_UUID, uuid), doc);
+    }
+
+    private static int numDocs(File directory) throws IOException {
+        final Directory dir = FSDirectory.open(directory);
+        try {
+            final DirectoryReader reader = DirectoryReader.open(dir);
+            try {
+                return reader.numDocs();
+            } finally {
+                reader.close();
+            }
+        } finally {
+            dir.close();
+        }
+    }
+
+    @Test
+    public void testCopyCommit() throws IOException {
+        final File snapshot = new File(folder.getRoot(), "snapshot");
+        final IndexWriter writer = openWriter(new File(folder.getRoot(), "index"), true);
+        try {
+            index(writer, "uuid1", 3000L);
+            index(writer, "uuid2", 2000L);
+            writer.commit();
+            // The update time of a deleted event doesn't count
+            index(writer, "uuid1", 1000L);
+            // Uncommitted changes are committed before copying
+            assertEquals(2000L, LuceneIndexDirectories.copyCommit(writer, snapshot));
+            assertEquals(2, numDocs(snapshot));
+
+            // Later changes and merges don't touch the copy
+            index(writer, "uuid3", 4000L);
+            writer.forceMerge(1);
+            writer.commit();
+            assertEquals(2, numDocs(snapshot));
+            assertEquals(3, writer.numDocs());
+        } finally {
+            close(writer);
+        }
+    }
+
+    @Test
+    public void testRestoreCopy() throws IOException {
+        final File snapshot = new File(folder.getRoot(), "snapshot");
+        final File restored = new File(folder.getRoot(), "restored");
+        IndexWriter writer = openWriter(new File(folder.getRoot(), "index"), true);
+        try {
+            index(writer, "uuid1");
+            LuceneIndexDirectories.copyCommit(writer, snapshot);
+        } finally {
+            close(writer);
+        }
+
+        // Restored the way the backend restores a snapshot into an empty index
+        writer = openWriter(restored, true);
+        try {
+            final Directory copy = FSDirectory.open(snapshot);
+            try {
+                writer.addIndexes(copy);
+            } finally {
+                copy.close();
+            }
+            index(writer, "uuid2");
+            writer.commit();
+        } finally {
+            close(writer);
+        }
+        assertEquals(2, numDocs(restored));
+        assertEquals(1, numDocs(snapshot));
+    }
+
+    @Test(expected = IOException.class)
+    public void testCopyCommitRequiresSnapshotPolicy() throws IOException {
+        final IndexWriter writer = openWriter(new File(folder.getRoot(), "index"), false);
+        try {
+            LuceneIndexDirectories.copyCommit(writer, new File(folder.getRoot(), "snapshot"));
+        } finally {
+            close(writer);
+        }
+    }
+
+    @Test
+    public void testReplace() throws IOException {
+        final File directory = new File(folder.getRoot(), "index");
+        final File shadow = LuceneIndexDirectories.shadowOf(directory);
+        assertEquals(new File(folder.getRoot(), "index.shadow"), shadow);
+
+        IndexWriter writer = openWriter(directory, false);
+        index(writer, "live");
+        close(writer);
+        writer = openWriter(shadow, false);
+        index(writer, "shadow1");
+        index(writer, "shadow2");
+        close(writer);
+
+        LuceneIndexDirectories.replace(directory, shadow);
+        assertFalse(shadow.exists());
+        assertFalse(new File(folder.getRoot(), "index.old").exists());
+        assertEquals(2, numDocs(directory));
+    }
+
+    @Test
+    public void testDeleteLeftovers() throws IOException {
+        final File directory = new File(folder.getRoot(), "index");
+        final File shadow = LuceneIndexDirectories.shadowOf(directory);
+        final File retired = new File(folder.getRoot(), "index.old");
+        assertTrue(new File(shadow, "sub").mkdirs());
+        assertTrue(new File(shadow, "file").createNewFile());
+        assertTrue(retired.mkdirs());
+        assertTrue(directory.mkdirs());
+
+        LuceneIndexDirectories.deleteLeftovers(directory);
+        assertFalse(shadow.exists());
+        assertFalse(retired.exists());
+        assertTrue(directory.isDirectory());
+    }
+}
@@ -0,0 +1,341 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl.lucene;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.FilteredQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.zenoss.protobufs.util.Util.TimestampRange;
+import org.zenoss.zep.ZepInstance;
+import org.zenoss.zep.dao.impl.PartitionTableConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_LAST_SEEN_TIME;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_UPDATE_TIME;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_UUID;
+
+/**
+ * Unit tests for {@link LuceneIndexPartitions}.
+ */
+public class LuceneIndexPartitionsTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private static final ZepInstance ZEP_INSTANCE = new ZepInstance() {
+        @Override
+        public String getId() {
+            return "test";
+        }
+
+        @Override
+        public Map<String, String> getConfig() {
+            return Collections.emptyMap();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File baseDirectory;
+    private LuceneIndexPartitions partitions;
+
+    @Before
+    public void setUp() throws IOException {
+        baseDirectory = new File(folder.getRoot(), "archive");
+        partitions = open(1);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (partitions != null) {
+            partitions.close();
+        }
+    }
+
+    private LuceneIndexPartitions open(int days) throws IOException {
+        return new LuceneIndexPartitions(baseDirectory, new KeywordAnalyzer(), ZEP_INSTANCE,
+                new PartitionTableConfig("event_archive", days, TimeUnit.DAYS, 1, 1));
+    }
+
+    private void reopen(int days) throws IOException {
+        partitions.close();
+        partitions = null;
+        partitions = open(days);
+    }
+
+    private static Document document(String uuid, long lastSeen) {
+        final Document doc = new Document();
+        doc.add(new StringField(FIELD_UUID, uuid, Field.Store.YES));
+        doc.add(new LongField(FIELD_LAST_SEEN_TIME, lastSeen, Field.Store.YES));
+        doc.add(new NumericDocValuesField(FIELD_UPDATE_TIME, lastSeen));
+        return doc;
+    }
+
+    private void index(String uuid, long lastSeen) throws IOException {
+        partitions.updateDocument(new Term(FIELD_UUID, uuid), lastSeen, document(uuid, lastSeen));
+    }
+
+    private List<String> topLevelFiles() {
+        final List<String> names = new ArrayList<String>();
+        final File[] files = baseDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile()) {
+                    names.add(file.getName());
+                }
+            }
+        }
+        return names;
+    }
+
+    private Set<String> partitionNames() {
+        final Set<String> names = new TreeSet<String>();
+        final File[] files = baseDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    names.add(file.getName());
+                }
+            }
+        }
+        return names;
+    }
+
+    private Set<String> search(Query query) throws IOException {
+        final ReferenceManager<IndexSearcher> manager = partitions.newSearcherManager(new SearcherFactory());
+        try {
+            final IndexSearcher searcher = manager.acquire();
+            try {
+                final Set<String> uuids = new HashSet<String>();
+                final TopDocs docs = searcher.search(query, 100);
+                for (ScoreDoc scoreDoc : docs.scoreDocs) {
+                    uuids.add(searcher.doc(scoreDoc.doc).get(FIELD_UUID));
+                }
+                return uuids;
+            } finally {
+                manager.release(searcher);
+            }
+        } finally {
+            manager.close();
+        }
+    }
+
+    private static Set<String> uuids(String... uuids) {
+        return new HashSet<String>(Arrays.asList(uuids));
+    }
+
+    private static TimestampRange range(Long start, Long end) {
+        final TimestampRange.Builder range = TimestampRange.newBuilder();
+        if (start != null) {
+            range.setStartTime(start);
+        }
+        if (end != null) {
+            range.setEndTime(end);
+        }
+        return range.build();
+    }
+
+    @Test
+    public void testPartitionNaming() throws IOException {
+        index("a", DAY + 5L);
+        index("b", 2 * DAY - 1L);
+        index("c", 3 * DAY);
+        partitions.commit();
+        assertEquals(new TreeSet<String>(Arrays.asList(DAY + "-" + 2 * DAY, 3 * DAY + "-" + 4 * DAY)),
+                partitionNames());
+        assertEquals(3, partitions.numDocs());
+
+        // Opened again from the names of the directories
+        reopen(1);
+        assertEquals(3, partitions.numDocs());
+        assertEquals(uuids("a", "b", "c"), search(new MatchAllDocsQuery()));
+    }
+
+    @Test
+    public void testUpdateReplacesInPartition() throws IOException {
+        index("a", DAY + 5L);
+        index("a", DAY + 5L);
+        partitions.commit();
+        assertEquals(1, partitions.numDocs());
+    }
+
+    @Test
+    public void testChangedDurationDoesNotOverlap() throws IOException {
+        index("a", DAY + 5L);
+        partitions.commit();
+        reopen(3);
+
+        // The three day slices around the existing one day slice are cut short
+        index("b", DAY / 2);
+        index("c", 2 * DAY + 5L);
+        index("d", DAY + 10L);
+        index("e", 4 * DAY);
+        partitions.commit();
+        assertEquals(new TreeSet<String>(Arrays.asList("0-" + DAY, DAY + "-" + 2 * DAY, 2 * DAY + "-" + 3 * DAY,
+                3 * DAY + "-" + 6 * DAY)), partitionNames());
+        assertEquals(5, partitions.numDocs());
+    }
+
+    @Test
+    public void testPurge() throws IOException {
+        index("a", 5L);
+        index("b", DAY + 5L);
+        index("c", DAY + DAY / 2 + 5L);
+        index("d", 2 * DAY + 5L);
+        partitions.commit();
+
+        final long threshold = DAY + DAY / 2;
+        final int dropped = partitions.purge(threshold,
+                NumericRangeQuery.newLongRange(FIELD_LAST_SEEN_TIME, null, threshold, true, false));
+        partitions.commit();
+        // The slice entirely before the threshold is dropped, the slice holding it only loses the older events
+        assertEquals(1, dropped);
+        assertEquals(new TreeSet<String>(Arrays.asList(DAY + "-" + 2 * DAY, 2 * DAY + "-" + 3 * DAY)),
+                partitionNames());
+        assertEquals(uuids("c", "d"), search(new MatchAllDocsQuery()));
+
+        // Nothing left to drop
+        assertEquals(0, partitions.purge(threshold,
+                NumericRangeQuery.newLongRange(FIELD_LAST_SEEN_TIME, null, threshold, true, false)));
+    }
+
+    @Test
+    public void testLastSeenFilterHull() throws IOException {
+        index("a", 5L);
+        index("b", DAY + 5L);
+        index("c", 2 * DAY + 5L);
+        index("d", 3 * DAY + 5L);
+        partitions.commit();
+
+        assertNull(partitions.newLastSeenFilter(Collections.<TimestampRange>emptyList()));
+        assertNull(partitions.newLastSeenFilter(Arrays.asList(range(null, null))));
+        // Unbounded on both ends once all ranges are combined
+        assertNull(partitions.newLastSeenFilter(Arrays.asList(range(null, 10L), range(3 * DAY, null))));
+
+        // Only the slices are skipped, not the documents of the searched slices
+        assertEquals(uuids("b"), search(new FilteredQuery(new MatchAllDocsQuery(),
+                partitions.newLastSeenFilter(Arrays.asList(range(DAY + DAY / 2, DAY + DAY / 2 + 1L))))));
+
+        // The slices between the ranges are searched too
+        assertEquals(uuids("a", "b", "c"), search(new FilteredQuery(new MatchAllDocsQuery(),
+                partitions.newLastSeenFilter(Arrays.asList(range(2 * DAY, 2 * DAY + 1L), range(10L, 20L))))));
+
+        // The end of a range is inclusive, the end of a slice isn't
+        assertEquals(uuids("a", "b"), search(new FilteredQuery(new MatchAllDocsQuery(),
+                partitions.newLastSeenFilter(Arrays.asList(range(null, DAY))))));
+        assertEquals(uuids("c", "d"), search(new FilteredQuery(new MatchAllDocsQuery(),
+                partitions.newLastSeenFilter(Arrays.asList(range(3 * DAY - 1L, null), range(2 * DAY, null))))));
+    }
+
+    @Test
+    public void testSnapshotRestore() throws IOException {
+        index("a", 5L);
+        index("b", DAY + 5L);
+        final File snapshot = new File(folder.getRoot(), "snapshot");
+        // The latest update time of the events of every slice
+        assertEquals(DAY + 5L, partitions.snapshot(snapshot));
+        final Set<String> names = partitionNames();
+
+        // Changes after the snapshot are lost when restoring it
+        index("c", 2 * DAY + 5L);
+        partitions.deleteDocuments(new Term(FIELD_UUID, "a"));
+        partitions.commit();
+        assertEquals(uuids("b", "c"), search(new MatchAllDocsQuery()));
+
+        partitions.restoreSnapshot(snapshot);
+        assertEquals(names, partitionNames());
+        assertEquals(uuids("a", "b"), search(new MatchAllDocsQuery()));
+        // The restored slices are written to
+        index("d", DAY + 10L);
+        partitions.commit();
+        assertEquals(uuids("a", "b", "d"), search(new MatchAllDocsQuery()));
+        assertEquals(names, partitionNames());
+    }
+
+    @Test
+    public void testSplitUnpartitionedIndex() throws IOException {
+        // A slice left by a downgrade, the unpartitioned index was written to since
+        index("stale", 5L);
+        partitions.close();
+        partitions = null;
+
+        final Directory directory = FSDirectory.open(baseDirectory);
+        final IndexWriter writer = new IndexWriter(directory,
+                new IndexWriterConfig(Version.LUCENE_47, new KeywordAnalyzer()));
+        writer.addDocument(document("a", 5L));
+        writer.addDocument(document("b", DAY + 5L));
+        writer.commit();
+        final Document indexedOnly = document("c", DAY + 10L);
+        indexedOnly.add(new StringField("summary", "down", Field.Store.NO));
+        writer.addDocument(indexedOnly);
+        writer.addDocument(document("d", 2 * DAY + 5L));
+        writer.addDocument(document("deleted", 2 * DAY + 10L));
+        writer.deleteDocuments(new Term(FIELD_UUID, "deleted"));
+        writer.close();
+        directory.close();
+        assertFalse(topLevelFiles().isEmpty());
+
+        partitions = open(1);
+        assertEquals(new TreeSet<String>(Arrays.asList("0-" + DAY, DAY + "-" + 2 * DAY, 2 * DAY + "-" + 3 * DAY)),
+                partitionNames());
+        assertEquals(4, partitions.numDocs());
+        assertEquals(uuids("a", "b", "c", "d"), search(new MatchAllDocsQuery()));
+        assertEquals(uuids("b", "c"), search(new FilteredQuery(new MatchAllDocsQuery(),
+                partitions.newLastSeenFilter(DAY, DAY + 1L))));
+        // Fields which aren't stored are kept
+        assertEquals(uuids("c"), search(new TermQuery(new Term("summary", "down"))));
+        // The unpartitioned index is gone once split, and isn't split again
+        assertTrue(topLevelFiles().isEmpty());
+        assertFalse(LuceneIndexDirectories.shadowOf(baseDirectory).exists());
+        reopen(1);
+        assertEquals(4, partitions.numDocs());
+
+        // The slices are written to
+        index("e", DAY + 20L);
+        partitions.commit();
+        assertEquals(uuids("b", "c", "e"), search(new FilteredQuery(new MatchAllDocsQuery(),
+                partitions.newLastSeenFilter(DAY, DAY + 1L))));
+    }
+}
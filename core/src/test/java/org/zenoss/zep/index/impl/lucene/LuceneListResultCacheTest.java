@@ -0,0 +1,231 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl.lucene;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.zenoss.protobufs.zep.Zep.EventFilter;
+import org.zenoss.protobufs.zep.Zep.EventSeverity;
+import org.zenoss.protobufs.zep.Zep.EventSummary;
+import org.zenoss.protobufs.zep.Zep.EventSummaryRequest;
+import org.zenoss.protobufs.zep.Zep.EventSummaryResult;
+import org.zenoss.zep.ZepException;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link LuceneListResultCache}.
+ */
+public class LuceneListResultCacheTest {
+
+    private static final EventSummaryRequest REQUEST = EventSummaryRequest.newBuilder().setOffset(0).build();
+    private static final Set<String> FIELDS = Collections.singleton("uuid");
+
+    private LuceneListResultCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new LuceneListResultCache(1000L);
+    }
+
+    private static EventSummaryResult createResult(String uuid) {
+        return EventSummaryResult.newBuilder().addEvents(EventSummary.newBuilder().setUuid(uuid).build()).build();
+    }
+
+    /**
+     * Returns the result and counts the searches, optionally waiting for a latch before returning.
+     */
+    private static class TestLoader implements LuceneListResultCache.Loader {
+        private final EventSummaryResult result;
+        private final boolean partial;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch proceed;
+        private final AtomicInteger loads = new AtomicInteger();
+
+        private TestLoader(EventSummaryResult result, boolean partial, CountDownLatch proceed) {
+            this.result = result;
+            this.partial = partial;
+            this.proceed = proceed;
+        }
+
+        private TestLoader(EventSummaryResult result) {
+            this(result, false, null);
+        }
+
+        @Override
+        public EventSummaryResult load() throws ZepException {
+            loads.incrementAndGet();
+            started.countDown();
+            if (proceed != null) {
+                try {
+                    assertTrue(proceed.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new ZepException(e);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public boolean isPartial() {
+            return partial;
+        }
+    }
+
+    @Test
+    public void testCachedForGeneration() throws Exception {
+        final EventSummaryResult first = createResult("uuid1");
+        final TestLoader loader = new TestLoader(first);
+        assertSame(first, cache.get(5L, REQUEST, FIELDS, loader));
+        assertSame(first, cache.get(5L, REQUEST, FIELDS, loader));
+        assertEquals(1, loader.loads.get());
+        // Other fields to load are another entry
+        assertSame(first, cache.get(5L, REQUEST, Collections.singleton("summary"), loader));
+        assertEquals(2, loader.loads.get());
+        assertEquals(1L, cache.getHitCount());
+        assertEquals(2L, cache.getMissCount());
+
+        // A newer reader discards the results
+        final EventSummaryResult second = createResult("uuid2");
+        assertSame(second, cache.get(6L, REQUEST, FIELDS, new TestLoader(second)));
+        assertSame(second, cache.get(6L, REQUEST, FIELDS, new TestLoader(first)));
+    }
+
+    @Test
+    public void testEquivalentFiltersShareEntry() throws Exception {
+        final EventSummaryRequest request1 = EventSummaryRequest.newBuilder().setLimit(100)
+                .setEventFilter(EventFilter.newBuilder().addElementIdentifier("router1")
+                        .addElementIdentifier("router2").addSeverity(EventSeverity.SEVERITY_ERROR)
+                        .addSeverity(EventSeverity.SEVERITY_CRITICAL))
+                .setExclusionFilter(EventFilter.newBuilder().addEventClass("/Status").addEventClass("/Perf"))
+                .build();
+        final EventSummaryRequest request2 = EventSummaryRequest.newBuilder().setLimit(100)
+                .setEventFilter(EventFilter.newBuilder().addSeverity(EventSeverity.SEVERITY_CRITICAL)
+                        .addSeverity(EventSeverity.SEVERITY_ERROR).addElementIdentifier("router2")
+                        .addElementIdentifier("router1").addElementIdentifier("router2"))
+                .setExclusionFilter(EventFilter.newBuilder().addEventClass("/Perf").addEventClass("/Status"))
+                .build();
+        assertFalse(request1.equals(request2));
+        assertEquals(LuceneListResultCache.normalize(request1), LuceneListResultCache.normalize(request2));
+
+        final EventSummaryResult result = createResult("uuid1");
+        final TestLoader loader = new TestLoader(result);
+        assertSame(result, cache.get(5L, request1, FIELDS, loader));
+        assertSame(result, cache.get(5L, request2, FIELDS, loader));
+        assertEquals(1, loader.loads.get());
+        assertEquals(1L, cache.getHitCount());
+
+        // A filter matching other events is another entry
+        final EventSummaryRequest other = EventSummaryRequest.newBuilder(request2)
+                .setEventFilter(EventFilter.newBuilder().addElementIdentifier("router1")).build();
+        assertSame(result, cache.get(5L, other, FIELDS, loader));
+        assertEquals(2, loader.loads.get());
+    }
+
+    @Test
+    public void testOlderGenerationNotCached() throws Exception {
+        cache.get(6L, REQUEST, FIELDS, new TestLoader(createResult("uuid2")));
+        final EventSummaryResult stale = createResult("uuid1");
+        final TestLoader loader = new TestLoader(stale);
+        assertSame(stale, cache.get(5L, REQUEST, FIELDS, loader));
+        assertSame(stale, cache.get(5L, REQUEST, FIELDS, loader));
+        assertEquals(2, loader.loads.get());
+    }
+
+    @Test
+    public void testPartialResultNotCached() throws Exception {
+        final EventSummaryResult partial = createResult("uuid1");
+        final TestLoader loader = new TestLoader(partial, true, null);
+        assertSame(partial, cache.get(5L, REQUEST, FIELDS, loader));
+        assertSame(partial, cache.get(5L, REQUEST, FIELDS, loader));
+        assertEquals(2, loader.loads.get());
+    }
+
+    private Future<EventSummaryResult> getAsync(ExecutorService executor, final long generation,
+                                                final TestLoader loader) {
+        return executor.submit(new Callable<EventSummaryResult>() {
+            @Override
+            public EventSummaryResult call() throws ZepException {
+                return cache.get(generation, REQUEST, FIELDS, loader);
+            }
+        });
+    }
+
+    @Test
+    public void testSearchRunningAcrossRefresh() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final CountDownLatch proceed = new CountDownLatch(1);
+            final EventSummaryResult old = createResult("old");
+            final TestLoader oldLoader = new TestLoader(old, false, proceed);
+            final Future<EventSummaryResult> oldResult = getAsync(executor, 5L, oldLoader);
+            assertTrue(oldLoader.started.await(10, TimeUnit.SECONDS));
+
+            // The index is refreshed while the search of the older reader is still running
+            final EventSummaryResult current = createResult("current");
+            assertSame(current, cache.get(6L, REQUEST, FIELDS, new TestLoader(current)));
+
+            proceed.countDown();
+            assertSame(old, oldResult.get(10, TimeUnit.SECONDS));
+            // The result of the older reader doesn't replace the newer one
+            final TestLoader loader = new TestLoader(createResult("other"));
+            assertSame(current, cache.get(6L, REQUEST, FIELDS, loader));
+            assertEquals(0, loader.loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testInvalidateAll() throws Exception {
+        final EventSummaryResult old = createResult("old");
+        cache.get(5L, REQUEST, FIELDS, new TestLoader(old));
+        cache.invalidateAll();
+
+        // The readers of a swapped in index may start at a lower version
+        final EventSummaryResult swapped = createResult("swapped");
+        final TestLoader loader = new TestLoader(swapped);
+        assertSame(swapped, cache.get(2L, REQUEST, FIELDS, loader));
+        assertSame(swapped, cache.get(2L, REQUEST, FIELDS, loader));
+        assertEquals(1, loader.loads.get());
+    }
+
+    @Test
+    public void testSearchRunningAcrossInvalidateAll() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final CountDownLatch proceed = new CountDownLatch(1);
+            final EventSummaryResult old = createResult("old");
+            final TestLoader oldLoader = new TestLoader(old, false, proceed);
+            final Future<EventSummaryResult> oldResult = getAsync(executor, 5L, oldLoader);
+            assertTrue(oldLoader.started.await(10, TimeUnit.SECONDS));
+
+            // The index is swapped and its reader happens to have the same version
+            cache.invalidateAll();
+            final EventSummaryResult swapped = createResult("swapped");
+            assertSame(swapped, cache.get(5L, REQUEST, FIELDS, new TestLoader(swapped)));
+
+            proceed.countDown();
+            assertSame(old, oldResult.get(10, TimeUnit.SECONDS));
+            assertSame(swapped, cache.get(5L, REQUEST, FIELDS, new TestLoader(old)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl.lucene;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zenoss.protobufs.zep.Zep.EventDetailItem;
+import org.zenoss.protobufs.zep.Zep.EventFilter;
+import org.zenoss.protobufs.zep.Zep.FilterOperator;
+import org.zenoss.zep.ZepException;
+import org.zenoss.zep.index.impl.NGramIndexConfig;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_ELEMENT_IDENTIFIER;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_ELEMENT_IDENTIFIER_NOT_ANALYZED;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_MESSAGE;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_MESSAGE_REVERSED;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_SUMMARY;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_SUMMARY_REVERSED;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_UUID;
+import static org.zenoss.zep.index.impl.IndexConstants.LUCENE_VERSION;
+
+/**
+ * Unit tests for {@link LuceneQueryBuilder}.
+ */
+public class LuceneQueryBuilderTest {
+
+    private Directory directory;
+    private IndexWriter writer;
+    private LuceneFilterCacheManager cacheManager;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = new RAMDirectory();
+        writer = new IndexWriter(directory, new IndexWriterConfig(LUCENE_VERSION,
+                LuceneEventIndexMapper.createAnalyzer()));
+        cacheManager = new LuceneFilterCacheManager();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        writer.close();
+        directory.close();
+    }
+
+    private void index(String uuid, String summary) throws IOException {
+        final Document doc = new Document();
+        doc.add(new StringField(FIELD_UUID, uuid, Field.Store.YES));
+        doc.add(new TextField(FIELD_SUMMARY, summary, Field.Store.NO));
+        doc.add(new TextField(FIELD_SUMMARY_REVERSED, summary, Field.Store.NO));
+        writer.addDocument(doc);
+    }
+
+    private void indexIdentifiers(NGramIndexConfig nGramConfig, String... identifiers) throws IOException {
+        writer.close();
+        writer = new IndexWriter(directory, new IndexWriterConfig(LUCENE_VERSION,
+                LuceneEventIndexMapper.createAnalyzer(nGramConfig)));
+        for (int i = 0; i < identifiers.length; i++) {
+            final Document doc = new Document();
+            doc.add(new StringField(FIELD_UUID, Integer.toString(i + 1), Field.Store.YES));
+            doc.add(new TextField(FIELD_ELEMENT_IDENTIFIER, identifiers[i], Field.Store.NO));
+            doc.add(new StringField(FIELD_ELEMENT_IDENTIFIER_NOT_ANALYZED, identifiers[i].toLowerCase(),
+                    Field.Store.NO));
+            writer.addDocument(doc);
+        }
+        writer.commit();
+    }
+
+    private Set<String> search(String... summaries) throws IOException, ZepException {
+        return search(new NGramIndexConfig(),
+                EventFilter.newBuilder().addAllEventSummary(Arrays.asList(summaries)).build());
+    }
+
+    private Set<String> searchIdentifier(NGramIndexConfig nGramConfig, String identifier)
+            throws IOException, ZepException {
+        return search(nGramConfig, EventFilter.newBuilder().addElementIdentifier(identifier).build());
+    }
+
+    private Set<String> search(NGramIndexConfig nGramConfig, EventFilter filter) throws IOException, ZepException {
+        final DirectoryReader reader = DirectoryReader.open(directory);
+        try {
+            final LuceneQueryBuilder builder = new LuceneQueryBuilder(FilterOperator.AND, cacheManager, reader,
+                    () -> Collections.<String, EventDetailItem>emptyMap(), nGramConfig);
+            builder.addFilter(filter);
+            final IndexSearcher searcher = new IndexSearcher(reader);
+            final Set<String> uuids = new HashSet<String>();
+            for (ScoreDoc scoreDoc : searcher.search(builder.build(), 100).scoreDocs) {
+                uuids.add(searcher.doc(scoreDoc.doc).get(FIELD_UUID));
+            }
+            return uuids;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static Set<String> uuids(String... uuids) {
+        return new HashSet<String>(Arrays.asList(uuids));
+    }
+
+    @Test
+    public void testWildcardTermReversed() {
+        // A leading wildcard with a literal ending is searched from the ending on the reversed field
+        assertEquals(new Term(FIELD_SUMMARY_REVERSED, "liaf*"), LuceneQueryBuilder.toWildcardTerm(FIELD_SUMMARY,
+                "*fail"));
+        assertEquals(new Term(FIELD_SUMMARY_REVERSED, "de?iaf*"), LuceneQueryBuilder.toWildcardTerm(FIELD_SUMMARY,
+                "*fai?ed"));
+        assertEquals(new Term(FIELD_MESSAGE_REVERSED, "tuo?"), LuceneQueryBuilder.toWildcardTerm(FIELD_MESSAGE,
+                "?out"));
+    }
+
+    @Test
+    public void testWildcardTermNotReversed() {
+        assertEquals(new Term(FIELD_SUMMARY, "fail*"), LuceneQueryBuilder.toWildcardTerm(FIELD_SUMMARY, "fail*"));
+        assertEquals(new Term(FIELD_SUMMARY, "*fail*"), LuceneQueryBuilder.toWildcardTerm(FIELD_SUMMARY, "*fail*"));
+        assertEquals(new Term(FIELD_SUMMARY, "f*l"), LuceneQueryBuilder.toWildcardTerm(FIELD_SUMMARY, "f*l"));
+        assertEquals(new Term(FIELD_SUMMARY, ""), LuceneQueryBuilder.toWildcardTerm(FIELD_SUMMARY, ""));
+        // Fields without reversed tokens
+        assertEquals(new Term(FIELD_ELEMENT_IDENTIFIER_NOT_ANALYZED, "*host"),
+                LuceneQueryBuilder.toWildcardTerm(FIELD_ELEMENT_IDENTIFIER_NOT_ANALYZED, "*host"));
+    }
+
+    @Test
+    public void testLeadingWildcardSearch() throws Exception {
+        index("1", "Disk failed on /dev/sda");
+        index("2", "Interface timed out");
+        index("3", "Disk fail count exceeded");
+        writer.commit();
+
+        assertEquals(uuids("1"), search("*iled"));
+        assertEquals(uuids("1", "3"), search("*ail*"));
+        assertEquals(uuids("2"), search("*OUT"));
+        assertEquals(uuids("1", "3"), search("*isk"));
+        assertEquals(uuids(), search("*isks"));
+    }
+
+    @Test
+    public void testLeadingWildcardInPhrase() throws Exception {
+        index("1", "Disk failed on /dev/sda");
+        index("2", "Interface timed out");
+        index("3", "Disk fail count exceeded");
+        writer.commit();
+
+        // The terms matched on the reversed field are searched on the field of the phrase
+        assertEquals(uuids("1"), search("\"disk *led\""));
+        assertEquals(uuids("1", "3"), search("\"*isk fail*\""));
+        assertEquals(uuids("2"), search("\"*med out\""));
+        assertEquals(uuids(), search("\"*ail disk\""));
+    }
+
+    @Test
+    public void testMultiWordIdentifier() throws Exception {
+        final NGramIndexConfig nGramConfig = new NGramIndexConfig();
+        indexIdentifiers(nGramConfig, "router1 eth0", "router2 eth1", "eth0 router1");
+
+        assertEquals(uuids("1", "3"), searchIdentifier(nGramConfig, "router1"));
+        assertEquals(uuids("1", "2", "3"), searchIdentifier(nGramConfig, "ro"));
+        assertEquals(uuids("1"), searchIdentifier(nGramConfig, "router1 eth0"));
+        assertEquals(uuids("1"), searchIdentifier(nGramConfig, "ter1 eth"));
+        assertEquals(uuids(), searchIdentifier(nGramConfig, "router2 eth0"));
+    }
+
+    @Test
+    public void testMultiWordIdentifierWithNGramSizes() throws Exception {
+        // Each word is indexed with n-grams of 3, then 4, then 5 characters
+        final NGramIndexConfig nGramConfig = new NGramIndexConfig(FIELD_ELEMENT_IDENTIFIER, 3, 5);
+        indexIdentifiers(nGramConfig, "router1 eth0", "router2 eth1", "eth0 router1");
+
+        // Words are searched on the n-grams of a single size
+        assertEquals(uuids("1", "3"), searchIdentifier(nGramConfig, "router1"));
+        assertEquals(uuids("1", "3"), searchIdentifier(nGramConfig, "eth0"));
+        assertEquals(uuids("1", "2", "3"), searchIdentifier(nGramConfig, "ro"));
+        // Values spanning words match like with n-grams of a single size
+        assertEquals(uuids("1"), searchIdentifier(nGramConfig, "router1 eth0"));
+        assertEquals(uuids("1"), searchIdentifier(nGramConfig, "ter1 eth"));
+        assertEquals(uuids(), searchIdentifier(nGramConfig, "router2 eth0"));
+    }
+}
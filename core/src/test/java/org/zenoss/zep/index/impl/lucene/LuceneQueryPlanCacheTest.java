@@ -0,0 +1,104 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl.lucene;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.junit.Before;
+import org.junit.Test;
+import org.zenoss.protobufs.zep.Zep.EventFilter;
+import org.zenoss.zep.ZepException;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link LuceneQueryPlanCache}.
+ */
+public class LuceneQueryPlanCacheTest {
+
+    private static final EventFilter FILTER = EventFilter.newBuilder().addElementIdentifier("host1").build();
+
+    private LuceneQueryPlanCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new LuceneQueryPlanCache(100);
+    }
+
+    /**
+     * Compiles a new query on every call and counts the calls.
+     */
+    private static class TestCompiler implements LuceneQueryPlanCache.Compiler {
+        private final boolean readerDependent;
+        private int compiled = 0;
+
+        private TestCompiler(boolean readerDependent) {
+            this.readerDependent = readerDependent;
+        }
+
+        @Override
+        public LuceneQueryPlanCache.Plan compile() throws ZepException {
+            compiled++;
+            return new LuceneQueryPlanCache.Plan(new TermQuery(new Term("field", "value" + compiled)),
+                    readerDependent);
+        }
+    }
+
+    @Test
+    public void testReused() throws ZepException {
+        final TestCompiler compiler = new TestCompiler(false);
+        final Query query = cache.get(1L, null, FILTER, null, compiler);
+        assertSame(query, cache.get(2L, null, EventFilter.newBuilder().addElementIdentifier("host1").build(), null,
+                compiler));
+        assertEquals(1, compiler.compiled);
+        // The exclusion filter is part of the key
+        assertNotSame(query, cache.get(2L, null, null, FILTER, compiler));
+        assertEquals(1L, cache.getHitCount());
+        assertEquals(2L, cache.getMissCount());
+    }
+
+    @Test
+    public void testCompiledAgainForConfig() throws ZepException {
+        final Map<String, String> details = new HashMap<String, String>();
+        details.put("zenoss.device.production_state", "INTEGER");
+        final TestCompiler compiler = new TestCompiler(false);
+        final Query query = cache.get(1L, details, FILTER, null, compiler);
+        assertSame(query, cache.get(1L, new HashMap<String, String>(details), FILTER, null, compiler));
+
+        // Details were added or removed
+        final Query updated = cache.get(1L, Collections.<String, String>emptyMap(), FILTER, null, compiler);
+        assertNotSame(query, updated);
+        assertEquals(2, compiler.compiled);
+        assertSame(updated, cache.get(1L, Collections.<String, String>emptyMap(), FILTER, null, compiler));
+    }
+
+    @Test
+    public void testReaderDependent() throws ZepException {
+        final TestCompiler compiler = new TestCompiler(true);
+        final Query query = cache.get(5L, null, FILTER, null, compiler);
+        assertSame(query, cache.get(5L, null, FILTER, null, compiler));
+        final Query newer = cache.get(6L, null, FILTER, null, compiler);
+        assertNotSame(query, newer);
+
+        // A searcher acquired before the refresh doesn't replace the query of the newer reader
+        cache.get(5L, null, FILTER, null, compiler);
+        assertSame(newer, cache.get(6L, null, FILTER, null, compiler));
+        // Readers without a version never reuse the query
+        assertNotSame(newer, cache.get(-1L, null, FILTER, null, compiler));
+        assertEquals(4, compiler.compiled);
+
+        cache.invalidateReaderDependent();
+        assertNotSame(newer, cache.get(6L, null, FILTER, null, compiler));
+    }
+}
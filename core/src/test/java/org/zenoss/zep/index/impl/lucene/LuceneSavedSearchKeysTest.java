@@ -0,0 +1,309 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.index.impl.lucene;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zenoss.protobufs.zep.Zep.EventSummary;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_COUNT;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_LAST_SEEN_TIME;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_SUMMARY;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_UUID;
+import static org.zenoss.zep.index.impl.IndexConstants.LUCENE_VERSION;
+
+/**
+ * Unit tests for {@link LuceneSavedSearchKeys}.
+ */
+public class LuceneSavedSearchKeysTest {
+
+    private static final String[] WORDS = { "disk", "cpu", "memory", "ping" };
+
+    private Directory directory;
+    private IndexWriter writer;
+    private final Random random = new Random(43L);
+
+    @Before
+    public void setUp() throws IOException {
+        directory = new RAMDirectory();
+        writer = new IndexWriter(directory, new IndexWriterConfig(LUCENE_VERSION,
+                new WhitespaceAnalyzer(LUCENE_VERSION)));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        writer.close();
+        directory.close();
+    }
+
+    private static List<String> createUuids(int count) {
+        final List<String> uuids = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            uuids.add(UUID.randomUUID().toString());
+        }
+        return uuids;
+    }
+
+    private static LuceneSavedSearchKeys build(List<String> uuids, int maxKeysInMemory) throws IOException {
+        final LuceneSavedSearchKeys.Builder builder = new LuceneSavedSearchKeys.Builder(maxKeysInMemory);
+        for (int i = 0; i < uuids.size(); i++) {
+            builder.add(uuids.get(i), 1000L + i);
+        }
+        return builder.build();
+    }
+
+    private static int countSpillFiles() {
+        final String[] names = new File(System.getProperty("java.io.tmpdir")).list();
+        int count = 0;
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith("zep-saved-search")) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private void index(int count, boolean docValues) throws IOException {
+        for (int i = 0; i < count; i++) {
+            final String uuid = UUID.randomUUID().toString();
+            final long eventCount = random.nextInt(5);
+            final long lastSeen = random.nextInt(1000);
+            final StringBuilder summary = new StringBuilder();
+            for (int j = random.nextInt(4); j >= 0; j--) {
+                summary.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            final Document doc = new Document();
+            doc.add(new StringField(FIELD_UUID, uuid, Field.Store.YES));
+            doc.add(new LongField(FIELD_COUNT, eventCount, Field.Store.YES));
+            doc.add(new LongField(FIELD_LAST_SEEN_TIME, lastSeen, Field.Store.YES));
+            doc.add(new TextField(FIELD_SUMMARY, summary.toString(), Field.Store.NO));
+            if (docValues) {
+                doc.add(new SortedDocValuesField(FIELD_UUID, new BytesRef(uuid)));
+                doc.add(new NumericDocValuesField(FIELD_COUNT, eventCount));
+                doc.add(new NumericDocValuesField(FIELD_LAST_SEEN_TIME, lastSeen));
+            }
+            writer.addDocument(doc);
+        }
+        // One segment per call
+        writer.commit();
+    }
+
+    /**
+     * Collects the keys in chunks of the size and checks they are in the order of a single sorted search.
+     */
+    private void assertSameOrder(Query query, Sort sort, int chunkSize) throws IOException {
+        final DirectoryReader reader = DirectoryReader.open(directory);
+        try {
+            final IndexSearcher searcher = new IndexSearcher(reader);
+            final Sort keySort = LuceneSearchCursor.withTieBreaker(sort).rewrite(searcher);
+            final LuceneSavedSearchKeys keys = LuceneSavedSearchKeys.collect(searcher, query, keySort, chunkSize, 1000);
+            try {
+                final ScoreDoc[] expected = searcher.search(query, null, reader.maxDoc(), keySort).scoreDocs;
+                assertEquals(expected.length, keys.size());
+                final List<EventSummary> actual = keys.get(0, keys.size());
+                for (int i = 0; i < expected.length; i++) {
+                    final Document doc = searcher.doc(expected[i].doc);
+                    assertEquals(doc.get(FIELD_UUID), actual.get(i).getUuid());
+                    assertEquals(Long.parseLong(doc.get(FIELD_LAST_SEEN_TIME)), actual.get(i).getLastSeenTime());
+                }
+            } finally {
+                keys.close();
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void assertKeys(List<String> uuids, int offset, List<EventSummary> page) {
+        for (int i = 0; i < page.size(); i++) {
+            assertEquals(uuids.get(offset + i), page.get(i).getUuid());
+            assertEquals(1000L + offset + i, page.get(i).getLastSeenTime());
+        }
+    }
+
+    @Test
+    public void testInMemory() throws Exception {
+        final List<String> uuids = createUuids(100);
+        final LuceneSavedSearchKeys keys = build(uuids, 100);
+        try {
+            assertNull(keys.getFile());
+            assertEquals(100, keys.size());
+            final List<EventSummary> page = keys.get(10, 20);
+            assertEquals(20, page.size());
+            assertKeys(uuids, 10, page);
+        } finally {
+            keys.close();
+        }
+    }
+
+    @Test
+    public void testSpillToFile() throws Exception {
+        final List<String> uuids = createUuids(1000);
+        final LuceneSavedSearchKeys keys = build(uuids, 100);
+        final File file = keys.getFile();
+        try {
+            assertNotNull(file);
+            assertTrue(file.isFile());
+            // The keys held in memory before the spill are written ahead of the others
+            assertEquals(1000L * 24, file.length());
+            assertEquals(1000, keys.size());
+
+            assertKeys(uuids, 0, keys.get(0, 150));
+            assertKeys(uuids, 95, keys.get(95, 10));
+            final List<EventSummary> last = keys.get(990, 50);
+            assertEquals(10, last.size());
+            assertKeys(uuids, 990, last);
+        } finally {
+            keys.close();
+        }
+        assertFalse(file.exists());
+        try {
+            keys.get(0, 10);
+            fail("Expected closed keys to fail");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testPastEnd() throws Exception {
+        final LuceneSavedSearchKeys keys = build(createUuids(10), 5);
+        try {
+            assertTrue(keys.get(10, 10).isEmpty());
+            assertTrue(keys.get(20, 10).isEmpty());
+            assertEquals(1, keys.get(9, Integer.MAX_VALUE).size());
+        } finally {
+            keys.close();
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        final LuceneSavedSearchKeys keys = build(new ArrayList<String>(), 0);
+        try {
+            assertEquals(0, keys.size());
+            assertTrue(keys.get(0, 10).isEmpty());
+        } finally {
+            keys.close();
+        }
+    }
+
+    @Test
+    public void testDiscard() throws Exception {
+        final int spillFiles = countSpillFiles();
+        final LuceneSavedSearchKeys.Builder builder = new LuceneSavedSearchKeys.Builder(1);
+        builder.add(UUID.randomUUID().toString(), 1L);
+        builder.add(UUID.randomUUID().toString(), 2L);
+        assertEquals(spillFiles + 1, countSpillFiles());
+        builder.discard();
+        assertEquals(spillFiles, countSpillFiles());
+    }
+
+    @Test
+    public void testCollectSortedAcrossSegments() throws IOException {
+        index(50, true);
+        index(30, true);
+        index(70, true);
+        final Sort sort = new Sort(new SortField(FIELD_COUNT, SortField.Type.LONG, true),
+                new SortField(FIELD_LAST_SEEN_TIME, SortField.Type.LONG));
+        assertSameOrder(new MatchAllDocsQuery(), sort, 1000);
+        // Chunks ending inside runs of equal sort values
+        assertSameOrder(new MatchAllDocsQuery(), sort, 7);
+        assertSameOrder(new TermQuery(new Term(FIELD_SUMMARY, "disk")),
+                new Sort(new SortField(FIELD_LAST_SEEN_TIME, SortField.Type.LONG, true)), 10);
+    }
+
+    @Test
+    public void testCollectRelevance() throws IOException {
+        index(40, true);
+        index(40, true);
+        final BooleanQuery query = new BooleanQuery();
+        query.add(new TermQuery(new Term(FIELD_SUMMARY, "disk")), Occur.SHOULD);
+        query.add(new TermQuery(new Term(FIELD_SUMMARY, "cpu")), Occur.SHOULD);
+        // Unsorted searches are ordered by relevance
+        assertSameOrder(query, null, 9);
+        assertSameOrder(query, new Sort(SortField.FIELD_SCORE, new SortField(FIELD_COUNT, SortField.Type.LONG)), 9);
+    }
+
+    @Test
+    public void testCollectSegmentsWithoutDocValues() throws IOException {
+        index(20, false);
+        index(20, true);
+        assertSameOrder(new MatchAllDocsQuery(), new Sort(new SortField(FIELD_LAST_SEEN_TIME, SortField.Type.LONG)),
+                15);
+    }
+
+    @Test
+    public void testCollectNoMatches() throws IOException {
+        index(10, true);
+        assertSameOrder(new TermQuery(new Term(FIELD_SUMMARY, "none")), null, 5);
+    }
+
+    @Test
+    public void testCollectChunkSizeMatches() throws IOException {
+        // The last chunk is full, the next search finds nothing more
+        index(20, true);
+        assertSameOrder(new MatchAllDocsQuery(), new Sort(new SortField(FIELD_COUNT, SortField.Type.LONG)), 10);
+    }
+
+    @Test
+    public void testCollectSpillsToFile() throws IOException {
+        index(30, true);
+        final DirectoryReader reader = DirectoryReader.open(directory);
+        try {
+            final IndexSearcher searcher = new IndexSearcher(reader);
+            final LuceneSavedSearchKeys keys = LuceneSavedSearchKeys.collect(searcher, new MatchAllDocsQuery(),
+                    LuceneSearchCursor.withTieBreaker(null).rewrite(searcher), 10, 10);
+            try {
+                assertNotNull(keys.getFile());
+                assertEquals(30, keys.size());
+                assertEquals(30, keys.get(0, 30).size());
+            } finally {
+                keys.close();
+            }
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+
+
+package org.zenoss.zep.index.impl.lucene;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_LAST_SEEN_TIME;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_UUID;
+import static org.zenoss.zep.index.impl.IndexConstants.LUCENE_VERSION;
+
+/**
+ * Unit tests for {@link LuceneSearchCursor}.
+ */
+public class LuceneSearchCursorTest {
+
+    private static final Sort LAST_SEEN_SORT = LuceneSearchCursor.withTieBreaker(
+            new Sort(new SortField(FIELD_LAST_SEEN_TIME, SortField.Type.LONG, true)));
+
+    @Test
+    public void testWithTieBreaker() {
+        final SortField[] fields = LAST_SEEN_SORT.getSort();
+        assertEquals(2, fields.length);
+        assertEquals(FIELD_UUID, fields[1].getField());
+        // Not added again to a sort which already ends on it
+        assertSame(LAST_SEEN_SORT, LuceneSearchCursor.withTieBreaker(LAST_SEEN_SORT));
+
+        final SortField[] relevance = LuceneSearchCursor.withTieBreaker(null).getSort();
+        assertEquals(SortField.FIELD_SCORE, relevance[0]);
+        assertEquals(FIELD_UUID, relevance[1].getField());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        final Sort sort = LuceneSearchCursor.withTieBreaker(new Sort(
+                new SortField("int", SortField.Type.INT), new SortField("long", SortField.Type.LONG),
+                new SortField("float", SortField.Type.FLOAT), new SortField("double", SortField.Type.DOUBLE),
+                new SortField("string", SortField.Type.STRING)));
+        final Object[] values = { 42, Long.MIN_VALUE, 1.5f, -2.25d, null, new BytesRef("uuid-1") };
+        final String cursor = LuceneSearchCursor.encode(sort, new FieldDoc(7, 1.0f, values));
+
+        // Safe to pass in a query parameter or header
+        assertTrue(cursor, cursor.matches("[A-Za-z0-9_-]+"));
+        final FieldDoc decoded = LuceneSearchCursor.decode(sort, cursor);
+        assertArrayEquals(values, decoded.fields);
+    }
+
+    @Test
+    public void testBinaryValues() {
+        final byte[] bytes = new byte[300];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        // Only the referenced slice of the bytes is encoded
+        final BytesRef ref = new BytesRef(bytes, 10, 280);
+        final String cursor = LuceneSearchCursor.encode(LAST_SEEN_SORT,
+                new FieldDoc(0, 0f, new Object[] { 5L, ref }));
+        assertEquals(ref, LuceneSearchCursor.decode(LAST_SEEN_SORT, cursor).fields[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOtherSortRejected() {
+        final String cursor = LuceneSearchCursor.encode(LAST_SEEN_SORT,
+                new FieldDoc(0, 0f, new Object[] { 5L, new BytesRef("a") }));
+        LuceneSearchCursor.decode(LuceneSearchCursor.withTieBreaker(
+                new Sort(new SortField(FIELD_LAST_SEEN_TIME, SortField.Type.LONG, false))), cursor);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncatedRejected() {
+        final String cursor = LuceneSearchCursor.encode(LAST_SEEN_SORT,
+                new FieldDoc(0, 0f, new Object[] { 5L, new BytesRef("abcdef") }));
+        LuceneSearchCursor.decode(LAST_SEEN_SORT, cursor.substring(0, cursor.length() - 4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTrailingDataRejected() {
+        final String cursor = LuceneSearchCursor.encode(LAST_SEEN_SORT,
+                new FieldDoc(0, 0f, new Object[] { 5L, new BytesRef("abc") }));
+        LuceneSearchCursor.decode(LAST_SEEN_SORT, cursor + "AAAA");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGarbageRejected() {
+        LuceneSearchCursor.decode(LAST_SEEN_SORT, "not a cursor!");
+    }
+
+    private static void addEvent(IndexWriter writer, String uuid, long lastSeen) throws Exception {
+        final Document doc = new Document();
+        doc.add(new StringField(FIELD_UUID, uuid, Field.Store.YES));
+        doc.add(new LongField(FIELD_LAST_SEEN_TIME, lastSeen, Field.Store.NO));
+        doc.add(new NumericDocValuesField(FIELD_LAST_SEEN_TIME, lastSeen));
+        writer.addDocument(doc);
+    }
+
+    @Test
+    public void testPagesSurviveReopen() throws Exception {
+        final RAMDirectory directory = new RAMDirectory();
+        final IndexWriter writer = new IndexWriter(directory,
+                new IndexWriterConfig(LUCENE_VERSION, new KeywordAnalyzer()));
+        try {
+            for (int i = 0; i < 100; i++) {
+                // Several events share each last seen time, only the UUID orders them
+                addEvent(writer, String.format("uuid-%03d", i), i / 7);
+            }
+            final List<String> uuids = new ArrayList<String>();
+            String cursor = null;
+            do {
+                final DirectoryReader reader = DirectoryReader.open(writer, true);
+                try {
+                    final IndexSearcher searcher = new IndexSearcher(reader);
+                    final FieldDoc after = (cursor == null) ? null :
+                            LuceneSearchCursor.decode(LAST_SEEN_SORT, cursor);
+                    final TopFieldDocs page = (TopFieldDocs) searcher.searchAfter(after, new MatchAllDocsQuery(),
+                            null, 10, LAST_SEEN_SORT, false, false);
+                    cursor = null;
+                    for (ScoreDoc scoreDoc : page.scoreDocs) {
+                        uuids.add(searcher.doc(scoreDoc.doc).get(FIELD_UUID));
+                        cursor = LuceneSearchCursor.encode(LAST_SEEN_SORT, (FieldDoc) scoreDoc);
+                    }
+                } finally {
+                    reader.close();
+                }
+                if (uuids.size() == 30) {
+                    // An event sorting before the current position doesn't shift the following pages
+                    addEvent(writer, "uuid-new", 1000L);
+                }
+            } while (cursor != null);
+
+            assertEquals(100, uuids.size());
+            final Set<String> unique = new HashSet<String>(uuids);
+            assertEquals(100, unique.size());
+            assertFalse(unique.contains("uuid-new"));
+            assertEquals("uuid-098", uuids.get(0));
+            assertEquals("uuid-006", uuids.get(99));
+        } finally {
+            writer.close();
+            directory.close();
+        }
+    }
+}
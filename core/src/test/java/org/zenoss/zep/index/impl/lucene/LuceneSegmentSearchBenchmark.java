@@ -0,0 +1,201 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+
+
+package org.zenoss.zep.index.impl.lucene;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.IntField;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.zenoss.protobufs.zep.Zep.EventSeverity;
+import org.zenoss.zep.index.impl.BaseEventIndexBackend.EventTagSeverityCounter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_COUNT;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_LAST_SEEN_TIME;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_SEVERITY;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_STATUS;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_TAGS;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_UUID;
+import static org.zenoss.zep.index.impl.IndexConstants.LUCENE_VERSION;
+
+/**
+ * Compares searching a large generated archive index on the calling thread with searching its segments
+ * concurrently on a search executor, for a sorted unfiltered list and for a tag severity rollup.
+ * <p>
+ * This isn't run as part of the test suite. Run it from the test classpath with:
+ * <pre>
+ *     java -Dzep.benchmark.docs=5000000 -Dzep.benchmark.threads=8 \
+ *         org.zenoss.zep.index.impl.lucene.LuceneSegmentSearchBenchmark [index directory]
+ * </pre>
+ * The index is generated in the directory (a temporary directory by default) unless it already holds one.
+ */
+public class LuceneSegmentSearchBenchmark {
+
+    private static final int NUM_TAGS = 2000;
+
+    public static void main(String[] args) throws Exception {
+        final int numDocs = Integer.getInteger("zep.benchmark.docs", 5000000);
+        final int numThreads = Integer.getInteger("zep.benchmark.threads", Runtime.getRuntime().availableProcessors());
+        final int iterations = Integer.getInteger("zep.benchmark.iterations", 10);
+        final File dir = (args.length > 0) ? new File(args[0])
+                : Files.createTempDirectory("zep-benchmark").toFile();
+
+        final Directory directory = FSDirectory.open(dir);
+        try {
+            if (!DirectoryReader.indexExists(directory)) {
+                generate(directory, numDocs);
+            }
+            final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+            final DirectoryReader reader = DirectoryReader.open(directory);
+            try {
+                System.out.printf("Index: %s, %d documents in %d segments, %d search threads%n", dir,
+                        reader.numDocs(), reader.leaves().size(), numThreads);
+                final IndexSearcher sequential = new IndexSearcher(reader);
+                final IndexSearcher parallel = new IndexSearcher(reader, executor);
+                final Query query = new MatchAllDocsQuery();
+                final Sort sort = new Sort(new SortField(FIELD_LAST_SEEN_TIME, SortField.Type.LONG, true));
+
+                // Warm up the doc values of both searchers
+                listEvents(sequential, query, sort);
+                countTagSeverities(sequential, query, null);
+
+                long sequentialList = 0L, parallelList = 0L, sequentialCount = 0L, parallelCount = 0L;
+                for (int i = 0; i < iterations; i++) {
+                    sequentialList += listEvents(sequential, query, sort);
+                    parallelList += listEvents(parallel, query, sort);
+                    sequentialCount += countTagSeverities(sequential, query, null);
+                    parallelCount += countTagSeverities(parallel, query, executor);
+                }
+                System.out.printf("List (sorted by last seen, top 100): sequential %.1f ms, parallel %.1f ms%n",
+                        average(sequentialList, iterations), average(parallelList, iterations));
+                System.out.printf("Tag severities: sequential %.1f ms, parallel %.1f ms%n",
+                        average(sequentialCount, iterations), average(parallelCount, iterations));
+            } finally {
+                reader.close();
+                executor.shutdown();
+            }
+        } finally {
+            directory.close();
+        }
+    }
+
+    private static void generate(Directory directory, int numDocs) throws IOException {
+        final Random random = new Random(5L);
+        final List<String> tags = new ArrayList<String>(NUM_TAGS);
+        for (int i = 0; i < NUM_TAGS; i++) {
+            tags.add(UUID.randomUUID().toString());
+        }
+        final long now = System.currentTimeMillis();
+        final IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(LUCENE_VERSION,
+                new KeywordAnalyzer()).setRAMBufferSizeMB(64.0));
+        try {
+            final long start = System.currentTimeMillis();
+            for (int i = 0; i < numDocs; i++) {
+                final Document doc = new Document();
+                final String uuid = UUID.randomUUID().toString();
+                doc.add(new StringField(FIELD_UUID, uuid, Store.YES));
+                doc.add(new SortedDocValuesField(FIELD_UUID, new BytesRef(uuid)));
+                final long lastSeen = now - random.nextInt(Integer.MAX_VALUE);
+                doc.add(new LongField(FIELD_LAST_SEEN_TIME, lastSeen, Store.YES));
+                doc.add(new NumericDocValuesField(FIELD_LAST_SEEN_TIME, lastSeen));
+                final int severity = random.nextInt(6);
+                doc.add(new IntField(FIELD_SEVERITY, severity, Store.YES));
+                doc.add(new NumericDocValuesField(FIELD_SEVERITY, severity));
+                final int status = random.nextInt(7);
+                doc.add(new IntField(FIELD_STATUS, status, Store.YES));
+                doc.add(new NumericDocValuesField(FIELD_STATUS, status));
+                final int count = 1 + random.nextInt(100);
+                doc.add(new IntField(FIELD_COUNT, count, Store.YES));
+                doc.add(new NumericDocValuesField(FIELD_COUNT, count));
+                for (int j = 0; j < 3; j++) {
+                    final String tag = tags.get(random.nextInt(NUM_TAGS));
+                    doc.add(new StringField(FIELD_TAGS, tag, Store.YES));
+                    doc.add(new SortedSetDocValuesField(FIELD_TAGS, new BytesRef(tag)));
+                }
+                writer.addDocument(doc);
+                if ((i + 1) % 1000000 == 0) {
+                    System.out.printf("Indexed %d documents%n", i + 1);
+                }
+            }
+            writer.commit();
+            System.out.printf("Generated %d documents in %d ms%n", numDocs, System.currentTimeMillis() - start);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static long listEvents(IndexSearcher searcher, Query query, Sort sort) throws IOException {
+        final long start = System.nanoTime();
+        searcher.search(query, null, 100, sort);
+        return System.nanoTime() - start;
+    }
+
+    private static long countTagSeverities(IndexSearcher searcher, Query query, ExecutorService executor)
+            throws IOException {
+        final EventTagSeverityCounter counter = new EventTagSeverityCounter() {
+            @Override
+            public void update(String uuid, EventSeverity severity, int count, boolean acknowledged) {
+            }
+
+            @Override
+            public void update(String uuid, EventSeverity severity, int events, int acknowledgedEvents, int count) {
+            }
+        };
+        final int maxDoc = searcher.getIndexReader().maxDoc();
+        final long start = System.nanoTime();
+        if (executor == null) {
+            final LuceneTagSeverityCollector collector = new LuceneTagSeverityCollector(counter, maxDoc);
+            searcher.search(query, collector);
+            collector.finish();
+        } else {
+            final int numSegments = searcher.getIndexReader().leaves().size();
+            final List<LuceneTagSeverityCollector> collectors =
+                    new ArrayList<LuceneTagSeverityCollector>(numSegments);
+            for (int i = 0; i < numSegments; i++) {
+                collectors.add(new LuceneTagSeverityCollector(counter, maxDoc));
+            }
+            LuceneSegmentSearcher.search(searcher, query, executor, collectors);
+            for (LuceneTagSeverityCollector collector : collectors) {
+                collector.finish();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static double average(long totalNanos, int iterations) {
+        return totalNanos / 1e6 / iterations;
+    }
+}
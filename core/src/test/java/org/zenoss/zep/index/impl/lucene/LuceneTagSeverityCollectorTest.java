@@ -0,0 +1,178 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+
+
+package org.zenoss.zep.index.impl.lucene;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.OpenBitSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zenoss.protobufs.zep.Zep.Event;
+import org.zenoss.protobufs.zep.Zep.EventActor;
+import org.zenoss.protobufs.zep.Zep.EventDetailItem;
+import org.zenoss.protobufs.zep.Zep.EventSeverity;
+import org.zenoss.protobufs.zep.Zep.EventStatus;
+import org.zenoss.protobufs.zep.Zep.EventSummary;
+import org.zenoss.zep.dao.impl.EventTestUtils;
+import org.zenoss.zep.index.impl.BaseEventIndexBackend.EventTagSeverityCounter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_UUID;
+import static org.zenoss.zep.index.impl.IndexConstants.LUCENE_VERSION;
+
+/**
+ * Unit tests for {@link LuceneTagSeverityCollector}.
+ */
+public class LuceneTagSeverityCollectorTest {
+
+    private static final Map<String, EventDetailItem> NO_DETAILS = Collections.emptyMap();
+
+    private RAMDirectory directory;
+    private IndexWriter writer;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = new RAMDirectory();
+        writer = new IndexWriter(directory,
+                new IndexWriterConfig(LUCENE_VERSION, LuceneEventIndexMapper.createAnalyzer()));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        writer.close();
+        directory.close();
+    }
+
+    private static EventSummary createEvent(String uuid, String elementUuid, EventSeverity severity,
+                                            EventStatus status, int count, String... tagUuids) {
+        final Event sample = EventTestUtils.createSampleEvent();
+        final EventActor actor = sample.getActor().toBuilder().setElementUuid(elementUuid).setElementSubUuid("")
+                .build();
+        final Event.Builder occurrence = sample.toBuilder().clearTags().setActor(actor).setSeverity(severity);
+        for (String tagUuid : tagUuids) {
+            occurrence.addTags(EventTestUtils.createTag(actor.getElementTypeId(), tagUuid));
+        }
+        return EventSummary.newBuilder().setUuid(uuid).addOccurrence(occurrence.build()).setStatus(status)
+                .setCount(count).setFirstSeenTime(1000L).setLastSeenTime(1000L).setStatusChangeTime(1000L)
+                .setUpdateTime(1000L).build();
+    }
+
+    private void index(EventSummary event) throws Exception {
+        writer.addDocument(LuceneEventIndexMapper.fromEventSummary(event, NO_DETAILS, false));
+    }
+
+    /**
+     * Records the counts passed to the counter by tag and severity: events, acknowledged events, sum of counts.
+     */
+    private static class RecordingCounter implements EventTagSeverityCounter {
+        private final Map<String, List<Integer>> counts = new HashMap<String, List<Integer>>();
+
+        @Override
+        public void update(String uuid, EventSeverity severity, int count, boolean acknowledged) {
+            update(uuid, severity, 1, acknowledged ? 1 : 0, count);
+        }
+
+        @Override
+        public void update(String uuid, EventSeverity severity, int events, int acknowledgedEvents, int count) {
+            final String key = uuid + "/" + severity;
+            List<Integer> existing = counts.get(key);
+            if (existing == null) {
+                existing = Arrays.asList(0, 0, 0);
+                counts.put(key, existing);
+            }
+            existing.set(0, existing.get(0) + events);
+            existing.set(1, existing.get(1) + acknowledgedEvents);
+            existing.set(2, existing.get(2) + count);
+        }
+    }
+
+    private LuceneTagSeverityCollector collect(RecordingCounter counter) throws IOException {
+        final DirectoryReader reader = DirectoryReader.open(writer, true);
+        try {
+            final LuceneTagSeverityCollector collector = new LuceneTagSeverityCollector(counter, reader.maxDoc());
+            new IndexSearcher(reader).search(new MatchAllDocsQuery(), collector);
+            collector.finish();
+            return collector;
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testCountsAcrossSegments() throws Exception {
+        index(createEvent("e1", "device1", EventSeverity.SEVERITY_ERROR, EventStatus.STATUS_NEW, 3, "group1"));
+        index(createEvent("e2", "device1", EventSeverity.SEVERITY_ERROR, EventStatus.STATUS_ACKNOWLEDGED, 2,
+                "group1", "system1"));
+        writer.commit();
+        index(createEvent("e3", "device2", EventSeverity.SEVERITY_ERROR, EventStatus.STATUS_NEW, 5, "group1"));
+        index(createEvent("e4", "device1", EventSeverity.SEVERITY_WARNING, EventStatus.STATUS_NEW, 1));
+
+        final RecordingCounter counter = new RecordingCounter();
+        final LuceneTagSeverityCollector collector = collect(counter);
+        assertEquals(0, collector.getUncountedDocs().cardinality());
+
+        assertEquals(Arrays.asList(2, 1, 5), counter.counts.get("device1/" + EventSeverity.SEVERITY_ERROR));
+        assertEquals(Arrays.asList(1, 0, 1), counter.counts.get("device1/" + EventSeverity.SEVERITY_WARNING));
+        assertEquals(Arrays.asList(1, 0, 5), counter.counts.get("device2/" + EventSeverity.SEVERITY_ERROR));
+        // Counted per segment and added up by the counter
+        assertEquals(Arrays.asList(3, 1, 10), counter.counts.get("group1/" + EventSeverity.SEVERITY_ERROR));
+        assertEquals(Arrays.asList(1, 1, 2), counter.counts.get("system1/" + EventSeverity.SEVERITY_ERROR));
+        assertEquals(5, counter.counts.size());
+    }
+
+    @Test
+    public void testRepeatedTagCountsOnce() throws Exception {
+        // The element UUID is indexed as a tag of its own and repeated in the tags of the event
+        index(createEvent("e1", "device1", EventSeverity.SEVERITY_CRITICAL, EventStatus.STATUS_NEW, 4,
+                "device1", "group1", "group1"));
+
+        final RecordingCounter counter = new RecordingCounter();
+        collect(counter);
+        assertEquals(Arrays.asList(1, 0, 4), counter.counts.get("device1/" + EventSeverity.SEVERITY_CRITICAL));
+        assertEquals(Arrays.asList(1, 0, 4), counter.counts.get("group1/" + EventSeverity.SEVERITY_CRITICAL));
+    }
+
+    @Test
+    public void testSegmentsWithoutDocValuesAreUncounted() throws Exception {
+        index(createEvent("e1", "device1", EventSeverity.SEVERITY_ERROR, EventStatus.STATUS_NEW, 1));
+        writer.commit();
+        // Written before tags, severity, status and count were doc values
+        for (String uuid : Arrays.asList("old1", "old2")) {
+            final Document doc = new Document();
+            doc.add(new StringField(FIELD_UUID, uuid, Field.Store.YES));
+            writer.addDocument(doc);
+        }
+
+        final RecordingCounter counter = new RecordingCounter();
+        final LuceneTagSeverityCollector collector = collect(counter);
+        final OpenBitSet uncounted = collector.getUncountedDocs();
+        assertEquals(2, uncounted.cardinality());
+        // Top level document ids, after the first segment
+        assertTrue(uncounted.get(1));
+        assertTrue(uncounted.get(2));
+        assertEquals(Arrays.asList(1, 0, 1), counter.counts.get("device1/" + EventSeverity.SEVERITY_ERROR));
+    }
+}
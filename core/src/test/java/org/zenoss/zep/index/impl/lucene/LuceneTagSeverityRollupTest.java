@@ -0,0 +1,283 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+
+
+package org.zenoss.zep.index.impl.lucene;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zenoss.protobufs.zep.Zep.Event;
+import org.zenoss.protobufs.zep.Zep.EventActor;
+import org.zenoss.protobufs.zep.Zep.EventDetailItem;
+import org.zenoss.protobufs.zep.Zep.EventFilter;
+import org.zenoss.protobufs.zep.Zep.EventSeverity;
+import org.zenoss.protobufs.zep.Zep.EventStatus;
+import org.zenoss.protobufs.zep.Zep.EventSummary;
+import org.zenoss.protobufs.zep.Zep.EventTagFilter;
+import org.zenoss.protobufs.zep.Zep.FilterOperator;
+import org.zenoss.protobufs.zep.Zep.TimestampRange;
+import org.zenoss.zep.ZepException;
+import org.zenoss.zep.dao.impl.EventTestUtils;
+import org.zenoss.zep.index.IndexedDetailsConfiguration;
+import org.zenoss.zep.index.impl.BaseEventIndexBackend.EventTagSeverityCounter;
+import org.zenoss.zep.index.impl.TagSeverityRollup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_LAST_SEEN_TIME;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_UUID;
+import static org.zenoss.zep.index.impl.IndexConstants.LUCENE_VERSION;
+
+/**
+ * Verifies the incrementally maintained tag severity rollup against a search of the index.
+ */
+public class LuceneTagSeverityRollupTest {
+
+    private static final IndexedDetailsConfiguration NO_DETAILS = new IndexedDetailsConfiguration() {
+        @Override
+        public Map<String, EventDetailItem> getEventDetailItemsByName() {
+            return Collections.emptyMap();
+        }
+    };
+
+    private final Random random = new Random(1234L);
+    private final List<String> tagUuids = new ArrayList<String>();
+    private final List<String> elementUuids = new ArrayList<String>();
+    private final Map<String, EventSummary> events = new HashMap<String, EventSummary>();
+    private RAMDirectory directory;
+    private IndexWriter writer;
+    private TagSeverityRollup rollup;
+
+    @Before
+    public void setUp() throws Exception {
+        for (int i = 0; i < 8; i++) {
+            tagUuids.add(UUID.randomUUID().toString());
+            elementUuids.add(UUID.randomUUID().toString());
+        }
+        directory = new RAMDirectory();
+        writer = new IndexWriter(directory,
+                new IndexWriterConfig(LUCENE_VERSION, LuceneEventIndexMapper.createAnalyzer()));
+        rollup = new TagSeverityRollup();
+        rebuild(rollup);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        writer.close();
+        directory.close();
+    }
+
+    private EventSummary createEvent(String uuid) {
+        final Event sample = EventTestUtils.createSampleEvent();
+        final EventActor actor = sample.getActor().toBuilder()
+                .setElementUuid(elementUuids.get(random.nextInt(elementUuids.size())))
+                .setElementSubUuid(random.nextBoolean() ? "" : elementUuids.get(random.nextInt(elementUuids.size())))
+                .build();
+        final Event.Builder occurrence = sample.toBuilder().clearTags().setActor(actor)
+                .setSeverity(EventSeverity.values()[random.nextInt(EventSeverity.values().length)]);
+        for (int i = random.nextInt(3); i > 0; i--) {
+            occurrence.addTags(EventTestUtils.createTag(actor.getElementTypeId(),
+                    tagUuids.get(random.nextInt(tagUuids.size()))));
+        }
+        final long lastSeen = 1000L + random.nextInt(1000);
+        return EventSummary.newBuilder().setUuid(uuid).addOccurrence(occurrence.build())
+                .setStatus(EventStatus.values()[random.nextInt(EventStatus.values().length)])
+                .setCount(1 + random.nextInt(10)).setFirstSeenTime(lastSeen).setLastSeenTime(lastSeen)
+                .setStatusChangeTime(lastSeen).setUpdateTime(lastSeen).build();
+    }
+
+    private void index(EventSummary event) throws ZepException, IOException {
+        writer.updateDocument(new Term(FIELD_UUID, event.getUuid()),
+                LuceneEventIndexMapper.fromEventSummary(event, NO_DETAILS.getEventDetailItemsByName(), false));
+        rollup.update(event);
+        events.put(event.getUuid(), event);
+    }
+
+    private void delete(String uuid) throws IOException {
+        writer.deleteDocuments(new Term(FIELD_UUID, uuid));
+        rollup.delete(uuid);
+        events.remove(uuid);
+    }
+
+    private void indexEvents() throws Exception {
+        for (int i = 0; i < 300; i++) {
+            index(createEvent(UUID.randomUUID().toString()));
+        }
+        writer.commit();
+        final List<String> uuids = new ArrayList<String>(events.keySet());
+        // Updates of existing events replace their earlier counts
+        for (int i = 0; i < 100; i++) {
+            index(createEvent(uuids.get(i)));
+        }
+        for (int i = 100; i < 130; i++) {
+            delete(uuids.get(i));
+        }
+    }
+
+    private void rebuild(TagSeverityRollup target) throws ZepException {
+        target.rebuild(new TagSeverityRollup.Loader() {
+            @Override
+            public void load(TagSeverityRollup rollup) throws ZepException {
+                try {
+                    final DirectoryReader reader = DirectoryReader.open(writer, true);
+                    try {
+                        LuceneEventIndexBackend.loadTagSeverityRollup(reader, rollup);
+                    } finally {
+                        reader.close();
+                    }
+                } catch (IOException e) {
+                    throw new ZepException(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Records the counts passed to the counter, limited to the filter's tags like the event index backend.
+     */
+    private static class RecordingCounter implements EventTagSeverityCounter {
+        private final Set<String> filterTags = new HashSet<String>();
+        private final Map<String, List<Integer>> counts = new HashMap<String, List<Integer>>();
+
+        private RecordingCounter(EventFilter filter) {
+            for (EventTagFilter tagFilter : filter.getTagFilterList()) {
+                filterTags.addAll(tagFilter.getTagUuidsList());
+            }
+        }
+
+        @Override
+        public void update(String uuid, EventSeverity severity, int count, boolean acknowledged) {
+            update(uuid, severity, 1, acknowledged ? 1 : 0, count);
+        }
+
+        @Override
+        public void update(String uuid, EventSeverity severity, int events, int acknowledgedEvents, int count) {
+            if (!filterTags.isEmpty() && !filterTags.contains(uuid)) {
+                return;
+            }
+            final String key = uuid + "/" + severity;
+            List<Integer> existing = counts.get(key);
+            if (existing == null) {
+                existing = Arrays.asList(0, 0, 0);
+                counts.put(key, existing);
+            }
+            existing.set(0, existing.get(0) + events);
+            existing.set(1, existing.get(1) + acknowledgedEvents);
+            existing.set(2, existing.get(2) + count);
+        }
+    }
+
+    private Map<String, List<Integer>> scan(EventFilter filter) throws Exception {
+        final DirectoryReader reader = DirectoryReader.open(writer, true);
+        try {
+            final Query query = new LuceneQueryBuilder(filter.getOperator(), new LuceneFilterCacheManager(),
+                    reader, NO_DETAILS).build();
+            final RecordingCounter counter = new RecordingCounter(filter);
+            final LuceneTagSeverityCollector collector = new LuceneTagSeverityCollector(counter, reader.maxDoc());
+            new IndexSearcher(reader).search(query == null ? new MatchAllDocsQuery() : query, collector);
+            collector.finish();
+            assertEquals(0, collector.getUncountedDocs().cardinality());
+            return counter.counts;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private Map<String, List<Integer>> count(TagSeverityRollup target, EventFilter filter) {
+        assertTrue(TagSeverityRollup.canCount(filter));
+        final RecordingCounter counter = new RecordingCounter(filter);
+        assertTrue(target.count(filter, counter));
+        return counter.counts;
+    }
+
+    private List<EventFilter> createFilters() {
+        final List<EventFilter> filters = new ArrayList<EventFilter>();
+        filters.add(EventFilter.getDefaultInstance());
+        filters.add(EventFilter.newBuilder().addSeverity(EventSeverity.SEVERITY_CRITICAL)
+                .addSeverity(EventSeverity.SEVERITY_ERROR).build());
+        filters.add(EventFilter.newBuilder().addStatus(EventStatus.STATUS_NEW)
+                .addStatus(EventStatus.STATUS_ACKNOWLEDGED).addStatus(EventStatus.STATUS_SUPPRESSED).build());
+        filters.add(EventFilter.newBuilder().addTagFilter(EventTagFilter.newBuilder()
+                .addTagUuids(tagUuids.get(0)).addTagUuids(elementUuids.get(1)).setOp(FilterOperator.OR)).build());
+        filters.add(EventFilter.newBuilder().addStatus(EventStatus.STATUS_ACKNOWLEDGED)
+                .addSeverity(EventSeverity.SEVERITY_WARNING).addTagFilter(EventTagFilter.newBuilder()
+                        .addTagUuids(elementUuids.get(2))).build());
+        return filters;
+    }
+
+    @Test
+    public void testRollupMatchesScan() throws Exception {
+        indexEvents();
+        assertFalse(scan(EventFilter.getDefaultInstance()).isEmpty());
+        for (EventFilter filter : createFilters()) {
+            assertEquals(filter.toString(), scan(filter), count(rollup, filter));
+        }
+    }
+
+    @Test
+    public void testRebuildMatchesIncremental() throws Exception {
+        indexEvents();
+        final TagSeverityRollup rebuilt = new TagSeverityRollup();
+        final EventFilter all = EventFilter.getDefaultInstance();
+        assertFalse(rebuilt.count(all, new RecordingCounter(all)));
+        rebuild(rebuilt);
+        for (EventFilter filter : createFilters()) {
+            assertEquals(filter.toString(), count(rollup, filter), count(rebuilt, filter));
+        }
+    }
+
+    @Test
+    public void testPurgeAndClear() throws Exception {
+        indexEvents();
+        writer.deleteDocuments(NumericRangeQuery.newLongRange(FIELD_LAST_SEEN_TIME, null, 1500L, true, true));
+        rollup.purge(1500L);
+        for (EventFilter filter : createFilters()) {
+            assertEquals(filter.toString(), scan(filter), count(rollup, filter));
+        }
+        writer.deleteAll();
+        rollup.clear();
+        assertTrue(count(rollup, EventFilter.getDefaultInstance()).isEmpty());
+    }
+
+    @Test
+    public void testCanCount() {
+        assertTrue(TagSeverityRollup.canCount(EventFilter.getDefaultInstance()));
+        assertFalse(TagSeverityRollup.canCount(EventFilter.newBuilder().addSeverity(EventSeverity.SEVERITY_INFO)
+                .setOperator(FilterOperator.OR).build()));
+        assertFalse(TagSeverityRollup.canCount(EventFilter.newBuilder()
+                .addLastSeen(TimestampRange.newBuilder().setStartTime(1000L)).build()));
+        assertFalse(TagSeverityRollup.canCount(EventFilter.newBuilder().addAgent("zenping").build()));
+        assertFalse(TagSeverityRollup.canCount(EventFilter.newBuilder().addTagFilter(EventTagFilter.newBuilder()
+                .addTagUuids(tagUuids.get(0)).addTagUuids(tagUuids.get(1)).setOp(FilterOperator.AND)).build()));
+        assertFalse(TagSeverityRollup.canCount(EventFilter.newBuilder()
+                .addTagFilter(EventTagFilter.newBuilder().addTagUuids(tagUuids.get(0)))
+                .addTagFilter(EventTagFilter.newBuilder().addTagUuids(tagUuids.get(1))).build()));
+    }
+}
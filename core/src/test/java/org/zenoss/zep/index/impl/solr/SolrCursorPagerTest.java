@@ -0,0 +1,282 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+
+package org.zenoss.zep.index.impl.solr;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_LAST_SEEN_TIME;
+import static org.zenoss.zep.index.impl.IndexConstants.FIELD_UUID;
+
+/**
+ * Unit tests for {@link SolrCursorPager}, against an in-memory stand-in for a Solr core.
+ */
+public class SolrCursorPagerTest {
+
+    private static final int NUM_EVENTS = 10000;
+    private static final int PAGE_SIZE = 100;
+
+    private InMemorySolrCore core;
+
+    @Before
+    public void setUp() {
+        core = new InMemorySolrCore();
+        for (int i = 0; i < NUM_EVENTS; i++) {
+            // Several events share each last seen time, only the unique key orders them
+            core.add(String.format("uuid-%05d", i), (long) (i / 7));
+        }
+    }
+
+    private static SolrQuery newQuery(int offset, int limit) {
+        SolrQuery query = new SolrQuery("*:*");
+        query.addSort(SolrQuery.SortClause.desc(FIELD_LAST_SEEN_TIME));
+        query.setStart(offset);
+        query.setRows(limit);
+        return query;
+    }
+
+    private List<String> export(SolrCursorPager pager) throws Exception {
+        final List<String> uuids = new ArrayList<String>();
+        int offset = 0;
+        while (true) {
+            // Each page is a new query, as built for each request of a saved search
+            QueryResponse response = pager.query(core, newQuery(offset, PAGE_SIZE));
+            for (SolrDocument doc : response.getResults()) {
+                uuids.add((String) doc.getFieldValue(FIELD_UUID));
+            }
+            offset += response.getResults().size();
+            if (offset >= response.getResults().getNumFound()) {
+                return uuids;
+            }
+        }
+    }
+
+    @Test
+    public void testExportCollectsEachEventOnce() throws Exception {
+        SolrCursorPager pager = new SolrCursorPager(1000);
+        List<String> uuids = export(pager);
+
+        assertEquals(NUM_EVENTS, uuids.size());
+        assertEquals(NUM_EVENTS, new HashSet<String>(uuids).size());
+        assertEquals(core.sorted(FIELD_LAST_SEEN_TIME + " desc," + FIELD_UUID + " asc"), uuids);
+        assertEquals(NUM_EVENTS / PAGE_SIZE, pager.getCursorPages());
+        assertEquals(0, pager.getOffsetPages());
+        // Every page continues after the previous one instead of collecting all earlier events again
+        assertEquals(NUM_EVENTS, core.collected);
+    }
+
+    @Test
+    public void testExportWithOffsetsIsQuadratic() throws Exception {
+        SolrCursorPager pager = new SolrCursorPager(0);
+        List<String> uuids = export(pager);
+
+        assertEquals(NUM_EVENTS, new HashSet<String>(uuids).size());
+        assertEquals(0, pager.getCursorPages());
+        final long pages = NUM_EVENTS / PAGE_SIZE;
+        assertEquals(PAGE_SIZE * pages * (pages + 1) / 2, core.collected);
+    }
+
+    @Test
+    public void testUnknownOffsetUsesOffset() throws Exception {
+        SolrCursorPager pager = new SolrCursorPager(1000);
+        QueryResponse response = pager.query(core, newQuery(5000, PAGE_SIZE));
+        assertEquals(PAGE_SIZE, response.getResults().size());
+        assertEquals(1, pager.getOffsetPages());
+        assertEquals(0, pager.getCursorPages());
+        List<String> sorted = core.sorted(FIELD_LAST_SEEN_TIME + " desc," + FIELD_UUID + " asc");
+        assertEquals(sorted.get(5000), response.getResults().get(0).getFieldValue(FIELD_UUID));
+    }
+
+    @Test
+    public void testCursorSkipsEventsAddedBeforePosition() throws Exception {
+        SolrCursorPager pager = new SolrCursorPager(1000);
+        QueryResponse first = pager.query(core, newQuery(0, PAGE_SIZE));
+        SolrDocumentList firstPage = first.getResults();
+
+        // A new event sorts before the first page, which would shift every later page by one with offsets
+        core.add("uuid-new", Long.MAX_VALUE);
+        QueryResponse second = pager.query(core, newQuery(PAGE_SIZE, PAGE_SIZE));
+
+        Set<Object> firstUuids = new HashSet<Object>();
+        for (SolrDocument doc : firstPage) {
+            firstUuids.add(doc.getFieldValue(FIELD_UUID));
+        }
+        for (SolrDocument doc : second.getResults()) {
+            assertFalse(firstUuids.contains(doc.getFieldValue(FIELD_UUID)));
+        }
+        List<String> sorted = core.sorted(FIELD_LAST_SEEN_TIME + " desc," + FIELD_UUID + " asc");
+        assertEquals(sorted.get(PAGE_SIZE + 1), second.getResults().get(0).getFieldValue(FIELD_UUID));
+    }
+
+    @Test
+    public void testCursorsOfOtherPagerNotUsed() throws Exception {
+        SolrCursorPager pager = new SolrCursorPager(1000);
+        pager.query(core, newQuery(0, PAGE_SIZE));
+
+        // Another saved search doesn't continue from the cursors of the first one
+        SolrCursorPager other = new SolrCursorPager(1000);
+        QueryResponse response = other.query(core, newQuery(PAGE_SIZE, PAGE_SIZE));
+        assertEquals(1, other.getOffsetPages());
+        assertEquals(0, other.getCursorPages());
+        assertNotNull(core.lastParams.get(CommonParams.START));
+        List<String> sorted = core.sorted(FIELD_LAST_SEEN_TIME + " desc," + FIELD_UUID + " asc");
+        assertEquals(sorted.get(PAGE_SIZE), response.getResults().get(0).getFieldValue(FIELD_UUID));
+    }
+
+    @Test
+    public void testPagesOfOtherFieldsShareCursors() throws Exception {
+        SolrCursorPager pager = new SolrCursorPager(1000);
+        SolrQuery first = newQuery(0, PAGE_SIZE);
+        first.setFields(FIELD_UUID, FIELD_LAST_SEEN_TIME);
+        pager.query(core, first);
+
+        // The cursor doesn't depend on the fields returned
+        SolrQuery second = newQuery(PAGE_SIZE, PAGE_SIZE);
+        second.setFields(FIELD_UUID);
+        QueryResponse response = pager.query(core, second);
+        assertEquals(2, pager.getCursorPages());
+        assertEquals(0, pager.getOffsetPages());
+        List<String> sorted = core.sorted(FIELD_LAST_SEEN_TIME + " desc," + FIELD_UUID + " asc");
+        assertEquals(sorted.get(PAGE_SIZE), response.getResults().get(0).getFieldValue(FIELD_UUID));
+    }
+
+    @Test
+    public void testQueryIsNotModified() throws Exception {
+        SolrCursorPager pager = new SolrCursorPager(1000);
+        SolrQuery query = newQuery(0, PAGE_SIZE);
+        String before = query.toString();
+        pager.query(core, query);
+        assertEquals(before, query.toString());
+        assertEquals(FIELD_LAST_SEEN_TIME + " desc," + FIELD_UUID + " asc", core.lastParams.get(CommonParams.SORT));
+        assertNull(core.lastParams.get(CommonParams.START));
+    }
+
+    /**
+     * Matches all its documents, sorting them on the sort parameter of the query and paging with offsets or
+     * cursors the way Solr does. Counts the documents collected into the pages it returns.
+     */
+    private static final class InMemorySolrCore extends SolrServer {
+        private final List<SolrDocument> docs = new ArrayList<SolrDocument>();
+        private final Map<String, SolrDocument> cursorMarks = new HashMap<String, SolrDocument>();
+        private long collected = 0;
+        private SolrParams lastParams;
+
+        void add(String uuid, long lastSeen) {
+            SolrDocument doc = new SolrDocument();
+            doc.setField(FIELD_UUID, uuid);
+            doc.setField(FIELD_LAST_SEEN_TIME, lastSeen);
+            docs.add(doc);
+        }
+
+        List<String> sorted(String sort) {
+            List<String> uuids = new ArrayList<String>();
+            for (SolrDocument doc : sort(sort)) {
+                uuids.add((String) doc.getFieldValue(FIELD_UUID));
+            }
+            return uuids;
+        }
+
+        private List<SolrDocument> sort(String sort) {
+            List<SolrDocument> sorted = new ArrayList<SolrDocument>(docs);
+            Collections.sort(sorted, comparator(sort));
+            return sorted;
+        }
+
+        private static Comparator<SolrDocument> comparator(final String sort) {
+            return new Comparator<SolrDocument>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public int compare(SolrDocument doc1, SolrDocument doc2) {
+                    for (String clause : sort.split(",")) {
+                        String[] parts = clause.trim().split("\\s+");
+                        int cmp = ((Comparable<Object>) doc1.getFieldValue(parts[0]))
+                                .compareTo(doc2.getFieldValue(parts[0]));
+                        if (cmp != 0) {
+                            return "desc".equals(parts[1]) ? -cmp : cmp;
+                        }
+                    }
+                    return 0;
+                }
+            };
+        }
+
+        @Override
+        public NamedList<Object> request(SolrRequest request) {
+            final SolrParams params = request.getParams();
+            lastParams = params;
+            final String sort = params.get(CommonParams.SORT);
+            final int rows = params.getInt(CommonParams.ROWS, 10);
+            final String cursorMark = params.get(CursorMarkParams.CURSOR_MARK_PARAM);
+            final List<SolrDocument> sorted = sort(sort);
+
+            int from;
+            if (cursorMark == null) {
+                from = params.getInt(CommonParams.START, 0);
+            } else {
+                assertNull("Cursors can't be used with offsets", params.get(CommonParams.START));
+                assertTrue("Cursors need the unique key in the sort", sort.contains(FIELD_UUID));
+                from = 0;
+                if (!CursorMarkParams.CURSOR_MARK_START.equals(cursorMark)) {
+                    // Continue after the sort values of the last document of the previous page
+                    final SolrDocument last = cursorMarks.get(cursorMark);
+                    final Comparator<SolrDocument> comparator = comparator(sort);
+                    while (from < sorted.size() && comparator.compare(sorted.get(from), last) <= 0) {
+                        from++;
+                    }
+                }
+            }
+            final int to = Math.min(from + rows, sorted.size());
+            final SolrDocumentList page = new SolrDocumentList();
+            page.setNumFound(sorted.size());
+            page.setStart(cursorMark == null ? from : 0);
+            for (int i = Math.min(from, to); i < to; i++) {
+                page.add(sorted.get(i));
+            }
+            // Solr keeps the top start + rows documents of an offset query, but only rows documents with a cursor
+            collected += (cursorMark == null) ? to : page.size();
+
+            final NamedList<Object> response = new NamedList<Object>();
+            response.add("response", page);
+            if (cursorMark != null) {
+                String nextCursorMark = cursorMark;
+                if (!page.isEmpty()) {
+                    nextCursorMark = "mark-" + cursorMarks.size();
+                    cursorMarks.put(nextCursorMark, page.get(page.size() - 1));
+                }
+                response.add(CursorMarkParams.CURSOR_MARK_NEXT, nextCursorMark);
+            }
+            return response;
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
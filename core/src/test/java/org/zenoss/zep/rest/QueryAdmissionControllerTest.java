@@ -0,0 +1,175 @@
+/*****************************************************************************
+ *
+ * Copyright (C) Zenoss, Inc. 2026, all rights reserved.
+ *
+ * This content is made available according to terms specified in
+ * License.zenoss under the directory where your Zenoss product is installed.
+ *
+ ****************************************************************************/
+package org.zenoss.zep.rest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.zenoss.zep.rest.QueryAdmissionController.Permit;
+import org.zenoss.zep.rest.QueryAdmissionController.QueryType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link QueryAdmissionController}.
+ */
+public class QueryAdmissionControllerTest {
+
+    private static final int EXPENSIVE = 20;
+
+    private QueryAdmissionController controller;
+
+    @Before
+    public void setUp() {
+        controller = new QueryAdmissionController();
+        controller.setEnabled(true);
+        controller.setMaxConcurrentQueries(1);
+        controller.setMaxConcurrentExpensiveQueries(1);
+        controller.setExpensiveQueryCost(EXPENSIVE);
+        controller.setMaxQueueDepth(10);
+        controller.setMaxQueueWaitMillis(TimeUnit.SECONDS.toMillis(30));
+        controller.setRetryAfterSeconds(3);
+    }
+
+    /**
+     * Starts a thread which waits for admission, records the name of the query once admitted and then finishes it.
+     */
+    private Thread startQuery(final String name, final QueryType type, final int cost, final List<String> admitted) {
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try (Permit permit = controller.admit(type, cost)) {
+                    admitted.add(name);
+                } catch (QueryRejectedException e) {
+                    admitted.add(name + " rejected");
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private void awaitQueueDepth(int depth) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (controller.getQueueDepth() != depth) {
+            assertTrue("Timed out waiting for queue depth " + depth, System.currentTimeMillis() < deadline);
+            Thread.sleep(5L);
+        }
+    }
+
+    @Test
+    public void testPermitRelease() throws Exception {
+        final Permit permit = controller.admit(QueryType.LIST, 1);
+        assertEquals(1, controller.getRunning());
+        assertEquals(0, controller.getRunningExpensive());
+        permit.close();
+        // Closing again doesn't release another query's slot
+        permit.close();
+        assertEquals(0, controller.getRunning());
+
+        final Permit expensive = controller.admit(QueryType.ARCHIVE, EXPENSIVE);
+        assertEquals(1, controller.getRunningExpensive());
+        expensive.close();
+        assertEquals(0, controller.getRunning());
+        assertEquals(0, controller.getRunningExpensive());
+    }
+
+    @Test
+    public void testQueueOrder() throws Exception {
+        final List<String> admitted = Collections.synchronizedList(new ArrayList<String>());
+        final Permit running = controller.admit(QueryType.LIST, 1);
+        final List<Thread> threads = new ArrayList<Thread>();
+        threads.add(startQuery("archive", QueryType.ARCHIVE, 1, admitted));
+        awaitQueueDepth(1);
+        threads.add(startQuery("list-expensive", QueryType.LIST, 10, admitted));
+        awaitQueueDepth(2);
+        threads.add(startQuery("tags", QueryType.TAG_SEVERITIES, 1, admitted));
+        awaitQueueDepth(3);
+        threads.add(startQuery("list-cheap", QueryType.LIST, 2, admitted));
+        awaitQueueDepth(4);
+        assertTrue(admitted.isEmpty());
+
+        running.close();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // By type, then cost, regardless of arrival
+        assertEquals(Arrays.asList("list-cheap", "list-expensive", "tags", "archive"), admitted);
+        assertEquals(0, controller.getRunning());
+    }
+
+    @Test
+    public void testQueuedExpensiveQueryDoesNotBlockCheapQueries() throws Exception {
+        controller.setMaxConcurrentQueries(4);
+        final List<String> admitted = Collections.synchronizedList(new ArrayList<String>());
+        final Permit expensive = controller.admit(QueryType.LIST, EXPENSIVE);
+        final Thread waiting = startQuery("expensive", QueryType.LIST, EXPENSIVE, admitted);
+        awaitQueueDepth(1);
+
+        // Admitted without waiting for the queued expensive query ahead of it
+        final Permit cheap = controller.admit(QueryType.ARCHIVE, 1);
+        assertEquals(2, controller.getRunning());
+        assertEquals(1, controller.getQueueDepth());
+        cheap.close();
+
+        expensive.close();
+        waiting.join();
+        assertEquals(Collections.singletonList("expensive"), admitted);
+    }
+
+    @Test
+    public void testRejectedWhenQueueFull() throws Exception {
+        controller.setMaxQueueDepth(0);
+        try (Permit permit = controller.admit(QueryType.LIST, 1)) {
+            controller.admit(QueryType.LIST, 1);
+            fail("Expected the query to be rejected");
+        } catch (QueryRejectedException e) {
+            assertEquals(3, e.getRetryAfterSeconds());
+        }
+        assertEquals(0, controller.getRunning());
+    }
+
+    @Test
+    public void testRejectedAfterQueueWait() throws Exception {
+        controller.setMaxQueueWaitMillis(50L);
+        try (Permit permit = controller.admit(QueryType.LIST, 1)) {
+            controller.admit(QueryType.LIST, 1);
+            fail("Expected the query to be rejected");
+        } catch (QueryRejectedException e) {
+            // Leaves the queue once it gives up
+            assertEquals(0, controller.getQueueDepth());
+        }
+        assertEquals(0, controller.getRunning());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        controller.setEnabled(false);
+        controller.setMaxQueueDepth(0);
+        final Permit first = controller.admit(QueryType.ARCHIVE, EXPENSIVE);
+        final Permit second = controller.admit(QueryType.ARCHIVE, EXPENSIVE);
+        assertSame(Permit.NONE, first);
+        assertSame(Permit.NONE, second);
+        assertEquals(0, controller.getRunning());
+        second.close();
+        first.close();
+    }
+
+    @Test
+    public void testDisabledByDefault() throws Exception {
+        controller = new QueryAdmissionController();
+        controller.setMaxQueueDepth(0);
+        assertSame(Permit.NONE, controller.admit(QueryType.LIST, EXPENSIVE));
+    }
+}
@@ -161,6 +161,61 @@ public class IpUtilsTest {
         }
     }
     
+    @Test
+    public void testParseRangeWhitespace() throws UnknownHostException {
+        final IpRange expected = new IpRange(InetAddress.getByName("10.0.0.1"), InetAddress.getByName("10.0.0.9"));
+        assertEquals(expected, IpUtils.parseRange(" 10.0.0.1 - 10.0.0.9 "));
+        assertEquals(expected, IpUtils.parseRange("10.0.0.1 - 9"));
+        assertEquals(new IpRange(InetAddress.getByName("10.1.0.0"), InetAddress.getByName("10.1.255.255")),
+                IpUtils.parseRange("10.1.2.3 / 16"));
+    }
+
+    @Test
+    public void testParseRangeCidr() throws UnknownHostException {
+        assertEquals(new IpRange(InetAddress.getByName("0.0.0.0"), InetAddress.getByName("255.255.255.255")),
+                IpUtils.parseRange("10.1.2.3/0"));
+        assertEquals(new IpRange(InetAddress.getByName("10.1.2.3"), InetAddress.getByName("10.1.2.3")),
+                IpUtils.parseRange("10.1.2.3/32"));
+        assertEquals(new IpRange(InetAddress.getByName("2001:db8::"),
+                InetAddress.getByName("2001:db8:ffff:ffff:ffff:ffff:ffff:ffff")),
+                IpUtils.parseRange("2001:db8::1/32"));
+        assertEquals(new IpRange(InetAddress.getByName("2001:db8::1:0"), InetAddress.getByName("2001:db8::1:ffff")),
+                IpUtils.parseRange("2001:db8::1:2/112"));
+
+        List<String> expectedFailures = Arrays.asList("10.1.2.3/33", "10.1.2.3/-1", "2001:db8::/129",
+                "10.1.2.3/255.0.255.0", "10.1.2.3/ffff::", "2001:db8::/255.255.0.0", "10.1.2.3/abc");
+        for (String expectedFailure : expectedFailures) {
+            try {
+                IpUtils.parseRange(expectedFailure);
+                fail("Expected to fail: " + expectedFailure);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void testToSortableLongs() throws UnknownHostException {
+        assertArrayEquals(new long[] { 0L }, IpUtils.toSortableLongs(InetAddress.getByName("0.0.0.0")));
+        assertArrayEquals(new long[] { 0xc0a80102L }, IpUtils.toSortableLongs(InetAddress.getByName("192.168.1.2")));
+        assertArrayEquals(new long[] { 0xffffffffL },
+                IpUtils.toSortableLongs(InetAddress.getByName("255.255.255.255")));
+        assertArrayEquals(new long[] { Long.MIN_VALUE, Long.MIN_VALUE + 1 },
+                IpUtils.toSortableLongs(InetAddress.getByName("::1")));
+        assertArrayEquals(new long[] { Long.MAX_VALUE, Long.MAX_VALUE },
+                IpUtils.toSortableLongs(InetAddress.getByName("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff")));
+
+        // Numbers sort like the addresses
+        List<String> sortedIpv6 = Arrays.asList("::", "::1", "::ffff:ffff:ffff:ffff", "0:0:0:1::",
+                "7fff:ffff:ffff:ffff::", "8000::", "fe80::1", "fe80::8000:0:0:0", "ffff::");
+        for (int i = 1; i < sortedIpv6.size(); i++) {
+            long[] previous = IpUtils.toSortableLongs(InetAddress.getByName(sortedIpv6.get(i - 1)));
+            long[] current = IpUtils.toSortableLongs(InetAddress.getByName(sortedIpv6.get(i)));
+            assertTrue(sortedIpv6.get(i), previous[0] < current[0] ||
+                    (previous[0] == current[0] && previous[1] < current[1]));
+        }
+    }
+
     @Test
     public void testIpRange() throws UnknownHostException {
         IpRange range = new IpRange(InetAddress.getByName("192.168.1.99"), InetAddress.getByName("192.168.1.150"));